@@ -31,6 +31,7 @@ import de.spektrumprojekt.aggregator.chain.AggregatorProxyMessageFeatureCommand;
 import de.spektrumprojekt.aggregator.chain.DuplicationDetectionCommand;
 import de.spektrumprojekt.aggregator.chain.PublicationDateFilterCommand;
 import de.spektrumprojekt.aggregator.chain.SendAggregatorMessageCommand;
+import de.spektrumprojekt.aggregator.chain.SubscriptionFilterCommand;
 import de.spektrumprojekt.aggregator.configuration.AggregatorConfiguration;
 import de.spektrumprojekt.aggregator.duplicate.hashduplicate.HashDuplicationDetection;
 import de.spektrumprojekt.aggregator.subscription.PersistentSubscriptionManager;
@@ -70,6 +71,8 @@ public class Aggregator {
 
     private AggregatorChain aggregatorChain;
 
+    private HashDuplicationDetection hashDuplicationDetection;
+
     public Aggregator(Communicator communicator, Persistence persistence,
             AggregatorConfiguration aggregatorConfiguration) {
         this(communicator, persistence, aggregatorConfiguration, null);
@@ -142,9 +145,10 @@ public class Aggregator {
         aggregatorChain.getNewMessageChain().addCommand(
                 new PublicationDateFilterCommand(this.aggregatorConfiguration
                         .getMinimumPublicationDate()));
+        hashDuplicationDetection = new HashDuplicationDetection(aggregatorConfiguration,
+                persistence);
         aggregatorChain.getNewMessageChain().addCommand(
-                new DuplicationDetectionCommand(new HashDuplicationDetection(
-                        aggregatorConfiguration, persistence)));
+                new DuplicationDetectionCommand(hashDuplicationDetection));
 
         if (this.informationExtractionCommand != null) {
             aggregatorChain.getNewMessageChain().addCommand(
@@ -154,10 +158,14 @@ public class Aggregator {
         aggregatorChain.getNewMessageChain().addCommand(new AggregatorProxyMessageFeatureCommand(
                 new StoreMessageCommand(persistence)));
 
+        SubscriptionFilterCommand subscriptionFilterCommand = new SubscriptionFilterCommand(
+                aggregatorChain.getSubscriptionFilterEngine(), persistence);
         SendAggregatorMessageCommand sendAggregatorMessageCommand = new SendAggregatorMessageCommand(
                 this.communicator);
+        aggregatorChain.getNewMessageChain().addCommand(subscriptionFilterCommand);
         aggregatorChain.getNewMessageChain().addCommand(sendAggregatorMessageCommand);
 
+        aggregatorChain.getAddMessageToSubscriptionChain().addCommand(subscriptionFilterCommand);
         aggregatorChain.getAddMessageToSubscriptionChain().addCommand(sendAggregatorMessageCommand);
     }
 
@@ -183,7 +191,8 @@ public class Aggregator {
     }
 
     /**
-     * unregisters the handlers and closes the {@link Communicator}
+     * unregisters the handlers, saves the pending hashes of the duplicate detection and closes the
+     * {@link Communicator}
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public void stop() {
@@ -194,6 +203,7 @@ public class Aggregator {
             }
         }
         subscriptionManager.stop();
+        hashDuplicationDetection.saveHashes();
         communicator.close();
         LOGGER.info("Aggregator stopped");
     }
@@ -1,5 +1,6 @@
 package de.spektrumprojekt.aggregator.chain;
 
+import de.spektrumprojekt.aggregator.subscription.filter.SubscriptionFilterEngine;
 import de.spektrumprojekt.commons.chain.CommandChain;
 import de.spektrumprojekt.persistence.Persistence;
 
@@ -11,6 +12,8 @@ public class AggregatorChain {
 
     private final CommandChain<AggregatorMessageContext> AddMessageToSubscriptionChain = new CommandChain<AggregatorMessageContext>();
 
+    private final SubscriptionFilterEngine subscriptionFilterEngine = new SubscriptionFilterEngine();
+
     public AggregatorChain(Persistence persistence) {
         if (persistence == null) {
             throw new IllegalArgumentException("persistence cannot be null.");
@@ -42,4 +45,13 @@ public class AggregatorChain {
         return persistence;
     }
 
+    /**
+     * The filters of the subscriptions, to be kept up to date by the subscription manager
+     * 
+     * @return the filters of the subscriptions
+     */
+    public SubscriptionFilterEngine getSubscriptionFilterEngine() {
+        return subscriptionFilterEngine;
+    }
+
 }
@@ -9,7 +9,7 @@ public class AggregatorMessageContext {
 
     private final MessageFeatureContext messageFeatureContext;
 
-    private final String[] subscriptionGlobalIds;
+    private String[] subscriptionGlobalIds;
 
     private boolean duplicate;
 
@@ -64,4 +64,13 @@ public class AggregatorMessageContext {
         this.duplicate = duplicate;
     }
 
+    /**
+     * 
+     * @param subscriptionGlobalIds
+     *            the subscriptions ids to limit. null or empty if all available should be used.
+     */
+    public void setSubscriptionGlobalIds(String[] subscriptionGlobalIds) {
+        this.subscriptionGlobalIds = subscriptionGlobalIds;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package de.spektrumprojekt.aggregator.chain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.spektrumprojekt.aggregator.subscription.filter.MessageFilterContext;
+import de.spektrumprojekt.aggregator.subscription.filter.SubscriptionFilterEngine;
+import de.spektrumprojekt.commons.chain.CommandException;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.subscription.Subscription;
+import de.spektrumprojekt.datamodel.subscription.SubscriptionFilter;
+import de.spektrumprojekt.persistence.Persistence;
+
+/**
+ * Limits the subscriptions a message is sent to to the ones whose filter matches the message, and
+ * stops the chain if there is none. Must run before the {@link SendAggregatorMessageCommand}, so
+ * messages nobody subscribed to are not sent and ranked at all.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class SubscriptionFilterCommand implements
+        de.spektrumprojekt.commons.chain.Command<AggregatorMessageContext> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionFilterCommand.class);
+
+    private final SubscriptionFilterEngine subscriptionFilterEngine;
+
+    private final Persistence persistence;
+
+    /**
+     * 
+     * @param subscriptionFilterEngine
+     *            the engine with the filters of the subscriptions
+     * @param persistence
+     *            the persistence to get the other subscriptions of a source from, if only some of
+     *            them match
+     */
+    public SubscriptionFilterCommand(SubscriptionFilterEngine subscriptionFilterEngine,
+            Persistence persistence) {
+        if (subscriptionFilterEngine == null) {
+            throw new IllegalArgumentException("subscriptionFilterEngine cannot be null.");
+        }
+        if (persistence == null) {
+            throw new IllegalArgumentException("persistence cannot be null.");
+        }
+        this.subscriptionFilterEngine = subscriptionFilterEngine;
+        this.persistence = persistence;
+    }
+
+    private void filtered(AggregatorMessageContext context) throws CommandException {
+        LOGGER.debug("Message {} does not match any subscription and was skipped.", context
+                .getMessage().getGlobalId());
+        throw new CommandException(false, "Message " + context.getMessage().getGlobalId()
+                + " does not match any subscription and was skipped.");
+    }
+
+    @Override
+    public String getConfigurationDescription() {
+        return this.getClass().getSimpleName();
+    }
+
+    @Override
+    public void process(AggregatorMessageContext context) throws CommandException {
+        Message message = context.getMessage();
+        MessageFilterContext filterContext = new MessageFilterContext(message);
+
+        String[] subscriptionGlobalIds = context.getSubscriptionGlobalIds();
+        if (subscriptionGlobalIds != null && subscriptionGlobalIds.length > 0) {
+            List<String> matching = new ArrayList<String>(subscriptionGlobalIds.length);
+            for (String subscriptionGlobalId : subscriptionGlobalIds) {
+                if (subscriptionFilterEngine.matches(subscriptionGlobalId, filterContext)) {
+                    matching.add(subscriptionGlobalId);
+                }
+            }
+            if (matching.isEmpty()) {
+                filtered(context);
+            }
+            if (matching.size() < subscriptionGlobalIds.length) {
+                context.setSubscriptionGlobalIds(matching.toArray(new String[matching.size()]));
+            }
+            return;
+        }
+
+        // the message goes to all subscriptions of the source
+        Set<String> filteredSubscriptionGlobalIds = subscriptionFilterEngine
+                .getFilteredSubscriptionGlobalIds(message.getSourceGlobalId());
+        List<String> rejected = new ArrayList<String>();
+        for (String subscriptionGlobalId : filteredSubscriptionGlobalIds) {
+            if (!subscriptionFilterEngine.matches(subscriptionGlobalId, filterContext)) {
+                rejected.add(subscriptionGlobalId);
+            }
+        }
+        if (rejected.isEmpty()) {
+            return;
+        }
+        SubscriptionFilter subscriptionFilter = new SubscriptionFilter();
+        subscriptionFilter.setSourceGlobalId(message.getSourceGlobalId());
+        List<String> matching = new ArrayList<String>();
+        for (Subscription subscription : persistence.getSubscriptions(subscriptionFilter)) {
+            if (!rejected.contains(subscription.getGlobalId())) {
+                matching.add(subscription.getGlobalId());
+            }
+        }
+        if (matching.isEmpty()) {
+            filtered(context);
+        }
+        context.setSubscriptionGlobalIds(matching.toArray(new String[matching.size()]));
+    }
+}
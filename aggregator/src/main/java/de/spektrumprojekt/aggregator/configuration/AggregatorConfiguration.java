@@ -134,6 +134,18 @@ public final class AggregatorConfiguration extends SimpleConfigurationHolder {
         return configuration.getIntProperty("adapter.errorsForBlock");
     }
 
+    /**
+     * <p>
+     * number of new hashes of the duplicate detection which are saved at once. Hashes not saved
+     * yet are lost if the aggregator is not stopped properly. Defaults to 1.
+     * </p>
+     * 
+     * @return
+     */
+    public int getHashesPersistBatchSize() {
+        return configuration.getIntProperty("duplicateDetetion.persistBatchSize", 1);
+    }
+
     /**
      * <p>
      * maximum number hashes for duplicate detection
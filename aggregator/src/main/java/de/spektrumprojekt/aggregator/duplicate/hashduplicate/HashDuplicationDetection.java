@@ -19,10 +19,8 @@
 
 package de.spektrumprojekt.aggregator.duplicate.hashduplicate;
 
-import java.util.HashSet;
-import java.util.Set;
-
-import javax.persistence.ManyToMany;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import de.spektrumprojekt.aggregator.configuration.AggregatorConfiguration;
 import de.spektrumprojekt.aggregator.duplicate.DuplicateDetection;
@@ -49,8 +47,12 @@ public class HashDuplicationDetection implements DuplicateDetection {
      */
     private final int maxValue;
 
-    @ManyToMany
-    private final Set<SourceMessageHashes> sourcesWithHashes = new HashSet<SourceMessageHashes>();
+    /**
+     * number of new message hashes saved at once
+     */
+    private final int persistBatchSize;
+
+    private final ConcurrentMap<String, SourceMessageHashes> sourcesWithHashes = new ConcurrentHashMap<String, SourceMessageHashes>();
 
     /**
      * constructor
@@ -61,6 +63,7 @@ public class HashDuplicationDetection implements DuplicateDetection {
     public HashDuplicationDetection(AggregatorConfiguration configuration, Persistence persistence) {
         maxValue = configuration.getMaxHashes();
         minValue = configuration.getMinHashes();
+        persistBatchSize = configuration.getHashesPersistBatchSize();
         this.persistence = persistence;
     }
 
@@ -72,14 +75,16 @@ public class HashDuplicationDetection implements DuplicateDetection {
      * @return hashes
      */
     private SourceMessageHashes getHashes(String sourceGlobalId) {
-        for (SourceMessageHashes subscriptionHashes : sourcesWithHashes) {
-            if (subscriptionHashes.getSourceGlobalId().equals(sourceGlobalId)) {
-                return subscriptionHashes;
+        SourceMessageHashes hashes = sourcesWithHashes.get(sourceGlobalId);
+        if (hashes == null) {
+            hashes = new SourceMessageHashes(persistence, sourceGlobalId, minValue, maxValue,
+                    persistBatchSize);
+            SourceMessageHashes existingHashes = sourcesWithHashes.putIfAbsent(sourceGlobalId,
+                    hashes);
+            if (existingHashes != null) {
+                hashes = existingHashes;
             }
         }
-        SourceMessageHashes hashes = new SourceMessageHashes(persistence,
-                sourceGlobalId, minValue, maxValue);
-        sourcesWithHashes.add(hashes);
         return hashes;
     }
 
@@ -91,4 +96,13 @@ public class HashDuplicationDetection implements DuplicateDetection {
         return getHashes(message.getSourceGlobalId()).isDuplicate(message);
     }
 
+    /**
+     * saves the hashes of all subscriptions which have not been saved yet
+     */
+    public void saveHashes() {
+        for (SourceMessageHashes hashes : sourcesWithHashes.values()) {
+            hashes.saveHashes();
+        }
+    }
+
 }
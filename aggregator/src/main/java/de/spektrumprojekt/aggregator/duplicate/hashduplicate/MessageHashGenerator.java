@@ -23,6 +23,8 @@ import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import org.apache.commons.codec.binary.Hex;
+
 import de.spektrumprojekt.aggregator.adapter.rss.FeedAdapter;
 import de.spektrumprojekt.aggregator.adapter.twitter.TwitterAdapter;
 import de.spektrumprojekt.datamodel.common.Property;
@@ -40,40 +42,92 @@ public class MessageHashGenerator {
     private static final String[] idProperties = { FeedAdapter.MESSAGE_PROPERTY_ID,
             TwitterAdapter.STATUS_ID };
 
+    // the length of the hex string of a MD5 digest
+    private static final int HASH_LENGTH = 32;
+
     /**
-     * generates the hash for a message
+     * generates the hash for a message. The hash is the MD5 digest of the id property of the
+     * message, or of its content if it has no id property, as hex string of fixed length.
      * 
      * @param message
      *            message
      * @return hash
      */
     public static String generateHashFromMessage(Message message) {
-        StringBuilder sb = new StringBuilder();
+        String idProperty = getIdProperty(message);
+        byte[] digest = md5(idProperty != null ? idProperty : getContent(message));
+        return new String(Hex.encodeHex(digest));
+    }
+
+    /**
+     * generates the hash for a message as it has been generated before the hex hashes. It is the
+     * id property of the message, or the MD5 digest of its content decoded with the platform
+     * charset. Only needed to recognize the hashes stored before, see {@link #isLegacyHash(String)}
+     * 
+     * @param message
+     *            message
+     * @return the hash in the old format
+     */
+    public static String generateLegacyHashFromMessage(Message message) {
+        String idProperty = getIdProperty(message);
+        if (idProperty != null) {
+            return idProperty;
+        }
+        return new String(md5(getContent(message)));
+    }
+
+    private static String getContent(Message message) {
+        StringBuilder sb = new StringBuilder("hash:");
+        for (MessagePart messagePart : message.getMessageParts()) {
+            sb.append(messagePart.getContent());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 
+     * @param message
+     *            the message
+     * @return the first id property of the message as "key:value", null if it has none
+     */
+    private static String getIdProperty(Message message) {
         for (Property property : message.getProperties()) {
             for (String idProperty : idProperties) {
                 if (property.getPropertyKey().equals(idProperty)) {
-                    sb.append(idProperty);
-                    sb.append(":");
-                    sb.append(property.getPropertyValue());
-                    return sb.toString();
+                    return idProperty + ":" + property.getPropertyValue();
                 }
             }
         }
-        sb.append("hash:");
-        for (MessagePart messagePart : message.getMessageParts()) {
-            sb.append(messagePart.getContent());
+        return null;
+    }
+
+    /**
+     * 
+     * @param hash
+     *            a stored hash
+     * @return true if the hash has not been generated by {@link #generateHashFromMessage(Message)}
+     *         but in the old format of {@link #generateLegacyHashFromMessage(Message)}
+     */
+    public static boolean isLegacyHash(String hash) {
+        if (hash == null || hash.length() != HASH_LENGTH) {
+            return true;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            if (Character.digit(hash.charAt(i), 16) < 0 || Character.isUpperCase(hash.charAt(i))) {
+                return true;
+            }
         }
-        MessageDigest md;
+        return false;
+    }
+
+    private static byte[] md5(String value) {
         try {
-            byte[] bytesOfMessage = sb.toString().getBytes("UTF-8");
-            md = MessageDigest.getInstance("MD5");
-            return new String(md.digest(bytesOfMessage));
+            return MessageDigest.getInstance("MD5").digest(value.getBytes("UTF-8"));
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException(e);
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
-
     }
 
     /**
@@ -19,10 +19,15 @@
 
 package de.spektrumprojekt.aggregator.duplicate.hashduplicate;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.spektrumprojekt.aggregator.duplicate.DuplicateDetection;
 import de.spektrumprojekt.datamodel.duplicationdetection.HashWithDate;
@@ -31,22 +36,59 @@ import de.spektrumprojekt.persistence.Persistence;
 
 /**
  * saves the hashes of messages for a subscription, if the maxValue is reached the hashes are
- * cleaned and only the last ones are kept (minValue).
+ * cleaned and only the last ones are kept (minValue). The hashes are looked up in a set and kept in
+ * the order they have been added, so the oldest ones can be removed without searching them.
+ * 
+ * New hashes are saved in batches of persistBatchSize, so with a batch size greater than 1 the
+ * hashes not yet saved are lost if the aggregator stops without calling {@link #saveHashes()}.
+ * 
+ * Hashes stored in the format before the hex hashes are still recognized: as long as some of them
+ * are loaded, a message whose hash is not known is also checked with its legacy hash. A message
+ * found this way is a duplicate and gets its new hash added, so it is still recognized after the
+ * legacy hashes have been cleaned up.
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
  */
 public class SourceMessageHashes implements DuplicateDetection {
 
-    private final String soruceGlobalId;
+    private static final Comparator<HashWithDate> TIME_COMPARATOR = new Comparator<HashWithDate>() {
+
+        @Override
+        public int compare(HashWithDate hash1, HashWithDate hash2) {
+            if (hash1.getTime() == null) {
+                return hash2.getTime() == null ? 0 : -1;
+            }
+            if (hash2.getTime() == null) {
+                return 1;
+            }
+            return hash1.getTime().compareTo(hash2.getTime());
+        }
+    };
+
+    private final String sourceGlobalId;
 
     private final int maxValue;
 
     private final int minValue;
 
+    private final int persistBatchSize;
+
     private final Persistence persistence;
 
-    private final List<HashWithDate> hashes = new LinkedList<HashWithDate>();
+    private final Set<String> hashValues = new HashSet<String>();
+
+    /**
+     * the hashes ordered by the time they have been added, the oldest first
+     */
+    private final Deque<HashWithDate> hashes = new ArrayDeque<HashWithDate>();
+
+    private final List<HashWithDate> unsavedHashes = new ArrayList<HashWithDate>();
+
+    /**
+     * the number of hashes in the old format, see {@link MessageHashGenerator#isLegacyHash(String)}
+     */
+    private int legacyHashCount;
 
     /**
      * Constructor
@@ -62,10 +104,34 @@ public class SourceMessageHashes implements DuplicateDetection {
      */
     public SourceMessageHashes(Persistence persistence,
             String sourceGlobalId, int minValue, int maxValue) {
-        this.soruceGlobalId = sourceGlobalId;
+        this(persistence, sourceGlobalId, minValue, maxValue, 1);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param persistence
+     *            persistence
+     * @param sourceGlobalId
+     *            subscriptionGlobalId of the subscription
+     * @param minValue
+     *            minValue
+     * @param maxValue
+     *            maxValue
+     * @param persistBatchSize
+     *            the number of new hashes to save at once
+     */
+    public SourceMessageHashes(Persistence persistence,
+            String sourceGlobalId, int minValue, int maxValue, int persistBatchSize) {
+        if (persistBatchSize < 1) {
+            throw new IllegalArgumentException(
+                    "persistBatchSize must be at least 1. persistBatchSize=" + persistBatchSize);
+        }
+        this.sourceGlobalId = sourceGlobalId;
         this.persistence = persistence;
         this.maxValue = maxValue;
         this.minValue = minValue;
+        this.persistBatchSize = persistBatchSize;
         loadHashes();
     }
 
@@ -74,21 +140,16 @@ public class SourceMessageHashes implements DuplicateDetection {
      */
     private void cleanup() {
         if (hashes.size() > maxValue) {
+            // the hashes to delete must be saved before
+            saveHashes();
             List<HashWithDate> hashesToDelete = new ArrayList<HashWithDate>();
-
             while (hashes.size() > minValue) {
-                HashWithDate hashToDelete = null;
-                for (HashWithDate hash : hashes) {
-                    if (hashToDelete == null) {
-                        hashToDelete = hash;
-                    } else {
-                        if (hashToDelete.getTime().after(hash.getTime())) {
-                            hashToDelete = hash;
-                        }
-                    }
+                HashWithDate hashToDelete = hashes.removeFirst();
+                hashValues.remove(hashToDelete.getHash());
+                if (MessageHashGenerator.isLegacyHash(hashToDelete.getHash())) {
+                    legacyHashCount--;
                 }
                 hashesToDelete.add(hashToDelete);
-                hashes.remove(hashToDelete);
             }
             persistence.deleteHashWithDates(hashesToDelete);
         }
@@ -99,30 +160,51 @@ public class SourceMessageHashes implements DuplicateDetection {
      * @return subscriptionGlobalId
      */
     public String getSourceGlobalId() {
-        return soruceGlobalId;
+        return sourceGlobalId;
     }
 
     @Override
-    public boolean isDuplicate(Message message) {
+    public synchronized boolean isDuplicate(Message message) {
         String messageHash = MessageHashGenerator.generateHashFromMessage(message);
-        for (HashWithDate hashWithDate : hashes) {
-            if (hashWithDate.getHash()
-                    .equals(messageHash)) {
-                return true;
-            }
+        if (!hashValues.add(messageHash)) {
+            return true;
+        }
+        boolean duplicate = legacyHashCount > 0
+                && hashValues.contains(MessageHashGenerator.generateLegacyHashFromMessage(message));
+        HashWithDate hashWithDate = new HashWithDate(sourceGlobalId, new Date(), messageHash);
+        hashes.addLast(hashWithDate);
+        unsavedHashes.add(hashWithDate);
+        if (unsavedHashes.size() >= persistBatchSize) {
+            saveHashes();
         }
-        HashWithDate hashWithDate = new HashWithDate(soruceGlobalId, new Date(),
-                MessageHashGenerator.generateHashFromMessage(message));
-        hashWithDate = persistence.saveHashWithDate(hashWithDate);
-        hashes.add(hashWithDate);
         cleanup();
-        return false;
+        return duplicate;
     }
 
     /***
      * loads the hashes from the database
      */
     private void loadHashes() {
-        hashes.addAll(persistence.getHashsByGlobalSubscriptionId(soruceGlobalId));
+        List<HashWithDate> loadedHashes = new ArrayList<HashWithDate>(
+                persistence.getHashsByGlobalSubscriptionId(sourceGlobalId));
+        Collections.sort(loadedHashes, TIME_COMPARATOR);
+        for (HashWithDate hashWithDate : loadedHashes) {
+            if (hashValues.add(hashWithDate.getHash())) {
+                hashes.addLast(hashWithDate);
+                if (MessageHashGenerator.isLegacyHash(hashWithDate.getHash())) {
+                    legacyHashCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * saves the hashes which have not been saved yet
+     */
+    public synchronized void saveHashes() {
+        if (!unsavedHashes.isEmpty()) {
+            persistence.saveHashWithDates(new ArrayList<HashWithDate>(unsavedHashes));
+            unsavedHashes.clear();
+        }
     }
 }
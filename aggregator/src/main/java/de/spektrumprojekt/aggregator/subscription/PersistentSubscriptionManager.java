@@ -182,7 +182,8 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
 
     /**
      * <p>
-     * Add persistent subscription specifications to the AdapterManager.
+     * Add persistent subscription specifications to the AdapterManager and register the filters
+     * of the persistent subscriptions.
      * </p>
      * 
      * @return
@@ -193,6 +194,8 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
 
         for (SourceStatus sourceStatus : persistentSourceStatus) {
             // LOGGER.warn("To schedule ...: {}", subscription);
+            // also for blocked sources, unblocking does not register the filters
+            registerSubscriptionFilters(sourceStatus.getSource());
             if (sourceStatus.isBlocked()) {
                 continue;
             }
@@ -481,6 +484,21 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
         }
     }
 
+    /**
+     * Registers the filters of the stored subscriptions of the source, the compiled filters only
+     * live in memory
+     * 
+     * @param source
+     *            the source
+     */
+    private void registerSubscriptionFilters(Source source) {
+        SubscriptionFilter subscriptionFilter = new SubscriptionFilter();
+        subscriptionFilter.setSourceGlobalId(source.getGlobalId());
+        for (Subscription subscription : persistence.getSubscriptions(subscriptionFilter)) {
+            this.aggregatorChain.getSubscriptionFilterEngine().register(subscription);
+        }
+    }
+
     /**
      * tells the adapterManager to stop
      */
@@ -575,6 +593,7 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
             // the source already exists, so use it
             subscription.setSource(existingSource);
             this.persistence.storeSubscription(subscription);
+            this.aggregatorChain.getSubscriptionFilterEngine().register(subscription);
 
             sourceStatus = this.persistence.getSourceStatusBySourceGlobalId(existingSource
                     .getGlobalId());
@@ -593,6 +612,8 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
 
         } else {
             // everything is new so create subscription with source and a new source status
+            // the filter is transient, so register it before storing
+            this.aggregatorChain.getSubscriptionFilterEngine().register(subscription);
             subscription = this.persistence.storeSubscription(subscription);
 
             // create subscription and source and start working it
@@ -686,6 +707,7 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
         Source source = subscription.getSource();
 
         persistence.deleteSubscription(subscriptionGlobalId);
+        aggregatorChain.getSubscriptionFilterEngine().unregister(subscriptionGlobalId);
 
         // TODO this is not thread-safe. Transaction isolation is another thing to consider!
         int numberOfSubscriptionsForSource = persistence
@@ -754,6 +776,7 @@ public class PersistentSubscriptionManager implements SubscriptionManager, Adapt
 
                 subscription.setSource(persistedSource);
                 this.persistence.updateSubscription(subscription);
+                this.aggregatorChain.getSubscriptionFilterEngine().register(subscription);
 
                 // finally check if the source is blocked so a subscribe will unblock it
                 if (sourceStatus.isBlocked()) {
@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package de.spektrumprojekt.aggregator.subscription.filter;
+
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpression;
+
+/**
+ * A {@link FilterExpression} compiled by the {@link FilterExpressionCompiler}. Equal expressions
+ * are compiled into the same instance, and the result of an expression is cached in the
+ * {@link MessageFilterContext}, so an expression shared by several subscriptions is evaluated
+ * only once per message.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public abstract class CompiledFilterExpression {
+
+    private final int id;
+
+    private final String key;
+
+    /**
+     * 
+     * @param id
+     *            the id of the expression, unique within the compiler
+     * @param key
+     *            the key of the expression, expressions with the same key are equal
+     */
+    protected CompiledFilterExpression(int id, String key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    /**
+     * Evaluates the expression, use {@link #matches(MessageFilterContext)} to make use of the
+     * cached results
+     * 
+     * @param context
+     *            the context of the message
+     * @return true if the message matches
+     */
+    protected abstract boolean evaluate(MessageFilterContext context);
+
+    /**
+     * 
+     * @return the id of the expression, unique within the compiler
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * 
+     * @return the key of the expression, expressions with the same key are equal
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 
+     * @param context
+     *            the context of the message
+     * @return true if the message matches, the result is cached in the context
+     */
+    public boolean matches(MessageFilterContext context) {
+        return context.matches(this);
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledFilterExpression [id=" + id + ", key=" + key + "]";
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package de.spektrumprojekt.aggregator.subscription.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import de.spektrumprojekt.datamodel.subscription.filter.BooleanOperator;
+import de.spektrumprojekt.datamodel.subscription.filter.ComparisonFilterExpression;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpression;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpressionConnector;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpressionContainer;
+import de.spektrumprojekt.datamodel.subscription.filter.RegexFilterExpression;
+
+/**
+ * <p>
+ * Compiles {@link FilterExpression} trees into {@link CompiledFilterExpression}s. The regular
+ * expressions are compiled once and the boolean operators evaluate their operands only as far as
+ * needed. Equal expressions are compiled into the same instance, also for different trees, so
+ * sub-expressions common to several subscriptions are shared and evaluated once per message.
+ * </p>
+ * <p>
+ * The expressions are evaluated as follows:
+ * <ul>
+ * <li>a {@link FilterExpression} matches if the message has a value for its message attribute, or
+ * always if it has no attribute,</li>
+ * <li>a {@link RegexFilterExpression} matches if the regular expression is found in the value of
+ * the message attribute,</li>
+ * <li>a {@link FilterExpressionContainer} matches if its nested expression matches, that is it
+ * groups expressions like parentheses,</li>
+ * <li>a {@link ComparisonFilterExpression} cannot be compiled as it has no value to compare the
+ * message attribute with.</li>
+ * </ul>
+ * A negated expression matches if the expression does not match. The expressions linked by the
+ * {@link FilterExpressionConnector}s are combined with the precedence of the Java operators, that
+ * is AND before XOR before OR. The message attributes are resolved by the
+ * {@link MessageFilterContext}.
+ * </p>
+ * <p>
+ * The compiled expressions are kept as long as the compiler, which is fine for the limited number
+ * of distinct filters of the subscriptions.
+ * </p>
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class FilterExpressionCompiler {
+
+    private static final class AndExpression extends CompiledFilterExpression {
+
+        private final CompiledFilterExpression[] operands;
+
+        public AndExpression(int id, String key, CompiledFilterExpression[] operands) {
+            super(id, key);
+            this.operands = operands;
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            for (CompiledFilterExpression operand : operands) {
+                if (!operand.matches(context)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class AttributeExistsExpression extends CompiledFilterExpression {
+
+        private final String attribute;
+
+        public AttributeExistsExpression(int id, String key, String attribute) {
+            super(id, key);
+            this.attribute = attribute;
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            String value = context.getAttributeValue(attribute);
+            return value != null && value.length() > 0;
+        }
+    }
+
+    private static final class NotExpression extends CompiledFilterExpression {
+
+        private final CompiledFilterExpression operand;
+
+        public NotExpression(int id, String key, CompiledFilterExpression operand) {
+            super(id, key);
+            this.operand = operand;
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            return !operand.matches(context);
+        }
+    }
+
+    private static final class OrExpression extends CompiledFilterExpression {
+
+        private final CompiledFilterExpression[] operands;
+
+        public OrExpression(int id, String key, CompiledFilterExpression[] operands) {
+            super(id, key);
+            this.operands = operands;
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            for (CompiledFilterExpression operand : operands) {
+                if (operand.matches(context)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class RegexExpression extends CompiledFilterExpression {
+
+        private final String attribute;
+
+        private final Pattern pattern;
+
+        public RegexExpression(int id, String key, String attribute, Pattern pattern) {
+            super(id, key);
+            this.attribute = attribute;
+            this.pattern = pattern;
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            String value = context.getAttributeValue(attribute);
+            return value != null && pattern.matcher(value).find();
+        }
+    }
+
+    private static final class TrueExpression extends CompiledFilterExpression {
+
+        public TrueExpression(int id, String key) {
+            super(id, key);
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            return true;
+        }
+    }
+
+    private static final class XorExpression extends CompiledFilterExpression {
+
+        private final CompiledFilterExpression[] operands;
+
+        public XorExpression(int id, String key, CompiledFilterExpression[] operands) {
+            super(id, key);
+            this.operands = operands;
+        }
+
+        @Override
+        protected boolean evaluate(MessageFilterContext context) {
+            boolean result = false;
+            for (CompiledFilterExpression operand : operands) {
+                result ^= operand.matches(context);
+            }
+            return result;
+        }
+    }
+
+    private static final String KEY_TRUE = "true";
+
+    // the compiled expressions by key
+    private final Map<String, CompiledFilterExpression> expressions = new HashMap<String, CompiledFilterExpression>();
+
+    /**
+     * 
+     * @param filterExpression
+     *            the first expression of the tree, the following ones are linked by its
+     *            {@link FilterExpressionConnector}
+     * @return the compiled expression
+     * @throws IllegalArgumentException
+     *             if the tree cannot be compiled, e.g. because of an invalid regular expression
+     */
+    public synchronized CompiledFilterExpression compile(FilterExpression filterExpression) {
+        if (filterExpression == null) {
+            throw new IllegalArgumentException("filterExpression cannot be null.");
+        }
+        return compileConnected(filterExpression,
+                Collections.newSetFromMap(new IdentityHashMap<FilterExpression, Boolean>()));
+    }
+
+    /**
+     * Compiles the expression and the expressions connected to it
+     */
+    private CompiledFilterExpression compileConnected(FilterExpression filterExpression,
+            Set<FilterExpression> visited) {
+        List<CompiledFilterExpression> orOperands = new ArrayList<CompiledFilterExpression>();
+        List<CompiledFilterExpression> xorOperands = new ArrayList<CompiledFilterExpression>();
+        List<CompiledFilterExpression> andOperands = new ArrayList<CompiledFilterExpression>();
+        andOperands.add(compileSingle(filterExpression, visited));
+
+        FilterExpressionConnector connector = filterExpression.getFilterExpressionConnector();
+        while (connector != null && connector.getFilterExpression() != null) {
+            FilterExpression next = connector.getFilterExpression();
+            CompiledFilterExpression operand = compileSingle(next, visited);
+            BooleanOperator operator = connector.getBooleanOperator() == null ? BooleanOperator.AND
+                    : connector.getBooleanOperator();
+            if (operator == BooleanOperator.AND) {
+                andOperands.add(operand);
+            } else {
+                xorOperands.add(getOperation(BooleanOperator.AND, andOperands));
+                andOperands.clear();
+                andOperands.add(operand);
+                if (operator == BooleanOperator.OR) {
+                    orOperands.add(getOperation(BooleanOperator.XOR, xorOperands));
+                    xorOperands.clear();
+                }
+            }
+            connector = next.getFilterExpressionConnector();
+        }
+        xorOperands.add(getOperation(BooleanOperator.AND, andOperands));
+        orOperands.add(getOperation(BooleanOperator.XOR, xorOperands));
+        return getOperation(BooleanOperator.OR, orOperands);
+    }
+
+    /**
+     * Compiles the expression without the expressions connected to it
+     */
+    private CompiledFilterExpression compileSingle(FilterExpression filterExpression,
+            Set<FilterExpression> visited) {
+        if (!visited.add(filterExpression)) {
+            throw new IllegalArgumentException("The filter expression contains a cycle at "
+                    + filterExpression);
+        }
+        String attribute = filterExpression.getMessageAttribute();
+        CompiledFilterExpression compiled;
+        if (filterExpression instanceof FilterExpressionContainer) {
+            FilterExpression nested = ((FilterExpressionContainer) filterExpression)
+                    .getFilterExpression();
+            compiled = nested == null ? getTrue() : compileConnected(nested, visited);
+        } else if (filterExpression instanceof RegexFilterExpression) {
+            String regex = ((RegexFilterExpression) filterExpression).getRegex();
+            if (attribute == null || regex == null) {
+                throw new IllegalArgumentException(
+                        "messageAttribute and regex cannot be null. filterExpression="
+                                + filterExpression);
+            }
+            compiled = getRegex(attribute, regex);
+        } else if (filterExpression instanceof ComparisonFilterExpression) {
+            throw new IllegalArgumentException("A ComparisonFilterExpression has no value to"
+                    + " compare with and cannot be evaluated. filterExpression="
+                    + filterExpression);
+        } else {
+            compiled = attribute == null ? getTrue() : getAttributeExists(attribute);
+        }
+        if (filterExpression.isNegated()) {
+            compiled = getNot(compiled);
+        }
+        return compiled;
+    }
+
+    private CompiledFilterExpression getAttributeExists(String attribute) {
+        String key = "exists(" + attribute.length() + ":" + attribute + ")";
+        CompiledFilterExpression expression = expressions.get(key);
+        if (expression == null) {
+            expression = register(new AttributeExistsExpression(expressions.size(), key,
+                    attribute));
+        }
+        return expression;
+    }
+
+    private CompiledFilterExpression getNot(CompiledFilterExpression operand) {
+        String key = "not(" + operand.getId() + ")";
+        CompiledFilterExpression expression = expressions.get(key);
+        if (expression == null) {
+            expression = register(new NotExpression(expressions.size(), key, operand));
+        }
+        return expression;
+    }
+
+    /**
+     * 
+     * @param operator
+     *            the operator
+     * @param operands
+     *            the operands, the operators are commutative so their order does not matter
+     * @return the expression combining the operands, the operand itself if there is only one
+     */
+    private CompiledFilterExpression getOperation(BooleanOperator operator,
+            List<CompiledFilterExpression> operands) {
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+        CompiledFilterExpression[] operandArray = operands
+                .toArray(new CompiledFilterExpression[operands.size()]);
+        int[] ids = new int[operandArray.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = operandArray[i].getId();
+        }
+        Arrays.sort(ids);
+        String key = operator.name().toLowerCase() + Arrays.toString(ids);
+        CompiledFilterExpression expression = expressions.get(key);
+        if (expression == null) {
+            int id = expressions.size();
+            switch (operator) {
+            case AND:
+                expression = new AndExpression(id, key, operandArray);
+                break;
+            case OR:
+                expression = new OrExpression(id, key, operandArray);
+                break;
+            case XOR:
+                expression = new XorExpression(id, key, operandArray);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operator: " + operator);
+            }
+            register(expression);
+        }
+        return expression;
+    }
+
+    private CompiledFilterExpression getRegex(String attribute, String regex) {
+        String key = "regex(" + attribute.length() + ":" + attribute + "," + regex + ")";
+        CompiledFilterExpression expression = expressions.get(key);
+        if (expression == null) {
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regex: " + regex, e);
+            }
+            expression = register(new RegexExpression(expressions.size(), key, attribute,
+                    pattern));
+        }
+        return expression;
+    }
+
+    /**
+     * 
+     * @return the number of distinct compiled expressions
+     */
+    public synchronized int getSize() {
+        return expressions.size();
+    }
+
+    private CompiledFilterExpression getTrue() {
+        CompiledFilterExpression expression = expressions.get(KEY_TRUE);
+        if (expression == null) {
+            expression = register(new TrueExpression(expressions.size(), KEY_TRUE));
+        }
+        return expression;
+    }
+
+    private CompiledFilterExpression register(CompiledFilterExpression expression) {
+        expressions.put(expression.getKey(), expression);
+        return expression;
+    }
+}
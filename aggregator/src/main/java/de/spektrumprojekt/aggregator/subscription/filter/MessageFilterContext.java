@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package de.spektrumprojekt.aggregator.subscription.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.spektrumprojekt.datamodel.common.Property;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+
+/**
+ * The context to evaluate {@link CompiledFilterExpression}s for a message. It caches the values of
+ * the message attributes and the results of the expressions. Not thread-safe, a context should
+ * only be used for one message by one thread.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class MessageFilterContext {
+
+    /** The message attribute for the author global id. */
+    public static final String ATTRIBUTE_AUTHOR = "author";
+
+    /** The message attribute for the content of all message parts. */
+    public static final String ATTRIBUTE_TEXT = "text";
+
+    private static final byte NOT_EVALUATED = 0;
+
+    private static final byte MATCH = 1;
+
+    private static final byte NO_MATCH = 2;
+
+    private final Message message;
+
+    private final Map<String, String> attributeValues = new HashMap<String, String>();
+
+    private byte[] results = new byte[16];
+
+    /**
+     * 
+     * @param message
+     *            the message to evaluate the expressions for
+     */
+    public MessageFilterContext(Message message) {
+        if (message == null) {
+            throw new IllegalArgumentException("message cannot be null.");
+        }
+        this.message = message;
+    }
+
+    /**
+     * The value of an attribute of the message. Besides {@link #ATTRIBUTE_AUTHOR} and
+     * {@link #ATTRIBUTE_TEXT} an attribute is the key of a property of the message.
+     * 
+     * @param attribute
+     *            the attribute
+     * @return the value, null if the message has no such attribute
+     */
+    public String getAttributeValue(String attribute) {
+        if (attributeValues.containsKey(attribute)) {
+            return attributeValues.get(attribute);
+        }
+        String value;
+        if (ATTRIBUTE_AUTHOR.equals(attribute)) {
+            value = message.getAuthorGlobalId();
+        } else if (ATTRIBUTE_TEXT.equals(attribute)) {
+            StringBuilder text = new StringBuilder();
+            for (MessagePart messagePart : message.getMessageParts()) {
+                if (messagePart.getContent() != null) {
+                    if (text.length() > 0) {
+                        text.append('\n');
+                    }
+                    text.append(messagePart.getContent());
+                }
+            }
+            value = text.toString();
+        } else {
+            Property property = message.getProperty(attribute);
+            value = property == null ? null : property.getPropertyValue();
+        }
+        attributeValues.put(attribute, value);
+        return value;
+    }
+
+    /**
+     * 
+     * @return the message
+     */
+    public Message getMessage() {
+        return message;
+    }
+
+    boolean matches(CompiledFilterExpression expression) {
+        int id = expression.getId();
+        if (id >= results.length) {
+            byte[] newResults = new byte[Math.max(results.length * 2, id + 1)];
+            System.arraycopy(results, 0, newResults, 0, results.length);
+            results = newResults;
+        }
+        if (results[id] != NOT_EVALUATED) {
+            return results[id] == MATCH;
+        }
+        boolean match = expression.evaluate(this);
+        results[id] = match ? MATCH : NO_MATCH;
+        return match;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package de.spektrumprojekt.aggregator.subscription.filter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.spektrumprojekt.datamodel.subscription.Subscription;
+
+/**
+ * Keeps the compiled filters of the subscriptions, see {@link FilterExpressionCompiler}. The filter
+ * of a subscription is compiled once when the subscription is registered. Subscriptions without a
+ * filter, or with a filter that cannot be compiled, match all messages.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class SubscriptionFilterEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionFilterEngine.class);
+
+    private final FilterExpressionCompiler compiler = new FilterExpressionCompiler();
+
+    // the compiled filters by subscription global id
+    private final Map<String, CompiledFilterExpression> filters = new ConcurrentHashMap<String, CompiledFilterExpression>();
+
+    // the global ids of the subscriptions with a filter by source global id, the sets are replaced
+    // on changes so they can be read without locking
+    private final Map<String, Set<String>> filteredSubscriptionGlobalIds = new ConcurrentHashMap<String, Set<String>>();
+
+    private final Map<String, String> sourceGlobalIds = new HashMap<String, String>();
+
+    /**
+     * 
+     * @param sourceGlobalId
+     *            the global id of the source
+     * @return the global ids of the subscriptions of the source with a filter, never null
+     */
+    public Set<String> getFilteredSubscriptionGlobalIds(String sourceGlobalId) {
+        Set<String> subscriptionGlobalIds = sourceGlobalId == null ? null
+                : filteredSubscriptionGlobalIds.get(sourceGlobalId);
+        if (subscriptionGlobalIds == null) {
+            return Collections.emptySet();
+        }
+        return subscriptionGlobalIds;
+    }
+
+    /**
+     * 
+     * @param subscriptionGlobalId
+     *            the global id of the subscription
+     * @param context
+     *            the context of the message
+     * @return true if the message matches the filter of the subscription or the subscription has
+     *         no filter
+     */
+    public boolean matches(String subscriptionGlobalId, MessageFilterContext context) {
+        CompiledFilterExpression filter = filters.get(subscriptionGlobalId);
+        return filter == null || filter.matches(context);
+    }
+
+    /**
+     * Registers the filter of the subscription, replacing a filter registered before
+     * 
+     * @param subscription
+     *            the subscription
+     */
+    public synchronized void register(Subscription subscription) {
+        if (subscription == null) {
+            throw new IllegalArgumentException("subscription cannot be null.");
+        }
+        unregister(subscription.getGlobalId());
+        if (subscription.getFilterExpression() == null || subscription.getSource() == null) {
+            return;
+        }
+        CompiledFilterExpression filter;
+        try {
+            filter = compiler.compile(subscription.getFilterExpression());
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Cannot compile the filter of subscription {}, all messages will be"
+                    + " delivered to it: {}", subscription.getGlobalId(), e.getMessage());
+            return;
+        }
+        String sourceGlobalId = subscription.getSource().getGlobalId();
+        Set<String> subscriptionGlobalIds = new HashSet<String>(
+                getFilteredSubscriptionGlobalIds(sourceGlobalId));
+        subscriptionGlobalIds.add(subscription.getGlobalId());
+        filters.put(subscription.getGlobalId(), filter);
+        sourceGlobalIds.put(subscription.getGlobalId(), sourceGlobalId);
+        filteredSubscriptionGlobalIds.put(sourceGlobalId,
+                Collections.unmodifiableSet(subscriptionGlobalIds));
+        LOGGER.debug("Registered filter {} of subscription {}", filter, subscription.getGlobalId());
+    }
+
+    /**
+     * Removes the filter of the subscription
+     * 
+     * @param subscriptionGlobalId
+     *            the global id of the subscription
+     */
+    public synchronized void unregister(String subscriptionGlobalId) {
+        String sourceGlobalId = sourceGlobalIds.remove(subscriptionGlobalId);
+        if (sourceGlobalId == null) {
+            return;
+        }
+        filters.remove(subscriptionGlobalId);
+        Set<String> subscriptionGlobalIds = new HashSet<String>(
+                getFilteredSubscriptionGlobalIds(sourceGlobalId));
+        subscriptionGlobalIds.remove(subscriptionGlobalId);
+        if (subscriptionGlobalIds.isEmpty()) {
+            filteredSubscriptionGlobalIds.remove(sourceGlobalId);
+        } else {
+            filteredSubscriptionGlobalIds.put(sourceGlobalId,
+                    Collections.unmodifiableSet(subscriptionGlobalIds));
+        }
+    }
+}
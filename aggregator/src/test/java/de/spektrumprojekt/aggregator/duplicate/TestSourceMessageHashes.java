@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.aggregator.duplicate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import de.spektrumprojekt.aggregator.adapter.rss.FeedAdapter;
+import de.spektrumprojekt.aggregator.duplicate.hashduplicate.MessageHashGenerator;
+import de.spektrumprojekt.aggregator.duplicate.hashduplicate.SourceMessageHashes;
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.common.Property;
+import de.spektrumprojekt.datamodel.duplicationdetection.HashWithDate;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.persistence.simple.PersistenceMock;
+
+/**
+ * Test for the {@link SourceMessageHashes}
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class TestSourceMessageHashes {
+
+    private static class HashPersistence extends PersistenceMock {
+
+        private final List<HashWithDate> hashes = new ArrayList<HashWithDate>();
+
+        @Override
+        public void deleteHashWithDates(List<HashWithDate> hashesToDelete) {
+            hashes.removeAll(hashesToDelete);
+        }
+
+        @Override
+        public List<HashWithDate> getHashsByGlobalSubscriptionId(String subscriptionGlobalId) {
+            return new ArrayList<HashWithDate>(hashes);
+        }
+
+        @Override
+        public void saveHashWithDates(List<HashWithDate> hashesWithDates) {
+            hashes.addAll(hashesWithDates);
+        }
+    }
+
+    private static Message createMessage(int i) {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, "1", new Date());
+        message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN, "message" + i));
+        return message;
+    }
+
+    @Test
+    public void testIsDuplicate() {
+        HashPersistence persistence = new HashPersistence();
+        SourceMessageHashes hashes = new SourceMessageHashes(persistence, "1", 2, 4, 3);
+
+        Assert.assertFalse(hashes.isDuplicate(createMessage(0)));
+        Assert.assertFalse(hashes.isDuplicate(createMessage(1)));
+        Assert.assertTrue(hashes.isDuplicate(createMessage(0)));
+        // not saved before the batch is full
+        Assert.assertEquals(0, persistence.hashes.size());
+        Assert.assertFalse(hashes.isDuplicate(createMessage(2)));
+        Assert.assertEquals(3, persistence.hashes.size());
+        Assert.assertEquals(32, persistence.hashes.get(0).getHash().length());
+
+        Assert.assertFalse(hashes.isDuplicate(createMessage(3)));
+        // exceeding the maximum removes the oldest hashes
+        Assert.assertFalse(hashes.isDuplicate(createMessage(4)));
+        Assert.assertEquals(2, persistence.hashes.size());
+        Assert.assertFalse(hashes.isDuplicate(createMessage(0)));
+        Assert.assertTrue(hashes.isDuplicate(createMessage(4)));
+        hashes.saveHashes();
+
+        // the hashes are loaded again
+        hashes = new SourceMessageHashes(persistence, "1", 2, 4, 1);
+        Assert.assertTrue(hashes.isDuplicate(createMessage(0)));
+        Assert.assertTrue(hashes.isDuplicate(createMessage(3)));
+        Assert.assertFalse(hashes.isDuplicate(createMessage(1)));
+    }
+
+    /**
+     * Test that hashes stored in the old format are recognized until they are cleaned up
+     */
+    @Test
+    public void testLegacyHashes() {
+        Message message = createMessage(0);
+        Message messageWithId = createMessage(1);
+        messageWithId.addProperty(new Property(FeedAdapter.MESSAGE_PROPERTY_ID, "entry1"));
+
+        HashPersistence persistence = new HashPersistence();
+        persistence.hashes.add(new HashWithDate("1", new Date(1000), MessageHashGenerator
+                .generateLegacyHashFromMessage(message)));
+        persistence.hashes.add(new HashWithDate("1", new Date(2000), MessageHashGenerator
+                .generateLegacyHashFromMessage(messageWithId)));
+        for (HashWithDate hash : persistence.hashes) {
+            Assert.assertTrue(MessageHashGenerator.isLegacyHash(hash.getHash()));
+        }
+        Assert.assertFalse(MessageHashGenerator.isLegacyHash(MessageHashGenerator
+                .generateHashFromMessage(message)));
+
+        SourceMessageHashes hashes = new SourceMessageHashes(persistence, "1", 4, 5, 1);
+        Assert.assertTrue(hashes.isDuplicate(message));
+        Assert.assertTrue(hashes.isDuplicate(messageWithId));
+        Assert.assertFalse(hashes.isDuplicate(createMessage(2)));
+        // exceeding the maximum removes the legacy hashes
+        Assert.assertFalse(hashes.isDuplicate(createMessage(3)));
+        for (HashWithDate hash : persistence.hashes) {
+            Assert.assertFalse(MessageHashGenerator.isLegacyHash(hash.getHash()));
+        }
+        // recognized by the new hashes added on the legacy match
+        Assert.assertTrue(hashes.isDuplicate(message));
+        Assert.assertTrue(hashes.isDuplicate(messageWithId));
+    }
+}
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import junit.framework.Assert;
@@ -53,15 +54,52 @@ import de.spektrumprojekt.datamodel.common.Property;
 import de.spektrumprojekt.datamodel.source.Source;
 import de.spektrumprojekt.datamodel.source.SourceStatus;
 import de.spektrumprojekt.datamodel.subscription.Subscription;
+import de.spektrumprojekt.datamodel.subscription.SubscriptionFilter;
 import de.spektrumprojekt.datamodel.subscription.SubscriptionMessageFilter;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpression;
+import de.spektrumprojekt.datamodel.subscription.filter.RegexFilterExpression;
 import de.spektrumprojekt.datamodel.subscription.status.StatusType;
 import de.spektrumprojekt.exceptions.SubscriptionNotFoundException;
+import de.spektrumprojekt.persistence.DelegatingPersistence;
+import de.spektrumprojekt.persistence.Persistence;
 import de.spektrumprojekt.persistence.jpa.JPAConfiguration;
 import de.spektrumprojekt.persistence.jpa.JPAPersistence;
 import de.spektrumprojekt.persistence.jpa.impl.SubscriptionPersistence;
 
 public class SubscriptionManagerTest {
 
+    /**
+     * Persistence keeping the filter expressions of the stored subscriptions, which the JPA
+     * persistence does not store yet
+     */
+    private static class FilterExpressionKeepingPersistence extends DelegatingPersistence {
+
+        private final Map<String, FilterExpression> filterExpressions = new ConcurrentHashMap<String, FilterExpression>();
+
+        public FilterExpressionKeepingPersistence(Persistence delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public List<Subscription> getSubscriptions(SubscriptionFilter subscriptionFilter) {
+            List<Subscription> subscriptions = super.getSubscriptions(subscriptionFilter);
+            for (Subscription subscription : subscriptions) {
+                subscription.setFilterExpression(filterExpressions.get(subscription
+                        .getGlobalId()));
+            }
+            return subscriptions;
+        }
+
+        @Override
+        public Subscription storeSubscription(Subscription subscription) {
+            if (subscription.getFilterExpression() != null) {
+                filterExpressions.put(subscription.getGlobalId(),
+                        subscription.getFilterExpression());
+            }
+            return super.storeSubscription(subscription);
+        }
+    }
+
     /**
      * Handler to recive the {@link TestMessage}
      * 
@@ -234,6 +272,49 @@ public class SubscriptionManagerTest {
         Assert.assertNull(status.getLastAccessMessage());
     }
 
+    /**
+     * Tests that a restarted manager registers the filters of the stored subscriptions
+     * 
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testRestartRegistersFilters() throws Exception {
+        Persistence filterPersistence = new FilterExpressionKeepingPersistence(persistence);
+        AggregatorChain chain = new Aggregator(communicator, filterPersistence,
+                aggregatorConfiguration).getAggregatorChain();
+        PersistentSubscriptionManager filterManager = new PersistentSubscriptionManager(
+                communicator, filterPersistence, chain, aggregatorConfiguration);
+
+        Subscription subscription = getFileSubscription(
+                TestHelper.getTestFilePath(TestHelper.FILE_NAME_INVALID_XML), null);
+        RegexFilterExpression filterExpression = new RegexFilterExpression();
+        filterExpression.setMessageAttribute("text");
+        filterExpression.setRegex("spektrum");
+        subscription.setFilterExpression(filterExpression);
+        filterManager.subscribe(subscription);
+        String sourceGlobalId = subscription.getSource().getGlobalId();
+        Assert.assertTrue(chain.getSubscriptionFilterEngine()
+                .getFilteredSubscriptionGlobalIds(sourceGlobalId)
+                .contains(subscription.getGlobalId()));
+        filterManager.stop();
+
+        // the compiled filters of a new chain are empty until the manager registers them
+        AggregatorChain restartedChain = new Aggregator(communicator, filterPersistence,
+                aggregatorConfiguration).getAggregatorChain();
+        Assert.assertTrue(restartedChain.getSubscriptionFilterEngine()
+                .getFilteredSubscriptionGlobalIds(sourceGlobalId).isEmpty());
+        PersistentSubscriptionManager restartedManager = new PersistentSubscriptionManager(
+                communicator, filterPersistence, restartedChain, aggregatorConfiguration);
+        try {
+            Assert.assertTrue(restartedChain.getSubscriptionFilterEngine()
+                    .getFilteredSubscriptionGlobalIds(sourceGlobalId)
+                    .contains(subscription.getGlobalId()));
+        } finally {
+            restartedManager.stop();
+        }
+    }
+
     @Test
     public void testSubscribe() throws Exception {
         Subscription subscription = getRSSSubscription(URL_1, null);
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.aggregator.subscription.filter;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.common.Property;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.source.Source;
+import de.spektrumprojekt.datamodel.subscription.Subscription;
+import de.spektrumprojekt.datamodel.subscription.filter.BooleanOperator;
+import de.spektrumprojekt.datamodel.subscription.filter.ComparisonFilterExpression;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpression;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpressionConnector;
+import de.spektrumprojekt.datamodel.subscription.filter.FilterExpressionContainer;
+import de.spektrumprojekt.datamodel.subscription.filter.RegexFilterExpression;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+
+/**
+ * Test the {@link FilterExpressionCompiler} and the {@link SubscriptionFilterEngine}
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class FilterExpressionCompilerTest {
+
+    private static <T extends FilterExpression> T connect(T first, Object... operatorsAndNext) {
+        FilterExpression last = first;
+        for (int i = 0; i < operatorsAndNext.length; i += 2) {
+            FilterExpressionConnector connector = new FilterExpressionConnector();
+            connector.setBooleanOperator((BooleanOperator) operatorsAndNext[i]);
+            connector.setFilterExpression((FilterExpression) operatorsAndNext[i + 1]);
+            last.setFilterExpressionConnector(connector);
+            last = connector.getFilterExpression();
+        }
+        return first;
+    }
+
+    private static MessageFilterContext createContext(String author, String text, String tag) {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, "source", new Date());
+        message.setAuthorGlobalId(author);
+        message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN, text));
+        if (tag != null) {
+            message.addProperty(new Property("tag", tag));
+        }
+        return new MessageFilterContext(message);
+    }
+
+    private static RegexFilterExpression regex(String attribute, String regex) {
+        RegexFilterExpression expression = new RegexFilterExpression();
+        expression.setMessageAttribute(attribute);
+        expression.setRegex(regex);
+        return expression;
+    }
+
+    /**
+     * Test that a comparison and a cyclic tree are rejected
+     */
+    @Test
+    public void testInvalidExpressions() {
+        FilterExpressionCompiler compiler = new FilterExpressionCompiler();
+        ComparisonFilterExpression comparison = new ComparisonFilterExpression();
+        comparison.setMessageAttribute("tag");
+        try {
+            compiler.compile(comparison);
+            Assert.fail("A comparison cannot be compiled.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        RegexFilterExpression first = regex("text", "a");
+        connect(first, BooleanOperator.OR, first);
+        try {
+            compiler.compile(first);
+            Assert.fail("A cycle cannot be compiled.");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test the precedence of the operators, negation and containers
+     */
+    @Test
+    public void testPrecedence() {
+        FilterExpressionCompiler compiler = new FilterExpressionCompiler();
+        // author=a OR author=b AND text~spektrum
+        CompiledFilterExpression expression = compiler.compile(connect(
+                regex(MessageFilterContext.ATTRIBUTE_AUTHOR, "^a$"), BooleanOperator.OR,
+                regex(MessageFilterContext.ATTRIBUTE_AUTHOR, "^b$"), BooleanOperator.AND,
+                regex(MessageFilterContext.ATTRIBUTE_TEXT, "spektrum")));
+        Assert.assertTrue(expression.matches(createContext("a", "other", null)));
+        Assert.assertFalse(expression.matches(createContext("b", "other", null)));
+        Assert.assertTrue(expression.matches(createContext("b", "the spektrum project", null)));
+
+        // (author=a OR author=b) AND NOT tag
+        FilterExpressionContainer container = new FilterExpressionContainer();
+        container.setFilterExpression(connect(regex(MessageFilterContext.ATTRIBUTE_AUTHOR, "^a$"),
+                BooleanOperator.OR, regex(MessageFilterContext.ATTRIBUTE_AUTHOR, "^b$")));
+        FilterExpression noTag = new FilterExpression();
+        noTag.setMessageAttribute("tag");
+        noTag.setNegated(true);
+        expression = compiler.compile(connect(container, BooleanOperator.AND, noTag));
+        Assert.assertTrue(expression.matches(createContext("b", "other", null)));
+        Assert.assertFalse(expression.matches(createContext("b", "other", "java")));
+        Assert.assertFalse(expression.matches(createContext("c", "other", null)));
+
+        // tag~java XOR text~spektrum
+        expression = compiler.compile(connect(regex("tag", "java"), BooleanOperator.XOR,
+                regex(MessageFilterContext.ATTRIBUTE_TEXT, "spektrum")));
+        Assert.assertTrue(expression.matches(createContext("a", "spektrum", null)));
+        Assert.assertTrue(expression.matches(createContext("a", "other", "java")));
+        Assert.assertFalse(expression.matches(createContext("a", "spektrum", "java")));
+    }
+
+    /**
+     * Test that equal sub expressions are compiled once
+     */
+    @Test
+    public void testSharedExpressions() {
+        FilterExpressionCompiler compiler = new FilterExpressionCompiler();
+        CompiledFilterExpression first = compiler.compile(connect(regex("tag", "java"),
+                BooleanOperator.AND, regex(MessageFilterContext.ATTRIBUTE_TEXT, "spektrum")));
+        int size = compiler.getSize();
+        CompiledFilterExpression second = compiler.compile(connect(
+                regex(MessageFilterContext.ATTRIBUTE_TEXT, "spektrum"), BooleanOperator.AND,
+                regex("tag", "java")));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(size, compiler.getSize());
+
+        compiler.compile(connect(regex("tag", "java"), BooleanOperator.OR,
+                regex(MessageFilterContext.ATTRIBUTE_TEXT, "spektrum")));
+        Assert.assertEquals(size + 1, compiler.getSize());
+    }
+
+    /**
+     * Test the registration of the filters of subscriptions
+     */
+    @Test
+    public void testSubscriptionFilterEngine() {
+        SubscriptionFilterEngine engine = new SubscriptionFilterEngine();
+        Source source = new Source("source", "rss");
+        Subscription filtered = new Subscription("filtered", source);
+        filtered.setFilterExpression(regex(MessageFilterContext.ATTRIBUTE_TEXT, "spektrum"));
+        Subscription invalid = new Subscription("invalid", source);
+        invalid.setFilterExpression(regex(MessageFilterContext.ATTRIBUTE_TEXT, "("));
+        engine.register(filtered);
+        engine.register(invalid);
+        engine.register(new Subscription("unfiltered", source));
+
+        Assert.assertEquals(1, engine.getFilteredSubscriptionGlobalIds("source").size());
+        MessageFilterContext context = createContext("a", "other", null);
+        Assert.assertFalse(engine.matches("filtered", context));
+        Assert.assertTrue(engine.matches("invalid", context));
+        Assert.assertTrue(engine.matches("unfiltered", context));
+        Assert.assertTrue(engine.matches("filtered", createContext("a", "spektrum", null)));
+
+        engine.unregister("filtered");
+        Assert.assertTrue(engine.getFilteredSubscriptionGlobalIds("source").isEmpty());
+        Assert.assertTrue(engine.matches("filtered", context));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.commons.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter for frequent concurrent updates and rare reads. The value is spread over several cells
+ * selected by the updating thread, so threads usually do not compete for the same cell. Reading
+ * the value sums up all cells.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class StripedCounter {
+
+    // number of longs between two cells, to put them on different cache lines
+    private static final int PADDING = 8;
+
+    private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime()
+            .availableProcessors() * 2 - 1) * 2;
+
+    private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+    public StripedCounter() {
+    }
+
+    /**
+     *
+     * @param initialValue
+     *            the initial value
+     */
+    public StripedCounter(long initialValue) {
+        add(initialValue);
+    }
+
+    /**
+     *
+     * @param delta
+     *            the value to add
+     */
+    public void add(long delta) {
+        cells.getAndAdd(getCellIndex(), delta);
+    }
+
+    private int getCellIndex() {
+        long threadId = Thread.currentThread().getId();
+        int hash = (int) (threadId ^ threadId >>> 32) * 0x9E3779B9;
+        return ((hash ^ hash >>> 16) & (STRIPES - 1)) * PADDING;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Sets the value. Updates running concurrently might get lost.
+     *
+     * @param value
+     *            the new value
+     */
+    public void set(long value) {
+        for (int i = PADDING; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+        cells.set(0, value);
+    }
+
+    /**
+     *
+     * @return the current value. Updates running concurrently might not be included.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(sum());
+    }
+}
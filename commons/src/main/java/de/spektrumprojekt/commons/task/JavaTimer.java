@@ -9,6 +9,8 @@ import org.apache.commons.lang3.time.DateUtils;
  * A java timer that will invoke the task runner based on the intervall given (by default every
  * hour). The timer will just do a check on the {@link TaskRunner} that will then execute the task
  * that are necessary. So the intervall determines how often it should be check to execute a task.
+ * The tasks run one after another in the thread of the timer, use {@link TaskRunner#start(int)} to
+ * run them in parallel.
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
@@ -50,7 +52,7 @@ public class JavaTimer {
             }
         };
         timer = new Timer();
-        timer.schedule(timerTask, intervall);
+        timer.schedule(timerTask, intervall, intervall);
 
     }
 
@@ -1,12 +1,14 @@
 package de.spektrumprojekt.commons.task;
 
 import java.util.Date;
+import java.util.concurrent.ScheduledFuture;
 
 import de.spektrumprojekt.commons.computer.Computer;
 import de.spektrumprojekt.commons.time.TimeProviderHolder;
 
 /**
- * Keeps information about {@link Computer} to run periodically
+ * Keeps information about {@link Computer} to run periodically. A task knows whether its computer
+ * is running, so two runs of the same task never overlap.
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
@@ -14,10 +16,20 @@ import de.spektrumprojekt.commons.time.TimeProviderHolder;
 public class Task {
     private final Computer computer;
 
-    private Date nextDate;
+    private volatile Date nextDate;
     private final long intervall;
     private final long delayOnFirstStart;
     private final boolean runExactIntervall;
+    private final long timeout;
+
+    private final TaskStatistics statistics = new TaskStatistics();
+
+    // the state of the current run, guarded by this
+    private Thread runningThread;
+    private long runNumber;
+    private boolean timedOut;
+    private boolean cancelled;
+    private ScheduledFuture<?> scheduledFuture;
 
     /**
      * 
@@ -31,6 +43,22 @@ public class Task {
      *            intervall is 1 day it will run again in 23 hours and if false in 24 hours.
      */
     public Task(Computer computer, long intervall, long delayOnFirstStart, boolean runExactIntervall) {
+        this(computer, intervall, delayOnFirstStart, runExactIntervall, 0);
+    }
+
+    /**
+     * 
+     * @param computer
+     * @param intervall
+     * @param delayOnFirstStart
+     * @param runExactIntervall
+     *            see {@link #Task(Computer, long, long, boolean)}
+     * @param timeout
+     *            the time in milli seconds after which a run gets interrupted, 0 for no timeout.
+     *            The timeout is only applied if the task is run by a started {@link TaskRunner}.
+     */
+    public Task(Computer computer, long intervall, long delayOnFirstStart,
+            boolean runExactIntervall, long timeout) {
         if (computer == null) {
             throw new IllegalArgumentException("computer cannot be null.");
         }
@@ -38,14 +66,57 @@ public class Task {
             throw new IllegalArgumentException("intervall must be greater 0. intervall="
                     + intervall);
         }
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout cannot be negative. timeout=" + timeout);
+        }
         this.computer = computer;
         this.intervall = intervall;
         this.delayOnFirstStart = delayOnFirstStart;
         this.runExactIntervall = runExactIntervall;
+        this.timeout = timeout;
 
         this.incrementNextDate();
     }
 
+    /**
+     * Cancels the task. A running computer gets interrupted and the task will not run again.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Stops the scheduling of the task without cancelling it, so it can be scheduled again.
+     * Interrupts a running computer.
+     */
+    synchronized void cancelScheduledFuture() {
+        if (scheduledFuture != null) {
+            scheduledFuture.cancel(true);
+            scheduledFuture = null;
+        }
+    }
+
+    /**
+     * Marks the current run as finished
+     * 
+     * @param durationNanos
+     *            the time the run took
+     * @param success
+     *            true if the computer finished without an error
+     */
+    synchronized void finishRun(long durationNanos, boolean success) {
+        statistics.add(durationNanos, success && !timedOut, timedOut);
+        runningThread = null;
+        if (timedOut) {
+            // reset the interruption of the timeout, so the thread can be reused
+            Thread.interrupted();
+            timedOut = false;
+        }
+    }
+
     public Computer getComputer() {
         return computer;
     }
@@ -62,6 +133,18 @@ public class Task {
         return nextDate;
     }
 
+    public TaskStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * 
+     * @return the time in milli seconds after which a run gets interrupted, 0 for no timeout
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
     public void incrementNextDate() {
         long next = 0;
         if (nextDate == null) {
@@ -74,4 +157,63 @@ public class Task {
         }
         this.nextDate = new Date(next);
     }
-}
\ No newline at end of file
+
+    /**
+     * Interrupts the run if it is still running
+     * 
+     * @param runNumber
+     *            the number of the run to interrupt as returned by {@link #startRun()}
+     * @return true if the run has been interrupted
+     */
+    synchronized boolean interruptRun(long runNumber) {
+        if (runningThread == null || this.runNumber != runNumber) {
+            return false;
+        }
+        timedOut = true;
+        runningThread.interrupt();
+        return true;
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isRunExactIntervall() {
+        return runExactIntervall;
+    }
+
+    public synchronized boolean isRunning() {
+        return runningThread != null;
+    }
+
+    synchronized void setScheduledFuture(ScheduledFuture<?> scheduledFuture) {
+        this.scheduledFuture = scheduledFuture;
+        if (cancelled) {
+            scheduledFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Marks the task as running in the current thread
+     * 
+     * @return the number of the run, or -1 if the task is still running or has been cancelled
+     */
+    synchronized long startRun() {
+        if (cancelled) {
+            return -1;
+        }
+        if (runningThread != null) {
+            statistics.addSkipped();
+            return -1;
+        }
+        runningThread = Thread.currentThread();
+        return ++runNumber;
+    }
+
+    @Override
+    public String toString() {
+        return "Task [computer=" + computer.getConfigurationDescription() + ", intervall="
+                + intervall + ", runExactIntervall=" + runExactIntervall + ", timeout=" + timeout
+                + ", nextDate=" + nextDate + ", statistics=" + statistics + "]";
+    }
+}
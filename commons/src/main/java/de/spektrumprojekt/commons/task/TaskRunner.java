@@ -22,8 +22,12 @@ package de.spektrumprojekt.commons.task;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,39 +38,68 @@ import de.spektrumprojekt.commons.time.TimeProviderHolder;
  * Keeps a set of tasks. By calling the {@link #check()} method all tasks that are due will be
  * executed. For determining the current time {@link TimeProviderHolder#DEFAULT} will be used.
  * 
+ * Alternatively the task runner can be started, then the tasks are scheduled on a
+ * {@link ScheduledExecutorService} and run in parallel. A task running its intervall exactly is
+ * scheduled at a fixed rate, otherwise with a fixed delay between the runs. Two runs of the same
+ * task never overlap. While started {@link #check()} does nothing.
+ * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
  */
 public class TaskRunner {
 
-    private final List<Task> tasks = new ArrayList<Task>();
+    private final List<Task> tasks = new CopyOnWriteArrayList<Task>();
 
     private final static Logger LOGGER = LoggerFactory.getLogger(TaskRunner.class);
 
+    // guarded by this
+    private ScheduledExecutorService executorService;
+    private boolean shutdownExecutorServiceOnStop;
+    // separate from the executor service, so a timeout fires even if all its threads are busy
+    private ScheduledExecutorService timeoutExecutorService;
+
+    /**
+     * Cancels the tasks of the computer. A running computer gets interrupted.
+     * 
+     * @param computer
+     *            the computer
+     */
+    public void cancel(Computer computer) {
+        for (Task task : this.tasks) {
+            if (task.getComputer() == computer) {
+                task.cancel();
+                this.tasks.remove(task);
+            }
+        }
+    }
+
     /**
      * Check the tasks that are due and run them if so
      */
     public void check() {
+        if (isStarted()) {
+            return;
+        }
         for (Task task : this.tasks) {
             if (task.getNextDate().getTime() <= TimeProviderHolder.DEFAULT.getCurrentTime()) {
-                try {
-                    LOGGER.info(new Date(TimeProviderHolder.DEFAULT.getCurrentTime())
-                            + " Running computer: "
-                            + task.getComputer().getConfigurationDescription());
-                    StopWatch stopWatch = new StopWatch();
-                    stopWatch.start();
-                    task.getComputer().run();
-                    stopWatch.stop();
-                    LOGGER.info("Finished computer in success in  " + stopWatch.getTime()
-                            + " ms. " + task.getComputer().getConfigurationDescription());
-                } catch (Exception e) {
-                    LOGGER.error("Error running task=" + task + " " + e.getMessage(), e);
-                }
+                run(task, null);
                 task.incrementNextDate();
             }
         }
     }
 
+    /**
+     * 
+     * @return the registered tasks
+     */
+    public List<Task> getTasks() {
+        return new ArrayList<Task>(this.tasks);
+    }
+
+    public synchronized boolean isStarted() {
+        return executorService != null;
+    }
+
     /**
      * Register the computer for execution. See also {@link Task} for more details.
      * 
@@ -77,7 +110,159 @@ public class TaskRunner {
      */
     public void register(Computer computer, long intervall, long delayOnFirstStart,
             boolean runExactIntervall) {
-        Task task = new Task(computer, intervall, delayOnFirstStart, runExactIntervall);
+        register(computer, intervall, delayOnFirstStart, runExactIntervall, 0);
+    }
+
+    /**
+     * Register the computer for execution. See also {@link Task} for more details.
+     * 
+     * @param computer
+     * @param intervall
+     * @param delayOnFirstStart
+     * @param runExactIntervall
+     * @param timeout
+     *            the time in milli seconds after which a run gets interrupted, 0 for no timeout
+     * @return the task
+     */
+    public Task register(Computer computer, long intervall, long delayOnFirstStart,
+            boolean runExactIntervall, long timeout) {
+        Task task = new Task(computer, intervall, delayOnFirstStart, runExactIntervall, timeout);
         this.tasks.add(task);
+        synchronized (this) {
+            if (executorService != null) {
+                schedule(task);
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Runs the task if it is not running already
+     * 
+     * @param task
+     *            the task
+     * @param timeoutExecutorService
+     *            the executor to schedule the timeout of the run, can be null to not apply a
+     *            timeout
+     */
+    private void run(final Task task, ScheduledExecutorService timeoutExecutorService) {
+        final long runNumber = task.startRun();
+        if (runNumber < 0) {
+            if (!task.isCancelled()) {
+                LOGGER.warn("Skipping run of task because it is still running. task={}", task);
+            }
+            return;
+        }
+        ScheduledFuture<?> timeout = null;
+        if (timeoutExecutorService != null && task.getTimeout() > 0) {
+            timeout = timeoutExecutorService.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (task.interruptRun(runNumber)) {
+                        LOGGER.warn("Interrupted task because it timed out. task={}", task);
+                    }
+                }
+            }, task.getTimeout(), TimeUnit.MILLISECONDS);
+        }
+        boolean success = false;
+        long start = System.nanoTime();
+        try {
+            LOGGER.info(new Date(TimeProviderHolder.DEFAULT.getCurrentTime())
+                    + " Running computer: " + task.getComputer().getConfigurationDescription());
+            task.getComputer().run();
+            success = true;
+            LOGGER.info("Finished computer in success in  "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms. "
+                    + task.getComputer().getConfigurationDescription());
+        } catch (Exception e) {
+            LOGGER.error("Error running task=" + task + " " + e.getMessage(), e);
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            task.finishRun(System.nanoTime() - start, success);
+        }
+    }
+
+    private void schedule(final Task task) {
+        final ScheduledExecutorService timeoutExecutorService = this.timeoutExecutorService;
+        Runnable runnable = new Runnable() {
+
+            @Override
+            public void run() {
+                TaskRunner.this.run(task, timeoutExecutorService);
+                task.incrementNextDate();
+            }
+        };
+        ScheduledFuture<?> future;
+        if (task.isRunExactIntervall()) {
+            future = executorService.scheduleAtFixedRate(runnable, task.getDelayOnFirstStart(),
+                    task.getIntervall(), TimeUnit.MILLISECONDS);
+        } else {
+            future = executorService.scheduleWithFixedDelay(runnable,
+                    task.getDelayOnFirstStart(), task.getIntervall(), TimeUnit.MILLISECONDS);
+        }
+        task.setScheduledFuture(future);
+    }
+
+    /**
+     * Starts running the tasks in parallel using a new executor service
+     * 
+     * @param numberOfThreads
+     *            the number of threads to run the tasks with
+     */
+    public synchronized void start(int numberOfThreads) {
+        if (numberOfThreads < 1) {
+            throw new IllegalArgumentException(
+                    "numberOfThreads must be at least 1. numberOfThreads=" + numberOfThreads);
+        }
+        start(Executors.newScheduledThreadPool(numberOfThreads, new NamedThreadFactory(
+                TaskRunner.class.getSimpleName(), true)), true);
+    }
+
+    /**
+     * Starts running the tasks using the given executor service
+     * 
+     * @param executorService
+     *            the executor service to schedule the tasks on
+     * @param shutdownOnStop
+     *            true if the executor service should be shut down when stopping
+     */
+    public synchronized void start(ScheduledExecutorService executorService,
+            boolean shutdownOnStop) {
+        if (executorService == null) {
+            throw new IllegalArgumentException("executorService cannot be null.");
+        }
+        if (this.executorService != null) {
+            LOGGER.debug("Task runner already started. Do nothing.");
+            return;
+        }
+        this.executorService = executorService;
+        this.shutdownExecutorServiceOnStop = shutdownOnStop;
+        this.timeoutExecutorService = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory(TaskRunner.class.getSimpleName() + "Timeout", true));
+        for (Task task : this.tasks) {
+            schedule(task);
+        }
+    }
+
+    /**
+     * Stops scheduling the tasks. Running computers get interrupted.
+     */
+    public synchronized void stop() {
+        if (executorService == null) {
+            return;
+        }
+        for (Task task : this.tasks) {
+            task.cancelScheduledFuture();
+            LOGGER.info("Stopped {}", task);
+        }
+        if (shutdownExecutorServiceOnStop) {
+            executorService.shutdownNow();
+        }
+        timeoutExecutorService.shutdownNow();
+        executorService = null;
+        timeoutExecutorService = null;
     }
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.commons.task;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.spektrumprojekt.commons.time.TimeProviderHolder;
+
+/**
+ * Counts the runs of a {@link Task}, the time they took and when the last one succeeded. Can be
+ * updated concurrently.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class TaskStatistics {
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong skipCount = new AtomicLong();
+    private final AtomicLong totalDurationNanos = new AtomicLong();
+    private final AtomicLong maxDurationNanos = new AtomicLong();
+    private final AtomicLong lastDurationNanos = new AtomicLong();
+    private final AtomicLong lastSuccessTime = new AtomicLong(-1);
+
+    /**
+     * 
+     * @param durationNanos
+     *            the time the run took in nano seconds
+     * @param success
+     *            true if the computer finished without an error
+     * @param timedOut
+     *            true if the run has been interrupted because it took too long
+     */
+    void add(long durationNanos, boolean success, boolean timedOut) {
+        runCount.incrementAndGet();
+        if (!success) {
+            errorCount.incrementAndGet();
+        }
+        if (timedOut) {
+            timeoutCount.incrementAndGet();
+        }
+        totalDurationNanos.addAndGet(durationNanos);
+        lastDurationNanos.set(durationNanos);
+        long max = maxDurationNanos.get();
+        while (durationNanos > max && !maxDurationNanos.compareAndSet(max, durationNanos)) {
+            max = maxDurationNanos.get();
+        }
+        if (success) {
+            lastSuccessTime.set(TimeProviderHolder.DEFAULT.getCurrentTime());
+        }
+    }
+
+    /**
+     * Counts a run that has been skipped because the previous run was still running
+     */
+    void addSkipped() {
+        skipCount.incrementAndGet();
+    }
+
+    /**
+     * 
+     * @return the average time of a run in milli seconds
+     */
+    public double getAverageDurationMillis() {
+        long count = runCount.get();
+        return count == 0 ? 0 : totalDurationNanos.get() / (double) count
+                / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 
+     * @return the number of runs which failed or timed out
+     */
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * 
+     * @return the time the last run took in milli seconds
+     */
+    public long getLastDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastDurationNanos.get());
+    }
+
+    /**
+     * 
+     * @return the date the last successful run finished, null if no run succeeded yet
+     */
+    public Date getLastSuccessDate() {
+        long time = lastSuccessTime.get();
+        return time < 0 ? null : new Date(time);
+    }
+
+    /**
+     * 
+     * @return the longest time a run took in milli seconds
+     */
+    public long getMaxDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDurationNanos.get());
+    }
+
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    /**
+     * 
+     * @return the number of runs skipped because the previous run was still running
+     */
+    public long getSkipCount() {
+        return skipCount.get();
+    }
+
+    /**
+     * 
+     * @return the number of runs interrupted because they took too long
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TaskStatistics [runCount=" + getRunCount() + ", errorCount=" + getErrorCount()
+                + ", timeoutCount=" + getTimeoutCount() + ", skipCount=" + getSkipCount()
+                + ", averageDurationMillis=" + getAverageDurationMillis()
+                + ", maxDurationMillis=" + getMaxDurationMillis() + ", lastDurationMillis="
+                + getLastDurationMillis() + ", lastSuccessDate=" + getLastSuccessDate() + "]";
+    }
+}
@@ -19,6 +19,10 @@
 
 package de.spektrumprojekt.commons.task;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import junit.framework.Assert;
 
 import org.apache.commons.lang3.time.DateUtils;
@@ -55,6 +59,45 @@ public class TaskRunnerTest {
         }
     }
 
+    /**
+     * Computer counting its runs and the runs at the same time, waiting for a latch while running
+     */
+    public class WaitingComputer implements Computer {
+        private final AtomicInteger runs = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private volatile boolean interrupted;
+
+        public WaitingComputer(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public String getConfigurationDescription() {
+            return this.getClass().getName();
+        }
+
+        @Override
+        public void run() throws Exception {
+            int current = running.incrementAndGet();
+            if (current > maxRunning.get()) {
+                maxRunning.set(current);
+            }
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+                throw e;
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
     private DummyComputer dummyComputer;
     private TaskRunner taskRunner;
     private ManualTaskRunningTimeProvider manualTaskRunningTimeProvider;
@@ -135,4 +178,77 @@ public class TaskRunnerTest {
         }
 
     }
+
+    /**
+     * Tests that a long running computer does not block the others nor overlaps with itself
+     * 
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testTaskRunnerParallel() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        WaitingComputer waitingComputer = new WaitingComputer(release);
+        Task waitingTask = this.taskRunner.register(waitingComputer, 10, 0, true, 0);
+        WaitingComputer fastComputer = new WaitingComputer(new CountDownLatch(0));
+        Task fastTask = this.taskRunner.register(fastComputer, 10, 0, false, 0);
+
+        this.taskRunner.start(2);
+        try {
+            Assert.assertTrue(waitingComputer.started.await(5, TimeUnit.SECONDS));
+            long end = System.currentTimeMillis() + 5000;
+            while (fastComputer.runs.get() < 5 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(fastComputer.runs.get() >= 5);
+            Assert.assertEquals(1, waitingComputer.runs.get());
+            Assert.assertTrue(waitingTask.isRunning());
+
+            release.countDown();
+            end = System.currentTimeMillis() + 5000;
+            while (waitingComputer.runs.get() < 3 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+        } finally {
+            this.taskRunner.stop();
+        }
+        Assert.assertTrue(waitingComputer.runs.get() >= 3);
+        Assert.assertEquals(1, waitingComputer.maxRunning.get());
+        Assert.assertTrue(fastTask.getStatistics().getRunCount() >= 5);
+        Assert.assertEquals(0, fastTask.getStatistics().getErrorCount());
+        Assert.assertNotNull(fastTask.getStatistics().getLastSuccessDate());
+    }
+
+    /**
+     * Tests that a computer running longer than the timeout gets interrupted and a cancelled one
+     * does not run again
+     * 
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testTaskRunnerTimeoutAndCancel() throws Exception {
+        WaitingComputer waitingComputer = new WaitingComputer(new CountDownLatch(1));
+        Task task = this.taskRunner.register(waitingComputer, DateUtils.MILLIS_PER_HOUR, 0,
+                false, 50);
+
+        this.taskRunner.start(1);
+        try {
+            Assert.assertTrue(waitingComputer.started.await(5, TimeUnit.SECONDS));
+            long end = System.currentTimeMillis() + 5000;
+            while (task.getStatistics().getRunCount() == 0 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(waitingComputer.interrupted);
+            Assert.assertEquals(1, task.getStatistics().getTimeoutCount());
+            Assert.assertEquals(1, task.getStatistics().getErrorCount());
+            Assert.assertNull(task.getStatistics().getLastSuccessDate());
+
+            this.taskRunner.cancel(waitingComputer);
+            Assert.assertTrue(task.isCancelled());
+            Assert.assertTrue(this.taskRunner.getTasks().isEmpty());
+        } finally {
+            this.taskRunner.stop();
+        }
+    }
 }
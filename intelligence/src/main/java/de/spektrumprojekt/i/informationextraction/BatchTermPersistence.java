@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.informationextraction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.persistence.DelegatingPersistence;
+import de.spektrumprojekt.persistence.Persistence;
+
+/**
+ * Persistence used by the extraction of a batch of messages. It keeps the terms got or created
+ * for the batch, so every term is requested from the decorated persistence only once per batch.
+ * The terms not known yet are requested under a lock per category, so the extractions running in
+ * parallel never create the same term twice.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+final class BatchTermPersistence extends DelegatingPersistence {
+
+    private final Map<TermCategory, Map<String, Term>> terms = new EnumMap<TermCategory, Map<String, Term>>(
+            TermCategory.class);
+
+    /**
+     *
+     * @param delegate
+     *            the persistence to get or create the terms of the batch with
+     */
+    public BatchTermPersistence(Persistence delegate) {
+        super(delegate);
+        for (TermCategory termCategory : TermCategory.values()) {
+            terms.put(termCategory, new ConcurrentHashMap<String, Term>());
+        }
+    }
+
+    private Map<String, Term> getCategoryTerms(TermCategory termCategory) {
+        Map<String, Term> categoryTerms = terms.get(termCategory);
+        if (categoryTerms == null) {
+            throw new IllegalArgumentException("termCategory is not known: " + termCategory);
+        }
+        return categoryTerms;
+    }
+
+    @Override
+    public Term getOrCreateTerm(TermCategory termCategory, String name) {
+        return getOrCreateTerms(termCategory, Collections.singleton(name)).get(name);
+    }
+
+    @Override
+    public Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names) {
+        Map<String, Term> categoryTerms = getCategoryTerms(termCategory);
+        Map<String, Term> result = new HashMap<String, Term>();
+        List<String> missingNames = new ArrayList<String>();
+        for (String name : names) {
+            if (result.containsKey(name)) {
+                continue;
+            }
+            Term term = categoryTerms.get(name);
+            if (term == null) {
+                missingNames.add(name);
+            }
+            result.put(name, term);
+        }
+        if (missingNames.isEmpty()) {
+            return result;
+        }
+        synchronized (categoryTerms) {
+            // another extraction might have requested some of them meanwhile
+            List<String> namesToCreate = new ArrayList<String>(missingNames.size());
+            for (String name : missingNames) {
+                if (!categoryTerms.containsKey(name)) {
+                    namesToCreate.add(name);
+                }
+            }
+            if (!namesToCreate.isEmpty()) {
+                categoryTerms.putAll(super.getOrCreateTerms(termCategory, namesToCreate));
+            }
+        }
+        for (String name : missingNames) {
+            result.put(name, categoryTerms.get(name));
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @return the number of terms got or created for the batch
+     */
+    public int getSize() {
+        int size = 0;
+        for (Map<String, Term> categoryTerms : terms.values()) {
+            size += categoryTerms.size();
+        }
+        return size;
+    }
+}
@@ -19,12 +19,20 @@
 
 package de.spektrumprojekt.i.informationextraction;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.commons.chain.CommandChain;
+import de.spektrumprojekt.commons.task.NamedThreadFactory;
 import de.spektrumprojekt.datamodel.common.MimeType;
 import de.spektrumprojekt.datamodel.common.Property;
 import de.spektrumprojekt.datamodel.message.Message;
@@ -43,7 +51,13 @@ import de.spektrumprojekt.informationextraction.extractors.WordNGramsExtractorCo
 import de.spektrumprojekt.persistence.Persistence;
 
 /**
- * Command to extract the information from a message
+ * Command to extract the information from a message. The extraction chain runs for every text
+ * part of the message, afterwards the message chain runs once if the message has text parts.
+ * 
+ * If configured with more than one thread the parts of a message are extracted in parallel using
+ * a fixed size thread pool, and {@link #processAll(Collection)} extracts a batch of messages in
+ * parallel. In this case all commands of the extraction chain and the used persistence must be
+ * thread safe.
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
@@ -121,19 +135,32 @@ public class InformationExtractionCommand<T extends MessageFeatureContext> imple
 
         }
         if (informationExtractionConfiguration.getTermFrequencyComputer() != null) {
-            command.getInformationExtractionCommandChain().addCommand(
-                    new TermCounterCommand(persistence,
-                            informationExtractionConfiguration.getTermFrequencyComputer()));
+            // count the terms of the message once after all parts are extracted
+            command.getMessageCommandChain().addCommand(
+                    new TermCounterCommand<T>(informationExtractionConfiguration
+                            .getTermFrequencyComputer()));
         }
         return command;
     }
 
+    private static boolean isTextPart(MessagePart messagePart) {
+        return MimeType.TEXT_PLAIN.equals(messagePart.getMimeType())
+                || MimeType.TEXT_HTML.equals(messagePart.getMimeType());
+    }
+
     private final InformationExtractionConfiguration informationExtractionConfiguration;
 
     private final Persistence persistence;
 
     private final CommandChain<InformationExtractionContext> informationExtractionCommandChain = new CommandChain<InformationExtractionContext>();
 
+    private final CommandChain<T> messageCommandChain = new CommandChain<T>();
+
+    private final int threadPoolSize;
+
+    // null if the parts and messages are extracted on the calling thread
+    private final ExecutorService executorService;
+
     public InformationExtractionCommand(Persistence persistence,
             InformationExtractionConfiguration informationExtractionConfiguration) {
         if (persistence == null) {
@@ -144,36 +171,37 @@ public class InformationExtractionCommand<T extends MessageFeatureContext> imple
         }
         this.persistence = persistence;
         this.informationExtractionConfiguration = informationExtractionConfiguration;
+        this.threadPoolSize = informationExtractionConfiguration.getThreadPoolSize();
+        if (this.threadPoolSize > 1) {
+            this.executorService = Executors.newFixedThreadPool(this.threadPoolSize,
+                    new NamedThreadFactory(this.getClass().getSimpleName(), true));
+        } else {
+            this.executorService = null;
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Stops the threads used for the extraction in parallel. Afterwards the command cannot be used
+     * anymore if running in parallel mode.
      */
-    @Override
-    public String getConfigurationDescription() {
-        return this.getClass().getSimpleName() + ": "
-                + this.informationExtractionCommandChain.getConfigurationDescription();
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
     }
 
     /**
-     * The extraction chain
+     * Runs the extraction chain for the text parts and the message chain for the message, if the
+     * information of the message has not been extracted before
      * 
-     * @return the extraction chain, add commands to it
-     */
-    public CommandChain<InformationExtractionContext> getInformationExtractionCommandChain() {
-        return informationExtractionCommandChain;
-    }
-
-    public InformationExtractionConfiguration getInformationExtractionConfiguration() {
-        return informationExtractionConfiguration;
-    }
-
-    /**
-     * {@inheritDoc}
+     * @param context
+     *            the context of the message
+     * @param extractionPersistence
+     *            the persistence for the contexts of the parts
+     * @param partsInParallel
+     *            true to extract the parts using the thread pool
      */
-    @Override
-    public void process(T context) {
-
+    private void extract(T context, Persistence extractionPersistence, boolean partsInParallel) {
         Message message = context.getMessage();
 
         Property property = message.getPropertiesAsMap().get(
@@ -186,17 +214,38 @@ public class InformationExtractionCommand<T extends MessageFeatureContext> imple
         // times to learner or both to learned and ranker at the same time
         if (!hasBeenExecuted) {
 
+            List<InformationExtractionContext> partContexts = new ArrayList<InformationExtractionContext>();
             for (MessagePart messagePart : message.getMessageParts()) {
-                if (MimeType.TEXT_PLAIN.equals(messagePart.getMimeType())
-                        || MimeType.TEXT_HTML.equals(messagePart.getMimeType())) {
-
-                    InformationExtractionContext informationExtractionContext = new InformationExtractionContext(
-                            persistence, message, messagePart);
+                if (isTextPart(messagePart)) {
+                    partContexts.add(new InformationExtractionContext(extractionPersistence,
+                            message, messagePart));
+                }
+            }
 
-                    informationExtractionCommandChain.process(informationExtractionContext);
+            if (partsInParallel && partContexts.size() > 1) {
+                List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(partContexts.size());
+                for (final InformationExtractionContext partContext : partContexts) {
+                    tasks.add(new Callable<Object>() {
 
-                    context.addInformationExtractionContexts(informationExtractionContext);
+                        @Override
+                        public Object call() throws Exception {
+                            informationExtractionCommandChain.process(partContext);
+                            return null;
+                        }
+                    });
                 }
+                invokeAll(tasks, "the parts of message " + message.getGlobalId());
+            } else {
+                for (InformationExtractionContext partContext : partContexts) {
+                    informationExtractionCommandChain.process(partContext);
+                }
+            }
+            for (InformationExtractionContext partContext : partContexts) {
+                context.addInformationExtractionContexts(partContext);
+            }
+
+            if (!partContexts.isEmpty()) {
+                messageCommandChain.process(context);
             }
 
             message.addProperty(new Property(PROPERTY_INFORMATION_EXTRACTION_EXECUTION_DATE,
@@ -204,4 +253,102 @@ public class InformationExtractionCommand<T extends MessageFeatureContext> imple
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getConfigurationDescription() {
+        return this.getClass().getSimpleName() + ": threadPoolSize: " + threadPoolSize + " "
+                + this.informationExtractionCommandChain.getConfigurationDescription()
+                + " messageCommandChain: " + this.messageCommandChain.getConfigurationDescription();
+    }
+
+    /**
+     * The extraction chain
+     * 
+     * @return the extraction chain, add commands to it
+     */
+    public CommandChain<InformationExtractionContext> getInformationExtractionCommandChain() {
+        return informationExtractionCommandChain;
+    }
+
+    public InformationExtractionConfiguration getInformationExtractionConfiguration() {
+        return informationExtractionConfiguration;
+    }
+
+    /**
+     * The chain running once per message after the extraction chain ran for all text parts
+     * 
+     * @return the message chain, add commands to it
+     */
+    public CommandChain<T> getMessageCommandChain() {
+        return messageCommandChain;
+    }
+
+    private void invokeAll(List<Callable<Object>> tasks, String description) {
+        try {
+            for (Future<Object> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while extracting " + description, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Extracts the information of the message, the parts in parallel if configured with more than
+     * one thread. In this case the parts get their terms from one {@link BatchTermPersistence}, so
+     * two parts never create the same term concurrently.
+     * 
+     * @param context
+     *            the context of the message
+     */
+    @Override
+    public void process(T context) {
+        if (executorService == null) {
+            extract(context, persistence, false);
+        } else {
+            extract(context, new BatchTermPersistence(persistence), true);
+        }
+    }
+
+    /**
+     * Extracts the information of a batch of messages, in parallel if configured with more than
+     * one thread. The terms are got or created once for the whole batch, so messages sharing terms
+     * do not request them again and parallel extractions never create the same term twice. Returns
+     * after all messages have been extracted, the contexts can then be processed further, e.g. be
+     * ranked, without extracting again.
+     * 
+     * @param contexts
+     *            the contexts of the messages, every message must be contained only once
+     */
+    public void processAll(Collection<T> contexts) {
+        final Persistence batchPersistence = new BatchTermPersistence(persistence);
+        if (executorService == null) {
+            for (T context : contexts) {
+                extract(context, batchPersistence, false);
+            }
+            return;
+        }
+        // the messages are extracted in parallel, hence the parts of a message sequentially
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(contexts.size());
+        for (final T context : contexts) {
+            tasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    extract(context, batchPersistence, false);
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks, "a batch of " + contexts.size() + " messages");
+    }
+
 }
@@ -31,6 +31,10 @@ public class InformationExtractionConfiguration {
 
     private boolean useCharNGramsInsteadOfStemming;
 
+    // number of threads to extract the parts of a message or the messages of a batch in parallel.
+    // 1 means sequential on the calling thread.
+    private int threadPoolSize = 1;
+
     public int getMinimumTermLength() {
         return minimumTermLength;
     }
@@ -47,6 +51,10 @@ public class InformationExtractionConfiguration {
         return termFrequencyComputer;
     }
 
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
     public boolean isAddTagsToText() {
         return addTagsToText;
     }
@@ -127,6 +135,20 @@ public class InformationExtractionConfiguration {
         this.termFrequencyComputer = termFrequencyComputer;
     }
 
+    /**
+     * 
+     * @param threadPoolSize
+     *            the number of threads used to extract the parts of a message or the messages of
+     *            a batch in parallel. Values greater 1 require a thread safe persistence.
+     */
+    public void setThreadPoolSize(int threadPoolSize) {
+        if (threadPoolSize < 1) {
+            throw new IllegalArgumentException("threadPoolSize must be at least 1 but is: "
+                    + threadPoolSize);
+        }
+        this.threadPoolSize = threadPoolSize;
+    }
+
     public void setUseCharNGramsInsteadOfStemming(boolean useCharNGramsInsteadOfStemming) {
         this.useCharNGramsInsteadOfStemming = useCharNGramsInsteadOfStemming;
     }
@@ -20,7 +20,6 @@
 package de.spektrumprojekt.i.learner.time;
 
 import java.util.Date;
-import java.util.HashSet;
 
 import org.apache.commons.lang3.time.DateUtils;
 
@@ -151,12 +150,7 @@ public class TimeBinnedUserModelEntryIntegrationStrategy extends
                 }
                 timeBin.setScoreSum(timeBin.getScoreSum() + interestScore);
 
-                for (UserModelEntryTimeBin entryTimeBin : new HashSet<UserModelEntryTimeBin>(
-                        entry.getTimeBinEntries())) {
-                    if (entryTimeBin.getTimeBinStart() < currentTimeBinSizeStart) {
-                        entry.getTimeBinEntries().remove(entryTimeBin);
-                    }
-                }
+                entry.removeTimeBinEntriesBefore(currentTimeBinSizeStart);
                 if (!calculateLater) {
                     entry.consolidateByTimeBins();
                 }
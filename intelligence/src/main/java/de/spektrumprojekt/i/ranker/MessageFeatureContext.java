@@ -25,11 +25,16 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.spektrumprojekt.datamodel.message.Message;
 import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.helper.MessageHelper;
 import de.spektrumprojekt.i.datamodel.MessageFeature;
 import de.spektrumprojekt.i.ranker.chain.features.Feature;
+import de.spektrumprojekt.i.ranker.chain.features.MessageFeatureAggregate;
 import de.spektrumprojekt.informationextraction.InformationExtractionContext;
 import de.spektrumprojekt.persistence.Persistence;
 
@@ -48,14 +53,21 @@ public class MessageFeatureContext extends FeatureContext {
 
     private final Collection<InformationExtractionContext> informationExtractionContexts =
             new HashSet<InformationExtractionContext>();
+    // concurrent since the user contexts might be computed in parallel
     private final Map<String, UserSpecificMessageFeatureContext> userContexts =
-            new HashMap<String, UserSpecificMessageFeatureContext>();
+            new ConcurrentHashMap<String, UserSpecificMessageFeatureContext>();
 
-    private transient Map<String, Message> relatedMessages = null;
+    // volatile and assigned when complete, since the user contexts might read it in parallel
+    private transient volatile Map<String, Message> relatedMessages = null;
+    private volatile Collection<Term> messageTerms;
+    private volatile MessageFeatureAggregate messageFeatureAggregate;
     private final Persistence persistence;
 
     private Collection<String> userGlobalIdsToProcess;
 
+    // user global id to user model type to the entries matching the terms of the message
+    private Map<String, Map<String, Map<Term, UserModelEntry>>> prefetchedUserModelEntries;
+
     private boolean noRankingOnlyLearning;
 
     /**
@@ -93,7 +105,8 @@ public class MessageFeatureContext extends FeatureContext {
     }
 
     /**
-     * A {@link UserSpecificMessageFeatureContext} is the context of the a message per user.
+     * A {@link UserSpecificMessageFeatureContext} is the context of the a message per user. Can be
+     * called concurrently.
      * 
      * @param userContext
      *            add a context
@@ -103,16 +116,11 @@ public class MessageFeatureContext extends FeatureContext {
     }
 
     public Map<Feature, MessageFeature> getFeaturesForUser(String userGlobalId) {
-
-        Map<Feature, MessageFeature> features = Collections.emptyMap();
-
-        for (UserSpecificMessageFeatureContext context : this.getUserContexts()) {
-            if (context.getUserGlobalId().equals(userGlobalId)) {
-                features = context.getFeatures();
-                break;
-            }
+        UserSpecificMessageFeatureContext context = this.userContexts.get(userGlobalId);
+        if (context == null) {
+            return Collections.emptyMap();
         }
-        return Collections.unmodifiableMap(features);
+        return Collections.unmodifiableMap(context.getFeatures());
     }
 
     /**
@@ -131,6 +139,36 @@ public class MessageFeatureContext extends FeatureContext {
         return message;
     }
 
+    /**
+     * The aggregate of the features that do not depend on the user. It is computed on the first
+     * call, hence this method should only be called after the information extraction. All callers
+     * get the same aggregate.
+     * 
+     * @return the aggregate of the message
+     */
+    public MessageFeatureAggregate getMessageFeatureAggregate() {
+        if (messageFeatureAggregate == null) {
+            messageFeatureAggregate = new MessageFeatureAggregate(this);
+        }
+        return messageFeatureAggregate;
+    }
+
+    /**
+     * The terms of the message. They are determined on the first call, hence this method should
+     * only be called after the terms have been extracted and stored. All callers get the same
+     * unmodifiable collection which allows computations per user to reuse things computed for the
+     * message terms.
+     * 
+     * @return the terms of all parts of the message
+     */
+    public Collection<Term> getMessageTerms() {
+        if (messageTerms == null) {
+            messageTerms = Collections.unmodifiableCollection(MessageHelper
+                    .getAllTerms(message));
+        }
+        return messageTerms;
+    }
+
     /**
      * 
      * @return the relation
@@ -161,6 +199,19 @@ public class MessageFeatureContext extends FeatureContext {
         return persistence;
     }
 
+    /**
+     * 
+     * @param userGlobalId
+     *            the user global id
+     * @return the prefetched user model entries of the user matching the terms of the message,
+     *         mapped by the user model type. null if nothing has been prefetched for the user.
+     */
+    public Map<String, Map<Term, UserModelEntry>> getPrefetchedUserModelEntries(
+            String userGlobalId) {
+        return prefetchedUserModelEntries == null ? null : prefetchedUserModelEntries
+                .get(userGlobalId);
+    }
+
     /**
      * 
      * @param userGlobalId
@@ -189,6 +240,18 @@ public class MessageFeatureContext extends FeatureContext {
         return noRankingOnlyLearning;
     }
 
+    /**
+     * 
+     * @param userGlobalId
+     *            the user global id
+     * @return true if the user should be processed, that is no users to process are set or the
+     *         user is one of them
+     */
+    public boolean isUserToProcess(String userGlobalId) {
+        return userGlobalIdsToProcess == null || userGlobalIdsToProcess.isEmpty()
+                || userGlobalIdsToProcess.contains(userGlobalId);
+    }
+
     /**
      * Resolve the message of the relation
      */
@@ -202,7 +265,7 @@ public class MessageFeatureContext extends FeatureContext {
             return;
         }
 
-        relatedMessages = new HashMap<String, Message>();
+        Map<String, Message> resolvedMessages = new HashMap<String, Message>();
         if (this.messageRelation.getRelatedMessageGlobalIds() != null) {
             for (String messageGlobalId : this.messageRelation
                     .getRelatedMessageGlobalIds()) {
@@ -212,16 +275,28 @@ public class MessageFeatureContext extends FeatureContext {
                 }
                 message = persistence.getMessageByGlobalId(messageGlobalId);
                 if (message != null) {
-                    relatedMessages.put(messageGlobalId, message);
+                    resolvedMessages.put(messageGlobalId, message);
                 }
             }
         }
+        relatedMessages = resolvedMessages;
     }
 
     public void setNoRankingOnlyLearning(boolean noRankingOnlyLearning) {
         this.noRankingOnlyLearning = noRankingOnlyLearning;
     }
 
+    /**
+     * 
+     * @param prefetchedUserModelEntries
+     *            the user model entries matching the terms of the message, mapped by user global
+     *            id and user model type
+     */
+    public void setPrefetchedUserModelEntries(
+            Map<String, Map<String, Map<Term, UserModelEntry>>> prefetchedUserModelEntries) {
+        this.prefetchedUserModelEntries = prefetchedUserModelEntries;
+    }
+
     public void setUserGlobalIdsToProcess(Collection<String> userGlobalIdsToProcess) {
         this.userGlobalIdsToProcess = userGlobalIdsToProcess;
     }
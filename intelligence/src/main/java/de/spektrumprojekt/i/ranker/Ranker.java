@@ -19,8 +19,10 @@
 
 package de.spektrumprojekt.i.ranker;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
@@ -29,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import de.spektrumprojekt.callbacks.MessageGroupMemberRunner;
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.commons.chain.CommandChain;
+import de.spektrumprojekt.commons.task.TaskRunner;
 import de.spektrumprojekt.communication.CommunicationMessage;
 import de.spektrumprojekt.communication.Communicator;
 import de.spektrumprojekt.communication.MessageHandler;
@@ -44,6 +47,7 @@ import de.spektrumprojekt.i.ranker.chain.ComputeMessageRankCommand;
 import de.spektrumprojekt.i.ranker.chain.DetermineInteractionLevelCommand;
 import de.spektrumprojekt.i.ranker.chain.FeatureStatisticsCommand;
 import de.spektrumprojekt.i.ranker.chain.InvokeLearnerCommand;
+import de.spektrumprojekt.i.ranker.chain.PrefetchUserModelEntriesCommand;
 import de.spektrumprojekt.i.ranker.chain.StoreMessageCommand;
 import de.spektrumprojekt.i.ranker.chain.StoreMessageRankCommand;
 import de.spektrumprojekt.i.ranker.chain.TriggerUserModelAdaptationCommand;
@@ -59,10 +63,12 @@ import de.spektrumprojekt.i.ranker.chain.features.FeatureAggregateCommand;
 import de.spektrumprojekt.i.ranker.chain.features.MentionFeatureCommand;
 import de.spektrumprojekt.i.term.TermSimilarityWeightComputerFactory;
 import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
+import de.spektrumprojekt.i.term.frequency.TermFrequencyFlushComputer;
 import de.spektrumprojekt.i.term.similarity.TermVectorSimilarityComputer;
 import de.spektrumprojekt.i.user.similarity.UserSimilarityComputer;
 import de.spektrumprojekt.i.user.similarity.UserSimilarityComputer.UserSimilaritySimType;
 import de.spektrumprojekt.persistence.Persistence;
+import de.spektrumprojekt.persistence.TermCachingPersistence;
 
 /**
  * The ranker takes an incoming message (hence the {@link MessageHandler} implementation and
@@ -112,6 +118,8 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
 
     private final StoreMessageCommand storeMessageCommand;
 
+    private final PrefetchUserModelEntriesCommand prefetchUserModelEntriesCommand;
+
     private final InformationExtractionConfiguration informationExtractionConfiguration;
 
     private final UserFeatureCommand userFeatureCommand;
@@ -120,6 +128,9 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
 
     private final UserSimilarityIntegrationCommand userSimilarityIntegrationCommand;
 
+    // flushes the term counts periodically
+    private final TaskRunner taskRunner = new TaskRunner();
+
     private int reRankCount;
 
     /**
@@ -150,24 +161,37 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
         this.informationExtractionConfiguration = rankerConfiguration
                 .getInformationExtractionConfiguration();
 
+        if (this.rankerConfiguration.getTermCacheSize() > 0) {
+            // all commands get the terms through the cache, and the term counts are updated
+            // through it, so the cached terms stay up to date
+            persistence = new TermCachingPersistence(persistence,
+                    this.rankerConfiguration.getTermCacheSize());
+        }
         this.persistence = persistence;
         this.communicator = communicator;
         this.termFrequencyComputer = new TermFrequencyComputer(this.persistence,
                 this.rankerConfiguration
-                        .hasFlag(RankerConfigurationFlag.USE_MESSAGE_GROUP_SPECIFIC_USER_MODEL));
+                        .hasFlag(RankerConfigurationFlag.USE_MESSAGE_GROUP_SPECIFIC_USER_MODEL),
+                this.rankerConfiguration.getTermFrequencyFlushIntervall());
         if (this.rankerConfiguration.getTermUniquenessLogfile() != null) {
             this.termFrequencyComputer.init(this.rankerConfiguration.getTermUniquenessLogfile());
         }
+        if (this.termFrequencyComputer.getFlushIntervall() > 0) {
+            this.taskRunner.register(new TermFrequencyFlushComputer(termFrequencyComputer),
+                    termFrequencyComputer.getFlushIntervall(),
+                    termFrequencyComputer.getFlushIntervall(), false);
+            this.taskRunner.start(1);
+        }
         this.informationExtractionConfiguration.setTermFrequencyComputer(termFrequencyComputer);
 
         termVectorSimilarityComputer = TermSimilarityWeightComputerFactory.getInstance()
                 .createTermVectorSimilarityComputer(rankerConfiguration, termFrequencyComputer);
-        // TODO register termfrequencycomputer in some timer
 
         rankerChain = new CommandChain<MessageFeatureContext>();
         rerankerChain = new CommandChain<MessageFeatureContext>();
 
-        userFeatureCommand = new UserFeatureCommand(memberRunner);
+        userFeatureCommand = new UserFeatureCommand(memberRunner,
+                this.rankerConfiguration.getUserFeatureThreadPoolSize());
         reRankUserFeatureCommand = new UserFeatureCommand(memberRunner);
 
         this.informationExtractionChain = InformationExtractionCommand.createDefaultGermanEnglish(
@@ -181,6 +205,8 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
         userSimilarityComputer = new UserSimilarityComputer(this.persistence, userSimilaritySimType);
 
         storeMessageCommand = new StoreMessageCommand(persistence);
+        prefetchUserModelEntriesCommand = new PrefetchUserModelEntriesCommand(persistence,
+                memberRunner, this.rankerConfiguration.getUserModelTypes().keySet());
         userSimilarityIntegrationCommand = new UserSimilarityIntegrationCommand(
                 userSimilarityComputer);
         DiscussionRootFeatureCommand discussionRootFeatureCommand = new DiscussionRootFeatureCommand();
@@ -241,6 +267,11 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
             rankerChain.addCommand(discussionRootFeatureCommand);
         }
         if (!this.rankerConfiguration.hasFlag(RankerConfigurationFlag.NO_USER_SPECIFIC_COMMANDS)) {
+            if (!this.rankerConfiguration
+                    .hasFlag(RankerConfigurationFlag.DO_NOT_USE_CONTENT_MATCHER_FEATURE)) {
+                // load the user model entries of all users at once for the content match
+                rankerChain.addCommand(prefetchUserModelEntriesCommand);
+            }
             rankerChain.addCommand(userFeatureCommand);
         }
 
@@ -311,7 +342,23 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
     }
 
     public void close() {
+        this.taskRunner.stop();
         this.termFrequencyComputer.stop();
+        this.userFeatureCommand.close();
+        this.informationExtractionChain.close();
+    }
+
+    private MessageFeatureContext createContext(Message message, MessageRelation messageRelation,
+            String[] userGlobalIdsToRankFor, boolean noRankingOnlyLearning) {
+        MessageFeatureContext context = new MessageFeatureContext(this.persistence, message,
+                messageRelation);
+        context.setNoRankingOnlyLearning(noRankingOnlyLearning);
+
+        if (userGlobalIdsToRankFor != null) {
+            Collection<String> users = Arrays.asList(userGlobalIdsToRankFor);
+            context.setUserGlobalIdsToProcess(users);
+        }
+        return context;
     }
 
     /**
@@ -396,6 +443,7 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
     private void initReRankChain() {
         // setup the reranker chain. the reranker only uses the term match feature and assumes the
         // message has been ranked before
+        rerankerChain.addCommand(prefetchUserModelEntriesCommand);
         rerankerChain.addCommand(reRankUserFeatureCommand);
         reRankUserFeatureCommand.addCommand(determineInteractionLevelCommand);
         reRankUserFeatureCommand.addCommand(termMatchFeatureCommand);
@@ -422,25 +470,60 @@ public class Ranker implements MessageHandler<RankingCommunicationMessage>,
         // it. Now should the ranker send a new message (could include the message features) or let
         // the learner do it again, in a much simpler way ?
 
+        MessageFeatureContext context = createContext(message, messageRelation,
+                userGlobalIdsToRankFor, noRankingOnlyLearning);
+        rank(context);
+        return context;
+    }
+
+    private void rank(MessageFeatureContext context) {
         StopWatch stopWatch = new StopWatch();
         stopWatch.start();
 
-        MessageFeatureContext context = new MessageFeatureContext(this.persistence, message,
-                messageRelation);
-        context.setNoRankingOnlyLearning(noRankingOnlyLearning);
-
-        if (userGlobalIdsToRankFor != null) {
-            Collection<String> users = Arrays.asList(userGlobalIdsToRankFor);
-            context.setUserGlobalIdsToProcess(users);
-        }
-
         rankerChain.process(context);
 
         stopWatch.stop();
 
-        LOGGER.debug("Ranker processed message {} in {} ms", message.getGlobalId(),
+        LOGGER.debug("Ranker processed message {} in {} ms", context.getMessage().getGlobalId(),
                 stopWatch.getTime());
-        return context;
+    }
+
+    /**
+     * Rank the messages one after another (not using the communicator). The information of all
+     * messages is extracted before, in parallel if the information extraction is configured with
+     * more than one thread. Hence the terms of all messages are counted before the first message
+     * is ranked.
+     * 
+     * @param rankingMessages
+     *            the messages to rank with their relations and users to rank for, every message
+     *            must be contained only once
+     * @return the compute contexts including ranks in the order of the messages
+     */
+    public List<MessageFeatureContext> rankAll(List<RankingCommunicationMessage> rankingMessages) {
+        StopWatch stopWatch = new StopWatch();
+        stopWatch.start();
+
+        List<MessageFeatureContext> contexts = new ArrayList<MessageFeatureContext>(
+                rankingMessages.size());
+        for (RankingCommunicationMessage rankingMessage : rankingMessages) {
+            contexts.add(createContext(rankingMessage.getMessage(),
+                    rankingMessage.getMessageRelation(),
+                    rankingMessage.getUserGlobalIdsToRankFor(),
+                    rankingMessage.isNoRankingOnlyLearning()));
+        }
+        if (!this.rankerConfiguration.hasFlag(RankerConfigurationFlag.NO_INFORMATION_EXTRACTION)) {
+            // the chain skips the extraction of the messages afterwards
+            informationExtractionChain.processAll(contexts);
+        }
+
+        stopWatch.stop();
+        LOGGER.debug("Ranker extracted {} messages in {} ms", contexts.size(),
+                stopWatch.getTime());
+
+        for (MessageFeatureContext context : contexts) {
+            rank(context);
+        }
+        return contexts;
     }
 
     /**
@@ -16,6 +16,7 @@ import de.spektrumprojekt.i.learner.adaptation.UserModelAdapterConfiguration;
 import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
 import de.spektrumprojekt.i.term.TermWeightStrategy;
 import de.spektrumprojekt.i.timebased.config.ShortTermMemoryConfiguration;
+import de.spektrumprojekt.persistence.TermCachingPersistence;
 
 public class RankerConfiguration implements ConfigurationDescriptable, Cloneable {
 
@@ -59,6 +60,18 @@ public class RankerConfiguration implements ConfigurationDescriptable, Cloneable
 
     private ShortTermMemoryConfiguration shortTermMemoryConfiguration;
 
+    // number of threads to compute the user specific features of a message in parallel. 1 means
+    // sequential on the ranking thread.
+    private int userFeatureThreadPoolSize = 1;
+
+    // maximum time in ms the term counts in the persistence may be behind. 0 means they are
+    // written for every message.
+    private long termFrequencyFlushIntervall;
+
+    // maximum number of terms per category the ranker caches. 0 means the terms are always got
+    // from the persistence.
+    private int termCacheSize = TermCachingPersistence.DEFAULT_MAX_SIZE;
+
     public RankerConfiguration(TermWeightStrategy strategy, TermVectorSimilarityStrategy aggregation) {
         this(strategy, aggregation, null, null, (RankerConfigurationFlag[]) null);
     }
@@ -191,6 +204,14 @@ public class RankerConfiguration implements ConfigurationDescriptable, Cloneable
         return termUniquenessLogfile;
     }
 
+    public int getTermCacheSize() {
+        return termCacheSize;
+    }
+
+    public long getTermFrequencyFlushIntervall() {
+        return termFrequencyFlushIntervall;
+    }
+
     public TermVectorSimilarityStrategy getTermVectorSimilarityStrategy() {
         return termVectorSimilarityStrategy;
     }
@@ -203,6 +224,10 @@ public class RankerConfiguration implements ConfigurationDescriptable, Cloneable
         return userModelAdapterConfiguration;
     }
 
+    public int getUserFeatureThreadPoolSize() {
+        return userFeatureThreadPoolSize;
+    }
+
     public Map<String, UserModelConfiguration> getUserModelTypes() {
         return userModelTypes;
     }
@@ -282,6 +307,47 @@ public class RankerConfiguration implements ConfigurationDescriptable, Cloneable
         this.shortTermMemoryConfiguration = shortTermMemoryConfiguration;
     }
 
+    /**
+     * 
+     * @param termCacheSize
+     *            the maximum number of terms per category the {@link Ranker} caches, so getting
+     *            the terms of a message does not need to ask the persistence. 0 to disable the
+     *            cache, which is needed if the terms are updated by others than the ranker.
+     *            Otherwise at least {@value TermCachingPersistence#MIN_MAX_SIZE}.
+     * @throws IllegalArgumentException
+     *             if the size is negative or between 0 and
+     *             {@value TermCachingPersistence#MIN_MAX_SIZE}
+     */
+    public void setTermCacheSize(int termCacheSize) {
+        assertCanSet();
+        if (termCacheSize < 0) {
+            throw new IllegalArgumentException("termCacheSize cannot be negative but is: "
+                    + termCacheSize);
+        }
+        if (termCacheSize > 0 && termCacheSize < TermCachingPersistence.MIN_MAX_SIZE) {
+            throw new IllegalArgumentException("termCacheSize must be 0 or at least "
+                    + TermCachingPersistence.MIN_MAX_SIZE + " but is: " + termCacheSize);
+        }
+        this.termCacheSize = termCacheSize;
+    }
+
+    /**
+     * 
+     * @param termFrequencyFlushIntervall
+     *            the maximum time in ms the term counts in the persistence may be behind the
+     *            counted messages. 0 to write the counts for every message. Otherwise the
+     *            {@link Ranker} flushes the counts in this intervall until it is closed.
+     */
+    public void setTermFrequencyFlushIntervall(long termFrequencyFlushIntervall) {
+        assertCanSet();
+        if (termFrequencyFlushIntervall < 0) {
+            throw new IllegalArgumentException(
+                    "termFrequencyFlushIntervall cannot be negative but is: "
+                            + termFrequencyFlushIntervall);
+        }
+        this.termFrequencyFlushIntervall = termFrequencyFlushIntervall;
+    }
+
     public void setTermUniquenessLogfile(String termUniquenessLogfile) {
         // assertCanSet();
         this.termUniquenessLogfile = termUniquenessLogfile;
@@ -309,6 +375,22 @@ public class RankerConfiguration implements ConfigurationDescriptable, Cloneable
         this.treatMissingUserModelEntriesAsZero = treatMissingUserModelEntriesAsZero;
     }
 
+    /**
+     * 
+     * @param userFeatureThreadPoolSize
+     *            the number of threads used to run the user specific commands for the members of
+     *            a message group in parallel. Values greater 1 require a thread safe persistence.
+     */
+    public void setUserFeatureThreadPoolSize(int userFeatureThreadPoolSize) {
+        assertCanSet();
+        if (userFeatureThreadPoolSize < 1) {
+            throw new IllegalArgumentException(
+                    "userFeatureThreadPoolSize must be at least 1 but is: "
+                            + userFeatureThreadPoolSize);
+        }
+        this.userFeatureThreadPoolSize = userFeatureThreadPoolSize;
+    }
+
     public void setUserModelType(Map<String, UserModelConfiguration> userModelTypes) {
         if (userModelTypes == null) {
             throw new IllegalArgumentException("userModelType cannot be null.");
@@ -368,7 +450,13 @@ public class RankerConfiguration implements ConfigurationDescriptable, Cloneable
                 + mixMemoriesForRating
                 + ", shortTermMemoryConfiguration="
                 + (shortTermMemoryConfiguration == null ? "null" : shortTermMemoryConfiguration
-                        .getConfigurationDescription()) + "]";
+                        .getConfigurationDescription())
+                + ", userFeatureThreadPoolSize="
+                + userFeatureThreadPoolSize
+                + ", termFrequencyFlushIntervall="
+                + termFrequencyFlushIntervall
+                + ", termCacheSize="
+                + termCacheSize + "]";
     }
 
 }
\ No newline at end of file
@@ -37,7 +37,10 @@ public enum RankerConfigurationFlag {
     NO_USER_SPECIFIC_COMMANDS("noUserSpec"),
 
     // learns from every message. usefull for validation evaluation purposes
-    LEARN_FROM_EVERY_MESSAGE("learnFromAll");
+    LEARN_FROM_EVERY_MESSAGE("learnFromAll"),
+
+    // computes the term vector similarity on sorted primitive arrays instead of maps
+    USE_SPARSE_TERM_VECTOR_SIMILARITY("sparseTVS");
 
     private static RankerConfigurationFlag[] VALUES_WITH_NULL;
 
@@ -19,6 +19,15 @@
 
 package de.spektrumprojekt.i.ranker.chain;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.datamodel.user.UserSimilarity;
 import de.spektrumprojekt.i.ranker.MessageFeatureContext;
@@ -27,13 +36,28 @@ import de.spektrumprojekt.i.ranker.chain.features.Feature;
 import de.spektrumprojekt.persistence.Persistence;
 
 /**
- * A command to store the message ranks
+ * A command to increase the message rank of users having a low rank to the rank of similar users
+ * for which the message matches the content. The similarities between the users of a message are
+ * fetched with one query.
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
  */
 public class AdaptMessageRankByCMFOfSimilarUsersCommand implements Command<MessageFeatureContext> {
 
+    private static final Comparator<UserSpecificMessageFeatureContext> CMF_DESCENDING = new Comparator<UserSpecificMessageFeatureContext>() {
+
+        @Override
+        public int compare(UserSpecificMessageFeatureContext context1,
+                UserSpecificMessageFeatureContext context2) {
+            int result = Float.compare(
+                    context2.getFeatureValue(Feature.CONTENT_MATCH_FEATURE),
+                    context1.getFeatureValue(Feature.CONTENT_MATCH_FEATURE));
+            return result != 0 ? result : context1.getUserGlobalId().compareTo(
+                    context2.getUserGlobalId());
+        }
+    };
+
     private final Persistence persistence;
 
     // the minimum user similarity that must be fullfilled to be eglible to take the score of
@@ -85,6 +109,66 @@ public class AdaptMessageRankByCMFOfSimilarUsersCommand implements Command<Messa
                 + " minContentMessageScore:" + minContentMessageScore;
     }
 
+    /**
+     * Get the similar users of the users to adapt the rank for with one query. The similar users
+     * of the user at index i are stored in the returned array from offsets[i] to offsets[i + 1],
+     * as indexes into the candidates in ascending order, that is with the highest cmf first.
+     * 
+     * @param messageGroupGlobalId
+     *            the message group of the similarities, can be null
+     * @param contextsForAdaptation
+     *            the contexts of the users to adapt the rank for
+     * @param candidates
+     *            the contexts of the users that might be similar, sorted by cmf
+     * @param offsets
+     *            the offsets to fill, one more than contexts to adapt
+     * @return the indexes of the similar users
+     */
+    private int[] getSimilarUsers(String messageGroupGlobalId,
+            List<UserSpecificMessageFeatureContext> contextsForAdaptation,
+            List<UserSpecificMessageFeatureContext> candidates, int[] offsets) {
+        Map<String, Integer> fromIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < contextsForAdaptation.size(); i++) {
+            fromIndexes.put(contextsForAdaptation.get(i).getUserGlobalId(), i);
+        }
+        Map<String, Integer> toIndexes = new HashMap<String, Integer>();
+        for (int i = 0; i < candidates.size(); i++) {
+            toIndexes.put(candidates.get(i).getUserGlobalId(), i);
+        }
+
+        Collection<UserSimilarity> userSimilarities = this.persistence.getUserSimilarities(
+                fromIndexes.keySet(), toIndexes.keySet(), messageGroupGlobalId,
+                this.minUserSimilarity);
+
+        int[] from = new int[userSimilarities.size()];
+        int[] to = new int[userSimilarities.size()];
+        int size = 0;
+        for (UserSimilarity userSimilarity : userSimilarities) {
+            Integer fromIndex = fromIndexes.get(userSimilarity.getUserGlobalIdFrom());
+            Integer toIndex = toIndexes.get(userSimilarity.getUserGlobalIdTo());
+            if (fromIndex != null && toIndex != null
+                    && userSimilarity.getSimilarity() >= this.minUserSimilarity) {
+                from[size] = fromIndex;
+                to[size] = toIndex;
+                offsets[fromIndex + 1]++;
+                size++;
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        int[] similarUsers = new int[size];
+        int[] positions = new int[offsets.length - 1];
+        System.arraycopy(offsets, 0, positions, 0, positions.length);
+        for (int i = 0; i < size; i++) {
+            similarUsers[positions[from[i]]++] = to[i];
+        }
+        for (int i = 0; i < positions.length; i++) {
+            Arrays.sort(similarUsers, offsets[i], offsets[i + 1]);
+        }
+        return similarUsers;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -95,43 +179,57 @@ public class AdaptMessageRankByCMFOfSimilarUsersCommand implements Command<Messa
         }
         String messageGroupGlobalId = context.getMessage().getMessageGroup() == null ? null
                 : context.getMessage().getMessageGroup().getGlobalId();
-        for (UserSpecificMessageFeatureContext contextForAdaptation : context.getUserContexts()) {
-            if (contextForAdaptation.getMessageRank().getRank() <= this.messageRankThreshold) {
-
-                float newRank = 0;
 
-                for (UserSpecificMessageFeatureContext userContext : context.getUserContexts()) {
-
-                    float cmfRank = userContext.getFeatureValue(Feature.CONTENT_MATCH_FEATURE);
+        Collection<UserSpecificMessageFeatureContext> userContexts = context.getUserContexts();
+        List<UserSpecificMessageFeatureContext> contextsForAdaptation = new ArrayList<UserSpecificMessageFeatureContext>(
+                userContexts.size());
+        List<UserSpecificMessageFeatureContext> candidates = new ArrayList<UserSpecificMessageFeatureContext>(
+                userContexts.size());
+        for (UserSpecificMessageFeatureContext userContext : userContexts) {
+            if (userContext.getMessageRank().getRank() <= this.messageRankThreshold) {
+                contextsForAdaptation.add(userContext);
+            }
+            float cmfRank = userContext.getFeatureValue(Feature.CONTENT_MATCH_FEATURE);
+            if (cmfRank > this.minContentMessageScore) {
+                candidates.add(userContext);
+            }
+        }
+        if (contextsForAdaptation.isEmpty() || candidates.isEmpty()) {
+            return;
+        }
+        // the candidates with the highest cmf first
+        Collections.sort(candidates, CMF_DESCENDING);
 
-                    if (cmfRank > this.minContentMessageScore && cmfRank > newRank) {
+        int[] offsets = new int[contextsForAdaptation.size() + 1];
+        int[] similarUsers = getSimilarUsers(messageGroupGlobalId, contextsForAdaptation,
+                candidates, offsets);
 
-                        UserSimilarity userSimilarity = this.persistence.getUserSimilarity(
-                                contextForAdaptation.getUserGlobalId(),
-                                userContext.getUserGlobalId(), messageGroupGlobalId);
+        for (int i = 0; i < contextsForAdaptation.size(); i++) {
+            UserSpecificMessageFeatureContext contextForAdaptation = contextsForAdaptation.get(i);
 
-                        if (userSimilarity != null
-                                && userSimilarity.getSimilarity() >= this.minUserSimilarity) {
+            float newRank = 0;
 
-                            newRank = Math.max(newRank, userContext.getMessageRank().getRank());
-                        }
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                UserSpecificMessageFeatureContext userContext = candidates.get(similarUsers[j]);
 
-                    }
+                float cmfRank = userContext.getFeatureValue(Feature.CONTENT_MATCH_FEATURE);
+                if (cmfRank <= newRank) {
+                    // the remaining similar users have an even lower cmf
+                    break;
                 }
+                newRank = Math.max(newRank, userContext.getMessageRank().getRank());
+            }
 
-                float diff = newRank - contextForAdaptation.getMessageRank().getRank();
-
-                if (newRank > 0 && diff <= 0) {
+            float diff = newRank - contextForAdaptation.getMessageRank().getRank();
 
-                    adaptationIncrease += diff;
+            if (newRank > 0 && diff <= 0) {
 
-                    contextForAdaptation.getMessageRank().setRank(newRank);
-                    adaptationCount++;
+                adaptationIncrease += diff;
 
-                }
+                contextForAdaptation.getMessageRank().setRank(newRank);
+                adaptationCount++;
 
             }
-
         }
     }
 }
@@ -86,11 +86,11 @@ public class FeatureStatisticsCommand implements Command<UserSpecificMessageFeat
 
     }
 
-    public long getContextCount() {
+    public synchronized long getContextCount() {
         return contextCount;
     }
 
-    public List<String> getFeatureCountAsString() {
+    public synchronized List<String> getFeatureCountAsString() {
         List<String> values = new ArrayList<String>();
         for (Feature f : Feature.ALL_FEATURES) {
             StringBuilder sb = new StringBuilder();
@@ -107,7 +107,7 @@ public class FeatureStatisticsCommand implements Command<UserSpecificMessageFeat
      * {@inheritDoc}
      */
     @Override
-    public void process(UserSpecificMessageFeatureContext context) {
+    public synchronized void process(UserSpecificMessageFeatureContext context) {
 
         contextCount++;
 
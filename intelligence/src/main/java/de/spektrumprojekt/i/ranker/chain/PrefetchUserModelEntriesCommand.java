@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.ranker.chain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import de.spektrumprojekt.callbacks.MessageGroupMemberRunner;
+import de.spektrumprojekt.callbacks.UserCallback;
+import de.spektrumprojekt.commons.chain.Command;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.persistence.Persistence;
+
+/**
+ * Loads the user model entries matching the terms of the message for all users of the message
+ * group with one bulk request and puts them into the {@link MessageFeatureContext}. The user
+ * specific commands (e.g. the content match) will use these entries instead of loading them one
+ * user at a time.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class PrefetchUserModelEntriesCommand implements Command<MessageFeatureContext> {
+
+    private final Persistence persistence;
+
+    private final MessageGroupMemberRunner<MessageFeatureContext> messageGroupMemberRunner;
+
+    private final Collection<String> userModelTypes;
+
+    /**
+     * 
+     * @param persistence
+     *            the persistence
+     * @param runner
+     *            defines how to resolve users for a message group
+     * @param userModelTypes
+     *            the user model types to load the entries for
+     */
+    public PrefetchUserModelEntriesCommand(Persistence persistence,
+            MessageGroupMemberRunner<MessageFeatureContext> runner,
+            Collection<String> userModelTypes) {
+        if (persistence == null) {
+            throw new IllegalArgumentException("persistence cannot be null.");
+        }
+        if (runner == null) {
+            throw new IllegalArgumentException("runner cannot be null.");
+        }
+        if (userModelTypes == null) {
+            throw new IllegalArgumentException("userModelTypes cannot be null.");
+        }
+        this.persistence = persistence;
+        this.messageGroupMemberRunner = runner;
+        this.userModelTypes = userModelTypes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getConfigurationDescription() {
+        return this.getClass().getSimpleName() + " userModelTypes: " + userModelTypes;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(MessageFeatureContext context) {
+        Collection<Term> messageTerms = context.getMessageTerms();
+        if (messageTerms.isEmpty() || userModelTypes.isEmpty()) {
+            return;
+        }
+
+        final List<String> userGlobalIds = new ArrayList<String>();
+        messageGroupMemberRunner.runForMessageGroup(context,
+                context.getMessage().getMessageGroup(), new UserCallback<MessageFeatureContext>() {
+
+                    @Override
+                    public void run(MessageFeatureContext context, String userGlobalId) {
+                        if (context.isUserToProcess(userGlobalId)) {
+                            userGlobalIds.add(userGlobalId);
+                        }
+                    }
+                });
+        if (userGlobalIds.isEmpty()) {
+            return;
+        }
+
+        Map<String, Map<String, Map<Term, UserModelEntry>>> entries = persistence
+                .getUserModelEntriesForTerms(userGlobalIds, userModelTypes, messageTerms);
+        context.setPrefetchedUserModelEntries(entries);
+    }
+
+    @Override
+    public String toString() {
+        return "PrefetchUserModelEntriesCommand [messageGroupMemberRunner="
+                + messageGroupMemberRunner + ", userModelTypes=" + userModelTypes + "]";
+    }
+}
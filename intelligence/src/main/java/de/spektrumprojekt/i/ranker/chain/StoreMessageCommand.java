@@ -20,6 +20,11 @@
 package de.spektrumprojekt.i.ranker.chain;
 
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.datamodel.message.Message;
@@ -27,6 +32,7 @@ import de.spektrumprojekt.datamodel.message.MessageGroup;
 import de.spektrumprojekt.datamodel.message.MessagePart;
 import de.spektrumprojekt.datamodel.message.ScoredTerm;
 import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
 import de.spektrumprojekt.i.ranker.MessageFeatureContext;
 import de.spektrumprojekt.informationextraction.InformationExtractionContext;
 import de.spektrumprojekt.persistence.Persistence;
@@ -107,12 +113,31 @@ public class StoreMessageCommand implements Command<MessageFeatureContext> {
      *            the message
      */
     private void setTerms(Message message) {
+        // get the terms of each category at once
+        Map<TermCategory, Set<String>> termValues = new EnumMap<TermCategory, Set<String>>(
+                TermCategory.class);
+        for (MessagePart messagePart : message.getMessageParts()) {
+            for (ScoredTerm scoredTerm : messagePart.getScoredTerms()) {
+                Term term = scoredTerm.getTerm();
+                Set<String> values = termValues.get(term.getCategory());
+                if (values == null) {
+                    values = new HashSet<String>();
+                    termValues.put(term.getCategory(), values);
+                }
+                values.add(term.getValue());
+            }
+        }
+        Map<TermCategory, Map<String, Term>> persistedTerms = new EnumMap<TermCategory, Map<String, Term>>(
+                TermCategory.class);
+        for (Entry<TermCategory, Set<String>> values : termValues.entrySet()) {
+            persistedTerms.put(values.getKey(),
+                    persistence.getOrCreateTerms(values.getKey(), values.getValue()));
+        }
         for (MessagePart messagePart : message.getMessageParts()) {
             for (ScoredTerm scoredTerm : messagePart.getScoredTerms()) {
                 Term term = scoredTerm.getTerm();
 
-                Term persistedTerm = persistence.getOrCreateTerm(term.getCategory(),
-                        term.getValue());
+                Term persistedTerm = persistedTerms.get(term.getCategory()).get(term.getValue());
                 scoredTerm.setTerm(persistedTerm);
             }
         }
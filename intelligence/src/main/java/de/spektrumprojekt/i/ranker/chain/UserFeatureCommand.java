@@ -19,15 +19,27 @@
 
 package de.spektrumprojekt.i.ranker.chain;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import de.spektrumprojekt.callbacks.MessageGroupMemberRunner;
 import de.spektrumprojekt.callbacks.UserCallback;
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.commons.chain.CommandChain;
+import de.spektrumprojekt.commons.task.NamedThreadFactory;
 import de.spektrumprojekt.i.ranker.MessageFeatureContext;
 import de.spektrumprojekt.i.ranker.UserSpecificMessageFeatureContext;
 
 /**
- * Command that contains a chain to compute the user specific features
+ * Command that contains a chain to compute the user specific features. If configured with more
+ * than one thread the user specific chain will be run for the members of the message group in
+ * parallel using a fixed size thread pool. In this case all commands of the user specific chain
+ * and the used persistence must be thread safe.
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
@@ -40,28 +52,64 @@ public class UserFeatureCommand implements Command<MessageFeatureContext>,
 
     private final MessageGroupMemberRunner<MessageFeatureContext> messageGroupMemberRunner;
 
+    private final int threadPoolSize;
+
+    // null if the users are processed on the calling thread
+    private final ExecutorService executorService;
+
     /**
      * 
      * @param runner
      *            defines how to resolve users for a message group
      */
     public UserFeatureCommand(MessageGroupMemberRunner<MessageFeatureContext> runner) {
+        this(runner, 1);
+    }
+
+    /**
+     * 
+     * @param runner
+     *            defines how to resolve users for a message group
+     * @param threadPoolSize
+     *            the number of threads to process the users of a message group in parallel. 1 or
+     *            less will process all users one after another on the calling thread.
+     */
+    public UserFeatureCommand(MessageGroupMemberRunner<MessageFeatureContext> runner,
+            int threadPoolSize) {
         if (runner == null) {
             throw new IllegalArgumentException("runner cannot be null.");
         }
         this.messageGroupMemberRunner = runner;
+        this.threadPoolSize = Math.max(1, threadPoolSize);
+        if (this.threadPoolSize > 1) {
+            this.executorService = Executors.newFixedThreadPool(this.threadPoolSize,
+                    new NamedThreadFactory(this.getClass().getSimpleName(), true));
+        } else {
+            this.executorService = null;
+        }
     }
 
     public void addCommand(Command<UserSpecificMessageFeatureContext> command) {
         this.userSpecificCommandChain.addCommand(command);
     }
 
+    /**
+     * Stops the threads used for processing the users in parallel. Afterwards the command cannot
+     * be used anymore if running in parallel mode.
+     */
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public String getConfigurationDescription() {
-        return this.getClass().getSimpleName() + " userSpecificCommandChain: "
+        return this.getClass().getSimpleName() + " threadPoolSize: " + threadPoolSize
+                + " userSpecificCommandChain: "
                 + userSpecificCommandChain.getConfigurationDescription();
     }
 
@@ -79,29 +127,81 @@ public class UserFeatureCommand implements Command<MessageFeatureContext>,
     @Override
     public void process(MessageFeatureContext context) {
 
-        messageGroupMemberRunner.runForMessageGroup(context,
-                context.getMessage().getMessageGroup(), this);
+        if (executorService == null) {
+            messageGroupMemberRunner.runForMessageGroup(context,
+                    context.getMessage().getMessageGroup(), this);
+        } else {
+            processInParallel(context);
+        }
 
     }
 
     /**
-     * {@inheritDoc}
+     * Collect the members of the message group first and than run the user specific chain for
+     * every one of them using the thread pool. Returns after all users have been processed.
+     * 
+     * @param context
+     *            the context
      */
-    @Override
-    public void run(MessageFeatureContext context, String userGlobalId) {
+    private void processInParallel(final MessageFeatureContext context) {
+        final List<String> userGlobalIds = new ArrayList<String>();
+        messageGroupMemberRunner.runForMessageGroup(context,
+                context.getMessage().getMessageGroup(), new UserCallback<MessageFeatureContext>() {
+
+                    @Override
+                    public void run(MessageFeatureContext context, String userGlobalId) {
+                        if (context.isUserToProcess(userGlobalId)) {
+                            userGlobalIds.add(userGlobalId);
+                        }
+                    }
+                });
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(userGlobalIds.size());
+        for (final String userGlobalId : userGlobalIds) {
+            tasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    processUser(context, userGlobalId);
+                    return null;
+                }
+            });
+        }
 
-        if (context.getUserGlobalIdsToProcess() != null
-                && !context.getUserGlobalIdsToProcess().isEmpty()
-                && !context.getUserGlobalIdsToProcess().contains(userGlobalId)) {
-            return;
+        try {
+            for (Future<Object> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while processing the users of message "
+                    + context.getMessage().getGlobalId(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
+    }
 
+    private void processUser(MessageFeatureContext context, String userGlobalId) {
         UserSpecificMessageFeatureContext userContext = new UserSpecificMessageFeatureContext(
                 userGlobalId, context);
         userSpecificCommandChain.process(userContext);
         context.addUserContext(userContext);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run(MessageFeatureContext context, String userGlobalId) {
+
+        if (context.isUserToProcess(userGlobalId)) {
+            processUser(context, userGlobalId);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -109,6 +209,8 @@ public class UserFeatureCommand implements Command<MessageFeatureContext>,
         builder.append(userSpecificCommandChain);
         builder.append(", messageGroupMemberRunner=");
         builder.append(messageGroupMemberRunner);
+        builder.append(", threadPoolSize=");
+        builder.append(threadPoolSize);
         builder.append("]");
         return builder.toString();
     }
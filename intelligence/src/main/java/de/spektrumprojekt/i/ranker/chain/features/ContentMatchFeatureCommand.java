@@ -21,15 +21,14 @@ package de.spektrumprojekt.i.ranker.chain.features;
 
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.datamodel.message.Term;
 import de.spektrumprojekt.datamodel.user.UserModel;
 import de.spektrumprojekt.datamodel.user.UserModelEntry;
-import de.spektrumprojekt.helper.MessageHelper;
 import de.spektrumprojekt.i.datamodel.MessageFeature;
 import de.spektrumprojekt.i.ranker.RankerConfiguration;
 import de.spektrumprojekt.i.ranker.UserSpecificMessageFeatureContext;
@@ -113,6 +112,36 @@ public class ContentMatchFeatureCommand implements Command<UserSpecificMessageFe
         return Feature.CONTENT_MATCH_FEATURE;
     }
 
+    /**
+     * Get the entries of the user models matching the message terms. Uses the entries prefetched
+     * for the message if available, otherwise loads them from the persistence.
+     * 
+     * @param context
+     *            the context
+     * @param messageTerms
+     *            the terms of the message
+     * @return the entries mapped by user model type
+     */
+    private Map<String, Map<Term, UserModelEntry>> getUserModelEntries(
+            UserSpecificMessageFeatureContext context, Collection<Term> messageTerms) {
+        Map<String, Map<Term, UserModelEntry>> prefetchedEntries = context
+                .getMessageFeatureContext()
+                .getPrefetchedUserModelEntries(context.getUserGlobalId());
+
+        Map<String, Map<Term, UserModelEntry>> entriesPerType = new LinkedHashMap<String, Map<Term, UserModelEntry>>();
+        for (String userModelType : rankerConfiguration.getUserModelTypes().keySet()) {
+            Map<Term, UserModelEntry> entries = prefetchedEntries == null ? null
+                    : prefetchedEntries.get(userModelType);
+            if (entries == null) {
+                UserModel userModel = persistence.getOrCreateUserModelByUser(
+                        context.getUserGlobalId(), userModelType);
+                entries = persistence.getUserModelEntriesForTerms(userModel, messageTerms);
+            }
+            entriesPerType.put(userModelType, entries);
+        }
+        return entriesPerType;
+    }
+
     private boolean notNullOrEmpty(Map<?, ?> entries) {
         return entries != null && entries.size() > 0;
     }
@@ -123,24 +152,16 @@ public class ContentMatchFeatureCommand implements Command<UserSpecificMessageFe
     @Override
     public void process(UserSpecificMessageFeatureContext context) {
 
-        List<UserModel> userModels = new LinkedList<UserModel>();
-        for (String userModelType : rankerConfiguration.getUserModelTypes().keySet()) {
-            userModels.add(persistence.getOrCreateUserModelByUser(context.getUserGlobalId(),
-                    userModelType));
-        }
         String messageGroupId = context.getMessage().getMessageGroup() == null ? null : context
                 .getMessage().getMessageGroup().getGlobalId();
 
-        Collection<Term> messageTerms = MessageHelper.getAllTerms(context.getMessage());
+        Collection<Term> messageTerms = context.getMessageFeatureContext().getMessageTerms();
         Float value = null;
 
-        Map<String, Map<Term, UserModelEntry>> allEntries = new HashMap<String, Map<Term, UserModelEntry>>();
+        Map<String, Map<Term, UserModelEntry>> allEntries = getUserModelEntries(context,
+                messageTerms);
         if (rankerConfiguration.isMixMemoriesForRating()) {
 
-            for (UserModel userModel : userModels) {
-                allEntries.put(userModel.getUserModelType(),
-                        persistence.getUserModelEntriesForTerms(userModel, messageTerms));
-            }
             // computes the score by first merging different values per term and then aggregate the
             // scores
             value = this.termVectorSimilarityComputer.getSimilarity(messageGroupId, allEntries,
@@ -150,14 +171,11 @@ public class ContentMatchFeatureCommand implements Command<UserSpecificMessageFe
 
             // map from user model type to the content match score
             Map<String, Float> values = new HashMap<String, Float>();
-            for (UserModel userModel : userModels) {
-                Map<Term, UserModelEntry> entries = persistence.getUserModelEntriesForTerms(
-                        userModel, messageTerms);
-                if (notNullOrEmpty(entries)) {
-                    values.put(userModel.getUserModelType(), this.termVectorSimilarityComputer
-                            .getSimilarity(messageGroupId, entries, messageTerms));
+            for (Entry<String, Map<Term, UserModelEntry>> entries : allEntries.entrySet()) {
+                if (notNullOrEmpty(entries.getValue())) {
+                    values.put(entries.getKey(), this.termVectorSimilarityComputer
+                            .getSimilarity(messageGroupId, entries.getValue(), messageTerms));
                 }
-                allEntries.put(userModel.getUserModelType(), entries);
             }
             // merge the scores of the different user models into one value
             value = valuesStrategy.merge(values);
@@ -19,16 +19,10 @@
 
 package de.spektrumprojekt.i.ranker.chain.features;
 
-import java.util.HashSet;
-import java.util.Set;
-
 import de.spektrumprojekt.commons.chain.Command;
-import de.spektrumprojekt.datamodel.message.Message;
 import de.spektrumprojekt.datamodel.user.UserSimilarity;
-import de.spektrumprojekt.helper.MessageHelper;
 import de.spektrumprojekt.i.ranker.MessageFeatureContext;
 import de.spektrumprojekt.i.ranker.UserSpecificMessageFeatureContext;
-import de.spektrumprojekt.informationextraction.InformationExtractionContext;
 import de.spektrumprojekt.persistence.Persistence;
 
 /**
@@ -63,24 +57,10 @@ public class FeatureAggregateCommand implements Command<UserSpecificMessageFeatu
     public void process(UserSpecificMessageFeatureContext context) {
 
         MessageFeatureContext messageFeatureContext = context.getMessageFeatureContext();
+        MessageFeatureAggregate messageFeatureAggregate = messageFeatureContext
+                .getMessageFeatureAggregate();
 
         String userGlobalId = context.getUserGlobalId();
-        int msgLength = 0;
-        int cleanedTextLength = 0;
-        int numTerms = 0;
-        for (InformationExtractionContext iec : messageFeatureContext
-                .getInformationExtractionContexts()) {
-
-            if (iec.getCleanText() != null) {
-                cleanedTextLength += iec.getCleanText().length();
-            }
-            if (iec.getMessagePart().getScoredTerms() != null) {
-                numTerms += iec.getMessagePart().getScoredTerms().size();
-            }
-            if (iec.getMessagePart().getContent() != null) {
-                msgLength += iec.getMessagePart().getContent().length();
-            }
-        }
         UserSimilarity simTo = persistence.getUserSimilarity(context.getMessage()
                 .getAuthorGlobalId(), userGlobalId, context.getMessage().getMessageGroup()
                 .getGlobalId());
@@ -90,37 +70,21 @@ public class FeatureAggregateCommand implements Command<UserSpecificMessageFeatu
         double to = simTo == null ? 0 : simTo.getSimilarity();
         double from = simFrom == null ? 0 : simFrom.getSimilarity();
 
-        int numMentions = MessageHelper.getMentions(context.getMessage()).size();
-        int numLikes = MessageHelper.getUserLikes(context.getMessage()).size();
-        int numDis = context.getMessageRelation() == null ? 0 : context.getMessageRelation()
-                .getNumberOfRelatedMessages();
-        int numTags = MessageHelper.getTags(context.getMessage()).size();
-
-        Set<String> authors = new HashSet<String>();
-        authors.add(context.getMessage().getAuthorGlobalId());
-        Set<String> mentions = new HashSet<String>(MessageHelper.getMentions(context.getMessage()));
-        Set<String> tags = new HashSet<String>(MessageHelper.getTags(context.getMessage()));
-        for (Message related : messageFeatureContext.getMessagesOfRelation().values()) {
-            authors.add(related.getAuthorGlobalId());
-            mentions.addAll(MessageHelper.getMentions(related));
-            tags.addAll(MessageHelper.getTags(related));
-        }
-
         FeatureAggregate featureAggregate = new FeatureAggregate();
 
         featureAggregate.features.putAll(messageFeatureContext.getFeaturesForUser(userGlobalId));
-        featureAggregate.messageTextLength = msgLength;
-        featureAggregate.cleanedTextLength = cleanedTextLength;
-        featureAggregate.numTerms = numTerms;
+        featureAggregate.messageTextLength = messageFeatureAggregate.messageTextLength;
+        featureAggregate.cleanedTextLength = messageFeatureAggregate.cleanedTextLength;
+        featureAggregate.numTerms = messageFeatureAggregate.numTerms;
         featureAggregate.userToSim = to;
         featureAggregate.userFromSim = from;
-        featureAggregate.numMentions = numMentions;
-        featureAggregate.numLikes = numLikes;
-        featureAggregate.numTags = numTags;
-        featureAggregate.numDiscussion = numDis;
-        featureAggregate.numAuthors = authors.size();
-        featureAggregate.numDiscussionMentions = mentions.size();
-        featureAggregate.numDiscussionTags = tags.size();
+        featureAggregate.numMentions = messageFeatureAggregate.numMentions;
+        featureAggregate.numLikes = messageFeatureAggregate.numLikes;
+        featureAggregate.numTags = messageFeatureAggregate.numTags;
+        featureAggregate.numDiscussion = messageFeatureAggregate.numDiscussion;
+        featureAggregate.numAuthors = messageFeatureAggregate.numAuthors;
+        featureAggregate.numDiscussionMentions = messageFeatureAggregate.numDiscussionMentions;
+        featureAggregate.numDiscussionTags = messageFeatureAggregate.numDiscussionTags;
         featureAggregate.interactionLevel = context.getInteractionLevel();
         if (featureAggregate.interactionLevel == null) {
             throw new IllegalArgumentException("interactionLevel cannot be null! context="
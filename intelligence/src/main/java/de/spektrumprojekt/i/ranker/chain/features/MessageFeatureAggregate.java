@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.ranker.chain.features;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.helper.MessageHelper;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.informationextraction.InformationExtractionContext;
+
+/**
+ * The parts of the {@link FeatureAggregate} that only depend on the message and its discussion.
+ * They are computed once per message and shared by the {@link FeatureAggregate}s of all users, see
+ * {@link MessageFeatureContext#getMessageFeatureAggregate()}.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class MessageFeatureAggregate {
+
+    public final int messageTextLength;
+    public final int cleanedTextLength;
+    public final int numTerms;
+    public final int numMentions;
+    public final int numLikes;
+    public final int numTags;
+    public final int numDiscussion;
+    public final int numAuthors;
+    public final int numDiscussionMentions;
+    public final int numDiscussionTags;
+
+    /**
+     * Computes the aggregate. The information extraction must have been run and the relation of
+     * the context be set.
+     * 
+     * @param messageFeatureContext
+     *            the context of the message
+     */
+    public MessageFeatureAggregate(MessageFeatureContext messageFeatureContext) {
+        if (messageFeatureContext == null) {
+            throw new IllegalArgumentException("messageFeatureContext cannot be null.");
+        }
+        Message message = messageFeatureContext.getMessage();
+
+        int msgLength = 0;
+        int cleanedLength = 0;
+        int terms = 0;
+        for (InformationExtractionContext iec : messageFeatureContext
+                .getInformationExtractionContexts()) {
+
+            if (iec.getCleanText() != null) {
+                cleanedLength += iec.getCleanText().length();
+            }
+            if (iec.getMessagePart().getScoredTerms() != null) {
+                terms += iec.getMessagePart().getScoredTerms().size();
+            }
+            if (iec.getMessagePart().getContent() != null) {
+                msgLength += iec.getMessagePart().getContent().length();
+            }
+        }
+        this.messageTextLength = msgLength;
+        this.cleanedTextLength = cleanedLength;
+        this.numTerms = terms;
+
+        Collection<String> messageMentions = MessageHelper.getMentions(message);
+        Collection<String> messageTags = MessageHelper.getTags(message);
+        this.numMentions = messageMentions.size();
+        this.numLikes = MessageHelper.getUserLikes(message).size();
+        this.numTags = messageTags.size();
+        this.numDiscussion = messageFeatureContext.getMessageRelation() == null ? 0
+                : messageFeatureContext.getMessageRelation().getNumberOfRelatedMessages();
+
+        Set<String> authors = new HashSet<String>();
+        authors.add(message.getAuthorGlobalId());
+        Set<String> mentions = new HashSet<String>(messageMentions);
+        Set<String> tags = new HashSet<String>(messageTags);
+        for (Message related : messageFeatureContext.getMessagesOfRelation().values()) {
+            authors.add(related.getAuthorGlobalId());
+            mentions.addAll(MessageHelper.getMentions(related));
+            tags.addAll(MessageHelper.getTags(related));
+        }
+        this.numAuthors = authors.size();
+        this.numDiscussionMentions = mentions.size();
+        this.numDiscussionTags = tags.size();
+    }
+}
@@ -1,10 +1,12 @@
 package de.spektrumprojekt.i.term;
 
 import de.spektrumprojekt.i.ranker.RankerConfiguration;
+import de.spektrumprojekt.i.ranker.RankerConfigurationFlag;
 import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
 import de.spektrumprojekt.i.term.similarity.AverageTermVectorSimilarityComputer;
 import de.spektrumprojekt.i.term.similarity.CosinusTermVectorSimilarityComputer;
 import de.spektrumprojekt.i.term.similarity.MaximumTermVectorSimilarityComputer;
+import de.spektrumprojekt.i.term.similarity.SparseTermVectorSimilarityComputer;
 import de.spektrumprojekt.i.term.similarity.TermVectorSimilarityComputer;
 import de.spektrumprojekt.i.term.weight.LinearInverseTermWeightComputer;
 import de.spektrumprojekt.i.term.weight.LogInverseTermWeightComputer;
@@ -33,6 +35,11 @@ public class TermSimilarityWeightComputerFactory {
         TermWeightComputer termWeightComputer = this.createTermWeightComputer(termWeightStrategy,
                 termFrequencyComputer);
         TermVectorSimilarityComputer termVectorSimilarityComputer = null;
+        if (rankerConfiguration
+                .hasFlag(RankerConfigurationFlag.USE_SPARSE_TERM_VECTOR_SIMILARITY)) {
+            return new SparseTermVectorSimilarityComputer(termWeightComputer, similarityStrategy,
+                    treatMissingUserModelEntriesAsZero);
+        }
         switch (similarityStrategy) {
         case AVG:
             termVectorSimilarityComputer = new AverageTermVectorSimilarityComputer(
@@ -10,16 +10,25 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.spektrumprojekt.commons.concurrent.StripedCounter;
+import de.spektrumprojekt.commons.time.TimeProviderHolder;
 import de.spektrumprojekt.configuration.ConfigurationDescriptable;
 import de.spektrumprojekt.datamodel.message.Message;
 import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessageFilter.OrderDirection;
 import de.spektrumprojekt.datamodel.message.MessageGroup;
 import de.spektrumprojekt.datamodel.message.MessagePart;
 import de.spektrumprojekt.datamodel.message.ScoredTerm;
@@ -27,25 +36,107 @@ import de.spektrumprojekt.datamodel.message.Term;
 import de.spektrumprojekt.datamodel.message.TermFrequency;
 import de.spektrumprojekt.persistence.Persistence;
 
+/**
+ * Counts the terms and messages for computing term weights. The counts are kept in memory and can
+ * be updated concurrently. The changed terms and the {@link TermFrequency} are written to the
+ * persistence by {@link #flush()}, which is invoked for every integrated message if the flush
+ * intervall is 0. Otherwise {@link #flush()} should be run periodically, e.g. by registering a
+ * {@link TermFrequencyFlushComputer} with the task runner. An integration that finds the last
+ * flush to be older than the flush intervall flushes too, so the persistence will not be more than
+ * one intervall behind while messages are integrated.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
 public class TermFrequencyComputer implements ConfigurationDescriptable {
 
+    /**
+     * The in memory count of a term
+     */
+    private static class TermCount {
+
+        // the instance written to the persistence
+        private final Term term;
+
+        private final AtomicInteger count;
+
+        // true if the count changed since it has been written to the persistence
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        public TermCount(Term term) {
+            this.term = term;
+            this.count = new AtomicInteger(term.getCount());
+        }
+    }
+
     private final static Logger LOGGER = LoggerFactory.getLogger(TermFrequencyComputer.class);
 
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    private static final int DEFAULT_REBUILD_PAGE_SIZE = 1000;
+
     private final Persistence persistence;
 
     private final boolean beMessageGroupSpecific;
 
-    private TermFrequency internalTermFrequency;
+    private final long flushIntervall;
+
+    private volatile TermFrequency internalTermFrequency;
+
+    private final StripedCounter allTermCount = new StripedCounter();
+    private final StripedCounter uniqueTermCount = new StripedCounter();
+    private final StripedCounter messageCount = new StripedCounter();
+    private final ConcurrentMap<String, AtomicInteger> messageGroupMessageCounts = new ConcurrentHashMap<String, AtomicInteger>();
+
+    // the counts of the integrated terms by term id. They are kept after a flush, so the count
+    // never starts again from another instance of the term loaded before the flush.
+    private final ConcurrentMap<Long, TermCount> termCounts = new ConcurrentHashMap<Long, TermCount>();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile long lastFlush;
 
     private FileWriter termUniqueness;
 
+    private int rebuildPageSize = DEFAULT_REBUILD_PAGE_SIZE;
+
+    /**
+     * Creates a computer writing the counts to the persistence for every integrated message
+     *
+     * @param persistence
+     *            the persistence
+     * @param beMessageGroupSpecific
+     *            true to count the messages per message group
+     */
     public TermFrequencyComputer(Persistence persistence, boolean beMessageGroupSpecific) {
+        this(persistence, beMessageGroupSpecific, 0);
+    }
+
+    /**
+     *
+     * @param persistence
+     *            the persistence
+     * @param beMessageGroupSpecific
+     *            true to count the messages per message group
+     * @param flushIntervall
+     *            the maximum time in ms the counts in the persistence may be behind while
+     *            messages are integrated. 0 to write the counts for every integrated message.
+     */
+    public TermFrequencyComputer(Persistence persistence, boolean beMessageGroupSpecific,
+            long flushIntervall) {
+        if (persistence == null) {
+            throw new IllegalArgumentException("persistence cannot be null.");
+        }
+        if (flushIntervall < 0) {
+            throw new IllegalArgumentException("flushIntervall cannot be negative. flushIntervall="
+                    + flushIntervall);
+        }
         this.persistence = persistence;
         this.beMessageGroupSpecific = beMessageGroupSpecific;
-
+        this.flushIntervall = flushIntervall;
     }
 
     public void dumpTermCounts(String filename) throws IOException {
+        flush();
         List<Term> termsSorted = new ArrayList<Term>(this.persistence.getAllTerms());
         Collections.sort(termsSorted, new Comparator<Term>() {
 
@@ -96,44 +187,93 @@ public class TermFrequencyComputer implements ConfigurationDescriptable {
 
     }
 
+    /**
+     * Writes the changed terms in batches and the term frequency to the persistence
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            internalFlush();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
     public long getAllTermCount() {
-        return getTermFrequency().getAllTermCount();
+        getTermFrequency();
+        return allTermCount.sum();
     }
 
     @Override
     public String getConfigurationDescription() {
-        return this.getClass().getSimpleName();
+        return this.getClass().getSimpleName() + " beMessageGroupSpecific: "
+                + beMessageGroupSpecific + " flushIntervall: " + flushIntervall;
+    }
+
+    public long getFlushIntervall() {
+        return flushIntervall;
     }
 
     public long getMessageCount() {
-        return getTermFrequency().getMessageCount();
+        getTermFrequency();
+        return messageCount.sum();
     }
 
     public long getMessageCount(String messageGroupId) {
-
+        getTermFrequency();
         if (beMessageGroupSpecific) {
-            Integer count = getTermFrequency().getMessageGroupMessageCounts().get(messageGroupId);
+            AtomicInteger count = messageGroupId == null ? null : messageGroupMessageCounts
+                    .get(messageGroupId);
             if (count == null) {
                 return 0;
             }
-            return count;
+            return count.get();
         }
-        return getTermFrequency().getMessageCount();
+        return messageCount.sum();
     }
 
+    /**
+     *
+     * @return the term frequency with the counts of the last flush
+     */
     private TermFrequency getTermFrequency() {
         if (this.internalTermFrequency == null) {
             synchronized (this) {
                 if (this.internalTermFrequency == null) {
-                    internalTermFrequency = persistence.getTermFrequency();
+                    TermFrequency termFrequency = persistence.getTermFrequency();
+                    initCounts(termFrequency);
+                    lastFlush = TimeProviderHolder.DEFAULT.getCurrentTime();
+                    internalTermFrequency = termFrequency;
                 }
             }
         }
         return this.internalTermFrequency;
     }
 
+    public int getRebuildPageSize() {
+        return rebuildPageSize;
+    }
+
     public long getUniqueTermCount() {
-        return getTermFrequency().getUniqueTermCount();
+        getTermFrequency();
+        return uniqueTermCount.sum();
+    }
+
+    /**
+     * Sets the in memory counts to the counts of the term frequency
+     *
+     * @param termFrequency
+     *            the term frequency
+     */
+    private void initCounts(TermFrequency termFrequency) {
+        allTermCount.set(termFrequency.getAllTermCount());
+        uniqueTermCount.set(termFrequency.getUniqueTermCount());
+        messageCount.set(termFrequency.getMessageCount());
+        messageGroupMessageCounts.clear();
+        for (Entry<String, Integer> entry : termFrequency.getMessageGroupMessageCounts()
+                .entrySet()) {
+            messageGroupMessageCounts.put(entry.getKey(), new AtomicInteger(entry.getValue()));
+        }
     }
 
     public void init(String filename) {
@@ -148,22 +288,98 @@ public class TermFrequencyComputer implements ConfigurationDescriptable {
 
     }
 
-    public synchronized Collection<Term> integrate(Message message) {
+    /**
+     * Counts the terms of the message. The counts of the terms of the message are updated
+     * immediately, but they are written to the persistence on the next flush.
+     *
+     * @param message
+     *            the message
+     * @return the terms of the message that have been counted
+     */
+    public Collection<Term> integrate(Message message) {
         getTermFrequency();
         Collection<Term> terms = internalIntegrate(message, true);
-        this.updateTermFrequency();
+        if (flushIntervall == 0) {
+            flush();
+        } else if (TimeProviderHolder.DEFAULT.getCurrentTime() - lastFlush >= flushIntervall
+                && flushLock.tryLock()) {
+            // the flush task is late, only one integrating thread flushes
+            try {
+                internalFlush();
+            } finally {
+                flushLock.unlock();
+            }
+        }
         return terms;
     }
 
     private void integrate(MessageGroup messageGroup) {
-        Integer count = this.getTermFrequency().getMessageGroupMessageCounts().get(
-                messageGroup.getGlobalId());
+        AtomicInteger count = messageGroupMessageCounts.get(messageGroup.getGlobalId());
         if (count == null) {
-            count = 0;
+            AtomicInteger newCount = new AtomicInteger();
+            count = messageGroupMessageCounts.putIfAbsent(messageGroup.getGlobalId(), newCount);
+            if (count == null) {
+                count = newCount;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Increments the count of the term. All instances of the same term are counted on one counter
+     * per term id, which is written to the persistence by the next flush.
+     *
+     * @param term
+     *            the term
+     */
+    private void integrate(Term term) {
+        TermCount termCount = termCounts.get(term.getId());
+        if (termCount == null) {
+            TermCount newTermCount = new TermCount(term);
+            termCount = termCounts.putIfAbsent(term.getId(), newTermCount);
+            if (termCount == null) {
+                termCount = newTermCount;
+            }
         }
-        count++;
-        this.getTermFrequency().getMessageGroupMessageCounts()
-                .put(messageGroup.getGlobalId(), count);
+        int count = termCount.count.incrementAndGet();
+        updateCount(term, count);
+        // after the update, so a flush clearing the flag writes at least this count
+        termCount.dirty.set(true);
+
+        if (count == 1) {
+            uniqueTermCount.increment();
+        }
+        allTermCount.increment();
+    }
+
+    private void internalFlush() {
+        TermFrequency termFrequency = getTermFrequency();
+
+        List<Term> terms = new ArrayList<Term>(FLUSH_BATCH_SIZE);
+        for (TermCount termCount : termCounts.values()) {
+            if (termCount.dirty.compareAndSet(true, false)) {
+                updateCount(termCount.term, termCount.count.get());
+                terms.add(termCount.term);
+            }
+            if (terms.size() == FLUSH_BATCH_SIZE) {
+                this.persistence.updateTerms(terms);
+                terms.clear();
+            }
+        }
+        if (!terms.isEmpty()) {
+            this.persistence.updateTerms(terms);
+        }
+
+        termFrequency.setAllTermCount(allTermCount.sum());
+        termFrequency.setUniqueTermCount(uniqueTermCount.sum());
+        termFrequency.setMessageCount(messageCount.sum());
+        Map<String, Integer> counts = termFrequency.getMessageGroupMessageCounts();
+        for (Entry<String, AtomicInteger> count : messageGroupMessageCounts.entrySet()) {
+            counts.put(count.getKey(), count.getValue().get());
+        }
+        this.persistence.updateTermFrequency(termFrequency);
+
+        lastFlush = TimeProviderHolder.DEFAULT.getCurrentTime();
     }
 
     private Collection<Term> internalIntegrate(Message message, boolean log) {
@@ -178,16 +394,11 @@ public class TermFrequencyComputer implements ConfigurationDescriptable {
                 if (term.getId() == null) {
                     throw new IllegalStateException("term.id cannot be null! term=" + term);
                 }
-                if (term.getCount() == 0) {
-                    getTermFrequency().setUniqueTermCount(
-                            getTermFrequency().getUniqueTermCount() + 1);
-                }
-                getTermFrequency().setAllTermCount(getTermFrequency().getAllTermCount() + 1);
-                term.setCount(term.getCount() + 1);
+                integrate(term);
                 termsChanged.add(term);
             }
         }
-        getTermFrequency().setMessageCount(getTermFrequency().getMessageCount() + 1);
+        messageCount.increment();
         if (log) {
             logTermChange(message.getPublicationDate());
         }
@@ -197,11 +408,10 @@ public class TermFrequencyComputer implements ConfigurationDescriptable {
     private void logTermChange(Date date) {
         if (termUniqueness != null) {
             try {
-                termUniqueness.write(date.getTime() + " " + getTermFrequency().getAllTermCount()
-                        + " "
-                        + getTermFrequency().getUniqueTermCount() + " "
-                        + getTermFrequency().getMessageCount()
-                        + "\n");
+                synchronized (termUniqueness) {
+                    termUniqueness.write(date.getTime() + " " + allTermCount.sum() + " "
+                            + uniqueTermCount.sum() + " " + messageCount.sum() + "\n");
+                }
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
@@ -212,56 +422,105 @@ public class TermFrequencyComputer implements ConfigurationDescriptable {
         termUniqueness.write("Time AllTerms UniqueTerms MessageCount \n");
     }
 
-    public synchronized void run() {
-        LOGGER.info("Starting TermFrequencyComputed ...");
-        Date fromDate = new Date(0);
-
-        long allTermCount = 0;
-        long uniqueTermCount = 0;
-
-        this.persistence.resetTermCount();
-        this.getTermFrequency().getMessageGroupMessageCounts().clear();
-
-        MessageFilter messageFilter = new MessageFilter();
-        messageFilter.setMinPublicationDate(fromDate);
-
-        Collection<Message> messages = this.persistence.getMessages(messageFilter);
-        Collection<Term> termsChanged = new HashSet<Term>();
-
-        LOGGER.info("TermFrequencyComputed loaded messages ...");
-
-        int i = 0;
-        for (Message message : messages) {
-            termsChanged.addAll(internalIntegrate(message, false));
-
-            i++;
-            if (i % (messages.size() / 10) == 0) {
-                LOGGER.debug(" {} % done", i * 100 / messages.size());
+    /**
+     * Recomputes all counts from the messages of the persistence. The messages are loaded in pages
+     * ordered by id and the counts are flushed after every page together with the id of the last
+     * counted message as checkpoint. If the rebuild is interrupted the next run continues after
+     * the checkpoint. Since the terms are written before the checkpoint the terms of at most one
+     * page might be counted twice in this case. Messages must not be integrated concurrently.
+     */
+    public void run() {
+        flushLock.lock();
+        try {
+            TermFrequency termFrequency = getTermFrequency();
+            this.termCounts.clear();
+
+            Long lastMessageId = termFrequency.getRebuildCheckpointMessageId();
+            if (lastMessageId == null) {
+                LOGGER.info("Starting TermFrequencyComputed ...");
+                this.persistence.resetTermCount();
+                termFrequency.setAllTermCount(0);
+                termFrequency.setUniqueTermCount(0);
+                termFrequency.setMessageCount(0);
+                termFrequency.resetMessageGroupMessageCounts();
+            } else {
+                LOGGER.info("Resuming TermFrequencyComputed after message id {} ...",
+                        lastMessageId);
             }
+            // continue from the counts of the last checkpoint
+            initCounts(termFrequency);
+
+            MessageFilter messageFilter = new MessageFilter();
+            messageFilter.setMessageIdOrderDirection(OrderDirection.ASC);
+            messageFilter.setLastMessagesCount(rebuildPageSize);
+
+            long count = 0;
+            List<Message> messages;
+            do {
+                messageFilter.setMinMessageId(lastMessageId == null ? null : lastMessageId + 1);
+                messages = this.persistence.getMessages(messageFilter);
+                for (Message message : messages) {
+                    if (message.getId() == null) {
+                        throw new IllegalStateException("message.id cannot be null! message="
+                                + message.getGlobalId());
+                    }
+                    internalIntegrate(message, false);
+                    lastMessageId = message.getId();
+                }
+                count += messages.size();
+
+                termFrequency.setRebuildCheckpointMessageId(lastMessageId);
+                internalFlush();
+                LOGGER.info("TermFrequencyComputed counted {} messages up to message id {} ...",
+                        count, lastMessageId);
+            } while (messages.size() == rebuildPageSize);
+
+            termFrequency.setRebuildCheckpointMessageId(null);
+            internalFlush();
+        } finally {
+            flushLock.unlock();
         }
-        LOGGER.info("TermFrequencyComputed setting terms count done ...");
-
-        this.persistence.updateTerms(termsChanged);
-
-        this.getTermFrequency().setAllTermCount(allTermCount);
-        this.getTermFrequency().setUniqueTermCount(uniqueTermCount);
-        this.getTermFrequency().setMessageCount(messages.size());
-
-        updateTermFrequency();
 
         LOGGER.info("Finished TermFrequencyComputed.");
 
     }
 
+    /**
+     *
+     * @param rebuildPageSize
+     *            the number of messages to load and count at once by {@link #run()}
+     */
+    public void setRebuildPageSize(int rebuildPageSize) {
+        if (rebuildPageSize < 1) {
+            throw new IllegalArgumentException("rebuildPageSize must be at least 1 but is: "
+                    + rebuildPageSize);
+        }
+        this.rebuildPageSize = rebuildPageSize;
+    }
+
+    /**
+     * Flushes the counts and closes the term uniqueness log
+     */
     public void stop() {
+        flush();
         if (termUniqueness != null) {
             IOUtils.closeQuietly(termUniqueness);
         }
     }
 
-    private synchronized void updateTermFrequency() {
-        if (internalTermFrequency != null) {
-            this.persistence.updateTermFrequency(this.internalTermFrequency);
+    /**
+     * Sets the count of the term instance unless another thread set a higher count already
+     *
+     * @param term
+     *            the term
+     * @param count
+     *            the count
+     */
+    private void updateCount(Term term, int count) {
+        synchronized (term) {
+            if (term.getCount() < count) {
+                term.setCount(count);
+            }
         }
     }
 }
@@ -0,0 +1,33 @@
+package de.spektrumprojekt.i.term.frequency;
+
+import de.spektrumprojekt.commons.computer.Computer;
+
+/**
+ * Writes the counts of the {@link TermFrequencyComputer} to the persistence. To be registered with
+ * the task runner using the flush intervall of the term frequency computer.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class TermFrequencyFlushComputer implements Computer {
+
+    private final TermFrequencyComputer termFrequencyComputer;
+
+    public TermFrequencyFlushComputer(TermFrequencyComputer termFrequencyComputer) {
+        if (termFrequencyComputer == null) {
+            throw new IllegalArgumentException("termFrequencyComputer cannot be null.");
+        }
+        this.termFrequencyComputer = termFrequencyComputer;
+    }
+
+    @Override
+    public String getConfigurationDescription() {
+        return this.getClass().getSimpleName() + " termFrequencyComputer: "
+                + termFrequencyComputer.getConfigurationDescription();
+    }
+
+    @Override
+    public void run() throws Exception {
+        termFrequencyComputer.flush();
+    }
+}
@@ -0,0 +1,137 @@
+package de.spektrumprojekt.i.term.similarity;
+
+import java.util.Arrays;
+
+import de.spektrumprojekt.datamodel.message.Term;
+
+/**
+ * A term vector backed by primitive arrays. The position of a term can be looked up by its id
+ * using an open addressing hash index on the primitive ids. The vector is meant to be reused, use
+ * {@link #clear()} instead of creating a new one.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class SparseTermVector {
+
+    private static int hash(long termId) {
+        int hash = (int) (termId ^ termId >>> 32) * 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
+
+    private long[] termIds;
+    private float[] values;
+    private Term[] terms;
+    private int size;
+
+    // index + 1 of the term in the arrays, 0 for a free slot
+    private int[] slots;
+    private int mask;
+
+    public SparseTermVector() {
+        this(64);
+    }
+
+    public SparseTermVector(int initialCapacity) {
+        initialCapacity = Math.max(1, initialCapacity);
+        this.termIds = new long[initialCapacity];
+        this.values = new float[initialCapacity];
+        this.terms = new Term[initialCapacity];
+        this.slots = new int[Integer.highestOneBit(initialCapacity) * 4];
+        this.mask = slots.length - 1;
+    }
+
+    /**
+     * Adds the term. If the vector already contains a term with the same id only the value is
+     * set.
+     *
+     * @param term
+     *            the term, must have an id
+     * @param value
+     *            the value of the term
+     * @return false if the term has no id and hence has not been added
+     */
+    public boolean add(Term term, float value) {
+        if (term.getId() == null) {
+            return false;
+        }
+        long termId = term.getId();
+        int slot = findSlot(termId);
+        if (slots[slot] != 0) {
+            values[slots[slot] - 1] = value;
+            return true;
+        }
+        if (size == termIds.length) {
+            int capacity = size * 2;
+            termIds = Arrays.copyOf(termIds, capacity);
+            values = Arrays.copyOf(values, capacity);
+            terms = Arrays.copyOf(terms, capacity);
+        }
+        termIds[size] = termId;
+        values[size] = value;
+        terms[size] = term;
+        size++;
+        slots[slot] = size;
+        // keep the load factor below 0.5
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Remove all entries, the allocated arrays will be kept.
+     */
+    public void clear() {
+        // release the terms for the gc
+        Arrays.fill(terms, 0, size, null);
+        Arrays.fill(slots, 0);
+        size = 0;
+    }
+
+    private int findSlot(long termId) {
+        int slot = hash(termId) & mask;
+        while (slots[slot] != 0 && termIds[slots[slot] - 1] != termId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    public Term getTerm(int index) {
+        return terms[index];
+    }
+
+    public long getTermId(int index) {
+        return termIds[index];
+    }
+
+    public float getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     *
+     * @param termId
+     *            the id of the term
+     * @return the index of the term or -1 if the vector does not contain the term
+     */
+    public int indexOf(long termId) {
+        return slots[findSlot(termId)] - 1;
+    }
+
+    private void rehash(int numberOfSlots) {
+        slots = new int[numberOfSlots];
+        mask = numberOfSlots - 1;
+        for (int i = 0; i < size; i++) {
+            slots[findSlot(termIds[i])] = i + 1;
+        }
+    }
+
+    public void setValue(int index, float value) {
+        values[index] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,322 @@
+package de.spektrumprojekt.i.term.similarity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
+import de.spektrumprojekt.i.term.weight.TermWeightComputer;
+import de.spektrumprojekt.i.timebased.MergeValuesStrategy;
+
+/**
+ * Computes the cosinus, average or maximum similarity like
+ * {@link CosinusTermVectorSimilarityComputer}, {@link AverageTermVectorSimilarityComputer} and
+ * {@link MaximumTermVectorSimilarityComputer} but converts the message terms to a
+ * {@link SparseTermVector} indexed by term id and looks up the user model entries in it. Hence
+ * there is one pass over the entries without creating any objects and without iterating the
+ * message terms.
+ *
+ * The message vector, the weights of its terms and the sums of the weights are kept per thread
+ * and reused as long as the same terms collection (by identity) and message group are passed in,
+ * which is the case when computing the similarity for all users of one message. Therefore the
+ * passed terms collection must not be modified afterwards.
+ *
+ * If a message term has no id (e.g. it has not been persisted) the computation is delegated to the
+ * map based implementation of the strategy.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class SparseTermVectorSimilarityComputer extends TermWeightTermVectorSimilarityComputer {
+
+    /**
+     * The reusable state of the computations of one thread
+     */
+    private static class Workspace {
+
+        private final SparseTermVector messageVector = new SparseTermVector();
+        // identifies the message the vector has been created for
+        private Collection<Term> messageTerms;
+        private String messageGroupId;
+
+        private boolean weightSumsComputed;
+        private float weightSum;
+        private float weightSquareSum;
+
+        // the scores of all user models for the message terms, NaN if there is no entry
+        private float[] scores = new float[0];
+        private String[] userModelTypes = new String[0];
+        private final Map<String, Float> entryScores = new HashMap<String, Float>();
+        // the scores of entries for terms that are not part of the message
+        private final Map<Term, Map<String, Float>> otherTermScores = new LinkedHashMap<Term, Map<String, Float>>();
+
+        private float sumTop;
+        private float sumBottom;
+        private float squareSum1;
+        private float squareSum2;
+        private float max;
+
+        private void accumulate(float termWeight, float entryScore) {
+            float score = termWeight * entryScore;
+            sumTop += score;
+            sumBottom += termWeight;
+            squareSum1 += entryScore * entryScore;
+            squareSum2 += termWeight * termWeight;
+            max = Math.max(max, score);
+        }
+
+        private float getSimilarity(TermVectorSimilarityStrategy similarityStrategy) {
+            switch (similarityStrategy) {
+            case AVG:
+                return sumTop / sumBottom;
+            case MAX:
+                return max;
+            default:
+                if (squareSum1 * squareSum2 == 0) {
+                    return 0;
+                }
+                return (float) (sumTop / Math.sqrt(squareSum1 * squareSum2));
+            }
+        }
+
+        private void prepareScores(int numberOfUserModels) {
+            int length = numberOfUserModels * messageVector.size();
+            if (scores.length < length) {
+                scores = new float[length];
+            }
+            Arrays.fill(scores, 0, length, Float.NaN);
+            if (userModelTypes.length < numberOfUserModels) {
+                userModelTypes = new String[numberOfUserModels];
+            }
+            otherTermScores.clear();
+        }
+
+        private void reset() {
+            sumTop = 0;
+            sumBottom = 0;
+            squareSum1 = 0;
+            squareSum2 = 0;
+            max = 0;
+        }
+    }
+
+    private static float getEntryScore(UserModelEntry entry) {
+        return entry == null ? 0 : entry.getScoredTerm().getWeight();
+    }
+
+    private final TermVectorSimilarityStrategy similarityStrategy;
+
+    private final TermVectorSimilarityComputer mapBasedComputer;
+
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    public SparseTermVectorSimilarityComputer(TermWeightComputer termWeightComputer,
+            TermVectorSimilarityStrategy similarityStrategy,
+            boolean treatMissingUserModelEntriesAsZero) {
+        super(termWeightComputer, treatMissingUserModelEntriesAsZero);
+        if (similarityStrategy == null) {
+            throw new IllegalArgumentException("similarityStrategy cannot be null!");
+        }
+        this.similarityStrategy = similarityStrategy;
+        switch (similarityStrategy) {
+        case AVG:
+            mapBasedComputer = new AverageTermVectorSimilarityComputer(termWeightComputer,
+                    treatMissingUserModelEntriesAsZero);
+            break;
+        case MAX:
+            mapBasedComputer = new MaximumTermVectorSimilarityComputer(termWeightComputer);
+            break;
+        default:
+            mapBasedComputer = new CosinusTermVectorSimilarityComputer(termWeightComputer,
+                    treatMissingUserModelEntriesAsZero);
+            break;
+        }
+    }
+
+    private void computeWeightSums(Workspace workspace) {
+        if (workspace.weightSumsComputed) {
+            return;
+        }
+        float weightSum = 0;
+        float weightSquareSum = 0;
+        for (int i = 0; i < workspace.messageVector.size(); i++) {
+            float weight = getMessageTermWeight(workspace, i);
+            weightSum += weight;
+            weightSquareSum += weight * weight;
+        }
+        workspace.weightSum = weightSum;
+        workspace.weightSquareSum = weightSquareSum;
+        workspace.weightSumsComputed = true;
+    }
+
+    @Override
+    public String getConfigurationDescription() {
+        return super.getConfigurationDescription() + " similarityStrategy: "
+                + similarityStrategy;
+    }
+
+    /**
+     *
+     * @return the index of the term in the message vector or -1 if it is not a message term
+     */
+    private int getMessageTermIndex(SparseTermVector messageVector, Term term) {
+        return term.getId() == null ? -1 : messageVector.indexOf(term.getId());
+    }
+
+    private float getMessageTermWeight(Workspace workspace, int index) {
+        SparseTermVector messageVector = workspace.messageVector;
+        float weight = messageVector.getValue(index);
+        if (Float.isNaN(weight)) {
+            weight = getTermWeightComputer().determineTermWeight(workspace.messageGroupId,
+                    messageVector.getTerm(index));
+            messageVector.setValue(index, weight);
+        }
+        return weight;
+    }
+
+    /**
+     *
+     * @return the vector of the message terms or null if a term has no id
+     */
+    private SparseTermVector getMessageVector(Workspace workspace, String messageGroupId,
+            Collection<Term> terms) {
+        SparseTermVector messageVector = workspace.messageVector;
+        if (workspace.messageTerms == terms
+                && (messageGroupId == null ? workspace.messageGroupId == null : messageGroupId
+                        .equals(workspace.messageGroupId))) {
+            return messageVector;
+        }
+        workspace.messageTerms = null;
+        workspace.messageGroupId = messageGroupId;
+        workspace.weightSumsComputed = false;
+        messageVector.clear();
+        for (Term term : terms) {
+            // the weight will be determined on first access
+            if (!messageVector.add(term, Float.NaN)) {
+                return null;
+            }
+        }
+        workspace.messageTerms = terms;
+        return messageVector;
+    }
+
+    @Override
+    public Float getSimilarity(String messageGroupId,
+            Map<String, Map<Term, UserModelEntry>> allEntries, MergeValuesStrategy strategy,
+            Collection<Term> terms) {
+        Workspace workspace = workspaces.get();
+        SparseTermVector messageVector = getMessageVector(workspace, messageGroupId, terms);
+        if (messageVector == null) {
+            return mapBasedComputer.getSimilarity(messageGroupId, allEntries, strategy, terms);
+        }
+        int numberOfUserModels = allEntries.size();
+        int size = messageVector.size();
+        workspace.prepareScores(numberOfUserModels);
+        workspace.reset();
+
+        float[] scores = workspace.scores;
+        String[] userModelTypes = workspace.userModelTypes;
+        int u = 0;
+        for (Entry<String, Map<Term, UserModelEntry>> entries : allEntries.entrySet()) {
+            userModelTypes[u] = entries.getKey();
+            for (Entry<Term, UserModelEntry> entry : entries.getValue().entrySet()) {
+                int index = getMessageTermIndex(messageVector, entry.getKey());
+                if (index >= 0) {
+                    scores[u * size + index] = getEntryScore(entry.getValue());
+                } else {
+                    Map<String, Float> otherScores = workspace.otherTermScores.get(entry
+                            .getKey());
+                    if (otherScores == null) {
+                        otherScores = new HashMap<String, Float>();
+                        workspace.otherTermScores.put(entry.getKey(), otherScores);
+                    }
+                    otherScores.put(entries.getKey(), getEntryScore(entry.getValue()));
+                }
+            }
+            u++;
+        }
+
+        // the maximum always iterates the message terms, the others only if missing entries
+        // count as zero and otherwise the terms of the entries
+        boolean iterateMessageTerms = similarityStrategy == TermVectorSimilarityStrategy.MAX
+                || isTreatMissingUserModelEntriesAsZero();
+        boolean addZeroScores = similarityStrategy != TermVectorSimilarityStrategy.MAX
+                && isTreatMissingUserModelEntriesAsZero();
+        Map<String, Float> entryScores = workspace.entryScores;
+        for (int i = 0; i < size; i++) {
+            boolean hasEntry = false;
+            entryScores.clear();
+            for (u = 0; u < numberOfUserModels; u++) {
+                float score = scores[u * size + i];
+                if (!Float.isNaN(score)) {
+                    entryScores.put(userModelTypes[u], score);
+                    hasEntry = true;
+                } else if (addZeroScores) {
+                    entryScores.put(userModelTypes[u], 0f);
+                }
+            }
+            if (iterateMessageTerms || hasEntry) {
+                workspace.accumulate(getMessageTermWeight(workspace, i),
+                        strategy.merge(entryScores));
+            }
+        }
+        if (!iterateMessageTerms) {
+            for (Entry<Term, Map<String, Float>> otherTerm : workspace.otherTermScores.entrySet()) {
+                workspace.accumulate(
+                        getTermWeightComputer().determineTermWeight(messageGroupId,
+                                otherTerm.getKey()), strategy.merge(otherTerm.getValue()));
+            }
+        }
+        workspace.otherTermScores.clear();
+        return workspace.getSimilarity(similarityStrategy);
+    }
+
+    @Override
+    public float getSimilarity(String messageGroupId, Map<Term, UserModelEntry> relevantEntries,
+            Collection<Term> terms) {
+        Workspace workspace = workspaces.get();
+        SparseTermVector messageVector = getMessageVector(workspace, messageGroupId, terms);
+        if (messageVector == null) {
+            return mapBasedComputer.getSimilarity(messageGroupId, relevantEntries, terms);
+        }
+        workspace.reset();
+
+        // the maximum always iterates the entries, the others only if missing entries do not
+        // count as zero and otherwise the message terms
+        boolean iterateMessageTerms = similarityStrategy != TermVectorSimilarityStrategy.MAX
+                && isTreatMissingUserModelEntriesAsZero();
+        for (Entry<Term, UserModelEntry> entry : relevantEntries.entrySet()) {
+            int index = getMessageTermIndex(messageVector, entry.getKey());
+            if (index >= 0) {
+                workspace.accumulate(getMessageTermWeight(workspace, index),
+                        getEntryScore(entry.getValue()));
+            } else if (!iterateMessageTerms) {
+                workspace.accumulate(
+                        getTermWeightComputer().determineTermWeight(messageGroupId,
+                                entry.getKey()), getEntryScore(entry.getValue()));
+            }
+        }
+        if (iterateMessageTerms) {
+            // every message term counts, the ones without entry with a score of zero
+            computeWeightSums(workspace);
+            workspace.sumBottom = workspace.weightSum;
+            workspace.squareSum2 = workspace.weightSquareSum;
+        }
+        return workspace.getSimilarity(similarityStrategy);
+    }
+
+    public TermVectorSimilarityStrategy getSimilarityStrategy() {
+        return similarityStrategy;
+    }
+
+}
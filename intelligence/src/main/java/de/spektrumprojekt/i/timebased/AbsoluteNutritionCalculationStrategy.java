@@ -10,11 +10,11 @@ public class AbsoluteNutritionCalculationStrategy implements NutritionCalculatio
 
     @Override
     public float[] getNutrition(UserModelEntry entry, Persistence persistence) {
-        Collection<UserModelEntryTimeBin> timeBinEntries = entry.getTimeBinEntries();
+        Collection<UserModelEntryTimeBin> timeBinEntries = entry.getTimeBinEntriesSorted();
         float[] result = new float[timeBinEntries.size()];
         int i = 0;
         for (UserModelEntryTimeBin bin : timeBinEntries) {
-            result[i] = bin.getScoreSum();
+            result[i++] = bin.getScoreSum();
         }
         return result;
     }
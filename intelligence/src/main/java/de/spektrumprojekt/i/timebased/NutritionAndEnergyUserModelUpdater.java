@@ -1,14 +1,22 @@
 package de.spektrumprojekt.i.timebased;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.spektrumprojekt.commons.task.NamedThreadFactory;
 import de.spektrumprojekt.datamodel.user.UserModel;
 import de.spektrumprojekt.datamodel.user.UserModelEntry;
 import de.spektrumprojekt.i.ranker.RankerConfiguration;
@@ -21,6 +29,8 @@ public class NutritionAndEnergyUserModelUpdater {
     private static final Logger LOGGER = LoggerFactory
             .getLogger(NutritionAndEnergyUserModelUpdater.class);
 
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
     private final ShortTermMemoryConfiguration shortTermMemoryConfiguration;
 
     private final Persistence persistence;
@@ -41,11 +51,42 @@ public class NutritionAndEnergyUserModelUpdater {
 
     private final int nutritionHistoryLength;
 
+    private final int energyHistoryLength;
+
+    // the weights of the nutrition of the current and the previous bins for the weighted average
+    private final float[] averageWeights;
+
+    private final int pageSize;
+
+    private final int threadPoolSize;
+
+    private final ExecutorService executorService;
+
     NutritionCalculationStrategy strategy;
 
     public NutritionAndEnergyUserModelUpdater(Persistence persistence,
             RankerConfiguration configuration) {
-        super();
+        this(persistence, configuration, DEFAULT_PAGE_SIZE, 1);
+    }
+
+    /**
+     * 
+     * @param persistence
+     *            the persistence
+     * @param configuration
+     *            the configuration
+     * @param pageSize
+     *            the number of user models to load, update and store at once
+     * @param threadPoolSize
+     *            the number of threads to update the user models of a page in parallel. 1 or less
+     *            will update them one after another on the calling thread.
+     */
+    public NutritionAndEnergyUserModelUpdater(Persistence persistence,
+            RankerConfiguration configuration, int pageSize, int threadPoolSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1. pageSize="
+                    + pageSize);
+        }
         this.rankerConfiguration = configuration;
         this.persistence = persistence;
         this.userModelTypes = new HashMap<String, UserModelConfiguration>();
@@ -61,6 +102,20 @@ public class NutritionAndEnergyUserModelUpdater {
         G = shortTermMemoryConfiguration.getEnergyCalculationConfiguration().getG();
         nutritionHistoryLength = shortTermMemoryConfiguration.getEnergyCalculationConfiguration()
                 .getNutritionHistLength();
+        energyHistoryLength = shortTermMemoryConfiguration.getEnergyCalculationConfiguration()
+                .getEnergyHistoryLength();
+        averageWeights = new float[Math.max(0, nutritionHistoryLength) + 1];
+        for (int i = 0; i < averageWeights.length; i++) {
+            averageWeights[i] = (float) Math.pow(2, -i - 1);
+        }
+        this.pageSize = pageSize;
+        this.threadPoolSize = Math.max(1, threadPoolSize);
+        if (this.threadPoolSize > 1) {
+            this.executorService = Executors.newFixedThreadPool(this.threadPoolSize,
+                    new NamedThreadFactory(this.getClass().getSimpleName(), true));
+        } else {
+            this.executorService = null;
+        }
         switch (shortTermMemoryConfiguration.getEnergyCalculationConfiguration().getStrategy()) {
         case RELATIVE:
             strategy = new RelativeNutritionCalculationStrategy();
@@ -71,6 +126,35 @@ public class NutritionAndEnergyUserModelUpdater {
         }
     }
 
+    /**
+     * Stops the threads used for updating the user models in parallel. Afterwards the updater
+     * cannot be used anymore if running in parallel mode.
+     */
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    float getEnergy(float[] nutrition) {
+        int length = nutrition.length - 1;
+        float averageSquared = weightedAverage(nutrition);
+        averageSquared *= averageSquared;
+        float energy = 0;
+        for (int histNutrIndex = length - energyHistoryLength; histNutrIndex < length;
+                histNutrIndex++) {
+            float historicalNutrition;
+            if (histNutrIndex < 0) {
+                historicalNutrition = 0;
+            } else {
+                historicalNutrition = nutrition[histNutrIndex];
+            }
+            energy += (averageSquared - historicalNutrition * historicalNutrition)
+                    / (length - histNutrIndex);
+        }
+        return energy;
+    }
+
     public boolean itsTimeToCalculateModels(Date date) {
         if (firstBinStartTime == null) {
             firstBinStartTime = date;
@@ -99,51 +183,93 @@ public class NutritionAndEnergyUserModelUpdater {
                 .isCalculateLater() : false;
     }
 
+    private void updateEntries(Collection<UserModelEntry> entries) {
+        for (UserModelEntry entry : entries) {
+            float[] nutrition = strategy.getNutrition(entry, persistence);
+            float currentNutrition = nutrition[nutrition.length - 1];
+            float energy = getEnergy(nutrition);
+            float weight = (float) (G / (1 + d * Math.exp(-k * G * currentNutrition * energy)));
+            entry.getScoredTerm().setWeight(weight);
+        }
+    }
+
+    /**
+     * Update the entries of the user models of a page, in parallel if there is a thread pool.
+     * Returns after all of them have been updated.
+     * 
+     * @param userModelsAndEntries
+     *            the user models and their entries
+     */
+    private void updatePage(Map<UserModel, Collection<UserModelEntry>> userModelsAndEntries) {
+        if (executorService == null) {
+            for (Collection<UserModelEntry> entries : userModelsAndEntries.values()) {
+                updateEntries(entries);
+            }
+            return;
+        }
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(
+                userModelsAndEntries.size());
+        for (final Collection<UserModelEntry> entries : userModelsAndEntries.values()) {
+            tasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    updateEntries(entries);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Object> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while updating the user models", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Updates the weights of the entries of the user models. The user models are loaded, updated
+     * and stored page by page, so only the entries of one page are in memory at once.
+     */
     public void updateUserModels() {
         LOGGER.debug("Starting to update UserModels");
         for (String userModelType : userModelTypes.keySet()) {
-            Map<UserModel, Collection<UserModelEntry>> userModelsAndEntries = persistence
-                    .getAllUserModelEntries(userModelType);
-            for (UserModel userModel : userModelsAndEntries.keySet()) {
-                LOGGER.debug("working on modeltype {}", userModel.getUserModelType());
-                Collection<UserModelEntry> entries = userModelsAndEntries.get(userModel);
-                for (UserModelEntry entry : entries) {
-                    float weight = 0;
-                    float[] nutrition = strategy.getNutrition(entry, persistence);
-                    int length = nutrition.length - 1;
-                    float currentNutrition = nutrition[length];
-                    float energy = 0;
-                    for (int histNutrIndex = length
-                            - shortTermMemoryConfiguration.getEnergyCalculationConfiguration()
-                                    .getEnergyHistoryLength(); histNutrIndex < length; histNutrIndex++) {
-                        float historicalNutrition;
-                        if (histNutrIndex < 0) {
-                            historicalNutrition = 0;
-                        } else {
-                            historicalNutrition = nutrition[histNutrIndex];
-                        }
-                        energy += (Math.pow(weightedAverage(nutrition, nutritionHistoryLength), 2) - Math
-                                .pow(historicalNutrition, 2)) / (length - histNutrIndex);
-                    }
-                    weight = (float) (G / (1 + d
-                            * Math.pow(Math.E, -k * G * currentNutrition * energy)));
-                    entry.getScoredTerm().setWeight(weight);
+            LOGGER.debug("working on modeltype {}", userModelType);
+            String lastUserGlobalId = null;
+            int userModelCount = 0;
+            Map<UserModel, Collection<UserModelEntry>> userModelsAndEntries;
+            do {
+                userModelsAndEntries = persistence.getUserModelEntries(userModelType,
+                        lastUserGlobalId, pageSize);
+                if (userModelsAndEntries.isEmpty()) {
+                    break;
                 }
-                persistence.storeOrUpdateUserModelEntries(userModel, entries);
-            }
+                updatePage(userModelsAndEntries);
+                persistence.storeOrUpdateUserModelEntries(userModelsAndEntries);
+                for (UserModel userModel : userModelsAndEntries.keySet()) {
+                    lastUserGlobalId = userModel.getUser().getGlobalId();
+                }
+                userModelCount += userModelsAndEntries.size();
+            } while (userModelsAndEntries.size() >= pageSize);
+            LOGGER.debug("Updated {} user models of type {}", userModelCount, userModelType);
         }
         LOGGER.debug("Finished updating UserModels");
     }
 
-    private float weightedAverage(float[] nutrition, int nutritionHistoryLength2) {
-        float result = 0;
+    private float weightedAverage(float[] nutrition) {
         int currentBin = nutrition.length - 1;
-        result = nutrition[currentBin];
+        float result = nutrition[currentBin];
         if (nutritionHistoryLength > 0) {
             int binsToUse = Math.min(currentBin, nutritionHistoryLength);
             for (int i = 0; i <= binsToUse; i++) {
-                result += (float) Math.pow(2, -i - 1) * nutrition[currentBin - i];
-
+                result += averageWeights[i] * nutrition[currentBin - i];
             }
         }
         return result;
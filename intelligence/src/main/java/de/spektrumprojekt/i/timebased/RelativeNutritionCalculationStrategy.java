@@ -34,7 +34,7 @@ public class RelativeNutritionCalculationStrategy implements NutritionCalculatio
         Map<Term, UserModelEntry> globalUserModelEntries = persistence.getUserModelEntriesForTerms(
                 userModel, terms);
         UserModelEntry globalUserModelEntry = globalUserModelEntries.get(term);
-        Collection<UserModelEntryTimeBin> userTimeBinEntries = entry.getTimeBinEntries();
+        Collection<UserModelEntryTimeBin> userTimeBinEntries = entry.getTimeBinEntriesSorted();
         float[] result = new float[userTimeBinEntries.size()];
         int i = 0;
         for (UserModelEntryTimeBin userbin : userTimeBinEntries) {
@@ -0,0 +1,398 @@
+package de.spektrumprojekt.i.user.hits;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+
+/**
+ * <p>
+ * The mention graph of a message group and the HITS scores of its users. The edges are weighted by
+ * the number of mentions of the {@link UserSimilarity} and are updated incrementally. For the
+ * computation the edges are kept as compressed sparse rows (CSR) of the in and out edges over int
+ * user indexes, which are rebuilt if the edges changed.
+ * </p>
+ * <p>
+ * The power iteration starts from the scores of the previous computation, so after a few changes
+ * it converges within a few iterations. As the HITS of JUNG, the scores of users without in or out
+ * edges are distributed uniformly to all users and the scores are normalized to a length of 1.
+ * Users without any edges have no scores.
+ * </p>
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class HITSGraph {
+
+    /**
+     * The scores of a computation. The scores are not changed by later computations, so they can
+     * be read while the graph is updated.
+     */
+    public static final class Scores {
+
+        private final Map<String, Integer> userIndexes;
+
+        private final double[] hubs;
+
+        private final double[] authorities;
+
+        private Scores(Map<String, Integer> userIndexes, double[] hubs, double[] authorities) {
+            this.userIndexes = userIndexes;
+            this.hubs = hubs;
+            this.authorities = authorities;
+        }
+
+        /**
+         *
+         * @param index
+         *            the index of the user, see {@link #getIndex(String)}
+         * @return the authority score of the user
+         */
+        public double getAuthority(int index) {
+            return authorities[index];
+        }
+
+        /**
+         *
+         * @param index
+         *            the index of the user, see {@link #getIndex(String)}
+         * @return the hub score of the user
+         */
+        public double getHub(int index) {
+            return hubs[index];
+        }
+
+        /**
+         *
+         * @param userGlobalId
+         *            the user
+         * @return the index of the user, -1 if the user has no scores
+         */
+        public int getIndex(String userGlobalId) {
+            Integer index = userIndexes.get(userGlobalId);
+            if (index == null || index >= hubs.length || Double.isNaN(hubs[index])) {
+                return -1;
+            }
+            return index;
+        }
+    }
+
+    private static final Scores NO_SCORES = new Scores(Collections.<String, Integer> emptyMap(),
+            new double[0], new double[0]);
+
+    private static long getEdgeKey(int from, int to) {
+        return (long) from << 32 | to;
+    }
+
+    private static void normalize(double[] scores) {
+        double sum = 0;
+        for (double score : scores) {
+            sum += score * score;
+        }
+        double norm = Math.sqrt(sum);
+        if (norm > 0) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= norm;
+            }
+        }
+    }
+
+    private final Map<String, Integer> userIndexes = new HashMap<String, Integer>();
+
+    private final List<String> userGlobalIds = new ArrayList<String>();
+
+    private boolean usersAdded;
+
+    // the edges, the index of an edge changes if another one is removed
+    private final Map<Long, Integer> edgeIndexes = new HashMap<Long, Integer>();
+
+    private int[] edgeFrom = new int[16];
+
+    private int[] edgeTo = new int[16];
+
+    private double[] edgeWeights = new double[16];
+
+    // the mark of the last synchronization the edge was part of
+    private int[] edgeMarks = new int[16];
+
+    private int edgeCount;
+
+    private int mark;
+
+    private boolean edgesChanged;
+
+    // the users with edges by compute index, and the compute index of the users
+    private int[] activeUsers;
+
+    private int[] computeIndexes;
+
+    private int[] outOffsets;
+
+    private int[] outTargets;
+
+    private double[] outWeights;
+
+    private int[] inOffsets;
+
+    private int[] inSources;
+
+    private double[] inWeights;
+
+    private volatile Scores scores = NO_SCORES;
+
+    private int addEdge(int from, int to, double weight) {
+        if (edgeCount == edgeFrom.length) {
+            int capacity = edgeCount * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+            edgeTo = Arrays.copyOf(edgeTo, capacity);
+            edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+            edgeMarks = Arrays.copyOf(edgeMarks, capacity);
+        }
+        int index = edgeCount++;
+        edgeFrom[index] = from;
+        edgeTo[index] = to;
+        edgeWeights[index] = weight;
+        edgeIndexes.put(getEdgeKey(from, to), index);
+        return index;
+    }
+
+    private void buildRows() {
+        int userCount = userGlobalIds.size();
+        int[] outDegrees = new int[userCount];
+        int[] inDegrees = new int[userCount];
+        for (int i = 0; i < edgeCount; i++) {
+            outDegrees[edgeFrom[i]]++;
+            inDegrees[edgeTo[i]]++;
+        }
+        computeIndexes = new int[userCount];
+        int activeCount = 0;
+        for (int user = 0; user < userCount; user++) {
+            if (outDegrees[user] + inDegrees[user] > 0) {
+                computeIndexes[user] = activeCount++;
+            } else {
+                computeIndexes[user] = -1;
+            }
+        }
+        activeUsers = new int[activeCount];
+        outOffsets = new int[activeCount + 1];
+        inOffsets = new int[activeCount + 1];
+        for (int user = 0; user < userCount; user++) {
+            int index = computeIndexes[user];
+            if (index >= 0) {
+                activeUsers[index] = user;
+                outOffsets[index + 1] = outOffsets[index] + outDegrees[user];
+                inOffsets[index + 1] = inOffsets[index] + inDegrees[user];
+            }
+        }
+        outTargets = new int[edgeCount];
+        outWeights = new double[edgeCount];
+        inSources = new int[edgeCount];
+        inWeights = new double[edgeCount];
+        int[] outPositions = Arrays.copyOf(outOffsets, activeCount);
+        int[] inPositions = Arrays.copyOf(inOffsets, activeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            int from = computeIndexes[edgeFrom[i]];
+            int to = computeIndexes[edgeTo[i]];
+            // as in JUNG a self mention counts as edge but does not add to the scores
+            double weight = from == to ? 0 : edgeWeights[i];
+            int outPosition = outPositions[from]++;
+            outTargets[outPosition] = to;
+            outWeights[outPosition] = weight;
+            int inPosition = inPositions[to]++;
+            inSources[inPosition] = from;
+            inWeights[inPosition] = weight;
+        }
+    }
+
+    /**
+     * Computes the scores if the edges changed since the last computation
+     *
+     * @param tolerance
+     *            the iteration stops if no score changed by more than the tolerance
+     * @param maxIterations
+     *            the maximum number of iterations
+     * @return the number of iterations, 0 if the edges did not change
+     */
+    public synchronized int compute(double tolerance, int maxIterations) {
+        if (!edgesChanged) {
+            return 0;
+        }
+        buildRows();
+        int n = activeUsers.length;
+        double[] hubs = new double[n];
+        double[] authorities = new double[n];
+        Scores previousScores = this.scores;
+        for (int i = 0; i < n; i++) {
+            int user = activeUsers[i];
+            if (user < previousScores.hubs.length && !Double.isNaN(previousScores.hubs[user])) {
+                hubs[i] = previousScores.hubs[user];
+                authorities[i] = previousScores.authorities[user];
+            } else {
+                hubs[i] = 1d / n;
+                authorities[i] = 1d / n;
+            }
+        }
+        normalize(hubs);
+        normalize(authorities);
+
+        double[] newHubs = new double[n];
+        double[] newAuthorities = new double[n];
+        int iterations = 0;
+        while (iterations < maxIterations) {
+            iterations++;
+            double hubPotential = 0;
+            double authorityPotential = 0;
+            for (int i = 0; i < n; i++) {
+                double authority = 0;
+                for (int j = inOffsets[i]; j < inOffsets[i + 1]; j++) {
+                    authority += hubs[inSources[j]] * inWeights[j];
+                }
+                if (inOffsets[i] == inOffsets[i + 1]) {
+                    authorityPotential += hubs[i];
+                }
+                double hub = 0;
+                for (int j = outOffsets[i]; j < outOffsets[i + 1]; j++) {
+                    hub += authorities[outTargets[j]] * outWeights[j];
+                }
+                if (outOffsets[i] == outOffsets[i + 1]) {
+                    hubPotential += authorities[i];
+                }
+                newHubs[i] = hub;
+                newAuthorities[i] = authority;
+            }
+            for (int i = 0; i < n; i++) {
+                newHubs[i] += hubPotential / n;
+                newAuthorities[i] += authorityPotential / n;
+            }
+            normalize(newHubs);
+            normalize(newAuthorities);
+            double maxChange = 0;
+            for (int i = 0; i < n; i++) {
+                maxChange = Math.max(maxChange, Math.max(Math.abs(newHubs[i] - hubs[i]),
+                        Math.abs(newAuthorities[i] - authorities[i])));
+            }
+            double[] swap = hubs;
+            hubs = newHubs;
+            newHubs = swap;
+            swap = authorities;
+            authorities = newAuthorities;
+            newAuthorities = swap;
+            if (maxChange < tolerance) {
+                break;
+            }
+        }
+
+        double[] userHubs = new double[userGlobalIds.size()];
+        double[] userAuthorities = new double[userGlobalIds.size()];
+        Arrays.fill(userHubs, Double.NaN);
+        Arrays.fill(userAuthorities, Double.NaN);
+        for (int i = 0; i < n; i++) {
+            userHubs[activeUsers[i]] = hubs[i];
+            userAuthorities[activeUsers[i]] = authorities[i];
+        }
+        Map<String, Integer> scoreUserIndexes = previousScores.userIndexes;
+        if (usersAdded) {
+            scoreUserIndexes = new HashMap<String, Integer>(userIndexes);
+            usersAdded = false;
+        }
+        this.scores = new Scores(scoreUserIndexes, userHubs, userAuthorities);
+        edgesChanged = false;
+        return iterations;
+    }
+
+    /**
+     *
+     * @return the number of edges
+     */
+    public synchronized int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     *
+     * @return the scores of the last computation
+     */
+    public Scores getScores() {
+        return scores;
+    }
+
+    private int getUserIndex(String userGlobalId) {
+        Integer index = userIndexes.get(userGlobalId);
+        if (index == null) {
+            index = userGlobalIds.size();
+            userGlobalIds.add(userGlobalId);
+            userIndexes.put(userGlobalId, index);
+            usersAdded = true;
+        }
+        return index;
+    }
+
+    private void removeEdge(int index) {
+        edgeIndexes.remove(getEdgeKey(edgeFrom[index], edgeTo[index]));
+        int last = --edgeCount;
+        if (index != last) {
+            edgeFrom[index] = edgeFrom[last];
+            edgeTo[index] = edgeTo[last];
+            edgeWeights[index] = edgeWeights[last];
+            edgeMarks[index] = edgeMarks[last];
+            edgeIndexes.put(getEdgeKey(edgeFrom[index], edgeTo[index]), index);
+        }
+    }
+
+    private void setEdge(UserSimilarity userSimilarity) {
+        int from = getUserIndex(userSimilarity.getUserGlobalIdFrom());
+        int to = getUserIndex(userSimilarity.getUserGlobalIdTo());
+        double weight = userSimilarity.getNumberOfMentions();
+        Integer index = edgeIndexes.get(getEdgeKey(from, to));
+        if (weight <= 0) {
+            if (index != null) {
+                removeEdge(index);
+                edgesChanged = true;
+            }
+            return;
+        }
+        if (index == null) {
+            index = addEdge(from, to, weight);
+            edgesChanged = true;
+        } else if (edgeWeights[index] != weight) {
+            edgeWeights[index] = weight;
+            edgesChanged = true;
+        }
+        edgeMarks[index] = mark;
+    }
+
+    /**
+     * Sets the edges to the given similarities, edges of other similarities are removed
+     *
+     * @param userSimilarities
+     *            all similarities of the message group
+     */
+    public synchronized void synchronize(Collection<UserSimilarity> userSimilarities) {
+        mark++;
+        for (UserSimilarity userSimilarity : userSimilarities) {
+            setEdge(userSimilarity);
+        }
+        for (int i = edgeCount - 1; i >= 0; i--) {
+            if (edgeMarks[i] != mark) {
+                removeEdge(i);
+                edgesChanged = true;
+            }
+        }
+    }
+
+    /**
+     * Updates the edges of the given similarities, a similarity without mentions removes the edge
+     *
+     * @param changedUserSimilarities
+     *            the similarities of the message group that changed
+     */
+    public synchronized void update(Collection<UserSimilarity> changedUserSimilarities) {
+        for (UserSimilarity userSimilarity : changedUserSimilarities) {
+            setEdge(userSimilarity);
+        }
+    }
+}
@@ -4,96 +4,165 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
-import org.apache.commons.collections15.Transformer;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import de.spektrumprojekt.commons.computer.Computer;
+import de.spektrumprojekt.commons.task.NamedThreadFactory;
 import de.spektrumprojekt.datamodel.message.MessageGroup;
 import de.spektrumprojekt.datamodel.user.UserSimilarity;
 import de.spektrumprojekt.i.user.UserScore;
 import de.spektrumprojekt.persistence.Persistence;
-import edu.uci.ics.jung.algorithms.scoring.HITS;
-import edu.uci.ics.jung.algorithms.scoring.HITS.Scores;
-import edu.uci.ics.jung.graph.DirectedSparseGraph;
-import edu.uci.ics.jung.graph.util.EdgeType;
 
+/**
+ * Computes the HITS scores of the users of each message group based on the mentions of the
+ * {@link UserSimilarity}s. The {@link HITSGraph} of a message group is kept between the runs,
+ * only updated with the changed similarities and the scores are only recomputed for message
+ * groups with changes, starting from the previous scores.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
 public class HITSUserMentionComputer implements Computer {
 
-    public class PerMessageGroupStruct {
-
-        // the vertex is the user global id
-        public DirectedSparseGraph<String, UserSimilarity> graph;
-        // the vertex is the user global id
-        public HITS<String, UserSimilarity> pageRank;
-    }
-
     public enum ScoreToUse {
         HUB,
         AUTHORITY;
     }
 
-    private Map<String, PerMessageGroupStruct> graphs =
-            new HashMap<String, HITSUserMentionComputer.PerMessageGroupStruct>();
+    public static final double DEFAULT_TOLERANCE = 0.001;
+
+    public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+    private final Map<String, HITSGraph> graphs = new ConcurrentHashMap<String, HITSGraph>();
 
     private final Persistence persistence;
 
     private final ScoreToUse scoreToUse;
 
+    private final double tolerance;
+
+    private final int maxIterations;
+
+    private final ExecutorService executorService;
+
     public HITSUserMentionComputer(Persistence persistence, ScoreToUse scoreToUse) {
+        this(persistence, scoreToUse, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS, 1);
+    }
+
+    /**
+     *
+     * @param persistence
+     *            the persistence to get the message groups and similarities from
+     * @param scoreToUse
+     *            the score to use as interest
+     * @param tolerance
+     *            the iteration stops if no score changed by more than the tolerance
+     * @param maxIterations
+     *            the maximum number of iterations
+     * @param threadPoolSize
+     *            the number of threads to compute the scores of the message groups in parallel. 1
+     *            or less to compute them in the calling thread.
+     */
+    public HITSUserMentionComputer(Persistence persistence, ScoreToUse scoreToUse,
+            double tolerance, int maxIterations, int threadPoolSize) {
         if (persistence == null) {
             throw new IllegalArgumentException("persistence cannot be null.");
         }
         if (scoreToUse == null) {
             throw new IllegalArgumentException("scoreToUse cannot be null.");
         }
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("maxIterations must be at least 1. maxIterations="
+                    + maxIterations);
+        }
         this.persistence = persistence;
         this.scoreToUse = scoreToUse;
+        this.tolerance = tolerance;
+        this.maxIterations = maxIterations;
+        if (threadPoolSize > 1) {
+            this.executorService = Executors.newFixedThreadPool(threadPoolSize,
+                    new NamedThreadFactory(this.getClass().getSimpleName(), true));
+        } else {
+            this.executorService = null;
+        }
     }
 
-    private void computeHITS(PerMessageGroupStruct struct) {
-        Transformer<UserSimilarity, Double> transformer = new Transformer<UserSimilarity, Double>() {
-
-            @Override
-            public Double transform(UserSimilarity input) {
-                return (double) input.getNumberOfMentions();
-            }
-        };
-        struct.pageRank = new HITS<String, UserSimilarity>(struct.graph, transformer,
-                0);
-
-        struct.pageRank.evaluate();
+    /**
+     * Stops the threads used for computing the scores in parallel. Afterwards the computer cannot
+     * be used anymore if running in parallel mode.
+     */
+    public void close() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
     }
 
-    private void createGraph(
-            PerMessageGroupStruct perMessageGroupStruct, MessageGroup messageGroup) {
-        perMessageGroupStruct.graph = new DirectedSparseGraph<String, UserSimilarity>();
-
-        Collection<UserSimilarity> similarities = this.persistence.getUserSimilarities(messageGroup
-                .getGlobalId());
-
-        for (UserSimilarity userSim : similarities) {
-
-            perMessageGroupStruct.graph.addEdge(userSim, userSim.getUserGlobalIdFrom(),
-                    userSim.getUserGlobalIdTo(), EdgeType.DIRECTED);
-
+    /**
+     * Run the tasks, in parallel if there is a thread pool. Returns after all of them have been
+     * run.
+     *
+     * @param tasks
+     *            the tasks
+     */
+    private void execute(List<Callable<Object>> tasks) {
+        if (executorService == null) {
+            for (Callable<Object> task : tasks) {
+                try {
+                    task.call();
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return;
+        }
+        try {
+            for (Future<Object> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing the HITS scores", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
     }
 
     @Override
     public String getConfigurationDescription() {
-        return this.getClass().getSimpleName();
+        return this.getClass().getSimpleName() + " scoreToUse: " + scoreToUse + " tolerance: "
+                + tolerance + " maxIterations: " + maxIterations;
+    }
+
+    private synchronized HITSGraph getGraph(String messageGroupGlobalId) {
+        HITSGraph graph = graphs.get(messageGroupGlobalId);
+        if (graph == null) {
+            graph = new HITSGraph();
+            graphs.put(messageGroupGlobalId, graph);
+        }
+        return graph;
     }
 
-    private double getScore(Scores hitsScores) {
+    private double getScore(HITSGraph.Scores hitsScores, int index) {
         double score;
         switch (scoreToUse) {
         case AUTHORITY:
-            score = hitsScores.authority;
+            score = hitsScores.getAuthority(index);
             break;
         case HUB:
-            score = hitsScores.hub;
+            score = hitsScores.getHub(index);
             break;
         default:
             throw new IllegalStateException("Unknown scoreToUse: " + scoreToUse);
@@ -104,22 +173,20 @@ public class HITSUserMentionComputer implements Computer {
     public List<UserScore> getUserToUserInterest(String messageGroupGlobalId,
             Collection<String> userGlobalIdsToConsider) {
 
-        PerMessageGroupStruct struct = this.graphs.get(messageGroupGlobalId);
-        if (struct == null) {
+        HITSGraph graph = this.graphs.get(messageGroupGlobalId);
+        if (graph == null) {
             return Collections.emptyList();
         }
+        HITSGraph.Scores hitsScores = graph.getScores();
 
         List<UserScore> scores = new ArrayList<UserScore>(userGlobalIdsToConsider.size());
-        users: for (String userGlobalIdToConsider : userGlobalIdsToConsider) {
-
-            if (!struct.graph.containsVertex(userGlobalIdToConsider)) {
-                continue users;
+        for (String userGlobalIdToConsider : userGlobalIdsToConsider) {
+            int index = hitsScores.getIndex(userGlobalIdToConsider);
+            if (index < 0) {
+                continue;
             }
-            Scores hitsScores = struct.pageRank.getVertexScore(userGlobalIdToConsider);
-            if (hitsScores == null) {
-                continue users;
-            }
-            UserScore userScore = new UserScore(userGlobalIdToConsider, getScore(hitsScores));
+            UserScore userScore = new UserScore(userGlobalIdToConsider, getScore(hitsScores,
+                    index));
             scores.add(userScore);
         }
         return scores;
@@ -128,27 +195,68 @@ public class HITSUserMentionComputer implements Computer {
 
     /**
      * This should run periodically and only works if the UserSimilarityComputer runs
-     * (incrementally)
+     * (incrementally). The graphs are synchronized with the similarities of the persistence and
+     * the scores recomputed for the message groups whose similarities changed.
      */
     @Override
     public void run() throws Exception {
-        graphs.clear();
         Collection<MessageGroup> messageGroups = this.persistence.getAllMessageGroups();
+        Set<String> messageGroupGlobalIds = new HashSet<String>();
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(messageGroups.size());
         for (MessageGroup mg : messageGroups) {
-            PerMessageGroupStruct struct = runForMessageGroup(mg);
-
-            this.graphs.put(mg.getGlobalId(), struct);
-
+            final String messageGroupGlobalId = mg.getGlobalId();
+            final HITSGraph graph = getGraph(messageGroupGlobalId);
+            messageGroupGlobalIds.add(messageGroupGlobalId);
+            tasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    graph.synchronize(persistence.getUserSimilarities(messageGroupGlobalId));
+                    graph.compute(tolerance, maxIterations);
+                    return null;
+                }
+            });
         }
-
+        graphs.keySet().retainAll(messageGroupGlobalIds);
+        execute(tasks);
     }
 
-    private PerMessageGroupStruct runForMessageGroup(MessageGroup mg) {
-
-        PerMessageGroupStruct perMessageGroupStruct = new PerMessageGroupStruct();
-        createGraph(perMessageGroupStruct, mg);
-        computeHITS(perMessageGroupStruct);
-        return perMessageGroupStruct;
+    /**
+     * Updates the graphs with the changed similarities, for example the ones stored by the
+     * UserSimilarityComputer, and recomputes the scores of the affected message groups. Cheaper
+     * than {@link #run()} as the similarities are not loaded from the persistence.
+     *
+     * @param changedUserSimilarities
+     *            the similarities that changed, a similarity without mentions removes the edge
+     */
+    public void update(Collection<UserSimilarity> changedUserSimilarities) {
+        Map<String, List<UserSimilarity>> similaritiesByMessageGroup = new HashMap<String, List<UserSimilarity>>();
+        for (UserSimilarity userSimilarity : changedUserSimilarities) {
+            List<UserSimilarity> similarities = similaritiesByMessageGroup.get(userSimilarity
+                    .getMessageGroupGlobalId());
+            if (similarities == null) {
+                similarities = new ArrayList<UserSimilarity>();
+                similaritiesByMessageGroup.put(userSimilarity.getMessageGroupGlobalId(),
+                        similarities);
+            }
+            similarities.add(userSimilarity);
+        }
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(
+                similaritiesByMessageGroup.size());
+        for (Map.Entry<String, List<UserSimilarity>> entry : similaritiesByMessageGroup
+                .entrySet()) {
+            final HITSGraph graph = getGraph(entry.getKey());
+            final List<UserSimilarity> similarities = entry.getValue();
+            tasks.add(new Callable<Object>() {
+
+                @Override
+                public Object call() throws Exception {
+                    graph.update(similarities);
+                    graph.compute(tolerance, maxIterations);
+                    return null;
+                }
+            });
+        }
+        execute(tasks);
     }
-
 }
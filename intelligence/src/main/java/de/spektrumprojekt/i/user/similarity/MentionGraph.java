@@ -0,0 +1,452 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.user.similarity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import de.spektrumprojekt.i.user.similarity.UserSimilarityComputer.UserSimilaritySimType;
+import de.spektrumprojekt.persistence.Persistence;
+
+/**
+ * <p>
+ * Counts the mentions between users per message group within a sliding window and keeps the
+ * {@link UserSimilarity} of every pair of users and message group up to date. The users and
+ * message groups are mapped to indexes, the mentions of a user are kept in a hash map keyed by
+ * the indexes of the message group and the mentioned user, and the number of mentions from and to
+ * a user are counted when mentions are added or expire.
+ * </p>
+ * <p>
+ * Mentions expire in the order they have been added, hence they should be added in the order of
+ * their time. A changed mention count changes the similarities of all mentions of the user and
+ * of the reverse mention, {@link #getChangedSimilarities()} recomputes them and returns those
+ * which actually changed since they have been returned the last time.
+ * </p>
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class MentionGraph {
+
+    /**
+     * The mentions of a user of another user within a message group
+     */
+    private static final class Edge {
+
+        private final int to;
+
+        private final int messageGroup;
+
+        private final UserSimilarity similarity;
+
+        // the values returned by getChangedSimilarities the last time, -1 if not returned yet
+        private int storedMentions = -1;
+
+        private double storedSimilarity = -1;
+
+        public Edge(int to, int messageGroup, UserSimilarity similarity) {
+            this.to = to;
+            this.messageGroup = messageGroup;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * The edges of a user by message group and mentioned user, an open addressing hash map with
+     * linear probing on the primitive keys
+     */
+    private static final class Edges {
+
+        private static int hash(long key) {
+            int hash = (int) (key ^ key >>> 32) * 0x9E3779B9;
+            return hash ^ hash >>> 16;
+        }
+
+        private static long key(int messageGroup, int to) {
+            return (long) messageGroup << 32 | to & 0xFFFFFFFFL;
+        }
+
+        private long[] keys = new long[8];
+
+        private Edge[] edges = new Edge[8];
+
+        private int size;
+
+        private int findSlot(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (edges[slot] != null && keys[slot] != key) {
+                slot = slot + 1 & mask;
+            }
+            return slot;
+        }
+
+        public Edge get(int messageGroup, int to) {
+            return edges[findSlot(key(messageGroup, to))];
+        }
+
+        public void put(Edge edge) {
+            long key = key(edge.messageGroup, edge.to);
+            int slot = findSlot(key);
+            if (edges[slot] == null) {
+                size++;
+            }
+            keys[slot] = key;
+            edges[slot] = edge;
+            // keep the load factor below 0.5
+            if (size * 2 > keys.length) {
+                long[] oldKeys = keys;
+                Edge[] oldEdges = edges;
+                keys = new long[oldKeys.length * 2];
+                edges = new Edge[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldEdges[i] != null) {
+                        int newSlot = findSlot(oldKeys[i]);
+                        keys[newSlot] = oldKeys[i];
+                        edges[newSlot] = oldEdges[i];
+                    }
+                }
+            }
+        }
+
+        public void remove(Edge edge) {
+            int mask = keys.length - 1;
+            int slot = findSlot(key(edge.messageGroup, edge.to));
+            if (edges[slot] == null) {
+                return;
+            }
+            edges[slot] = null;
+            size--;
+            // move the following entries of the cluster back which cannot be found anymore
+            int next = slot + 1 & mask;
+            while (edges[next] != null) {
+                int home = hash(keys[next]) & mask;
+                if ((next - home & mask) >= (next - slot & mask)) {
+                    keys[slot] = keys[next];
+                    edges[slot] = edges[next];
+                    edges[next] = null;
+                    slot = next;
+                }
+                next = next + 1 & mask;
+            }
+        }
+    }
+
+    private final UserSimilaritySimType userSimilaritySimType;
+
+    private final Map<String, Integer> userIndexes = new HashMap<String, Integer>();
+    private final List<String> userGlobalIds = new ArrayList<String>();
+
+    private final Map<String, Integer> messageGroupIndexes = new HashMap<String, Integer>();
+    private final List<String> messageGroupGlobalIds = new ArrayList<String>();
+
+    // by user index
+    private Edges[] edgesByUser = new Edges[16];
+    private int[] mentionsFrom = new int[16];
+    private int[] mentionsTo = new int[16];
+
+    // the mentions in the order they have been added, a ring buffer
+    private long[] mentionTimes = new long[64];
+    private int[] mentionFrom = new int[64];
+    private Edge[] mentionEdges = new Edge[64];
+    private int firstMention;
+    private int mentionCount;
+
+    // the users whose mentions have changed since getChangedSimilarities was called the last time
+    private final BitSet changedUsers = new BitSet();
+
+    /**
+     *
+     * @param userSimilaritySimType
+     *            how to compute the similarity from the mention counts
+     */
+    public MentionGraph(UserSimilaritySimType userSimilaritySimType) {
+        if (userSimilaritySimType == null) {
+            throw new IllegalArgumentException("userSimilaritySimType cannot be null.");
+        }
+        this.userSimilaritySimType = userSimilaritySimType;
+    }
+
+    /**
+     * Adds a mention
+     *
+     * @param time
+     *            the time of the mention, usually the publication date of the message
+     * @param userGlobalIdFrom
+     *            the user mentioning
+     * @param userGlobalIdTo
+     *            the user mentioned
+     * @param messageGroupGlobalId
+     *            the message group of the message
+     * @param persistence
+     *            the persistence to get the stored similarity from if the users have no mentions
+     *            within the window yet, null to create a new similarity
+     */
+    public void addMention(long time, String userGlobalIdFrom, String userGlobalIdTo,
+            String messageGroupGlobalId, Persistence persistence) {
+        int from = getOrCreateUserIndex(userGlobalIdFrom);
+        int to = getOrCreateUserIndex(userGlobalIdTo);
+        Integer messageGroup = messageGroupIndexes.get(messageGroupGlobalId);
+        if (messageGroup == null) {
+            messageGroup = messageGroupGlobalIds.size();
+            messageGroupIndexes.put(messageGroupGlobalId, messageGroup);
+            messageGroupGlobalIds.add(messageGroupGlobalId);
+        }
+
+        Edges edges = edgesByUser[from];
+        if (edges == null) {
+            edges = new Edges();
+            edgesByUser[from] = edges;
+        }
+        Edge edge = edges.get(messageGroup, to);
+        if (edge == null) {
+            UserSimilarity similarity = persistence == null ? null : persistence
+                    .getUserSimilarity(userGlobalIdFrom, userGlobalIdTo, messageGroupGlobalId);
+            if (similarity == null) {
+                similarity = new UserSimilarity(userGlobalIdFrom, userGlobalIdTo,
+                        messageGroupGlobalId);
+            }
+            similarity.setNumberOfMentions(0);
+            edge = new Edge(to, messageGroup, similarity);
+            edges.put(edge);
+        }
+
+        if (mentionCount == mentionTimes.length) {
+            int capacity = mentionCount * 2;
+            long[] times = new long[capacity];
+            int[] froms = new int[capacity];
+            Edge[] mentionedEdges = new Edge[capacity];
+            for (int i = 0; i < mentionCount; i++) {
+                int index = (firstMention + i) % mentionCount;
+                times[i] = mentionTimes[index];
+                froms[i] = mentionFrom[index];
+                mentionedEdges[i] = mentionEdges[index];
+            }
+            mentionTimes = times;
+            mentionFrom = froms;
+            mentionEdges = mentionedEdges;
+            firstMention = 0;
+        }
+        int index = (firstMention + mentionCount) % mentionTimes.length;
+        mentionTimes[index] = time;
+        mentionFrom[index] = from;
+        mentionEdges[index] = edge;
+        mentionCount++;
+
+        updateMentionCount(from, edge, 1);
+    }
+
+    /**
+     * Removes all mentions and users
+     */
+    public void clear() {
+        userIndexes.clear();
+        userGlobalIds.clear();
+        messageGroupIndexes.clear();
+        messageGroupGlobalIds.clear();
+        Arrays.fill(edgesByUser, null);
+        Arrays.fill(mentionsFrom, 0);
+        Arrays.fill(mentionsTo, 0);
+        Arrays.fill(mentionEdges, null);
+        firstMention = 0;
+        mentionCount = 0;
+        changedUsers.clear();
+    }
+
+    /**
+     * Removes the mentions before the given time
+     *
+     * @param minTime
+     *            the time of the oldest mention to keep
+     */
+    public void expire(long minTime) {
+        while (mentionCount > 0 && mentionTimes[firstMention] < minTime) {
+            updateMentionCount(mentionFrom[firstMention], mentionEdges[firstMention], -1);
+            mentionEdges[firstMention] = null;
+            firstMention = (firstMention + 1) % mentionTimes.length;
+            mentionCount--;
+        }
+    }
+
+    /**
+     * Recomputes the similarities of the users whose mentions have changed and returns those
+     * similarities which have changed since they have been returned the last time. Similarities
+     * without mentions left are returned once with 0 mentions and are removed afterwards.
+     *
+     * @return the changed similarities
+     */
+    public Collection<UserSimilarity> getChangedSimilarities() {
+        List<UserSimilarity> changedSimilarities = new ArrayList<UserSimilarity>();
+        for (int user = changedUsers.nextSetBit(0); user >= 0; user = changedUsers
+                .nextSetBit(user + 1)) {
+            Edges edges = edgesByUser[user];
+            if (edges == null) {
+                continue;
+            }
+            List<Edge> edgesWithoutMentions = null;
+            for (Edge edge : edges.edges) {
+                if (edge == null) {
+                    continue;
+                }
+                UserSimilarity similarity = edge.similarity;
+                updateSimilarity(user, edge);
+                if (similarity.getNumberOfMentions() != edge.storedMentions
+                        || similarity.getSimilarity() != edge.storedSimilarity) {
+                    edge.storedMentions = similarity.getNumberOfMentions();
+                    edge.storedSimilarity = similarity.getSimilarity();
+                    changedSimilarities.add(similarity);
+                }
+                if (similarity.getNumberOfMentions() == 0) {
+                    if (edgesWithoutMentions == null) {
+                        edgesWithoutMentions = new ArrayList<Edge>();
+                    }
+                    edgesWithoutMentions.add(edge);
+                }
+            }
+            if (edgesWithoutMentions != null) {
+                for (Edge edge : edgesWithoutMentions) {
+                    edges.remove(edge);
+                }
+            }
+        }
+        changedUsers.clear();
+        return changedSimilarities;
+    }
+
+    /**
+     *
+     * @param userGlobalIdFrom
+     *            the user mentioning
+     * @param userGlobalIdTo
+     *            the user mentioned
+     * @param messageGroupGlobalId
+     *            the message group
+     * @return the number of mentions within the window
+     */
+    public int getMentionCount(String userGlobalIdFrom, String userGlobalIdTo,
+            String messageGroupGlobalId) {
+        Integer from = userIndexes.get(userGlobalIdFrom);
+        Integer to = userIndexes.get(userGlobalIdTo);
+        Integer messageGroup = messageGroupIndexes.get(messageGroupGlobalId);
+        if (from == null || to == null || messageGroup == null || edgesByUser[from] == null) {
+            return 0;
+        }
+        Edge edge = edgesByUser[from].get(messageGroup, to);
+        return edge == null ? 0 : edge.similarity.getNumberOfMentions();
+    }
+
+    /**
+     *
+     * @param userGlobalId
+     *            the user
+     * @return the number of mentions of the user of other users within the window
+     */
+    public int getMentionsFrom(String userGlobalId) {
+        Integer user = userIndexes.get(userGlobalId);
+        return user == null ? 0 : mentionsFrom[user];
+    }
+
+    /**
+     *
+     * @param userGlobalId
+     *            the user
+     * @return the number of mentions of other users of the user within the window
+     */
+    public int getMentionsTo(String userGlobalId) {
+        Integer user = userIndexes.get(userGlobalId);
+        return user == null ? 0 : mentionsTo[user];
+    }
+
+    private int getOrCreateUserIndex(String userGlobalId) {
+        Integer user = userIndexes.get(userGlobalId);
+        if (user == null) {
+            user = userGlobalIds.size();
+            userIndexes.put(userGlobalId, user);
+            userGlobalIds.add(userGlobalId);
+            if (user == edgesByUser.length) {
+                edgesByUser = Arrays.copyOf(edgesByUser, user * 2);
+                mentionsFrom = Arrays.copyOf(mentionsFrom, user * 2);
+                mentionsTo = Arrays.copyOf(mentionsTo, user * 2);
+            }
+        }
+        return user;
+    }
+
+    /**
+     *
+     * @return the similarities of all users with mentions within the window, as computed by the
+     *         last call of {@link #getChangedSimilarities()}
+     */
+    public Collection<UserSimilarity> getSimilarities() {
+        List<UserSimilarity> similarities = new ArrayList<UserSimilarity>();
+        for (int user = 0; user < userGlobalIds.size(); user++) {
+            if (edgesByUser[user] != null) {
+                for (Edge edge : edgesByUser[user].edges) {
+                    if (edge != null) {
+                        similarities.add(edge.similarity);
+                    }
+                }
+            }
+        }
+        return similarities;
+    }
+
+    private void updateMentionCount(int from, Edge edge, int delta) {
+        UserSimilarity similarity = edge.similarity;
+        similarity.setNumberOfMentions(similarity.getNumberOfMentions() + delta);
+        mentionsFrom[from] += delta;
+        mentionsTo[edge.to] += delta;
+        // the count of the user changes all its similarities, the ratio the reverse similarity
+        changedUsers.set(from);
+        changedUsers.set(edge.to);
+    }
+
+    private void updateSimilarity(int from, Edge edge) {
+        UserSimilarity similarity = edge.similarity;
+        similarity.setSimilarity(0);
+        if (mentionsFrom[from] == 0) {
+            return;
+        }
+        switch (userSimilaritySimType) {
+        case VOODOO:
+            Edges reverseEdges = edgesByUser[edge.to];
+            Edge reverseEdge = reverseEdges == null ? null : reverseEdges.get(edge.messageGroup,
+                    from);
+            UserSimilarity reverse = reverseEdge == null ? new UserSimilarity(
+                    similarity.getUserGlobalIdTo(), similarity.getUserGlobalIdFrom(),
+                    similarity.getMessageGroupGlobalId()) : reverseEdge.similarity;
+            similarity.consolidate(reverse, mentionsFrom[from], mentionsTo[edge.to]);
+            break;
+        case FROM_PERCENTAGE:
+            similarity.setSimilarity(similarity.getNumberOfMentions()
+                    / (100d * mentionsFrom[from]));
+            break;
+        default:
+            throw new IllegalStateException("unknown userSimilaritySimType="
+                    + userSimilaritySimType);
+        }
+    }
+}
@@ -19,11 +19,11 @@
 
 package de.spektrumprojekt.i.user.similarity;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,10 +34,20 @@ import de.spektrumprojekt.configuration.ConfigurationDescriptable;
 import de.spektrumprojekt.datamodel.message.Message;
 import de.spektrumprojekt.datamodel.message.MessageFilter;
 import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePublicationDateComperator;
 import de.spektrumprojekt.datamodel.user.UserSimilarity;
 import de.spektrumprojekt.helper.MessageHelper;
 import de.spektrumprojekt.persistence.Persistence;
 
+/**
+ * Computes the similarities of users from their mentions within the last month. The mentions are
+ * counted by a {@link MentionGraph}, which is initialized from the messages of the last month on
+ * the first run. Afterwards the mentions of every message are added to it, mentions older than a
+ * month expire and only the changed similarities are stored.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
 public class UserSimilarityComputer implements ConfigurationDescriptable, Computer {
 
     public enum UserSimilaritySimType {
@@ -47,22 +57,20 @@ public class UserSimilarityComputer implements ConfigurationDescriptable, Comput
 
     private final static Logger LOGGER = LoggerFactory.getLogger(UserSimilarityComputer.class);
 
-    private static final long MONTH = 28 * 24 * 3600;
+    private static final long MONTH = 28 * 24 * 3600 * 1000L;
 
     private long intervall = MONTH;
 
     private final Persistence persistence;
 
-    private Map<String, Integer> overallMentionsPerUserFrom = new HashMap<String, Integer>();
+    private final MentionGraph mentionGraph;
 
-    private Map<String, Integer> overallMentionsPerUserTo = new HashMap<String, Integer>();
+    private boolean initialized;
 
     private final boolean holdComputedSimilarites;
 
     private Collection<UserSimilarity> userSimilarities;
 
-    private final UserSimilaritySimType userSimilaritySimType;
-
     public UserSimilarityComputer(Persistence persistence,
             UserSimilaritySimType userSimilaritySimType) {
         this(persistence, userSimilaritySimType, false);
@@ -83,8 +91,38 @@ public class UserSimilarityComputer implements ConfigurationDescriptable, Comput
             throw new IllegalArgumentException("userSimilaritySimType cannot be null.");
         }
         this.persistence = persistence;
-        this.userSimilaritySimType = userSimilaritySimType;
         this.holdComputedSimilarites = holdComputedSimilarites;
+        this.mentionGraph = new MentionGraph(userSimilaritySimType);
+    }
+
+    /**
+     * Adds the mentions of the message to the mention graph
+     * 
+     * @param message
+     *            the message
+     * @param lookupStoredSimilarities
+     *            true to get the stored similarity of users without mentions within the window
+     *            yet, false if all stored similarities will be replaced
+     */
+    private void addMentions(Message message, boolean lookupStoredSimilarities) {
+        if (message.getMessageGroup() == null) {
+            // the similarities are computed per message group
+            return;
+        }
+        Collection<String> mentionUserGlobalIds = MessageHelper.getMentions(message);
+
+        String messageGroupGlobalId = message.getMessageGroup().getGlobalId();
+        String userGlobalIdFrom = message.getAuthorGlobalId();
+        long time = message.getPublicationDate() != null ? message.getPublicationDate().getTime()
+                : TimeProviderHolder.DEFAULT.getCurrentTime();
+
+        to: for (String userGlobalIdTo : mentionUserGlobalIds) {
+            if (userGlobalIdFrom.equals(userGlobalIdTo)) {
+                break to;
+            }
+            mentionGraph.addMention(time, userGlobalIdFrom, userGlobalIdTo, messageGroupGlobalId,
+                    lookupStoredSimilarities ? persistence : null);
+        }
     }
 
     @Override
@@ -100,176 +138,82 @@ public class UserSimilarityComputer implements ConfigurationDescriptable, Comput
         return userSimilarities;
     }
 
-    @Override
-    public void run() {
-
-        overallMentionsPerUserFrom.clear();
-        overallMentionsPerUserTo.clear();
-
-        Map<String, UserSimilarity> similarities = new HashMap<String, UserSimilarity>();
-
-        // 1st get a list of all users
-        // skipped
-
-        // 2nd get a list of all topics
-        Collection<MessageGroup> messageGroups = persistence.getAllMessageGroups();
-
-        // 3rd init user sim matrix
-        // skipped
+    /**
+     * Fills the mention graph with the mentions of the messages within the window and replaces
+     * all stored similarities with the computed ones
+     * 
+     * @param messageToSkip
+     *            a message not to add, because it will be added afterwards, can be null
+     * @param now
+     *            the current time
+     */
+    private void initialize(Message messageToSkip, long now) {
+        mentionGraph.clear();
 
-        // 4th iterate over message of last month (or whatever)
-        long now = TimeProviderHolder.DEFAULT.getCurrentTime();
         Date goingBack = new Date(now - intervall);
-        for (MessageGroup messageGroup : messageGroups) {
-
+        List<Message> messages = new ArrayList<Message>();
+        for (MessageGroup messageGroup : persistence.getAllMessageGroups()) {
             MessageFilter messageFilter = new MessageFilter();
             messageFilter.setMessageGroupGlobalId(messageGroup.getGlobalId());
             messageFilter.setMinPublicationDate(goingBack);
-
-            // some iteration ?
-            Collection<Message> messages = persistence.getMessages(messageFilter);
-
-            for (Message message : messages) {
-                updateUserSimilarities(similarities, message);
-            }
+            messages.addAll(persistence.getMessages(messageFilter));
         }
-
-        for (UserSimilarity stat : similarities.values()) {
-            String userGlobalIdFrom = stat.getUserGlobalIdFrom();
-            String userGlobalIdTo = stat.getUserGlobalIdTo();
-
-            updateOverallCounts(userGlobalIdFrom, userGlobalIdTo);
-        }
-
-        // 5th compute similarity, topic based!
-        for (UserSimilarity stat : similarities.values()) {
-            UserSimilarity reverse = similarities.get(UserSimilarity.getKey(
-                    stat.getUserGlobalIdTo(), stat.getUserGlobalIdFrom(),
-                    stat.getMessageGroupGlobalId()));
-            if (reverse == null) {
-                reverse = new UserSimilarity(stat.getUserGlobalIdTo(), stat.getUserGlobalIdFrom(),
-                        stat.getMessageGroupGlobalId());
+        // the mentions expire in the order they have been added
+        Collections.sort(messages, MessagePublicationDateComperator.INSTANCE);
+        for (Message message : messages) {
+            if (messageToSkip == null
+                    || !messageToSkip.getGlobalId().equals(message.getGlobalId())) {
+                addMentions(message, false);
             }
-            stat.consolidate(reverse, overallMentionsPerUserFrom.get(stat.getUserGlobalIdFrom()),
-                    overallMentionsPerUserTo.get(stat.getUserGlobalIdTo()));
-        }
-        Collection<UserSimilarity> userSimilarities = new HashSet<UserSimilarity>(
-                similarities.values());
-        persistence.deleteAndCreateUserSimilarities(userSimilarities);
-
-        if (this.holdComputedSimilarites) {
-            this.userSimilarities = userSimilarities;
         }
+        mentionGraph.expire(now - intervall);
 
+        Collection<UserSimilarity> similarities = mentionGraph.getChangedSimilarities();
+        persistence.deleteAndCreateUserSimilarities(similarities);
+        initialized = true;
+        LOGGER.debug("Initialized the user similarities from {} messages, {} similarities",
+                messages.size(), similarities.size());
     }
 
-    public void runForMessage(Message message) {
-        Collection<String> mentionUserGlobalIds = MessageHelper.getMentions(message);
-
-        String messageGroupGlobalId = message.getMessageGroup() != null ? message.getMessageGroup()
-                .getGlobalId() : null;
-        String userGlobalIdFrom = message.getAuthorGlobalId();
-
-        to: for (String userGlobalIdTo : mentionUserGlobalIds) {
-            if (userGlobalIdFrom.equals(userGlobalIdTo)) {
-                break to;
-            }
-            switch (userSimilaritySimType) {
-            case VOODOO:
-                updateSimilarityVoodoo(messageGroupGlobalId, userGlobalIdFrom, userGlobalIdTo);
-                break;
-            case FROM_PERCENTAGE:
-                updateSimilarityFromPercentage(messageGroupGlobalId, userGlobalIdFrom,
-                        userGlobalIdTo);
-                break;
-            default:
-                throw new IllegalStateException("unknown userSimilaritySimType="
-                        + this.userSimilaritySimType);
-            }
-        }
-    }
-
-    private void updateOverallCounts(String userGlobalIdFrom, String userGlobalIdTo) {
-        Integer from = overallMentionsPerUserFrom.get(userGlobalIdFrom);
-        if (from == null) {
-            from = 0;
-        }
-        from++;
-        overallMentionsPerUserFrom.put(userGlobalIdFrom, from);
-
-        Integer to = overallMentionsPerUserFrom.get(userGlobalIdTo);
-        if (to == null) {
-            to = 0;
+    /**
+     * Initializes the similarities from the messages of the last month on the first run,
+     * afterwards expires the mentions older than a month and stores the changed similarities.
+     */
+    @Override
+    public synchronized void run() {
+        long now = TimeProviderHolder.DEFAULT.getCurrentTime();
+        if (initialized) {
+            mentionGraph.expire(now - intervall);
+            storeChangedSimilarities();
+        } else {
+            initialize(null, now);
         }
-        to++;
-        overallMentionsPerUserTo.put(userGlobalIdTo, to);
-    }
 
-    private void updateSimilarityFromPercentage(String messageGroupGlobalId,
-            String userGlobalIdFrom,
-            String userGlobalIdTo) {
-        UserSimilarity stat = this.persistence.getUserSimilarity(userGlobalIdFrom,
-                userGlobalIdTo, messageGroupGlobalId);
-        if (stat == null) {
-            stat = new UserSimilarity(userGlobalIdFrom, userGlobalIdTo,
-                    messageGroupGlobalId);
+        if (this.holdComputedSimilarites) {
+            this.userSimilarities = mentionGraph.getSimilarities();
         }
-        stat.incrementNumberOfMentions();
-
-        updateOverallCounts(userGlobalIdFrom, userGlobalIdTo);
-
-        stat.setSimilarity(stat.getNumberOfMentions()
-                / (100d * overallMentionsPerUserFrom.get(userGlobalIdFrom)));
-
-        this.persistence.storeUserSimilarity(stat);
     }
 
-    private void updateSimilarityVoodoo(String messageGroupGlobalId, String userGlobalIdFrom,
-            String userGlobalIdTo) {
-        UserSimilarity stat = this.persistence.getUserSimilarity(userGlobalIdFrom,
-                userGlobalIdTo, messageGroupGlobalId);
-        UserSimilarity reverse = this.persistence.getUserSimilarity(userGlobalIdTo,
-                userGlobalIdFrom, messageGroupGlobalId);
-        if (stat == null) {
-            stat = new UserSimilarity(userGlobalIdFrom, userGlobalIdTo,
-                    messageGroupGlobalId);
-        }
-        if (reverse == null) {
-            reverse = new UserSimilarity(userGlobalIdTo, userGlobalIdFrom,
-                    messageGroupGlobalId);
+    /**
+     * Adds the mentions of the message and stores the changed similarities
+     * 
+     * @param message
+     *            the message
+     */
+    public synchronized void runForMessage(Message message) {
+        long now = TimeProviderHolder.DEFAULT.getCurrentTime();
+        if (!initialized) {
+            initialize(message, now);
         }
-        stat.incrementNumberOfMentions();
-
-        updateOverallCounts(userGlobalIdFrom, userGlobalIdTo);
-
-        stat.consolidate(reverse, overallMentionsPerUserFrom.get(stat.getUserGlobalIdFrom()),
-                overallMentionsPerUserTo.get(stat.getUserGlobalIdTo()));
-
-        this.persistence.storeUserSimilarity(stat);
-        this.persistence.storeUserSimilarity(reverse);
+        addMentions(message, true);
+        mentionGraph.expire(now - intervall);
+        storeChangedSimilarities();
     }
 
-    private void updateUserSimilarities(Map<String, UserSimilarity> similarities,
-            Message message) {
-        Collection<String> mentionUserGlobalIds = MessageHelper.getMentions(message);
-
-        String messageGroupId = message.getMessageGroup() != null ? message.getMessageGroup()
-                .getGlobalId() : null;
-        String from = message.getAuthorGlobalId();
-
-        to: for (String to : mentionUserGlobalIds) {
-            if (from.equals(to)) {
-                break to;
-            }
-            String key = UserSimilarity.getKey(from, to,
-                    messageGroupId);
-            UserSimilarity stat = similarities.get(key);
-            if (stat == null) {
-                stat = new UserSimilarity(from, to, messageGroupId);
-                similarities.put(stat.getKey(), stat);
-            }
-            stat.incrementNumberOfMentions();
+    private void storeChangedSimilarities() {
+        Collection<UserSimilarity> changedSimilarities = mentionGraph.getChangedSimilarities();
+        if (!changedSimilarities.isEmpty()) {
+            persistence.storeUserSimilarities(changedSimilarities);
         }
-
     }
 }
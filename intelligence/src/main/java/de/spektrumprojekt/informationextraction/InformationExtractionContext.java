@@ -34,6 +34,8 @@ public class InformationExtractionContext {
 
     private String cleanText;
 
+    private String language;
+
     private final Persistence persistence;
 
     private List<MessageRelation> detectedMessageRelations = new ArrayList<MessageRelation>();
@@ -76,6 +78,14 @@ public class InformationExtractionContext {
         return message;
     }
 
+    /**
+     * 
+     * @return the language detected for the text of the message part, null if not detected yet
+     */
+    public String getLanguage() {
+        return language;
+    }
+
     public MessagePart getMessagePart() {
         return messagePart;
     }
@@ -96,6 +106,10 @@ public class InformationExtractionContext {
         this.detectedMessageRelations = detectedMessageRelations;
     }
 
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
     public void setMessagePatterns(List<String> messagePatterns) {
         this.messagePatterns = messagePatterns;
     }
@@ -2,9 +2,8 @@ package de.spektrumprojekt.informationextraction.extractors;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.collections.Bag;
-import org.apache.commons.collections.bag.HashBag;
 import org.apache.commons.lang3.StringUtils;
 
 import de.spektrumprojekt.commons.chain.Command;
@@ -27,34 +26,32 @@ public abstract class AbstractTokenExtractorCommand implements
         this.minimumTermLength = minimumTermLength;
     }
 
-    protected void addTokensToMessagePart(InformationExtractionContext context, List<String> tokens) {
-        Bag tokenBag = new HashBag(tokens);
+    protected void addTokensToMessagePart(InformationExtractionContext context,
+            TermCounter tokens) {
         String tokenPrefix = getTokenPrefix(context);
-        int highestCount = BagHelper.getHighestCount(tokenBag);
-        for (Object tokenObj : tokenBag) {
-            String token = (String) tokenObj;
+        int highestCount = tokens.getHighestCount();
+        List<String> termValues = new ArrayList<String>();
+        List<Float> frequencies = new ArrayList<Float>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.getTerm(i);
             if (token.length() < minimumTermLength) {
                 continue;
             }
-            float frequency = (float) tokenBag.getCount(token) / highestCount;
-            token = tokenPrefix + token;
-            context.getMessagePart().addScoredTerm(
-                    new ScoredTerm(context.getPersistence().getOrCreateTerm(
-                            Term.TermCategory.TERM,
-                            token),
-                            frequency));
-        }
-    }
-
-    protected List<String> cleanTokens(List<String> tokens) {
-        List<String> cleanTokens = new ArrayList<String>();
-        for (String token : tokens) {
-            if (token.length() < 2) {
-                continue;
+            float frequency = (float) tokens.getCount(i) / highestCount;
+            String termValue = tokenPrefix + token;
+            // a scored term is added for each occurrence of the token
+            for (int j = 0; j < tokens.getCount(i); j++) {
+                frequencies.add(frequency);
+                termValues.add(termValue);
             }
-            cleanTokens.add(token);
         }
-        return cleanTokens;
+        // get all terms of the message at once
+        Map<String, Term> terms = context.getPersistence().getOrCreateTerms(
+                Term.TermCategory.TERM, termValues);
+        for (int i = 0; i < termValues.size(); i++) {
+            context.getMessagePart().addScoredTerm(
+                    new ScoredTerm(terms.get(termValues.get(i)), frequencies.get(i)));
+        }
     }
 
     @Override
@@ -85,24 +82,4 @@ public abstract class AbstractTokenExtractorCommand implements
     @Override
     public abstract void process(InformationExtractionContext context);
 
-    protected List<String> removeStopwords(String language, List<String> tokens) {
-        List<String> ret = new ArrayList<String>();
-        for (String token : tokens) {
-            if (!ExtractionUtils.isStopword(language, token.toLowerCase())) {
-                ret.add(token);
-            }
-        }
-        return ret;
-    }
-
-    protected List<String> tokenizeAndRemoveStopwords(InformationExtractionContext context) {
-        String language = LanguageDetectorCommand.getAnnotatedLanguage(context.getMessage());
-
-        String text = context.getCleanText();
-        List<String> tokens = ExtractionUtils.tokenize(text);
-        tokens = removeStopwords(language, tokens);
-
-        return tokens;
-    }
-
 }
@@ -1,7 +1,5 @@
 package de.spektrumprojekt.informationextraction.extractors;
 
-import java.util.List;
-
 import org.apache.commons.lang3.StringUtils;
 
 import de.spektrumprojekt.informationextraction.InformationExtractionContext;
@@ -34,15 +32,17 @@ public class CharNGramsExtractorCommand extends AbstractTokenExtractorCommand {
         if (StringUtils.isEmpty(text)) {
             return;
         }
-        List<String> tokens;
 
         if (removeStopwords) {
-            tokens = this.tokenizeAndRemoveStopwords(context);
-            text = StringUtils.join(tokens, " ");
+            String language = LanguageDetectorCommand.getAnnotatedLanguage(context);
+            text = ExtractionUtils.removeStopwords(language, text);
         }
 
-        tokens = ExtractionUtils.createCharNGrams(text, nGramsLength);
-        tokens = cleanTokens(tokens);
+        TermCounter tokens = new TermCounter();
+        // n-grams of less than two chars are not used
+        if (nGramsLength >= 2) {
+            ExtractionUtils.countCharNGrams(text, nGramsLength, tokens);
+        }
 
         this.addTokensToMessagePart(context, tokens);
     }
@@ -26,10 +26,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import opennlp.tools.tokenize.SimpleTokenizer;
@@ -63,19 +62,185 @@ public final class ExtractionUtils {
             .compile("(?i)\\b((?:[a-z][\\w-]+:(?:/{1,3}|[a-z0-9%])|www\\d{0,3}[.]|[a-z0-9.\\-]+[.][a-z]{2,4}/)(?:[^\\s()<>]+|\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\))+(?:\\(([^\\s()<>]+|(\\([^\\s()<>]+\\)))*\\)|[^\\s`!()\\[\\]{};:'\".,<>?Â«Â»â€œâ€�â€˜â€™]))");
 
     /** Stopwords for English langugage. */
-    private static final Set<String> STOPWORDS_EN;
+    private static final TermCounter STOPWORDS_EN;
     /** Stopwords for German language. */
-    private static final Set<String> STOPWORDS_DE;
+    private static final TermCounter STOPWORDS_DE;
 
     static {
         try {
-            STOPWORDS_DE = new HashSet<String>(readLinesFromResource("/stopwords_de.txt"));
-            STOPWORDS_EN = new HashSet<String>(readLinesFromResource("/stopwords_en.txt"));
+            STOPWORDS_DE = createTermSet(readLinesFromResource("/stopwords_de.txt"));
+            STOPWORDS_EN = createTermSet(readLinesFromResource("/stopwords_en.txt"));
         } catch (IOException e) {
             throw new IllegalStateException("Could not load the stop word lists.");
         }
     }
 
+    /**
+     * The stemmers by language of the thread, a stemmer is not thread safe but can be reused.
+     * Contains null for languages without stemmer.
+     */
+    private static final ThreadLocal<Map<String, SnowballProgram>> STEMMERS = new ThreadLocal<Map<String, SnowballProgram>>() {
+        @Override
+        protected Map<String, SnowballProgram> initialValue() {
+            return new HashMap<String, SnowballProgram>();
+        }
+    };
+
+    /**
+     * Copies the token to the buffer and returns it, or a larger one if it does not fit
+     */
+    private static char[] copyToken(CharSequence text, int start, int end, char[] buffer) {
+        if (buffer.length < end - start) {
+            buffer = new char[(end - start) * 2];
+        }
+        for (int i = start; i < end; i++) {
+            buffer[i - start] = text.charAt(i);
+        }
+        return buffer;
+    }
+
+    /**
+     * <p>
+     * Count the character-based n-grams of the given length, same as
+     * {@link #createCharNGrams(String, int)} but without creating a list.
+     * </p>
+     * 
+     * @param text
+     *            The text for which to count the n-grams, not <code>null</code>.
+     * @param length
+     *            The length of the n-grams to count, greater or equal one.
+     * @param counter
+     *            The counter to add the n-grams to.
+     */
+    public static void countCharNGrams(CharSequence text, int length, TermCounter counter) {
+        Validate.isTrue(length >= 1, "length must be greater or equal 1");
+        Validate.notNull(text, "text must not be null");
+        Validate.notNull(counter, "counter must not be null");
+
+        char[] chars = copyToken(text, 0, text.length(), new char[text.length()]);
+        for (int i = 0; i <= chars.length - length; i++) {
+            counter.add(chars, i, length);
+        }
+    }
+
+    /**
+     * <p>
+     * Count the stemmed tokens of the text which are no stopwords and consist of at least two
+     * letters, digits or dots (ASCII only). The result is the same as the one of
+     * {@link #tokenize(String)}, removing the stopwords with {@link #isStopword(String, String)}
+     * and {@link #stem(String, List)}, but no string is created for tokens which have already
+     * been counted.
+     * </p>
+     * 
+     * @param language
+     *            The language of the text.
+     * @param text
+     *            The text, not <code>null</code>.
+     * @param counter
+     *            The counter to add the stemmed tokens to.
+     */
+    public static void countStemmedTokens(String language, CharSequence text,
+            TermCounter counter) {
+        Validate.notEmpty(language, "language must not be empty");
+        Validate.notNull(text, "text must not be null");
+        Validate.notNull(counter, "counter must not be null");
+
+        TermCounter stopwords = getStopwords(language);
+        SnowballProgram stemmer = getStemmer(language);
+        char[] token = new char[32];
+        char[] lowerCaseToken = new char[32];
+        TextTokenizer tokenizer = new TextTokenizer(text);
+        while (tokenizer.next()) {
+            int length = tokenizer.getEnd() - tokenizer.getStart();
+            if (lowerCaseToken.length < length) {
+                lowerCaseToken = new char[length * 2];
+            }
+            if (isStopword(stopwords, text, tokenizer.getStart(), tokenizer.getEnd(),
+                    lowerCaseToken)) {
+                continue;
+            }
+            token = copyToken(text, tokenizer.getStart(), tokenizer.getEnd(), token);
+            char[] stemmedToken = token;
+            int stemmedLength = length;
+            if (stemmer != null) {
+                // the stemmer works on the buffer of the token, or a larger one if needed
+                stemmer.setCurrent(token, length);
+                stemmer.stem();
+                stemmedToken = stemmer.getCurrentBuffer();
+                stemmedLength = stemmer.getCurrentBufferLength();
+            }
+            if (stemmedLength >= 2 && isTokenCharacters(stemmedToken, stemmedLength)) {
+                counter.add(stemmedToken, 0, stemmedLength);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Count the word n-grams of the given length of the tokens of the text which are no stopwords.
+     * The result is the same as the one of {@link #tokenize(String)}, removing the stopwords with
+     * {@link #isStopword(String, String)} and {@link #createNGrams(List, int)}, without the
+     * intermediate lists.
+     * </p>
+     * 
+     * @param language
+     *            The language of the text.
+     * @param text
+     *            The text, not <code>null</code>.
+     * @param length
+     *            length of ngrams to consider
+     * @param counter
+     *            The counter to add the n-grams to.
+     */
+    public static void countWordNGrams(String language, CharSequence text, int length,
+            TermCounter counter) {
+        Validate.notNull(text, "text must not be null");
+        Validate.isTrue(length > 1, "length must be greater than 1");
+        Validate.notNull(counter, "counter must not be null");
+
+        TermCounter stopwords = getStopwords(language);
+        // the last tokens as ring buffer
+        int[] starts = new int[length];
+        int[] ends = new int[length];
+        int tokens = 0;
+        char[] nGram = new char[64];
+        char[] lowerCaseToken = new char[32];
+        TextTokenizer tokenizer = new TextTokenizer(text);
+        while (tokenizer.next()) {
+            int tokenLength = tokenizer.getEnd() - tokenizer.getStart();
+            if (lowerCaseToken.length < tokenLength) {
+                lowerCaseToken = new char[tokenLength * 2];
+            }
+            if (isStopword(stopwords, text, tokenizer.getStart(), tokenizer.getEnd(),
+                    lowerCaseToken)) {
+                continue;
+            }
+            starts[tokens % length] = tokenizer.getStart();
+            ends[tokens % length] = tokenizer.getEnd();
+            tokens++;
+            if (tokens < length) {
+                continue;
+            }
+            int nGramLength = length - 1;
+            for (int i = 0; i < length; i++) {
+                nGramLength += ends[i] - starts[i];
+            }
+            if (nGram.length < nGramLength) {
+                nGram = new char[nGramLength * 2];
+            }
+            int position = 0;
+            for (int i = tokens - length; i < tokens; i++) {
+                if (position > 0) {
+                    nGram[position++] = ' ';
+                }
+                for (int j = starts[i % length]; j < ends[i % length]; j++) {
+                    nGram[position++] = text.charAt(j);
+                }
+            }
+            counter.add(nGram, 0, nGramLength);
+        }
+    }
+
     /**
      * <p>
      * Create word n-grams of the given length.
@@ -154,13 +319,25 @@ public final class ExtractionUtils {
         return ret;
     }
 
+    private static TermCounter createTermSet(List<String> terms) {
+        TermCounter termSet = new TermCounter(terms.size());
+        for (String term : terms) {
+            termSet.add(term);
+        }
+        return termSet;
+    }
+
     /**
      * 
      * @param language
      *            the language
-     * @return the snowball stemmer
+     * @return the snowball stemmer of the thread for the language, null if there is none
      */
     private static SnowballProgram getStemmer(String language) {
+        Map<String, SnowballProgram> stemmers = STEMMERS.get();
+        if (stemmers.containsKey(language)) {
+            return stemmers.get(language);
+        }
         SnowballProgram stemmer;
         if (language.equals("de")) {
             stemmer = new GermanStemmer();
@@ -172,9 +349,26 @@ public final class ExtractionUtils {
             LOGGER.warn("no stemmer for language \"" + language + "\"");
             stemmer = null;
         }
+        stemmers.put(language, stemmer);
         return stemmer;
     }
 
+    /**
+     * 
+     * @param language
+     *            the language
+     * @return the stopwords of the language, null if there are none
+     */
+    private static TermCounter getStopwords(String language) {
+        if ("de".equals(language)) {
+            return STOPWORDS_DE;
+        }
+        if ("en".equals(language)) {
+            return STOPWORDS_EN;
+        }
+        return null;
+    }
+
     /**
      * TODO move to some generic helper class
      * 
@@ -207,6 +401,42 @@ public final class ExtractionUtils {
         }
     }
 
+    /**
+     * <p>
+     * Remove the stopwords from the text, same as {@link #tokenize(String)}, removing the
+     * stopwords with {@link #isStopword(String, String)} and joining the remaining tokens.
+     * </p>
+     * 
+     * @param language
+     *            The language of the text.
+     * @param text
+     *            The text, not <code>null</code>.
+     * @return The tokens of the text which are no stopwords, separated by a space.
+     */
+    public static String removeStopwords(String language, CharSequence text) {
+        Validate.notNull(text, "text must not be null");
+
+        TermCounter stopwords = getStopwords(language);
+        StringBuilder result = new StringBuilder(text.length());
+        char[] lowerCaseToken = new char[32];
+        TextTokenizer tokenizer = new TextTokenizer(text);
+        while (tokenizer.next()) {
+            int length = tokenizer.getEnd() - tokenizer.getStart();
+            if (lowerCaseToken.length < length) {
+                lowerCaseToken = new char[length * 2];
+            }
+            if (isStopword(stopwords, text, tokenizer.getStart(), tokenizer.getEnd(),
+                    lowerCaseToken)) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(text, tokenizer.getStart(), tokenizer.getEnd());
+        }
+        return result.toString();
+    }
+
     /**
      * Stem
      * 
@@ -290,15 +520,49 @@ public final class ExtractionUtils {
      * @return <code>true</code> if word is stopword, <code>false</code> otherwise.
      */
     public static boolean isStopword(String language, String word) {
-        Set<String> stopwords;
-        if (language.equals("de")) {
-            stopwords = STOPWORDS_DE;
-        } else if (language.equals("en")) {
-            stopwords = STOPWORDS_EN;
-        } else {
-            stopwords = Collections.emptySet();
+        TermCounter stopwords = getStopwords(language);
+        return stopwords != null && stopwords.indexOf(word.toLowerCase()) >= 0;
+    }
+
+    /**
+     * Check whether the token is one of the stopwords
+     * 
+     * @param stopwords
+     *            the stopwords, can be null
+     * @param text
+     *            the text containing the token
+     * @param start
+     *            the start of the token
+     * @param end
+     *            the end of the token
+     * @param buffer
+     *            the buffer for the lower case token, at least as long as the token
+     * @return true if the token is a stopword
+     */
+    private static boolean isStopword(TermCounter stopwords, CharSequence text, int start,
+            int end, char[] buffer) {
+        if (stopwords == null) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            buffer[i - start] = Character.toLowerCase(text.charAt(i));
+        }
+        return stopwords.indexOf(buffer, 0, end - start) >= 0;
+    }
+
+    /**
+     * 
+     * @return true if all chars are ASCII letters, digits or dots
+     */
+    private static boolean isTokenCharacters(char[] chars, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                    || c == '.')) {
+                return false;
+            }
         }
-        return stopwords.contains(word.toLowerCase());
+        return true;
     }
 
     /**
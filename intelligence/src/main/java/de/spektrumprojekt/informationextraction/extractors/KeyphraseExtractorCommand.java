@@ -21,6 +21,7 @@ package de.spektrumprojekt.informationextraction.extractors;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import org.apache.commons.collections.Bag;
@@ -58,6 +59,9 @@ public class KeyphraseExtractorCommand implements Command<InformationExtractionC
     /** The tag source provides a controlled vocabulary with terms to assign. */
     private final TagSource tagSource;
 
+    /** Index over the tags of the tag source, null if there is no tag source. */
+    private final TagVocabularyIndex tagIndex;
+
     /**
      * only if the subscription has a Property with this key and value true the Keyphrases will be
      * extracted
@@ -87,6 +91,7 @@ public class KeyphraseExtractorCommand implements Command<InformationExtractionC
      */
     public KeyphraseExtractorCommand(TagSource tagSource) {
         this.tagSource = tagSource;
+        this.tagIndex = tagSource == null ? null : new TagVocabularyIndex(SIMILARITY_THRESHOLD);
     }
 
     private KeyphraseCandidates createCandidates(String language, Bag nGramBag) {
@@ -161,23 +166,15 @@ public class KeyphraseExtractorCommand implements Command<InformationExtractionC
      * 
      * @param term
      *            The term to check.
-     * @return The value of the matched term from the vocabulary.
+     * @return The value of the most similar term from the vocabulary.
      */
     private String getFromVocabulary(String term) {
-        if (tagSource == null) {
+        if (tagIndex == null) {
             return null;
         }
-        String lowercaseTerm = term.toLowerCase();
-        for (Term currentTerm : tagSource.getTags()) {
-            String lowercaseCandidate = currentTerm.getValue().toLowerCase();
-            // XXX most likely, we have to consider the string's lengths here, and maybe have a
-            // special treatment for very short tags. But this needs to be determined empirically.
-            float sim = ExtractionUtils.getLevenshteinSimilarity(lowercaseCandidate, lowercaseTerm);
-            if (sim > SIMILARITY_THRESHOLD) {
-                return currentTerm.getValue();
-            }
-        }
-        return null;
+        // XXX most likely, we have to consider the string's lengths here, and maybe have a
+        // special treatment for very short tags. But this needs to be determined empirically.
+        return tagIndex.find(term);
     }
 
     @Override
@@ -201,7 +198,7 @@ public class KeyphraseExtractorCommand implements Command<InformationExtractionC
             return;
         }
 
-        String language = LanguageDetectorCommand.getAnnotatedLanguage(context.getMessage());
+        String language = LanguageDetectorCommand.getAnnotatedLanguage(context);
 
         String text = getCompleteText(context);
         if (StringUtils.isEmpty(text)) {
@@ -212,6 +209,10 @@ public class KeyphraseExtractorCommand implements Command<InformationExtractionC
         List<String> tokens = ExtractionUtils.tokenize(text);
         tokens = filterTokens(language, tokens);
 
+        if (tagIndex != null) {
+            tagIndex.update(tagSource.getVersion(), tagSource.getTags());
+        }
+
         List<String> nGrams = new ArrayList<String>();
         nGrams.addAll(tokens);
         nGrams.addAll(ExtractionUtils.createNGrams(tokens, 2));
@@ -236,13 +237,19 @@ public class KeyphraseExtractorCommand implements Command<InformationExtractionC
 
         KeyphraseCandidates candidates = createCandidates(language, nGramBag);
 
+        List<String> termValues = new ArrayList<String>();
+        for (KeyphraseCandidate candidate : candidates) {
+            termValues.add(candidate.getShortestUnstemmedValue());
+        }
+        // get all terms of the message at once
+        Map<String, Term> terms = context.getPersistence().getOrCreateTerms(
+                Term.TermCategory.KEYPHRASE, termValues);
+        int i = 0;
         for (KeyphraseCandidate candidate : candidates) {
 
             // TODO how to normalize the score ?
             context.getMessagePart().addScoredTerm(
-                    new ScoredTerm(context.getPersistence().getOrCreateTerm(
-                            Term.TermCategory.KEYPHRASE, candidate.getShortestUnstemmedValue()),
-                            candidate.getCount()));
+                    new ScoredTerm(terms.get(termValues.get(i++)), candidate.getCount()));
         }
     }
 }
@@ -32,6 +32,25 @@ public final class LanguageDetectorCommand implements Command<InformationExtract
 
     public static final String LANGUAGE = "meta.info.language";
 
+    /**
+     * <p>
+     * Convenience method to get the language of the message part after the context has been
+     * {@link #process(InformationExtractionContext)}ed by the {@link LanguageDetectorCommand}. The
+     * parts of a message can have different languages, so the language detected for the part is
+     * preferred over the language annotated at the message.
+     * </p>
+     * 
+     * @param context
+     *            the context of the message part
+     * @return the language, null if not detected
+     */
+    public static String getAnnotatedLanguage(InformationExtractionContext context) {
+        if (context.getLanguage() != null) {
+            return context.getLanguage();
+        }
+        return getAnnotatedLanguage(context.getMessage());
+    }
+
     /**
      * <p>
      * Convenience method to get the annotated language after the {@link Message} has been
@@ -119,6 +138,7 @@ public final class LanguageDetectorCommand implements Command<InformationExtract
                 language = this.defaultLanguage;
             }
         }
+        context.setLanguage(language);
         message.addProperty(new Property(LANGUAGE, language));
     }
 
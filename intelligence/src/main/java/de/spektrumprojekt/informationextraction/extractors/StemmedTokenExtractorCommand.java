@@ -21,10 +21,8 @@ package de.spektrumprojekt.informationextraction.extractors;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
 
-import org.apache.commons.collections.Bag;
-import org.apache.commons.collections.bag.HashBag;
 import org.apache.commons.lang3.StringUtils;
 
 import de.spektrumprojekt.commons.chain.Command;
@@ -35,9 +33,6 @@ import de.spektrumprojekt.informationextraction.InformationExtractionContext;
 
 public final class StemmedTokenExtractorCommand implements Command<InformationExtractionContext> {
 
-    /** Allowed characters for a token, everything else will be filtered out. */
-    private static final Pattern TOKEN_PATTERN = Pattern.compile("[A-Za-z0-9\\.]+");
-
     private final boolean useMessageGroupIdForToken;
     private final boolean assertMessageGroup;
     private final int minimumTermLength;
@@ -53,20 +48,6 @@ public final class StemmedTokenExtractorCommand implements Command<InformationEx
         this.minimumTermLength = minimumTermLength;
     }
 
-    private List<String> cleanTokens(List<String> tokens) {
-        List<String> cleanTokens = new ArrayList<String>();
-        for (String token : tokens) {
-            if (token.length() < 2) {
-                continue;
-            }
-            if (!TOKEN_PATTERN.matcher(token).matches()) {
-                continue;
-            }
-            cleanTokens.add(token);
-        }
-        return cleanTokens;
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -89,19 +70,17 @@ public final class StemmedTokenExtractorCommand implements Command<InformationEx
     @Override
     public void process(InformationExtractionContext context) {
 
-        String language = LanguageDetectorCommand.getAnnotatedLanguage(context.getMessage());
+        String language = LanguageDetectorCommand.getAnnotatedLanguage(context);
 
         String text = context.getCleanText();
         if (StringUtils.isEmpty(text)) {
             return;
         }
 
-        List<String> tokens = ExtractionUtils.tokenize(text);
-        tokens = removeStopwords(language, tokens);
-        tokens = ExtractionUtils.stem(language, tokens);
-        tokens = cleanTokens(tokens);
+        // only tokens of at least two letters, digits or dots are counted
+        TermCounter tokens = new TermCounter();
+        ExtractionUtils.countStemmedTokens(language, text, tokens);
 
-        Bag tokenBag = new HashBag(tokens);
         String tokenPrefix = StringUtils.EMPTY;
         if (this.useMessageGroupIdForToken) {
             MessageGroup group = context.getMessage().getMessageGroup();
@@ -114,31 +93,30 @@ public final class StemmedTokenExtractorCommand implements Command<InformationEx
                 tokenPrefix = group.getId() + "#";
             }
         }
-        int highestCount = BagHelper.getHighestCount(tokenBag);
-        for (Object tokenObj : tokenBag) {
-            String token = (String) tokenObj;
+        int highestCount = tokens.getHighestCount();
+        List<String> termValues = new ArrayList<String>();
+        List<Float> frequencies = new ArrayList<Float>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.getTerm(i);
             if (token.length() < minimumTermLength) {
                 continue;
             }
-            float frequency = (float) tokenBag.getCount(token) / highestCount;
-            token = tokenPrefix + token;
+            float frequency = (float) tokens.getCount(i) / highestCount;
+            String termValue = tokenPrefix + token;
+            // a scored term is added for each occurrence of the token
+            for (int j = 0; j < tokens.getCount(i); j++) {
+                frequencies.add(frequency);
+                termValues.add(termValue);
+            }
+        }
+        // get all terms of the message at once
+        Map<String, Term> terms = context.getPersistence().getOrCreateTerms(
+                Term.TermCategory.TERM, termValues);
+        for (int i = 0; i < termValues.size(); i++) {
             context.getMessagePart().addScoredTerm(
-                    new ScoredTerm(context.getPersistence().getOrCreateTerm(
-                            Term.TermCategory.TERM,
-                            token),
-                            frequency));
+                    new ScoredTerm(terms.get(termValues.get(i)), frequencies.get(i)));
         }
 
     }
 
-    private List<String> removeStopwords(String language, List<String> tokens) {
-        List<String> ret = new ArrayList<String>();
-        for (String token : tokens) {
-            if (!ExtractionUtils.isStopword(language, token.toLowerCase())) {
-                ret.add(token);
-            }
-        }
-        return ret;
-    }
-
 }
@@ -19,7 +19,10 @@
 
 package de.spektrumprojekt.informationextraction.extractors;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 
@@ -79,17 +82,19 @@ public final class TagExtractorCommand implements Command<InformationExtractionC
                 tokenPrefix = group.getId() + "#";
             }
         }
+        List<String> termValues = new ArrayList<String>();
         for (String tag : tags) {
             tag = tag.trim();
             if (tag.length() > 0) {
-                String term = tokenPrefix + "%" + tag;
-                context.getMessagePart().addScoredTerm(
-                        new ScoredTerm(context.getPersistence().getOrCreateTerm(
-                                Term.TermCategory.TERM,
-                                term),
-                                1));
+                termValues.add(tokenPrefix + "%" + tag);
             }
         }
+        // get all terms of the message at once
+        Map<String, Term> terms = context.getPersistence().getOrCreateTerms(
+                Term.TermCategory.TERM, termValues);
+        for (String termValue : termValues) {
+            context.getMessagePart().addScoredTerm(new ScoredTerm(terms.get(termValue), 1));
+        }
 
     }
 }
@@ -15,4 +15,11 @@ public interface TagSource {
 
     public Collection<Term> getTags();
 
+    /**
+     * 
+     * @return a number which changes whenever the tags change, used to detect changes without
+     *         comparing all tags
+     */
+    public long getVersion();
+
 }
@@ -0,0 +1,306 @@
+package de.spektrumprojekt.informationextraction.extractors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.spektrumprojekt.datamodel.message.Term;
+
+/**
+ * <p>
+ * Index over the vocabulary of a {@link TagSource} to find the tag most similar to a term, using
+ * the similarity of {@link ExtractionUtils#getLevenshteinSimilarity(String, String)}. The
+ * similarity threshold bounds the edit distance of a matching tag, and a tag within edit distance
+ * k of a term shares at least max(length) - 1 - 2k bigrams with it. Therefore the index keeps the
+ * tags by bigram, counts the bigrams a term shares with the tags and only computes the edit
+ * distance for the tags sharing enough of them.
+ * </p>
+ * <p>
+ * The index is updated incrementally: new tags are added to the bigram lists, removed tags are
+ * only marked as removed until they make up half of the index, then the index is rebuilt.
+ * </p>
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class TagVocabularyIndex {
+
+    /**
+     * The tags containing a bigram and how often they contain it
+     */
+    private static final class Postings {
+
+        // pairs of tag id and count
+        private int[] entries = new int[4];
+
+        private int size;
+
+        public void add(int id, int count) {
+            if (size + 2 > entries.length) {
+                int[] newEntries = new int[entries.length * 2];
+                System.arraycopy(entries, 0, newEntries, 0, size);
+                entries = newEntries;
+            }
+            entries[size++] = id;
+            entries[size++] = count;
+        }
+    }
+
+    /**
+     * The bigram counts of a query, reused by the thread
+     */
+    private static final class QueryCounts {
+
+        private int[] counts = new int[0];
+
+        private int[] touched = new int[0];
+
+        private int touchedSize;
+
+        public void ensureCapacity(int size) {
+            if (counts.length < size) {
+                counts = new int[size];
+                touched = new int[size];
+            }
+        }
+    }
+
+    private static Map<Integer, Integer> getBigrams(String value) {
+        Map<Integer, Integer> bigrams = new HashMap<Integer, Integer>();
+        for (int i = 0; i + 1 < value.length(); i++) {
+            Integer bigram = value.charAt(i) << 16 | value.charAt(i + 1);
+            Integer count = bigrams.get(bigram);
+            bigrams.put(bigram, count == null ? 1 : count + 1);
+        }
+        return bigrams;
+    }
+
+    private final float similarityThreshold;
+
+    // the lower case tags and their values by id, the value is null if the tag has been removed
+    private final List<String> keys = new ArrayList<String>();
+    private final List<String> values = new ArrayList<String>();
+
+    // the ids by lower case tag, including the removed ones
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+    private final Map<Integer, Postings> postings = new HashMap<Integer, Postings>();
+
+    private int removedCount;
+
+    private volatile long version;
+
+    private volatile boolean indexed;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<QueryCounts> queryCounts = new ThreadLocal<QueryCounts>() {
+
+        @Override
+        protected QueryCounts initialValue() {
+            return new QueryCounts();
+        }
+    };
+
+    /**
+     *
+     * @param similarityThreshold
+     *            the similarity a tag must exceed to match a term
+     */
+    public TagVocabularyIndex(float similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    private void add(String key, String value) {
+        int id = keys.size();
+        keys.add(key);
+        values.add(value);
+        ids.put(key, id);
+        for (Map.Entry<Integer, Integer> bigram : getBigrams(key).entrySet()) {
+            Postings bigramPostings = postings.get(bigram.getKey());
+            if (bigramPostings == null) {
+                bigramPostings = new Postings();
+                postings.put(bigram.getKey(), bigramPostings);
+            }
+            bigramPostings.add(id, bigram.getValue());
+        }
+    }
+
+    /**
+     * Get the tag most similar to the term
+     *
+     * @param term
+     *            the term
+     * @return the value of the tag which is most similar to the term and exceeds the similarity
+     *         threshold, null if there is none
+     */
+    public String find(String term) {
+        String lowercaseTerm = term.toLowerCase();
+        int termLength = lowercaseTerm.length();
+        // a longer tag allows a larger distance, but its length must be within the distance
+        int maxDistance = 0;
+        while (getMaxDistance(termLength + maxDistance + 1) >= maxDistance + 1) {
+            maxDistance++;
+        }
+        lock.readLock().lock();
+        try {
+            Integer exactId = ids.get(lowercaseTerm);
+            if (exactId != null && values.get(exactId) != null) {
+                return values.get(exactId);
+            }
+            if (maxDistance == 0) {
+                return null;
+            }
+
+            QueryCounts counts = queryCounts.get();
+            counts.ensureCapacity(keys.size());
+            counts.touchedSize = 0;
+            for (Map.Entry<Integer, Integer> bigram : getBigrams(lowercaseTerm).entrySet()) {
+                Postings bigramPostings = postings.get(bigram.getKey());
+                if (bigramPostings == null) {
+                    continue;
+                }
+                int termCount = bigram.getValue();
+                for (int i = 0; i < bigramPostings.size; i += 2) {
+                    int id = bigramPostings.entries[i];
+                    if (counts.counts[id] == 0) {
+                        counts.touched[counts.touchedSize++] = id;
+                    }
+                    counts.counts[id] += Math.min(termCount, bigramPostings.entries[i + 1]);
+                }
+            }
+
+            String best = null;
+            int bestDistance = Integer.MAX_VALUE;
+            for (int i = 0; i < counts.touchedSize; i++) {
+                int id = counts.touched[i];
+                int sharedBigrams = counts.counts[id];
+                counts.counts[id] = 0;
+                String key = keys.get(id);
+                if (values.get(id) == null) {
+                    continue;
+                }
+                int length = Math.max(termLength, key.length());
+                int distance = Math.min(getMaxDistance(length), bestDistance);
+                if (Math.abs(termLength - key.length()) > distance
+                        || sharedBigrams < length - 1 - 2 * distance) {
+                    continue;
+                }
+                distance = StringUtils.getLevenshteinDistance(key, lowercaseTerm, distance);
+                if (distance >= 0
+                        && (distance < bestDistance || distance == bestDistance
+                                && key.compareTo(best) < 0)) {
+                    best = key;
+                    bestDistance = distance;
+                }
+            }
+            return best == null ? null : values.get(ids.get(best));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @param maxLength
+     *            the length of the longer of the two strings
+     * @return the largest edit distance two strings can have to exceed the similarity threshold
+     */
+    private int getMaxDistance(int maxLength) {
+        int distance = -1;
+        while (distance < maxLength
+                && 1 - (float) (distance + 1) / maxLength > similarityThreshold) {
+            distance++;
+        }
+        return distance;
+    }
+
+    /**
+     *
+     * @return the number of tags in the index
+     */
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return keys.size() - removedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void rebuild() {
+        List<String> liveKeys = new ArrayList<String>();
+        List<String> liveValues = new ArrayList<String>();
+        for (int id = 0; id < keys.size(); id++) {
+            if (values.get(id) != null) {
+                liveKeys.add(keys.get(id));
+                liveValues.add(values.get(id));
+            }
+        }
+        keys.clear();
+        values.clear();
+        ids.clear();
+        postings.clear();
+        removedCount = 0;
+        for (int i = 0; i < liveKeys.size(); i++) {
+            add(liveKeys.get(i), liveValues.get(i));
+        }
+    }
+
+    /**
+     * Updates the index to contain the given tags, if the version differs from the version of the
+     * last update
+     *
+     * @param version
+     *            the version of the tags, see {@link TagSource#getVersion()}
+     * @param tags
+     *            the tags
+     */
+    public void update(long version, Collection<Term> tags) {
+        if (indexed && this.version == version) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (indexed && this.version == version) {
+                return;
+            }
+            Map<String, String> newValues = new HashMap<String, String>();
+            for (Term tag : tags) {
+                String key = tag.getValue().toLowerCase();
+                if (!newValues.containsKey(key)) {
+                    newValues.put(key, tag.getValue());
+                }
+            }
+            for (int id = 0; id < keys.size(); id++) {
+                if (values.get(id) != null && !newValues.containsKey(keys.get(id))) {
+                    values.set(id, null);
+                    removedCount++;
+                }
+            }
+            for (Map.Entry<String, String> value : newValues.entrySet()) {
+                Integer id = ids.get(value.getKey());
+                if (id == null) {
+                    add(value.getKey(), value.getValue());
+                } else {
+                    if (values.get(id) == null) {
+                        removedCount--;
+                    }
+                    values.set(id, value.getValue());
+                }
+            }
+            if (removedCount > keys.size() / 2) {
+                rebuild();
+            }
+            this.version = version;
+            this.indexed = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
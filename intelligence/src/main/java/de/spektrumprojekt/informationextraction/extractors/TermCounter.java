@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package de.spektrumprojekt.informationextraction.extractors;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Counts terms given as a range of a char array. The counts are kept in an open addressing hash
+ * table of int arrays, and a String is only created the first time a term is added. Therefore
+ * counting terms which are put together in a reusable buffer does not allocate anything for terms
+ * already counted. The terms are kept in the order they were first added.
+ * </p>
+ * <p>
+ * Not thread safe.
+ * </p>
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public final class TermCounter {
+
+    private static int hash(char[] chars, int offset, int length) {
+        // same as String.hashCode()
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ hash >>> 16;
+    }
+
+    private String[] terms;
+
+    private int[] counts;
+
+    private int[] hashes;
+
+    // the index of the term plus one by slot, 0 for an empty slot
+    private int[] table;
+
+    private int size;
+
+    private int highestCount;
+
+    public TermCounter() {
+        this(16);
+    }
+
+    /**
+     * 
+     * @param expectedSize
+     *            the expected number of distinct terms
+     */
+    public TermCounter(int expectedSize) {
+        int capacity = Math.max(4, expectedSize);
+        int tableSize = Integer.highestOneBit(capacity * 2 - 1) * 2;
+        this.terms = new String[capacity];
+        this.counts = new int[capacity];
+        this.hashes = new int[capacity];
+        this.table = new int[tableSize];
+    }
+
+    /**
+     * Adds one occurrence of the term
+     * 
+     * @param chars
+     *            the chars holding the term
+     * @param offset
+     *            the offset of the term
+     * @param length
+     *            the length of the term
+     * @return the index of the term
+     */
+    public int add(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int slot = findSlot(chars, offset, length, hash);
+        int index = table[slot] - 1;
+        if (index < 0) {
+            index = insert(slot, new String(chars, offset, length), hash);
+        }
+        counts[index]++;
+        highestCount = Math.max(highestCount, counts[index]);
+        return index;
+    }
+
+    /**
+     * Adds one occurrence of the term
+     * 
+     * @param term
+     *            the term
+     * @return the index of the term
+     */
+    public int add(String term) {
+        char[] chars = term.toCharArray();
+        return add(chars, 0, chars.length);
+    }
+
+    private int findSlot(char[] chars, int offset, int length, int hash) {
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        while (true) {
+            int index = table[slot] - 1;
+            if (index < 0) {
+                return slot;
+            }
+            if (hashes[index] == hash && matches(terms[index], chars, offset, length)) {
+                return slot;
+            }
+            slot = slot + 1 & mask;
+        }
+    }
+
+    /**
+     * 
+     * @param index
+     *            the index of the term, between 0 and {@link #size()}
+     * @return the number of occurrences of the term
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * 
+     * @return the highest count of all terms, 0 if there are none
+     */
+    public int getHighestCount() {
+        return highestCount;
+    }
+
+    /**
+     * 
+     * @param index
+     *            the index of the term, between 0 and {@link #size()}
+     * @return the term
+     */
+    public String getTerm(int index) {
+        return terms[index];
+    }
+
+    /**
+     * 
+     * @param chars
+     *            the chars holding the term
+     * @param offset
+     *            the offset of the term
+     * @param length
+     *            the length of the term
+     * @return the index of the term, -1 if it has not been added
+     */
+    public int indexOf(char[] chars, int offset, int length) {
+        return table[findSlot(chars, offset, length, hash(chars, offset, length))] - 1;
+    }
+
+    /**
+     * 
+     * @param term
+     *            the term
+     * @return the index of the term, -1 if it has not been added
+     */
+    public int indexOf(String term) {
+        char[] chars = term.toCharArray();
+        return indexOf(chars, 0, chars.length);
+    }
+
+    private int insert(int slot, String term, int hash) {
+        if (size == terms.length) {
+            int capacity = size * 2;
+            terms = Arrays.copyOf(terms, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        int index = size++;
+        terms[index] = term;
+        hashes[index] = hash;
+        table[slot] = index + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return index;
+    }
+
+    private boolean matches(String term, char[] chars, int offset, int length) {
+        if (term.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (term.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = spread(hashes[index]) & mask;
+            while (table[slot] != 0) {
+                slot = slot + 1 & mask;
+            }
+            table[slot] = index + 1;
+        }
+    }
+
+    /**
+     * 
+     * @return the number of distinct terms
+     */
+    public int size() {
+        return size;
+    }
+}
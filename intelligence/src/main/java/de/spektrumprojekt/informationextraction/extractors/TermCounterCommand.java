@@ -19,27 +19,25 @@
 
 package de.spektrumprojekt.informationextraction.extractors;
 
-import java.util.Collection;
-
 import de.spektrumprojekt.commons.chain.Command;
-import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
 import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
-import de.spektrumprojekt.informationextraction.InformationExtractionContext;
-import de.spektrumprojekt.persistence.Persistence;
 
-public class TermCounterCommand implements Command<InformationExtractionContext> {
+/**
+ * Counts the terms of the message. The {@link TermFrequencyComputer} writes the changed terms to
+ * the persistence. It must run once per message after the terms of all parts have been extracted.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class TermCounterCommand<T extends MessageFeatureContext> implements Command<T> {
 
-    private final Persistence persistence;
     private final TermFrequencyComputer termFrequencyComputer;
 
-    public TermCounterCommand(Persistence persistence, TermFrequencyComputer termFrequencyComputer) {
-        if (persistence == null) {
-            throw new IllegalArgumentException("persistence cannot be null!");
-        }
+    public TermCounterCommand(TermFrequencyComputer termFrequencyComputer) {
         if (termFrequencyComputer == null) {
             throw new IllegalArgumentException("termFrequencyComputer cannot be null!");
         }
-        this.persistence = persistence;
         this.termFrequencyComputer = termFrequencyComputer;
     }
 
@@ -53,12 +51,9 @@ public class TermCounterCommand implements Command<InformationExtractionContext>
     }
 
     @Override
-    public void process(InformationExtractionContext context) {
+    public void process(T context) {
 
-        Collection<Term> terms = termFrequencyComputer.integrate(context.getMessage());
-        if (!terms.isEmpty()) {
-            this.persistence.updateTerms(terms);
-        }
+        termFrequencyComputer.integrate(context.getMessage());
 
     }
 
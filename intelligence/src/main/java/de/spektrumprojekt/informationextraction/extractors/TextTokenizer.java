@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package de.spektrumprojekt.informationextraction.extractors;
+
+import opennlp.tools.tokenize.SimpleTokenizer;
+
+/**
+ * <p>
+ * Iterates over the tokens of a text without creating a String for each of them. The tokens are
+ * the same as the ones of the {@link SimpleTokenizer}: whitespace separates tokens, and a token
+ * ends where letters, digits and other characters change. Each other character different from
+ * the previous one starts a new token.
+ * </p>
+ * 
+ * <pre>
+ * TextTokenizer tokenizer = new TextTokenizer(text);
+ * while (tokenizer.next()) {
+ *     text.subSequence(tokenizer.getStart(), tokenizer.getEnd());
+ * }
+ * </pre>
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public final class TextTokenizer {
+
+    private static final int WHITESPACE = 0;
+
+    private static final int ALPHABETIC = 1;
+
+    private static final int NUMERIC = 2;
+
+    private static final int OTHER = 3;
+
+    private static int getCharacterType(char c) {
+        if (Character.isWhitespace(c) || Character.getType(c) == Character.SPACE_SEPARATOR) {
+            return WHITESPACE;
+        }
+        if (Character.isLetter(c)) {
+            return ALPHABETIC;
+        }
+        if (Character.isDigit(c)) {
+            return NUMERIC;
+        }
+        return OTHER;
+    }
+
+    private final CharSequence text;
+
+    private int position;
+
+    private int start;
+
+    private int end;
+
+    /**
+     * 
+     * @param text
+     *            the text to tokenize
+     */
+    public TextTokenizer(CharSequence text) {
+        if (text == null) {
+            throw new IllegalArgumentException("text cannot be null.");
+        }
+        this.text = text;
+    }
+
+    /**
+     * 
+     * @return the end of the current token, exclusive
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * 
+     * @return the start of the current token
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Moves to the next token
+     * 
+     * @return true if there is a next token, false if the end of the text has been reached
+     */
+    public boolean next() {
+        int length = text.length();
+        while (position < length && getCharacterType(text.charAt(position)) == WHITESPACE) {
+            position++;
+        }
+        if (position == length) {
+            return false;
+        }
+        start = position;
+        char first = text.charAt(position);
+        int type = getCharacterType(first);
+        position++;
+        if (type != OTHER) {
+            while (position < length && getCharacterType(text.charAt(position)) == type) {
+                position++;
+            }
+        } else {
+            while (position < length && text.charAt(position) == first) {
+                position++;
+            }
+        }
+        end = position;
+        return true;
+    }
+}
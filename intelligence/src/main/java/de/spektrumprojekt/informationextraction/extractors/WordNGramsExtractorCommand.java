@@ -1,7 +1,5 @@
 package de.spektrumprojekt.informationextraction.extractors;
 
-import java.util.List;
-
 import org.apache.commons.lang3.StringUtils;
 
 import de.spektrumprojekt.informationextraction.InformationExtractionContext;
@@ -30,9 +28,10 @@ public class WordNGramsExtractorCommand extends AbstractTokenExtractorCommand {
             return;
         }
 
-        List<String> tokens = this.tokenizeAndRemoveStopwords(context);
-        tokens = ExtractionUtils.createNGrams(tokens, nGramsLength);
-        tokens = cleanTokens(tokens);
+        String language = LanguageDetectorCommand.getAnnotatedLanguage(context);
+        // the n-grams have at least two chars, so there is nothing to clean
+        TermCounter tokens = new TermCounter();
+        ExtractionUtils.countWordNGrams(language, text, nGramsLength, tokens);
 
         this.addTokensToMessagePart(context, tokens);
     }
@@ -0,0 +1,272 @@
+package de.spektrumprojekt.informationextraction.relations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Finds the matches of several {@link NamePattern}s in one pass over the text. Most patterns start
+ * with a literal, e.g. the host of an URL. The literal prefixes of all patterns are put into one
+ * Aho-Corasick automaton which finds all occurrences of all prefixes in a single scan, and the
+ * regex of a pattern is only run at the positions its prefix occurs at. Patterns without a literal
+ * prefix are searched for with the regex as before.
+ * </p>
+ * <p>
+ * The matches are the same as the ones of {@link Matcher#find()} over the whole text, as a match
+ * of a pattern with a literal prefix can only start at an occurrence of the prefix. The matcher
+ * is immutable and can be shared by threads.
+ * </p>
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class NamePatternMatcher {
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(NamePatternMatcher.class);
+
+    private static final String META_CHARACTERS = "\\[](){}.*+?|^$";
+
+    private static final int[] NO_PATTERNS = new int[0];
+
+    /**
+     *
+     * @param pattern
+     *            the pattern
+     * @return the literal every match of the pattern starts with, an empty string if there is none
+     */
+    static String getLiteralPrefix(Pattern pattern) {
+        if ((pattern.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL
+                | Pattern.CANON_EQ)) != 0) {
+            return "";
+        }
+        String regex = pattern.pattern();
+        if (regex.indexOf('|') >= 0) {
+            // an alternative may start with something else
+            return "";
+        }
+        StringBuilder prefix = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int next;
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    // a character class, back reference, quotation or the like
+                    break;
+                }
+                c = regex.charAt(i + 1);
+                next = i + 2;
+            } else if (META_CHARACTERS.indexOf(c) >= 0) {
+                break;
+            } else {
+                next = i + 1;
+            }
+            if (next < regex.length() && "?*{".indexOf(regex.charAt(next)) >= 0) {
+                // the character is optional or repeated a variable number of times
+                break;
+            }
+            prefix.append(c);
+            i = next;
+            if (i < regex.length() && regex.charAt(i) == '+') {
+                break;
+            }
+        }
+        return prefix.toString();
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private final NamePattern[] patterns;
+
+    // the patterns whose regex has to be run over the whole text
+    private final int[] unprefixedPatterns;
+
+    private final int[] prefixLengths;
+
+    // the automaton, the transitions of a state are sorted by their character
+    private final char[][] transitionCharacters;
+
+    private final int[][] transitionTargets;
+
+    private final int[] failures;
+
+    // the patterns whose prefix ends at a state, including the ones of its failure states
+    private final int[][] outputs;
+
+    /**
+     *
+     * @param namePatterns
+     *            the patterns to match
+     */
+    public NamePatternMatcher(Collection<NamePattern> namePatterns) {
+        if (namePatterns == null) {
+            throw new IllegalArgumentException("namePatterns cannot be null.");
+        }
+        this.patterns = namePatterns.toArray(new NamePattern[namePatterns.size()]);
+        this.prefixLengths = new int[patterns.length];
+
+        List<Map<Character, Integer>> gotos = new ArrayList<Map<Character, Integer>>();
+        List<List<Integer>> stateOutputs = new ArrayList<List<Integer>>();
+        gotos.add(new HashMap<Character, Integer>());
+        stateOutputs.add(new ArrayList<Integer>());
+        List<Integer> unprefixed = new ArrayList<Integer>();
+        for (int p = 0; p < patterns.length; p++) {
+            String prefix = getLiteralPrefix(patterns[p].getPattern());
+            prefixLengths[p] = prefix.length();
+            if (prefix.length() == 0) {
+                unprefixed.add(p);
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < prefix.length(); i++) {
+                Integer target = gotos.get(state).get(prefix.charAt(i));
+                if (target == null) {
+                    target = gotos.size();
+                    gotos.add(new HashMap<Character, Integer>());
+                    stateOutputs.add(new ArrayList<Integer>());
+                    gotos.get(state).put(prefix.charAt(i), target);
+                }
+                state = target;
+            }
+            stateOutputs.get(state).add(p);
+        }
+        this.unprefixedPatterns = toArray(unprefixed);
+
+        int stateCount = gotos.size();
+        this.transitionCharacters = new char[stateCount][];
+        this.transitionTargets = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            Character[] characters = gotos.get(state).keySet().toArray(new Character[0]);
+            Arrays.sort(characters);
+            transitionCharacters[state] = new char[characters.length];
+            transitionTargets[state] = new int[characters.length];
+            for (int i = 0; i < characters.length; i++) {
+                transitionCharacters[state][i] = characters[i];
+                transitionTargets[state][i] = gotos.get(state).get(characters[i]);
+            }
+        }
+
+        // breadth first, so the failure state of a state is done before the state itself
+        this.failures = new int[stateCount];
+        this.outputs = new int[stateCount][];
+        outputs[0] = NO_PATTERNS;
+        Queue<Integer> queue = new LinkedList<Integer>();
+        for (int target : transitionTargets[0]) {
+            failures[target] = 0;
+            outputs[target] = toArray(stateOutputs.get(target));
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < transitionCharacters[state].length; i++) {
+                char c = transitionCharacters[state][i];
+                int target = transitionTargets[state][i];
+                int failure = failures[state];
+                while (failure > 0 && getTransition(failure, c) < 0) {
+                    failure = failures[failure];
+                }
+                failure = Math.max(0, getTransition(failure, c));
+                failures[target] = failure;
+                List<Integer> targetOutputs = new ArrayList<Integer>(stateOutputs.get(target));
+                for (int p : outputs[failure]) {
+                    targetOutputs.add(p);
+                }
+                outputs[target] = toArray(targetOutputs);
+                queue.add(target);
+            }
+        }
+        LOGGER.debug("Initialized {} with {} patterns, {} of them without literal prefix",
+                new Object[] { getClass().getSimpleName(), patterns.length,
+                        unprefixedPatterns.length });
+    }
+
+    private void addMatch(Set<String> matches, NamePattern pattern, Matcher matcher) {
+        String matchedGroup = matcher.group(1);
+        if (matchedGroup == null) {
+            LOGGER.warn(
+                    "Could not extract information for {}, make sure to configure capturing group correctly!",
+                    pattern.getRegex());
+        }
+        matches.add(pattern.getName() + "#" + matchedGroup);
+    }
+
+    /**
+     * Adds the matches of all patterns in the text
+     *
+     * @param text
+     *            the text
+     * @param matches
+     *            the set to add the matches to as name of the pattern, '#' and the first group of
+     *            the match
+     */
+    public void addUniqueMatches(String text, Set<String> matches) {
+        for (int p : unprefixedPatterns) {
+            Matcher matcher = patterns[p].getPattern().matcher(text);
+            while (matcher.find()) {
+                addMatch(matches, patterns[p], matcher);
+            }
+        }
+        if (transitionTargets[0].length == 0) {
+            return;
+        }
+        // the matcher of a pattern and the end of its last match, created on the first candidate
+        Matcher[] matchers = null;
+        int[] matchEnds = null;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int target = getTransition(state, c);
+            while (target < 0 && state > 0) {
+                state = failures[state];
+                target = getTransition(state, c);
+            }
+            state = Math.max(0, target);
+            for (int p : outputs[state]) {
+                int start = i + 1 - prefixLengths[p];
+                if (matchers == null) {
+                    matchers = new Matcher[patterns.length];
+                    matchEnds = new int[patterns.length];
+                }
+                if (start < matchEnds[p]) {
+                    // find() continues after the previous match
+                    continue;
+                }
+                Matcher matcher = matchers[p];
+                if (matcher == null) {
+                    matcher = patterns[p].getPattern().matcher(text);
+                    matcher.useTransparentBounds(true);
+                    matcher.useAnchoringBounds(false);
+                    matchers[p] = matcher;
+                }
+                matcher.region(start, text.length());
+                if (matcher.lookingAt()) {
+                    addMatch(matches, patterns[p], matcher);
+                    matchEnds[p] = matcher.end();
+                }
+            }
+        }
+    }
+
+    private int getTransition(int state, char c) {
+        int index = Arrays.binarySearch(transitionCharacters[state], c);
+        return index < 0 ? -1 : transitionTargets[state][index];
+    }
+}
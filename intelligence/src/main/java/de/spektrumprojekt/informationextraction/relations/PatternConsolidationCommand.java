@@ -4,8 +4,9 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.GregorianCalendar;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Matcher;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -13,7 +14,6 @@ import org.slf4j.LoggerFactory;
 
 import de.spektrumprojekt.commons.chain.Command;
 import de.spektrumprojekt.datamodel.message.Message;
-import de.spektrumprojekt.datamodel.message.MessageFilter;
 import de.spektrumprojekt.datamodel.message.MessagePart;
 import de.spektrumprojekt.datamodel.message.MessageRelation;
 import de.spektrumprojekt.datamodel.message.MessageRelation.MessageRelationType;
@@ -36,6 +36,11 @@ public class PatternConsolidationCommand implements Command<InformationExtractio
 
     private final PatternConsolidationConfiguration patternProvider;
 
+    // the matcher and the patterns it was created for
+    private NamePatternMatcher matcher;
+
+    private Collection<NamePattern> matcherPatterns;
+
     /**
      * <p>
      * Initialize a new {@link PatternConsolidationCommand} with the specified collection of
@@ -59,21 +64,23 @@ public class PatternConsolidationCommand implements Command<InformationExtractio
         return stringBuilder.toString();
     }
 
-    private Set<String> getUniqueMatches(Collection<NamePattern> patterns, String text) {
-        Set<String> result = new HashSet<String>();
-        for (NamePattern pattern : patterns) {
-            Matcher matcher = pattern.getPattern().matcher(text);
-            while (matcher.find()) {
-                String matchedGroup = matcher.group(1);
-                if (matchedGroup == null) {
-                    LOGGER.warn(
-                            "Could not extract information for {}, make sure to configure capturing group correctly!",
-                            pattern.getRegex());
-                }
-                String identifier = pattern.getName() + "#" + matchedGroup;
-                result.add(identifier);
-            }
+    /**
+     * 
+     * @return the matcher for the current patterns, it is recreated if the patterns have been
+     *         replaced
+     */
+    private synchronized NamePatternMatcher getMatcher() {
+        Collection<NamePattern> patterns = patternProvider.getPatterns();
+        if (matcher == null || matcherPatterns != patterns) {
+            matcher = new NamePatternMatcher(patterns);
+            matcherPatterns = patterns;
         }
+        return matcher;
+    }
+
+    private Set<String> getUniqueMatches(String text) {
+        Set<String> result = new HashSet<String>();
+        getMatcher().addUniqueMatches(text, result);
         return result;
     }
 
@@ -91,24 +98,25 @@ public class PatternConsolidationCommand implements Command<InformationExtractio
 
             String fullContent = StringUtils.join(Arrays.asList(title, link, messageContent), "\n");
 
-            Set<String> matches = getUniqueMatches(patternProvider.getPatterns(), fullContent);
+            Set<String> matches = getUniqueMatches(fullContent);
             LOGGER.trace("Extracted matches: {}", matches);
+            if (matches.isEmpty()) {
+                return;
+            }
 
-            for (String match : matches) {
-                persistence.storeMessagePattern(match, message);
-
-                GregorianCalendar calendar = new GregorianCalendar();
-                calendar.setTime(message.getPublicationDate());
-                calendar.add(GregorianCalendar.MILLISECOND, -patternProvider.getPeriodOfTime()
-                        .intValue());
+            GregorianCalendar calendar = new GregorianCalendar();
+            calendar.setTime(message.getPublicationDate());
+            calendar.add(GregorianCalendar.MILLISECOND, -patternProvider.getPeriodOfTime()
+                    .intValue());
 
-                MessageFilter messageFilter = new MessageFilter();
-                messageFilter.setPattern(match);
-                messageFilter.setMinPublicationDate(calendar.getTime());
+            // store the patterns and get the related messages of all of them at once
+            Map<String, List<Message>> patternMessages = persistence.storeMessagePatterns(message,
+                    matches, calendar.getTime());
 
-                Collection<Message> relatedMessages = persistence.getMessages(messageFilter);
+            for (String match : matches) {
+                Collection<Message> relatedMessages = patternMessages.get(match);
                 context.add(match);
-                if (relatedMessages.isEmpty()) {
+                if (relatedMessages == null || relatedMessages.isEmpty()) {
                     continue;
                 }
                 Set<String> relatedIds = new HashSet<String>();
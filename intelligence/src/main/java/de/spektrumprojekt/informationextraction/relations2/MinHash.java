@@ -0,0 +1,161 @@
+package de.spektrumprojekt.informationextraction.relations2;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>
+ * Computes MinHash signatures of sets of shingles and splits them into bands for locality
+ * sensitive hashing. Two sets with a Jaccard similarity of j share at least one band key with a
+ * probability of 1 - (1 - j^rows)^bands.
+ * </p>
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class MinHash {
+
+    // 2^31 - 1, a * x stays within a long for a, x < PRIME
+    private static final long PRIME = 2147483647L;
+
+    /**
+     * Adds the shingles of the text to the set
+     *
+     * @param shingles
+     *            the set to add to
+     * @param text
+     *            the text, can be null
+     * @param length
+     *            the number of characters of a shingle
+     * @param prefix
+     *            character to start every shingle with, to tell apart the shingles of different
+     *            fields
+     */
+    public static void addShingles(Set<String> shingles, String text, int length, char prefix) {
+        if (text == null || text.length() == 0) {
+            return;
+        }
+        String lowerCaseText = text.toLowerCase();
+        if (lowerCaseText.length() <= length) {
+            shingles.add(prefix + lowerCaseText);
+            return;
+        }
+        for (int i = 0; i + length <= lowerCaseText.length(); i++) {
+            shingles.add(prefix + lowerCaseText.substring(i, i + length));
+        }
+    }
+
+    /**
+     *
+     * @param signature1
+     *            the first signature
+     * @param signature2
+     *            the second signature, of the same length
+     * @return the estimated Jaccard similarity of the sets of the signatures
+     */
+    public static float estimateSimilarity(int[] signature1, int[] signature2) {
+        if (signature1.length != signature2.length) {
+            throw new IllegalArgumentException("signatures must be of same length. length1="
+                    + signature1.length + " length2=" + signature2.length);
+        }
+        int equal = 0;
+        for (int i = 0; i < signature1.length; i++) {
+            if (signature1[i] == signature2[i]) {
+                equal++;
+            }
+        }
+        return (float) equal / signature1.length;
+    }
+
+    private final int bands;
+
+    private final int rows;
+
+    // the hash functions (a * x + b) mod PRIME
+    private final long[] a;
+    private final long[] b;
+
+    /**
+     *
+     * @param bands
+     *            the number of bands
+     * @param rows
+     *            the number of rows of a band, the signature has bands * rows hashes
+     * @param seed
+     *            seed for the hash functions, signatures are only comparable if computed using
+     *            the same seed
+     */
+    public MinHash(int bands, int rows, long seed) {
+        if (bands < 1) {
+            throw new IllegalArgumentException("bands must be at least 1. bands=" + bands);
+        }
+        if (rows < 1) {
+            throw new IllegalArgumentException("rows must be at least 1. rows=" + rows);
+        }
+        this.bands = bands;
+        this.rows = rows;
+        int numberOfHashes = bands * rows;
+        this.a = new long[numberOfHashes];
+        this.b = new long[numberOfHashes];
+        Random random = new Random(seed);
+        for (int i = 0; i < numberOfHashes; i++) {
+            a[i] = 1 + random.nextInt((int) PRIME - 1);
+            b[i] = random.nextInt((int) PRIME);
+        }
+    }
+
+    /**
+     *
+     * @param signature
+     *            the signature
+     * @return a key per band, two signatures fall into the same bucket of a band if all rows of
+     *         the band are equal
+     */
+    public long[] getBandKeys(int[] signature) {
+        if (signature.length != bands * rows) {
+            throw new IllegalArgumentException("signature must have " + bands * rows
+                    + " hashes. length=" + signature.length);
+        }
+        long[] keys = new long[bands];
+        for (int band = 0; band < bands; band++) {
+            long key = 1;
+            for (int row = band * rows; row < (band + 1) * rows; row++) {
+                key = 1000003 * key + signature[row];
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    public int getBands() {
+        return bands;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     *
+     * @param shingles
+     *            the shingles
+     * @return the signature of the shingles, all hashes are {@link Integer#MAX_VALUE} for no
+     *         shingles
+     */
+    public int[] getSignature(Collection<String> shingles) {
+        int[] signature = new int[a.length];
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = Integer.MAX_VALUE;
+        }
+        for (String shingle : shingles) {
+            long x = shingle.hashCode() & 0x7fffffffL;
+            for (int i = 0; i < signature.length; i++) {
+                int hash = (int) ((a[i] * x + b[i]) % PRIME);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+}
@@ -0,0 +1,278 @@
+package de.spektrumprojekt.informationextraction.relations2;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.spektrumprojekt.commons.chain.Command;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.MessageRelation.MessageRelationType;
+import de.spektrumprojekt.helper.MessageHelper;
+import de.spektrumprojekt.informationextraction.InformationExtractionContext;
+
+/**
+ * <p>
+ * Clusters messages like the {@link ClusterCommand} but does not compare a message with all
+ * clusters. The messages of the clusters are indexed by the {@link MinHash} signatures of the
+ * shingles of their title and link path, and only the clusters sharing a band with the message
+ * are compared using the {@link MessageSimilarity}. Clusters similar to a message but without a
+ * shared band are missed, the number of bands and rows trade this off against the number of
+ * comparisons.
+ * </p>
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class MinHashClusterCommand implements Command<InformationExtractionContext> {
+
+    /**
+     * <p>
+     * Represents a cluster of grouped {@link Message}s and the band keys of its messages.
+     * </p>
+     */
+    private static final class MessageCluster implements Iterable<Message> {
+
+        private final Set<Message> messages = new HashSet<Message>();
+
+        private final List<long[]> bandKeys = new ArrayList<long[]>();
+
+        public MessageCluster(Message message, long[] bandKeys) {
+            add(message, bandKeys);
+        }
+
+        public void add(Message message, long[] bandKeys) {
+            messages.add(message);
+            this.bandKeys.add(bandKeys);
+        }
+
+        public String[] getContainedIds() {
+            String[] ids = new String[messages.size()];
+            int i = 0;
+            for (Message msg : messages) {
+                ids[i++] = msg.getGlobalId();
+            }
+            return ids;
+        }
+
+        @Override
+        public Iterator<Message> iterator() {
+            return messages.iterator();
+        }
+
+        @Override
+        public String toString() {
+            return "MessageCluster [size=" + messages.size() + "]";
+        }
+    }
+
+    /** The logger for this class. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MinHashClusterCommand.class);
+
+    public static final int DEFAULT_BANDS = 20;
+
+    public static final int DEFAULT_ROWS = 3;
+
+    public static final int DEFAULT_SHINGLE_LENGTH = 3;
+
+    private static final long SEED = 42;
+
+    /** Strategy for calculating similarity measure. */
+    private final MessageSimilarity similarityMeasure;
+
+    private final float similarityThreshold;
+
+    private final int maxClustersToKeep;
+
+    private final int shingleLength;
+
+    private final MinHash minHash;
+
+    /** The clusters by band key, one map per band. */
+    private final List<Map<Long, Set<MessageCluster>>> bandBuckets;
+
+    /** The clusters in the order of their last update, the oldest first. */
+    private final LinkedHashMap<MessageCluster, Boolean> messageClusters;
+
+    public MinHashClusterCommand(MessageSimilarity similarity, float similarityThreshold,
+            int maxClustersToKeep) {
+        this(similarity, similarityThreshold, maxClustersToKeep, DEFAULT_BANDS, DEFAULT_ROWS,
+                DEFAULT_SHINGLE_LENGTH);
+    }
+
+    /**
+     *
+     * @param similarity
+     *            the similarity to compare a message with the messages of a candidate cluster
+     * @param similarityThreshold
+     *            the similarity a message must exceed to be added to a cluster
+     * @param maxClustersToKeep
+     *            the number of clusters to keep, the cluster updated least recently is removed
+     *            first
+     * @param bands
+     *            the number of bands of the signatures
+     * @param rows
+     *            the number of rows of a band
+     * @param shingleLength
+     *            the number of characters of a shingle
+     */
+    public MinHashClusterCommand(MessageSimilarity similarity, float similarityThreshold,
+            final int maxClustersToKeep, int bands, int rows, int shingleLength) {
+        if (similarity == null) {
+            throw new IllegalArgumentException("similarity cannot be null.");
+        }
+        if (shingleLength < 1) {
+            throw new IllegalArgumentException("shingleLength must be at least 1. shingleLength="
+                    + shingleLength);
+        }
+        this.similarityMeasure = similarity;
+        this.similarityThreshold = similarityThreshold;
+        this.maxClustersToKeep = maxClustersToKeep;
+        this.shingleLength = shingleLength;
+        this.minHash = new MinHash(bands, rows, SEED);
+        this.bandBuckets = new ArrayList<Map<Long, Set<MessageCluster>>>(bands);
+        for (int i = 0; i < bands; i++) {
+            bandBuckets.add(new HashMap<Long, Set<MessageCluster>>());
+        }
+        this.messageClusters = new LinkedHashMap<MessageCluster, Boolean>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MessageCluster, Boolean> eldest) {
+                if (size() <= maxClustersToKeep) {
+                    return false;
+                }
+                LOGGER.debug("Removing least recently updated cluster {}", eldest.getKey());
+                removeFromBuckets(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    private void addToBuckets(MessageCluster messageCluster, long[] bandKeys) {
+        for (int band = 0; band < bandKeys.length; band++) {
+            Map<Long, Set<MessageCluster>> buckets = bandBuckets.get(band);
+            Set<MessageCluster> bucket = buckets.get(bandKeys[band]);
+            if (bucket == null) {
+                bucket = new HashSet<MessageCluster>();
+                buckets.put(bandKeys[band], bucket);
+            }
+            bucket.add(messageCluster);
+        }
+    }
+
+    /** package *** For testing purposes only. */
+    int getClusterCount() {
+        return messageClusters.size();
+    }
+
+    @Override
+    public String getConfigurationDescription() {
+        return getClass().getName() + " similarityThreshold=" + similarityThreshold
+                + " maxClustersToKeep=" + maxClustersToKeep + " bands=" + minHash.getBands()
+                + " rows=" + minHash.getRows() + " shingleLength=" + shingleLength;
+    }
+
+    /**
+     *
+     * @param link
+     *            the link, can be null
+     * @return the link without scheme and host, which are usually the same for the messages of
+     *         a source and would make all of them candidates
+     */
+    private String getLinkPath(String link) {
+        if (link == null) {
+            return null;
+        }
+        int schemeEnd = link.indexOf("://");
+        int pathStart = link.indexOf('/', schemeEnd < 0 ? 0 : schemeEnd + 3);
+        return pathStart < 0 ? link : link.substring(pathStart);
+    }
+
+    private Set<String> getShingles(Message message) {
+        Set<String> shingles = new HashSet<String>();
+        MinHash.addShingles(shingles, MessageHelper.getTitle(message), shingleLength, 't');
+        MinHash.addShingles(shingles, getLinkPath(MessageHelper.getLink(message)), shingleLength,
+                'l');
+        return shingles;
+    }
+
+    private float getSimilarityToCluster(Message message, MessageCluster messageCluster) {
+        float similarity = 0;
+        for (Message clusterMessage : messageCluster) {
+            float currentSimilarity = similarityMeasure.getSimilarity(message, clusterMessage);
+            if (currentSimilarity > similarity) {
+                similarity = currentSimilarity;
+            }
+        }
+        return similarity;
+    }
+
+    @Override
+    public void process(InformationExtractionContext context) {
+        Message message = context.getMessage();
+        long[] bandKeys = minHash.getBandKeys(minHash.getSignature(getShingles(message)));
+
+        Set<MessageCluster> candidates = new LinkedHashSet<MessageCluster>();
+        for (int band = 0; band < bandKeys.length; band++) {
+            Set<MessageCluster> bucket = bandBuckets.get(band).get(bandKeys[band]);
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+
+        float maxSimilarity = 0;
+        MessageCluster bestCluster = null;
+        for (MessageCluster messageCluster : candidates) {
+            float clusterSimilarity = getSimilarityToCluster(message, messageCluster);
+            if (clusterSimilarity > maxSimilarity) {
+                maxSimilarity = clusterSimilarity;
+                bestCluster = messageCluster;
+            }
+        }
+        if (maxSimilarity > similarityThreshold && bestCluster != null) {
+            bestCluster.add(message, bandKeys);
+            addToBuckets(bestCluster, bandKeys);
+            // mark the cluster as updated
+            messageClusters.get(bestCluster);
+            LOGGER.debug("Add message {} to cluster {} out of {} candidates",
+                    new Object[] { message.getGlobalId(), bestCluster, candidates.size() });
+            // create a relation
+            String[] relatedIds = bestCluster.getContainedIds();
+            MessageRelation relation = new MessageRelation(MessageRelationType.RELATION,
+                    message.getGlobalId(), relatedIds);
+            context.getPersistence().storeMessageRelation(message, relation);
+            context.add(relation);
+        } else {
+            MessageCluster messageCluster = new MessageCluster(message, bandKeys);
+            addToBuckets(messageCluster, bandKeys);
+            messageClusters.put(messageCluster, Boolean.TRUE);
+            LOGGER.debug("Create new cluster for {} out of {} candidates", message.getGlobalId(),
+                    candidates.size());
+        }
+    }
+
+    private void removeFromBuckets(MessageCluster messageCluster) {
+        for (long[] bandKeys : messageCluster.bandKeys) {
+            for (int band = 0; band < bandKeys.length; band++) {
+                Map<Long, Set<MessageCluster>> buckets = bandBuckets.get(band);
+                Set<MessageCluster> bucket = buckets.get(bandKeys[band]);
+                if (bucket != null) {
+                    bucket.remove(messageCluster);
+                    if (bucket.isEmpty()) {
+                        buckets.remove(bandKeys[band]);
+                    }
+                }
+            }
+        }
+    }
+}
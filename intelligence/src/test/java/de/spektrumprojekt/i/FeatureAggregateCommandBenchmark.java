@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.InteractionLevel;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.MessageRelation.MessageRelationType;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.helper.MessageHelper;
+import de.spektrumprojekt.i.datamodel.MessageFeature;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.i.ranker.UserSpecificMessageFeatureContext;
+import de.spektrumprojekt.i.ranker.chain.features.Feature;
+import de.spektrumprojekt.i.ranker.chain.features.FeatureAggregateCommand;
+import de.spektrumprojekt.informationextraction.InformationExtractionContext;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Benchmark for the {@link FeatureAggregateCommand} for message groups of increasing size. The
+ * time per user should stay about the same, that is the time per message grows linearly with the
+ * number of users. Not a unit test, run it using the main method.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class FeatureAggregateCommandBenchmark {
+
+    private static final int[] NUMBER_OF_USERS = { 100, 1000, 10000 };
+    private static final int RELATED_MESSAGES = 50;
+    private static final int MESSAGES = 20;
+    private static final int WARM_UP_MESSAGES = 5;
+
+    public static void main(String[] args) {
+        new FeatureAggregateCommandBenchmark().run();
+    }
+
+    private final SimplePersistence persistence = new SimplePersistence();
+
+    private final MessageGroup messageGroup = new MessageGroup("benchmarkGroup");
+
+    private final FeatureAggregateCommand command = new FeatureAggregateCommand(persistence);
+
+    private MessageFeatureContext createContext(Message message, MessageRelation relation,
+            int numberOfUsers) {
+        MessageFeatureContext context = new MessageFeatureContext(persistence, message, relation);
+        context.addInformationExtractionContexts(new InformationExtractionContext(persistence,
+                message, message.getMessageParts().iterator().next()));
+        for (int i = 0; i < numberOfUsers; i++) {
+            UserSpecificMessageFeatureContext userContext = new UserSpecificMessageFeatureContext(
+                    "user" + i, context);
+            userContext.setInteractionLevel(InteractionLevel.NONE);
+            MessageFeature feature = new MessageFeature(Feature.CONTENT_MATCH_FEATURE);
+            feature.setValue(0.5f);
+            userContext.addMessageFeature(feature);
+            context.addUserContext(userContext);
+        }
+        return context;
+    }
+
+    private Message createMessage(String globalId, int number) {
+        Message message = new Message(globalId, MessageType.CONTENT, StatusType.OK,
+                "subscriptionId", new Date());
+        message.setMessageGroup(messageGroup);
+        message.setAuthorGlobalId("user" + number % 100);
+        message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN,
+                "some text of the benchmark message number " + number));
+        message.addProperty(MessageHelper.createMentionProperty(new String[] {
+                "user" + number % 7, "user" + number % 11 }));
+        message.addProperty(MessageHelper.createTagProperty(Arrays.asList("tag" + number % 5,
+                "tag" + number % 13)));
+        message.addProperty(MessageHelper.createUserLikesProperty(new String[] { "user"
+                + number % 3 }));
+        return message;
+    }
+
+    private double measure(int numberOfUsers, Message message, MessageRelation relation) {
+        for (int i = 0; i < WARM_UP_MESSAGES; i++) {
+            process(createContext(message, relation, numberOfUsers));
+        }
+        long durationNs = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            MessageFeatureContext context = createContext(message, relation, numberOfUsers);
+            long start = System.nanoTime();
+            process(context);
+            durationNs += System.nanoTime() - start;
+        }
+        return durationNs / 1000d / MESSAGES;
+    }
+
+    private void process(MessageFeatureContext context) {
+        for (UserSpecificMessageFeatureContext userContext : context.getUserContexts()) {
+            command.process(userContext);
+            if (userContext.getFeatureAggregate().numAuthors == 0) {
+                throw new IllegalStateException("No authors for " + userContext);
+            }
+        }
+    }
+
+    public void run() {
+        List<String> relatedMessageGlobalIds = new ArrayList<String>();
+        for (int i = 0; i < RELATED_MESSAGES; i++) {
+            Message related = persistence.storeMessage(createMessage("benchmarkRelated" + i, i));
+            relatedMessageGlobalIds.add(related.getGlobalId());
+        }
+        Message message = createMessage("benchmarkMessage", RELATED_MESSAGES);
+        MessageRelation relation = new MessageRelation(MessageRelationType.DISCUSSION,
+                relatedMessageGlobalIds.toArray(new String[relatedMessageGlobalIds.size()]));
+
+        System.out.println("relatedMessages=" + RELATED_MESSAGES + " messages=" + MESSAGES);
+        for (int numberOfUsers : NUMBER_OF_USERS) {
+            double microsPerMessage = measure(numberOfUsers, message, relation);
+            System.out.println(String.format(
+                    "users=%6d %10.1f micro seconds per message %6.2f micro seconds per user",
+                    numberOfUsers, microsPerMessage, microsPerMessage / numberOfUsers));
+        }
+    }
+}
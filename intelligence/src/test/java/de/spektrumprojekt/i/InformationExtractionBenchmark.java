@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.i.informationextraction.InformationExtractionCommand;
+import de.spektrumprojekt.i.informationextraction.InformationExtractionConfiguration;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Benchmark for the {@link InformationExtractionCommand} extracting a batch of HTML messages with
+ * an increasing number of threads, and extracting messages with several parts one after another
+ * with the parts in parallel. Not a unit test, run it using the main method.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class InformationExtractionBenchmark {
+
+    private static final int MESSAGES = 2000;
+    private static final int PARTS_PER_MESSAGE = 4;
+    private static final int WORDS_PER_PART = 200;
+    private static final int VOCABULARY_SIZE = 20000;
+
+    public static void main(String[] args) {
+        new InformationExtractionBenchmark().run();
+    }
+
+    private final SimplePersistence persistence = new SimplePersistence();
+
+    private final MessageGroup messageGroup = new MessageGroup("benchmarkGroup");
+
+    private final List<String> vocabulary = new ArrayList<String>();
+
+    private InformationExtractionCommand<MessageFeatureContext> createCommand(int threads) {
+        InformationExtractionConfiguration configuration = new InformationExtractionConfiguration();
+        configuration.setThreadPoolSize(threads);
+        return InformationExtractionCommand.createDefaultGermanEnglish(persistence, configuration);
+    }
+
+    private List<MessageFeatureContext> createContexts() {
+        // the same texts for every run, the messages are new since they are extracted only once
+        Random random = new Random(42);
+        List<MessageFeatureContext> contexts = new ArrayList<MessageFeatureContext>();
+        for (int i = 0; i < MESSAGES; i++) {
+            Message message = new Message("benchmarkMessage" + i, MessageType.CONTENT,
+                    StatusType.OK, "subscriptionId", new Date());
+            message.setMessageGroup(messageGroup);
+            for (int p = 0; p < PARTS_PER_MESSAGE; p++) {
+                StringBuilder text = new StringBuilder("<html><body><p>");
+                for (int w = 0; w < WORDS_PER_PART; w++) {
+                    text.append(vocabulary.get(random.nextInt(vocabulary.size())));
+                    text.append(random.nextInt(12) == 0 ? ".</p><p>" : " ");
+                }
+                text.append("</p></body></html>");
+                message.addMessagePart(new MessagePart(MimeType.TEXT_HTML, text.toString()));
+            }
+            contexts.add(new MessageFeatureContext(persistence, message, null));
+        }
+        return contexts;
+    }
+
+    private double measure(int threads, boolean batch) {
+        List<MessageFeatureContext> contexts = createContexts();
+        InformationExtractionCommand<MessageFeatureContext> command = createCommand(threads);
+        try {
+            long start = System.nanoTime();
+            if (batch) {
+                command.processAll(contexts);
+            } else {
+                for (MessageFeatureContext context : contexts) {
+                    command.process(context);
+                }
+            }
+            long durationNs = System.nanoTime() - start;
+            for (MessageFeatureContext context : contexts) {
+                if (context.getInformationExtractionContexts().size() != PARTS_PER_MESSAGE) {
+                    throw new IllegalStateException("Message has not been extracted: "
+                            + context.getMessage().getGlobalId());
+                }
+            }
+            return contexts.size() / (durationNs / 1000000000d);
+        } finally {
+            command.close();
+        }
+    }
+
+    public void run() {
+        Random random = new Random(7);
+        String letters = "abcdefghijklmnopqrstuvwxyz";
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(9);
+            for (int c = 0; c < length; c++) {
+                word.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            vocabulary.add(word.toString());
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("messages=" + MESSAGES + " partsPerMessage=" + PARTS_PER_MESSAGE
+                + " wordsPerPart=" + WORDS_PER_PART + " cores=" + cores);
+
+        // warm up, also creates the terms
+        measure(1, true);
+        measure(Math.max(2, cores), true);
+
+        double sequential = measure(1, false);
+        System.out.println(String.format("sequential          %8.0f messages/s", sequential));
+        // at least 2 threads to always run the parallel mode
+        for (int threads = 2; threads <= Math.max(2, cores); threads *= 2) {
+            double parts = measure(threads, false);
+            double batch = measure(threads, true);
+            System.out.println(String.format(
+                    "threads=%2d parts   %8.0f messages/s speedup=%.2f", threads, parts,
+                    parts / sequential));
+            System.out.println(String.format(
+                    "threads=%2d batch   %8.0f messages/s speedup=%.2f", threads, batch,
+                    batch / sequential));
+        }
+    }
+}
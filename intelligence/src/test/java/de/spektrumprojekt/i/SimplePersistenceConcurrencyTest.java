@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.spektrumprojekt.callbacks.SimpleMessageGroupMemberRunner;
+import de.spektrumprojekt.communication.CommunicationMessage;
+import de.spektrumprojekt.communication.transfer.RankingCommunicationMessage;
+import de.spektrumprojekt.communication.vm.VirtualMachineCommunicator;
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageRank;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.observation.Interest;
+import de.spektrumprojekt.datamodel.observation.Observation;
+import de.spektrumprojekt.datamodel.observation.ObservationPriority;
+import de.spektrumprojekt.datamodel.observation.ObservationType;
+import de.spektrumprojekt.datamodel.user.User;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.i.informationextraction.InformationExtractionCommand;
+import de.spektrumprojekt.i.informationextraction.InformationExtractionConfiguration;
+import de.spektrumprojekt.i.learner.Learner;
+import de.spektrumprojekt.i.learner.LearningMessage;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.i.ranker.Ranker;
+import de.spektrumprojekt.i.ranker.RankerConfiguration;
+import de.spektrumprojekt.i.ranker.UserModelConfiguration;
+import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
+import de.spektrumprojekt.i.term.TermWeightStrategy;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Stress test for using the {@link SimplePersistence} from several threads at once
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class SimplePersistenceConcurrencyTest extends IntelligenceSpektrumTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+
+    private static final String CONTENT = "Test Content. This is some plain old test content "
+            + "with nothing spectacular in it.";
+
+    private static final int RANK_ALL_MESSAGES = 20;
+
+    // half of the words are in the content learned before ranking
+    private static final String[] WORDS = { "test", "content", "plain", "old", "nothing",
+            "spectacular", "ranking", "messages", "parallel", "threads", "stemming", "groups" };
+
+    /**
+     *
+     * @throws ConfigurationException
+     *             in case of an error
+     */
+    @Before
+    public void beforeTest() throws ConfigurationException {
+        setupPersistence();
+    }
+
+    private void assertLearned(String userGlobalId, String messageGlobalId, Collection<Term> terms) {
+        UserModel userModel = getPersistence().getOrCreateUserModelByUser(userGlobalId,
+                UserModel.DEFAULT_USER_MODEL_TYPE);
+        Map<Term, UserModelEntry> entries = getPersistence().getUserModelEntriesForTerms(
+                userModel, terms);
+        Assert.assertEquals(terms.size(), entries.size());
+        for (UserModelEntry entry : entries.values()) {
+            Assert.assertEquals(1f, entry.getScoredTerm().getWeight(), 0.0001);
+        }
+        Assert.assertEquals(1, getPersistence().getObservations(userGlobalId, messageGlobalId,
+                ObservationType.RATING).size());
+    }
+
+    private String createContent(Random random) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return content.toString();
+    }
+
+    private RankerConfiguration createRankerConfiguration() {
+        RankerConfiguration rankerConfiguration = new RankerConfiguration(
+                TermWeightStrategy.TRIVIAL, TermVectorSimilarityStrategy.COSINUS);
+        rankerConfiguration.put(UserModel.DEFAULT_USER_MODEL_TYPE,
+                UserModelConfiguration.getPlainModelConfiguration());
+        return rankerConfiguration;
+    }
+
+    private Collection<Term> getTerms(Message message) {
+        Collection<Term> terms = new HashSet<Term>();
+        for (MessagePart part : message.getMessageParts()) {
+            for (ScoredTerm scoredTerm : part.getScoredTerms()) {
+                terms.add(scoredTerm.getTerm());
+            }
+        }
+        Assert.assertTrue("must have some terms.", terms.size() > 0);
+        return terms;
+    }
+
+    private void learn(Learner learner, String userGlobalId, String messageGlobalId)
+            throws Exception {
+        Observation observation = new Observation(userGlobalId, messageGlobalId,
+                ObservationType.RATING, ObservationPriority.USER_FEEDBACK, null, new Date(),
+                Interest.EXTREME);
+        learner.deliverMessage(new LearningMessage(observation));
+    }
+
+    /**
+     * Ranks the same messages with a new ranker on a new persistence using rankAll
+     *
+     * @param threadPoolSize
+     *            the size of the thread pool of the information extraction
+     * @return the ranks of the readers by message, in the order of the messages
+     * @throws Exception
+     *             in case of an error
+     */
+    private List<Map<String, Float>> rankAll(int threadPoolSize) throws Exception {
+        SimplePersistence persistence = new SimplePersistence();
+        MessageGroup messageGroup = persistence.storeMessageGroup(new MessageGroup(
+                "messageGroup"));
+        List<String> readers = Arrays.asList("reader0", "reader1", "reader2", "reader3");
+        RankerConfiguration rankerConfiguration = createRankerConfiguration();
+        // the rank depends on the share of the terms of a message the readers learned
+        rankerConfiguration.setTreatMissingUserModelEntriesAsZero(true);
+        rankerConfiguration.getInformationExtractionConfiguration().setThreadPoolSize(
+                threadPoolSize);
+        Ranker ranker = new Ranker(persistence, new VirtualMachineCommunicator(
+                new LinkedBlockingQueue<CommunicationMessage>(),
+                new LinkedBlockingQueue<CommunicationMessage>()),
+                new SimpleMessageGroupMemberRunner<MessageFeatureContext>(readers),
+                rankerConfiguration);
+        Learner learner = new Learner(persistence, rankerConfiguration,
+                ranker.getInformationExtractionChain());
+        try {
+            Message message = ranker.rank(
+                    createPlainTextMessage(CONTENT, "author", messageGroup), null, null, true)
+                    .getMessage();
+            for (String reader : readers) {
+                learn(learner, reader, message.getGlobalId());
+            }
+
+            Random random = new Random(42);
+            List<RankingCommunicationMessage> rankingMessages = new ArrayList<RankingCommunicationMessage>();
+            for (int i = 0; i < RANK_ALL_MESSAGES; i++) {
+                message = createPlainTextMessage(createContent(random), "author", messageGroup);
+                message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN,
+                        createContent(random)));
+                rankingMessages.add(new RankingCommunicationMessage(message));
+            }
+            long messageCount = ranker.getTermFrequencyComputer().getMessageCount();
+            List<MessageFeatureContext> contexts = ranker.rankAll(rankingMessages);
+
+            // every message must have been extracted and counted once
+            Assert.assertEquals(messageCount + RANK_ALL_MESSAGES, ranker
+                    .getTermFrequencyComputer().getMessageCount());
+            Assert.assertEquals(RANK_ALL_MESSAGES, contexts.size());
+            List<Map<String, Float>> ranks = new ArrayList<Map<String, Float>>();
+            for (int i = 0; i < RANK_ALL_MESSAGES; i++) {
+                MessageFeatureContext context = contexts.get(i);
+                Assert.assertSame(rankingMessages.get(i).getMessage(), context.getMessage());
+                Assert.assertEquals(2, context.getInformationExtractionContexts().size());
+                Map<String, Float> messageRanks = new HashMap<String, Float>();
+                for (String reader : readers) {
+                    messageRanks.put(reader, context.getUserContext(reader).getMessageRank()
+                            .getRank());
+                }
+                ranks.add(messageRanks);
+            }
+            return ranks;
+        } finally {
+            ranker.close();
+        }
+    }
+
+    private <T> List<T> runConcurrently(List<Callable<T>> tasks) throws Exception {
+        List<T> results = new ArrayList<T>();
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<T> future : executorService.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Tests that concurrent get or create calls return the same entities with unique ids
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testConcurrentGetOrCreate() throws Exception {
+        List<Callable<List<Object>>> tasks = new ArrayList<Callable<List<Object>>>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(new Callable<List<Object>>() {
+
+                @Override
+                public List<Object> call() throws Exception {
+                    List<Object> entities = new ArrayList<Object>();
+                    for (int r = 0; r < ROUNDS; r++) {
+                        entities.add(getPersistence().getOrCreateTerm(TermCategory.TERM,
+                                "term" + r));
+                        entities.add(getPersistence().getOrCreateUser("user" + r));
+                        entities.add(getPersistence().getOrCreateUserModelByUser("user" + r,
+                                UserModel.DEFAULT_USER_MODEL_TYPE));
+                    }
+                    return entities;
+                }
+            });
+        }
+        List<List<Object>> results = runConcurrently(tasks);
+        for (List<Object> entities : results) {
+            Assert.assertEquals(results.get(0).size(), entities.size());
+            for (int i = 0; i < entities.size(); i++) {
+                Assert.assertSame(results.get(0).get(i), entities.get(i));
+            }
+        }
+
+        Set<Long> termIds = new HashSet<Long>();
+        Set<Long> userIds = new HashSet<Long>();
+        for (int r = 0; r < ROUNDS; r++) {
+            Term term = getPersistence().getOrCreateTerm(TermCategory.TERM, "term" + r);
+            User user = getPersistence().getOrCreateUser("user" + r);
+            Assert.assertTrue(termIds.add(term.getId()));
+            Assert.assertTrue(userIds.add(user.getId()));
+        }
+        Assert.assertEquals(ROUNDS, getPersistence().getAllTerms().size());
+        Assert.assertEquals(ROUNDS, getPersistence().getAllUsers().size());
+    }
+
+    /**
+     * Tests the learner running for many users at once on one persistence
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testConcurrentLearning() throws Exception {
+        Message message = createPlainTextMessage(CONTENT, null, null);
+        message = getPersistence().storeMessage(message);
+
+        RankerConfiguration rankerConfiguration = createRankerConfiguration();
+        InformationExtractionCommand<MessageFeatureContext> ieCommand = InformationExtractionCommand
+                .createDefaultGermanEnglish(getPersistence(),
+                        new InformationExtractionConfiguration());
+        ieCommand.process(new MessageFeatureContext(getPersistence(), message, null));
+
+        final Collection<Term> terms = getTerms(message);
+
+        final Learner learner = new Learner(getPersistence(), rankerConfiguration, ieCommand);
+        final String messageGlobalId = message.getGlobalId();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < THREADS; i++) {
+            final int thread = i;
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    for (int r = 0; r < ROUNDS / 10; r++) {
+                        learn(learner, "user" + thread + "_" + r, messageGlobalId);
+
+                        // read the entries of another user while it might be learned
+                        UserModel userModel = getPersistence().getOrCreateUserModelByUser(
+                                "user" + (thread + 1) % THREADS + "_" + r,
+                                UserModel.DEFAULT_USER_MODEL_TYPE);
+                        getPersistence().getUserModelEntriesForTerms(userModel, terms);
+                    }
+                    return null;
+                }
+            });
+        }
+        runConcurrently(tasks);
+
+        for (int i = 0; i < THREADS; i++) {
+            for (int r = 0; r < ROUNDS / 10; r++) {
+                assertLearned("user" + i + "_" + r, messageGlobalId, terms);
+            }
+        }
+    }
+
+    /**
+     * Tests the ranker and the learner running on several threads at once on one persistence. The
+     * readers the messages are ranked for learned before, so every message must get the rank of a
+     * message ranked alone, while other users are learned meanwhile.
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testConcurrentRankingAndLearning() throws Exception {
+        final MessageGroup messageGroup = getPersistence().storeMessageGroup(
+                new MessageGroup("messageGroup"));
+        final List<String> readers = Arrays.asList("reader0", "reader1", "reader2", "reader3");
+        RankerConfiguration rankerConfiguration = createRankerConfiguration();
+        // the learning messages sent by the ranker are not delivered, the learner is invoked
+        // directly by the threads instead
+        final Ranker ranker = new Ranker(getPersistence(), new VirtualMachineCommunicator(
+                new LinkedBlockingQueue<CommunicationMessage>(),
+                new LinkedBlockingQueue<CommunicationMessage>()),
+                new SimpleMessageGroupMemberRunner<MessageFeatureContext>(readers),
+                rankerConfiguration);
+        final Learner learner = new Learner(getPersistence(), rankerConfiguration,
+                ranker.getInformationExtractionChain());
+        try {
+            Message message = ranker.rank(
+                    createPlainTextMessage(CONTENT, "author", messageGroup), null, null, true)
+                    .getMessage();
+            final String messageGlobalId = message.getGlobalId();
+            final Collection<Term> terms = getTerms(message);
+            for (String reader : readers) {
+                learn(learner, reader, messageGlobalId);
+            }
+
+            MessageFeatureContext expected = ranker.rank(
+                    createPlainTextMessage(CONTENT, "author", messageGroup), null, null, false);
+            Map<String, Float> expectedRanks = new HashMap<String, Float>();
+            for (String reader : readers) {
+                MessageRank messageRank = expected.getUserContext(reader).getMessageRank();
+                Assert.assertTrue("rank should be positive but is " + messageRank.getRank(),
+                        messageRank.getRank() > 0);
+                expectedRanks.put(reader, messageRank.getRank());
+            }
+
+            List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+            for (int i = 0; i < THREADS; i++) {
+                final int thread = i;
+                tasks.add(new Callable<List<String>>() {
+
+                    @Override
+                    public List<String> call() throws Exception {
+                        List<String> rankedGlobalIds = new ArrayList<String>();
+                        for (int r = 0; r < ROUNDS / 10; r++) {
+                            Message message = createPlainTextMessage(CONTENT, "author",
+                                    messageGroup);
+                            rankedGlobalIds.add(ranker.rank(message, null, null, false)
+                                    .getMessage().getGlobalId());
+                            learn(learner, "user" + thread + "_" + r, messageGlobalId);
+                        }
+                        return rankedGlobalIds;
+                    }
+                });
+            }
+            List<List<String>> results = runConcurrently(tasks);
+
+            for (List<String> rankedGlobalIds : results) {
+                Assert.assertEquals(ROUNDS / 10, rankedGlobalIds.size());
+                for (String rankedGlobalId : rankedGlobalIds) {
+                    for (String reader : readers) {
+                        MessageRank messageRank = getPersistence().getMessageRank(reader,
+                                rankedGlobalId);
+                        Assert.assertNotNull(messageRank);
+                        Assert.assertEquals(expectedRanks.get(reader), messageRank.getRank(),
+                                0.0001);
+                    }
+                }
+            }
+            for (String reader : readers) {
+                assertLearned(reader, messageGlobalId, terms);
+            }
+            for (int i = 0; i < THREADS; i++) {
+                for (int r = 0; r < ROUNDS / 10; r++) {
+                    assertLearned("user" + i + "_" + r, messageGlobalId, terms);
+                }
+            }
+        } finally {
+            ranker.close();
+        }
+    }
+
+    /**
+     * Tests that ranking messages with rankAll extracting them in parallel gives the same ranks as
+     * extracting them one after another, and that every message is extracted once
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testRankAllInParallel() throws Exception {
+        List<Map<String, Float>> expectedRanks = rankAll(1);
+        List<Map<String, Float>> actualRanks = rankAll(4);
+
+        Set<Float> distinctRanks = new HashSet<Float>();
+        for (int i = 0; i < RANK_ALL_MESSAGES; i++) {
+            for (Map.Entry<String, Float> rank : expectedRanks.get(i).entrySet()) {
+                Assert.assertEquals("message " + i + " " + rank.getKey(), rank.getValue(),
+                        actualRanks.get(i).get(rank.getKey()), 0.0001);
+                distinctRanks.add(rank.getValue());
+            }
+        }
+        Assert.assertTrue("the messages must get different ranks", distinctRanks.size() > 1);
+    }
+}
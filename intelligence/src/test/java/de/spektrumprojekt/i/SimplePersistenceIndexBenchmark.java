@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePublicationDateComperator;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+import de.spektrumprojekt.persistence.simple.UserModelHolder;
+
+/**
+ * Benchmark comparing the indexed queries of the {@link SimplePersistence} with scanning all data
+ * as the persistence did before having the indexes. Not a unit test, run it using the main method
+ * with enough heap, e.g. -Xmx2g.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class SimplePersistenceIndexBenchmark {
+
+    private interface Query {
+        int run(int i);
+    }
+
+    private static final int USERS = 100000;
+    private static final int MESSAGE_GROUPS = 20;
+    private static final int SIMILARITIES_PER_USER = 5;
+    private static final int TERMS = 50000;
+    private static final int ENTRIES_PER_USER = 10;
+    private static final int MESSAGES = 100000;
+    // number of users or terms given to a query
+    private static final int QUERY_SIZE = 50;
+    private static final int QUERIES = 100;
+    private static final long MIN_DURATION_NS = 2000000000L;
+
+    public static void main(String[] args) {
+        new SimplePersistenceIndexBenchmark().run();
+    }
+
+    private final Random random = new Random(42);
+
+    private final SimplePersistence persistence = new SimplePersistence();
+
+    private final List<String> messageGroupGlobalIds = new ArrayList<String>();
+
+    private final List<Term> terms = new ArrayList<Term>();
+
+    private final List<UserSimilarity> allUserSimilarities = new ArrayList<UserSimilarity>();
+
+    private long checksum;
+
+    private void createData() {
+        for (int g = 0; g < MESSAGE_GROUPS; g++) {
+            messageGroupGlobalIds.add(persistence.storeMessageGroup(new MessageGroup("group" + g))
+                    .getGlobalId());
+        }
+        for (int t = 0; t < TERMS; t++) {
+            terms.add(persistence.getOrCreateTerm(TermCategory.TERM, "term" + t));
+        }
+        for (int u = 0; u < USERS; u++) {
+            UserModel userModel = persistence.getOrCreateUserModelByUser("user" + u,
+                    UserModel.DEFAULT_USER_MODEL_TYPE);
+            Collection<UserModelEntry> entries = new ArrayList<UserModelEntry>();
+            for (int e = 0; e < ENTRIES_PER_USER; e++) {
+                entries.add(new UserModelEntry(userModel, new ScoredTerm(getRandomTerm(), 1)));
+            }
+            persistence.storeOrUpdateUserModelEntries(userModel, entries);
+
+            String messageGroupGlobalId = getRandomMessageGroupGlobalId();
+            for (int s = 0; s < SIMILARITIES_PER_USER; s++) {
+                persistence.storeUserSimilarity(new UserSimilarity("user" + u, getRandomUser(),
+                        messageGroupGlobalId, random.nextDouble()));
+            }
+        }
+        allUserSimilarities.addAll(persistence.getUserSimilarities((String) null));
+
+        MessageGroup[] messageGroups = persistence.getAllMessageGroups().toArray(
+                new MessageGroup[0]);
+        for (int m = 0; m < MESSAGES; m++) {
+            Message message = new Message(MessageType.CONTENT, StatusType.OK, new Date(
+                    random.nextInt(MESSAGES) * 1000L));
+            message.setMessageGroup(messageGroups[random.nextInt(messageGroups.length)]);
+            persistence.storeMessage(message);
+        }
+    }
+
+    private MessageFilter createMessageFilter(int i) {
+        MessageFilter messageFilter = new MessageFilter();
+        messageFilter.setMessageGroupGlobalId(messageGroupGlobalIds.get(i % MESSAGE_GROUPS));
+        messageFilter.setMinPublicationDate(new Date((MESSAGES - 1000 - i) * 1000L));
+        messageFilter.setLastMessagesCount(QUERY_SIZE);
+        return messageFilter;
+    }
+
+    private String getRandomMessageGroupGlobalId() {
+        return messageGroupGlobalIds.get(random.nextInt(messageGroupGlobalIds.size()));
+    }
+
+    private Term getRandomTerm() {
+        return terms.get(random.nextInt(terms.size()));
+    }
+
+    private String getRandomUser() {
+        return "user" + random.nextInt(USERS);
+    }
+
+    private double measure(Query query) {
+        // warm up
+        for (int i = 0; i < QUERIES; i++) {
+            checksum += query.run(i);
+        }
+        long operations = 0;
+        long start = System.nanoTime();
+        long duration;
+        do {
+            for (int i = 0; i < QUERIES; i++) {
+                checksum += query.run(i);
+            }
+            operations += QUERIES;
+            duration = System.nanoTime() - start;
+        } while (duration < MIN_DURATION_NS);
+        return duration / (double) operations / 1000d;
+    }
+
+    private void print(String name, Query scan, Query indexed) {
+        double scanDuration = measure(scan);
+        double indexedDuration = measure(indexed);
+        System.out.println(String.format("%-22s scan=%10.1f indexed=%8.1f (x%.0f)", name,
+                scanDuration, indexedDuration, scanDuration / indexedDuration));
+    }
+
+    public void run() {
+        createData();
+
+        final List<String> queryUsers = new ArrayList<String>();
+        final List<String> queryMessageGroups = new ArrayList<String>();
+        final List<Collection<String>> similarUsers = new ArrayList<Collection<String>>();
+        final List<Collection<Term>> queryTerms = new ArrayList<Collection<Term>>();
+        for (int i = 0; i < QUERIES; i++) {
+            // query a user having similarities within the message group
+            UserSimilarity userSimilarity = allUserSimilarities.get(random
+                    .nextInt(allUserSimilarities.size()));
+            queryUsers.add(userSimilarity.getUserGlobalIdFrom());
+            queryMessageGroups.add(userSimilarity.getMessageGroupGlobalId());
+            Collection<String> users = new HashSet<String>();
+            Collection<Term> terms = new HashSet<Term>();
+            for (int q = 0; q < QUERY_SIZE; q++) {
+                users.add(getRandomUser());
+                terms.add(getRandomTerm());
+            }
+            similarUsers.add(users);
+            queryTerms.add(terms);
+        }
+
+        System.out.println("users=" + USERS + " userSimilarities=" + allUserSimilarities.size()
+                + " userModelEntries=" + USERS * ENTRIES_PER_USER + " messages=" + MESSAGES
+                + " querySize=" + QUERY_SIZE + " (micro seconds per query)");
+
+        print("getUserSimilarities", new Query() {
+
+            @Override
+            public int run(int i) {
+                String messageGroupGlobalId = queryMessageGroups.get(i);
+                Collection<UserSimilarity> sims = new HashSet<UserSimilarity>();
+                for (UserSimilarity similarity : allUserSimilarities) {
+                    if (similarity.getUserGlobalIdFrom().equals(queryUsers.get(i))
+                            && similarUsers.get(i).contains(similarity.getUserGlobalIdTo())
+                            && similarity.getMessageGroupGlobalId().equals(messageGroupGlobalId)) {
+                        sims.add(similarity);
+                    }
+                }
+                return sims.size();
+            }
+        }, new Query() {
+
+            @Override
+            public int run(int i) {
+                return persistence.getUserSimilarities(queryUsers.get(i), similarUsers.get(i),
+                        queryMessageGroups.get(i), 0).size();
+            }
+        });
+
+        print("getUserSimilarities(g)", new Query() {
+
+            @Override
+            public int run(int i) {
+                String messageGroupGlobalId = messageGroupGlobalIds.get(i % MESSAGE_GROUPS);
+                Collection<UserSimilarity> sims = new HashSet<UserSimilarity>();
+                for (UserSimilarity similarity : allUserSimilarities) {
+                    if (messageGroupGlobalId.equals(similarity.getMessageGroupGlobalId())) {
+                        sims.add(similarity);
+                    }
+                }
+                return sims.size();
+            }
+        }, new Query() {
+
+            @Override
+            public int run(int i) {
+                return persistence.getUserSimilarities(
+                        messageGroupGlobalIds.get(i % MESSAGE_GROUPS)).size();
+            }
+        });
+
+        print("getMessages", new Query() {
+
+            @Override
+            public int run(int i) {
+                MessageFilter messageFilter = createMessageFilter(i);
+                List<Message> baseMessages = new ArrayList<Message>(persistence.getMessages());
+                Collections.sort(baseMessages, new MessagePublicationDateComperator());
+                List<Message> filteredMessages = new ArrayList<Message>();
+                for (Message message : baseMessages) {
+                    if (messageFilter.getMessageGroupGlobalId().equals(
+                            message.getMessageGroup().getGlobalId())
+                            && message.getPublicationDate().after(
+                                    messageFilter.getMinPublicationDate())) {
+                        filteredMessages.add(message);
+                    }
+                    if (messageFilter.getLastMessagesCount() <= filteredMessages.size()) {
+                        break;
+                    }
+                }
+                return filteredMessages.size();
+            }
+        }, new Query() {
+
+            @Override
+            public int run(int i) {
+                return persistence.getMessages(createMessageFilter(i)).size();
+            }
+        });
+
+        print("getUsersWithUserModel", new Query() {
+
+            @Override
+            public int run(int i) {
+                Collection<UserModel> userModels = new HashSet<UserModel>();
+                userModels: for (UserModelHolder holder : persistence.getUserModelByTypeHolders()
+                        .get(UserModel.DEFAULT_USER_MODEL_TYPE).values()) {
+                    for (Term term : queryTerms.get(i)) {
+                        if (holder.getUserModelEntry(term) != null) {
+                            userModels.add(holder.getUserModel());
+                            continue userModels;
+                        }
+                    }
+                }
+                return userModels.size();
+            }
+        }, new Query() {
+
+            @Override
+            public int run(int i) {
+                return persistence.getUsersWithUserModel(queryTerms.get(i),
+                        UserModel.DEFAULT_USER_MODEL_TYPE).size();
+            }
+        });
+
+        // print it to make sure the results are used
+        System.out.println("checksum=" + checksum);
+    }
+}
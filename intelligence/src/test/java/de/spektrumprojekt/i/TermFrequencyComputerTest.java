@@ -0,0 +1,324 @@
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Assert;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.lang3.time.DateUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.spektrumprojekt.commons.task.TaskRunner;
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.message.TermFrequency;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
+import de.spektrumprojekt.i.term.frequency.TermFrequencyFlushComputer;
+import de.spektrumprojekt.persistence.DelegatingPersistence;
+import de.spektrumprojekt.persistence.Persistence;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test for the {@link TermFrequencyComputer}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class TermFrequencyComputerTest extends IntelligenceSpektrumTest {
+
+    /**
+     * Persistence keeping the counts of the updated terms instead of updating them, like a
+     * database every message gets its own instances of the terms
+     */
+    private static class TermCopyingPersistence extends DelegatingPersistence {
+
+        private final Map<String, Integer> updatedCounts = new ConcurrentHashMap<String, Integer>();
+
+        public TermCopyingPersistence(Persistence delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void updateTerms(Collection<Term> termsChanged) {
+            for (Term term : termsChanged) {
+                updatedCounts.put(term.getValue(), term.getCount());
+            }
+        }
+    }
+
+    private static final int THREADS = 4;
+    private static final int MESSAGES_PER_THREAD = 250;
+    private static final String[] TERMS = { "A", "B", "C", "D", "E" };
+
+    private Message createMessage(Persistence persistence, String... terms) {
+        Message message = new Message(UUID.randomUUID().toString(), MessageType.CONTENT,
+                StatusType.OK, null, new Date());
+        MessagePart messagePart = new MessagePart(MimeType.TEXT_PLAIN, "");
+        for (String t : terms) {
+            Term term = persistence.getOrCreateTerm(TermCategory.TERM, t);
+            messagePart.getScoredTerms().add(new ScoredTerm(term, 1));
+        }
+        message.addMessagePart(messagePart);
+        return message;
+    }
+
+    private Message createMessage(String... terms) {
+        return createMessage(getPersistence(), terms);
+    }
+
+    private void assertRebuildCounts(SimplePersistence persistence,
+            TermFrequencyComputer termFrequencyComputer) {
+        TermFrequency termFrequency = persistence.getTermFrequency();
+        Assert.assertNull(termFrequency.getRebuildCheckpointMessageId());
+        Assert.assertEquals(10, termFrequency.getMessageCount());
+        Assert.assertEquals(15, termFrequency.getAllTermCount());
+        Assert.assertEquals(2, termFrequency.getUniqueTermCount());
+        Assert.assertEquals(10, termFrequencyComputer.getMessageCount());
+        Assert.assertEquals(10, persistence.getOrCreateTerm(TermCategory.TERM, "A").getCount());
+        Assert.assertEquals(5, persistence.getOrCreateTerm(TermCategory.TERM, "B").getCount());
+    }
+
+    @Before
+    public void init() throws ConfigurationException {
+        setupPersistence();
+    }
+
+    private void storeRebuildMessages(SimplePersistence persistence) {
+        for (int i = 0; i < 10; i++) {
+            Message message = i % 2 == 0 ? createMessage(persistence, "A", "B")
+                    : createMessage(persistence, "A");
+            persistence.storeMessage(message);
+        }
+    }
+
+    /**
+     * Tests that concurrently integrated messages are counted exactly and only written to the
+     * persistence on flush
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testConcurrentIntegrateAndFlush() throws Exception {
+        final TermFrequencyComputer termFrequencyComputer = new TermFrequencyComputer(
+                getPersistence(), false, DateUtils.MILLIS_PER_HOUR);
+
+        List<Callable<Void>> integrations = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < THREADS; i++) {
+            final List<Message> messages = new ArrayList<Message>();
+            for (int m = 0; m < MESSAGES_PER_THREAD; m++) {
+                messages.add(createMessage(TERMS));
+            }
+            integrations.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    for (Message message : messages) {
+                        termFrequencyComputer.integrate(message);
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (Future<Void> future : executorService.invokeAll(integrations)) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+
+        int messageCount = THREADS * MESSAGES_PER_THREAD;
+        Assert.assertEquals(messageCount, termFrequencyComputer.getMessageCount());
+        Assert.assertEquals(messageCount * TERMS.length, termFrequencyComputer.getAllTermCount());
+        Assert.assertEquals(TERMS.length, termFrequencyComputer.getUniqueTermCount());
+        for (String t : TERMS) {
+            Assert.assertEquals(messageCount,
+                    getPersistence().getOrCreateTerm(TermCategory.TERM, t).getCount());
+        }
+
+        // the flush intervall is not over yet
+        TermFrequency termFrequency = getPersistence().getTermFrequency();
+        Assert.assertEquals(0, termFrequency.getMessageCount());
+
+        TaskRunner taskRunner = new TaskRunner();
+        taskRunner.register(new TermFrequencyFlushComputer(termFrequencyComputer),
+                termFrequencyComputer.getFlushIntervall(), 0, false);
+        taskRunner.check();
+
+        termFrequency = getPersistence().getTermFrequency();
+        Assert.assertEquals(messageCount, termFrequency.getMessageCount());
+        Assert.assertEquals(messageCount * TERMS.length, termFrequency.getAllTermCount());
+        Assert.assertEquals(TERMS.length, termFrequency.getUniqueTermCount());
+    }
+
+    /**
+     * Tests that no count gets lost if the terms are flushed while other instances of them are
+     * integrated
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testConcurrentIntegrateAndFlushOfTermCopies() throws Exception {
+        final TermCopyingPersistence persistence = new TermCopyingPersistence(getPersistence());
+        final TermFrequencyComputer termFrequencyComputer = new TermFrequencyComputer(
+                persistence, false, DateUtils.MILLIS_PER_HOUR);
+
+        final AtomicBoolean integrating = new AtomicBoolean(true);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        tasks.add(new Callable<Void>() {
+
+            @Override
+            public Void call() throws Exception {
+                while (integrating.get()) {
+                    termFrequencyComputer.flush();
+                }
+                return null;
+            }
+        });
+        final AtomicInteger runningIntegrations = new AtomicInteger(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            final List<Message> messages = new ArrayList<Message>();
+            for (int m = 0; m < MESSAGES_PER_THREAD; m++) {
+                Message message = createMessage(TERMS);
+                for (ScoredTerm scoredTerm : message.getMessageParts().iterator().next()
+                        .getScoredTerms()) {
+                    Term term = scoredTerm.getTerm();
+                    Term copy = new Term(term.getCategory(), term.getValue());
+                    copy.setId(term.getId());
+                    scoredTerm.setTerm(copy);
+                }
+                messages.add(message);
+            }
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    try {
+                        for (Message message : messages) {
+                            termFrequencyComputer.integrate(message);
+                        }
+                    } finally {
+                        if (runningIntegrations.decrementAndGet() == 0) {
+                            integrating.set(false);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            for (Future<Void> future : executorService.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+        termFrequencyComputer.flush();
+
+        int messageCount = THREADS * MESSAGES_PER_THREAD;
+        Assert.assertEquals(TERMS.length, termFrequencyComputer.getUniqueTermCount());
+        for (String t : TERMS) {
+            Assert.assertEquals(Integer.valueOf(messageCount), persistence.updatedCounts.get(t));
+        }
+    }
+
+    /**
+     * Tests that the rebuild counts all messages page by page
+     */
+    @Test
+    public void testRebuild() {
+        SimplePersistence persistence = (SimplePersistence) getPersistence();
+        storeRebuildMessages(persistence);
+
+        TermFrequencyComputer termFrequencyComputer = new TermFrequencyComputer(persistence,
+                false);
+        // counts from before the rebuild must be replaced
+        termFrequencyComputer.integrate(createMessage("A", "B"));
+        termFrequencyComputer.setRebuildPageSize(3);
+        termFrequencyComputer.run();
+
+        assertRebuildCounts(persistence, termFrequencyComputer);
+    }
+
+    /**
+     * Tests that an interrupted rebuild continues after the last checkpoint
+     */
+    @Test
+    public void testRebuildResumesFromCheckpoint() {
+        final AtomicInteger pagesToLoad = new AtomicInteger(2);
+        SimplePersistence persistence = new SimplePersistence() {
+
+            @Override
+            public List<Message> getMessages(MessageFilter messageFilter) {
+                if (pagesToLoad.getAndDecrement() == 0) {
+                    throw new RuntimeException("Connection lost");
+                }
+                return super.getMessages(messageFilter);
+            }
+        };
+        persistence.initialize();
+        storeRebuildMessages(persistence);
+
+        TermFrequencyComputer termFrequencyComputer = new TermFrequencyComputer(persistence,
+                false);
+        termFrequencyComputer.setRebuildPageSize(3);
+        try {
+            termFrequencyComputer.run();
+            Assert.fail("The rebuild should have been interrupted.");
+        } catch (RuntimeException e) {
+            // expected
+        }
+        TermFrequency termFrequency = persistence.getTermFrequency();
+        Assert.assertNotNull(termFrequency.getRebuildCheckpointMessageId());
+        Assert.assertEquals(6, termFrequency.getMessageCount());
+
+        pagesToLoad.set(Integer.MAX_VALUE);
+        termFrequencyComputer = new TermFrequencyComputer(persistence, false);
+        termFrequencyComputer.setRebuildPageSize(3);
+        termFrequencyComputer.run();
+
+        assertRebuildCounts(persistence, termFrequencyComputer);
+    }
+
+    /**
+     * Tests that the counts are written for every message without flush intervall
+     */
+    @Test
+    public void testIntegrateWithoutFlushIntervall() {
+        TermFrequencyComputer termFrequencyComputer = new TermFrequencyComputer(
+                getPersistence(), false);
+        termFrequencyComputer.integrate(createMessage("A", "B"));
+        termFrequencyComputer.integrate(createMessage("A"));
+
+        TermFrequency termFrequency = getPersistence().getTermFrequency();
+        Assert.assertEquals(2, termFrequency.getMessageCount());
+        Assert.assertEquals(3, termFrequency.getAllTermCount());
+        Assert.assertEquals(2, termFrequency.getUniqueTermCount());
+        Assert.assertEquals(2, getPersistence().getOrCreateTerm(TermCategory.TERM, "A")
+                .getCount());
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.i.ranker.RankerConfiguration;
+import de.spektrumprojekt.i.ranker.RankerConfigurationFlag;
+import de.spektrumprojekt.i.term.TermSimilarityWeightComputerFactory;
+import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
+import de.spektrumprojekt.i.term.TermWeightStrategy;
+import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
+import de.spektrumprojekt.i.term.similarity.SparseTermVectorSimilarityComputer;
+import de.spektrumprojekt.i.term.similarity.TermVectorSimilarityComputer;
+import de.spektrumprojekt.i.timebased.MaxMergeValuesStrategy;
+import de.spektrumprojekt.i.timebased.MergeValuesStrategy;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Benchmark comparing the map based {@link TermVectorSimilarityComputer}s with the
+ * {@link SparseTermVectorSimilarityComputer} for different numbers of message terms, for one user
+ * model and for merging two user models. As in the ranker the similarity of every message is
+ * computed for a number of users. Not a unit test, run it using the main method.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class TermVectorSimilarityBenchmark {
+
+    private static final int NUMBER_OF_TERMS = 20000;
+    private static final int NUMBER_OF_MESSAGES_SEEN = 100000;
+    private static final int[] TERMS_PER_MESSAGE = { 20, 100, 500 };
+    // the share of the message terms the user model has an entry for
+    private static final float MATCHING_ENTRIES = 0.5f;
+    private static final int MESSAGES = 20;
+    private static final int USERS_PER_MESSAGE = 50;
+    private static final long MIN_DURATION_NS = 1000000000L;
+
+    public static void main(String[] args) {
+        new TermVectorSimilarityBenchmark().run();
+    }
+
+    private final Random random = new Random(42);
+
+    private final SimplePersistence persistence = new SimplePersistence();
+
+    private final List<Term> terms = new ArrayList<Term>();
+
+    private final MergeValuesStrategy mergeValuesStrategy = new MaxMergeValuesStrategy();
+
+    private float checksum;
+
+    private Map<Term, UserModelEntry> createEntries(UserModel userModel,
+            Collection<Term> messageTerms) {
+        Map<Term, UserModelEntry> entries = new HashMap<Term, UserModelEntry>();
+        for (Term term : messageTerms) {
+            if (random.nextFloat() < MATCHING_ENTRIES) {
+                entries.put(term, new UserModelEntry(userModel, new ScoredTerm(term, random
+                        .nextFloat())));
+            }
+        }
+        return entries;
+    }
+
+    private TermVectorSimilarityComputer createTermVectorSimilarityComputer(
+            TermVectorSimilarityStrategy similarityStrategy, boolean sparse) {
+        RankerConfiguration rankerConfiguration = new RankerConfiguration(
+                TermWeightStrategy.INVERSE_TERM_FREQUENCY, similarityStrategy);
+        if (sparse) {
+            rankerConfiguration.addFlags(RankerConfigurationFlag.USE_SPARSE_TERM_VECTOR_SIMILARITY);
+        }
+        return TermSimilarityWeightComputerFactory.getInstance()
+                .createTermVectorSimilarityComputer(rankerConfiguration,
+                        new TermFrequencyComputer(persistence, false));
+    }
+
+    private double measure(TermVectorSimilarityComputer computer,
+            List<Collection<Term>> messageTerms, List<List<Map<Term, UserModelEntry>>> entries,
+            List<List<Map<String, Map<Term, UserModelEntry>>>> allEntries) {
+        // warm up
+        run(computer, messageTerms, entries, allEntries);
+
+        long operations = 0;
+        long start = System.nanoTime();
+        long duration;
+        do {
+            operations += run(computer, messageTerms, entries, allEntries);
+            duration = System.nanoTime() - start;
+        } while (duration < MIN_DURATION_NS);
+        return duration / (double) operations;
+    }
+
+    public void run() {
+        // the term counts and message count the inverse term frequency weights are based on
+        for (int i = 0; i < NUMBER_OF_TERMS; i++) {
+            Term term = persistence.getOrCreateTerm(TermCategory.TERM, "term" + i);
+            term.setCount(1 + random.nextInt(NUMBER_OF_MESSAGES_SEEN / 10));
+            terms.add(term);
+        }
+        persistence.getTermFrequency().setMessageCount(NUMBER_OF_MESSAGES_SEEN);
+        UserModel userModel = persistence.getOrCreateUserModelByUser("user",
+                UserModel.DEFAULT_USER_MODEL_TYPE);
+        UserModel shortTermUserModel = persistence.getOrCreateUserModelByUser("user",
+                "SHORT_TERM");
+
+        System.out.println("messages=" + MESSAGES + " usersPerMessage=" + USERS_PER_MESSAGE
+                + " matchingEntries=" + MATCHING_ENTRIES
+                + " (ns per similarity, single user model / two user models merged)");
+        for (int termsPerMessage : TERMS_PER_MESSAGE) {
+            List<Collection<Term>> messageTerms = new ArrayList<Collection<Term>>();
+            List<List<Map<Term, UserModelEntry>>> entries = new ArrayList<List<Map<Term, UserModelEntry>>>();
+            List<List<Map<String, Map<Term, UserModelEntry>>>> allEntries = new ArrayList<List<Map<String, Map<Term, UserModelEntry>>>>();
+            for (int i = 0; i < MESSAGES; i++) {
+                Collection<Term> sample = new HashSet<Term>();
+                while (sample.size() < termsPerMessage) {
+                    sample.add(terms.get(random.nextInt(terms.size())));
+                }
+                messageTerms.add(sample);
+                List<Map<Term, UserModelEntry>> entriesOfUsers = new ArrayList<Map<Term, UserModelEntry>>();
+                List<Map<String, Map<Term, UserModelEntry>>> allEntriesOfUsers = new ArrayList<Map<String, Map<Term, UserModelEntry>>>();
+                for (int u = 0; u < USERS_PER_MESSAGE; u++) {
+                    Map<Term, UserModelEntry> userModelEntries = createEntries(userModel, sample);
+                    entriesOfUsers.add(userModelEntries);
+
+                    Map<String, Map<Term, UserModelEntry>> entriesPerType = new HashMap<String, Map<Term, UserModelEntry>>();
+                    entriesPerType.put(UserModel.DEFAULT_USER_MODEL_TYPE, userModelEntries);
+                    entriesPerType.put("SHORT_TERM", createEntries(shortTermUserModel, sample));
+                    allEntriesOfUsers.add(entriesPerType);
+                }
+                entries.add(entriesOfUsers);
+                allEntries.add(allEntriesOfUsers);
+            }
+
+            for (TermVectorSimilarityStrategy strategy : TermVectorSimilarityStrategy.values()) {
+                TermVectorSimilarityComputer mapBased = createTermVectorSimilarityComputer(
+                        strategy, false);
+                TermVectorSimilarityComputer sparse = createTermVectorSimilarityComputer(
+                        strategy, true);
+
+                double mapBasedSingle = measure(mapBased, messageTerms, entries, null);
+                double sparseSingle = measure(sparse, messageTerms, entries, null);
+                double mapBasedMerged = measure(mapBased, messageTerms, null, allEntries);
+                double sparseMerged = measure(sparse, messageTerms, null, allEntries);
+
+                System.out.println(String.format("terms=%3d %-7s map=%8.0f sparse=%8.0f"
+                        + " (x%.2f) | map=%8.0f sparse=%8.0f (x%.2f)", termsPerMessage,
+                        strategy, mapBasedSingle, sparseSingle, mapBasedSingle / sparseSingle,
+                        mapBasedMerged, sparseMerged, mapBasedMerged / sparseMerged));
+            }
+        }
+        // print it to make sure the results are used
+        System.out.println("checksum=" + checksum);
+    }
+
+    private int run(TermVectorSimilarityComputer computer, List<Collection<Term>> messageTerms,
+            List<List<Map<Term, UserModelEntry>>> entries,
+            List<List<Map<String, Map<Term, UserModelEntry>>>> allEntries) {
+        for (int i = 0; i < messageTerms.size(); i++) {
+            for (int u = 0; u < USERS_PER_MESSAGE; u++) {
+                if (allEntries == null) {
+                    checksum += computer.getSimilarity(null, entries.get(i).get(u),
+                            messageTerms.get(i));
+                } else {
+                    checksum += computer.getSimilarity(null, allEntries.get(i).get(u),
+                            mergeValuesStrategy, messageTerms.get(i));
+                }
+            }
+        }
+        return messageTerms.size() * USERS_PER_MESSAGE;
+    }
+}
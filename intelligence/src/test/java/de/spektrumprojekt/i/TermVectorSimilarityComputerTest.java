@@ -27,12 +27,16 @@ import de.spektrumprojekt.datamodel.subscription.status.StatusType;
 import de.spektrumprojekt.datamodel.user.UserModel;
 import de.spektrumprojekt.datamodel.user.UserModelEntry;
 import de.spektrumprojekt.helper.MessageHelper;
+import de.spektrumprojekt.i.ranker.RankerConfiguration;
+import de.spektrumprojekt.i.ranker.RankerConfigurationFlag;
 import de.spektrumprojekt.i.term.TermSimilarityWeightComputerFactory;
 import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
 import de.spektrumprojekt.i.term.TermWeightStrategy;
 import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
+import de.spektrumprojekt.i.term.similarity.SparseTermVectorSimilarityComputer;
 import de.spektrumprojekt.i.term.similarity.TermVectorSimilarityComputer;
 import de.spektrumprojekt.i.term.weight.TermWeightComputer;
+import de.spektrumprojekt.i.timebased.MergeValuesStrategy;
 
 public class TermVectorSimilarityComputerTest extends IntelligenceSpektrumTest {
 
@@ -86,16 +90,27 @@ public class TermVectorSimilarityComputerTest extends IntelligenceSpektrumTest {
                         termFrequencyComputer,
                         false);
 
+        computeMessageSimilarity(termVectorSimilarityComputer, simStrategy, weightStrategy,
+                expectedSimilarity);
+
+        termVectorSimilarityComputer = createSparseTermVectorSimilarityComputer(simStrategy,
+                weightStrategy, false);
+        Assert.assertTrue(
+                termVectorSimilarityComputer instanceof SparseTermVectorSimilarityComputer);
+
+        computeMessageSimilarity(termVectorSimilarityComputer, simStrategy, weightStrategy,
+                expectedSimilarity);
+    }
+
+    private void computeMessageSimilarity(
+            TermVectorSimilarityComputer termVectorSimilarityComputer,
+            TermVectorSimilarityStrategy simStrategy, TermWeightStrategy weightStrategy,
+            Map<Long, Float> expectedSimilarity) {
         for (Message message : this.messages) {
 
             Collection<Term> terms = MessageHelper.getAllTerms(message);
-            Map<Term, UserModelEntry> relevant = new HashMap<Term, UserModelEntry>();
-            for (Term t : terms) {
-                UserModelEntry ume = this.userModelEntriesMap.get(t);
-                if (ume != null) {
-                    relevant.put(t, ume);
-                }
-            }
+            Map<Term, UserModelEntry> relevant = getRelevantEntries(this.userModelEntriesMap,
+                    terms);
 
             float sim = termVectorSimilarityComputer.getSimilarity(null, relevant,
                     terms);
@@ -137,6 +152,29 @@ public class TermVectorSimilarityComputerTest extends IntelligenceSpektrumTest {
 
     }
 
+    private TermVectorSimilarityComputer createSparseTermVectorSimilarityComputer(
+            TermVectorSimilarityStrategy simStrategy, TermWeightStrategy weightStrategy,
+            boolean treatMissingUserModelEntriesAsZero) {
+        RankerConfiguration rankerConfiguration = new RankerConfiguration(weightStrategy,
+                simStrategy, RankerConfigurationFlag.USE_SPARSE_TERM_VECTOR_SIMILARITY);
+        rankerConfiguration
+                .setTreatMissingUserModelEntriesAsZero(treatMissingUserModelEntriesAsZero);
+        return TermSimilarityWeightComputerFactory.getInstance()
+                .createTermVectorSimilarityComputer(rankerConfiguration, termFrequencyComputer);
+    }
+
+    private Map<Term, UserModelEntry> getRelevantEntries(Map<Term, UserModelEntry> entries,
+            Collection<Term> terms) {
+        Map<Term, UserModelEntry> relevant = new HashMap<Term, UserModelEntry>();
+        for (Term t : terms) {
+            UserModelEntry ume = entries.get(t);
+            if (ume != null) {
+                relevant.put(t, ume);
+            }
+        }
+        return relevant;
+    }
+
     @Before
     public void init() throws ConfigurationException {
 
@@ -373,6 +411,72 @@ public class TermVectorSimilarityComputerTest extends IntelligenceSpektrumTest {
 
     }
 
+    /**
+     * Compares the sparse similarity with the map based one for all combinations, also for the
+     * merge of several user models
+     */
+    @Test
+    public void testSparseSimilarityMatchesMapBasedSimilarity() {
+        // a second user model that only knows some of the terms
+        UserModel userModel = getPersistence().getOrCreateUserModelByUser(
+                "user2_" + UUID.randomUUID().toString(), "SECOND_USER_MODEL_TYPE");
+        Map<Term, UserModelEntry> secondUserModelEntries = new HashMap<Term, UserModelEntry>();
+        float score = 0.9f;
+        for (String t : new String[] { "B", "D", "G" }) {
+            Term term = getPersistence().getOrCreateTerm(TermCategory.TERM, t);
+            secondUserModelEntries.put(term, new UserModelEntry(userModel, new ScoredTerm(term,
+                    score)));
+            score -= 0.3f;
+        }
+        // average the values, hence missing entries counting as zero make a difference
+        MergeValuesStrategy mergeValuesStrategy = new MergeValuesStrategy() {
+
+            @Override
+            public float merge(Map<String, Float> values) {
+                float sum = 0;
+                for (float value : values.values()) {
+                    sum += value;
+                }
+                return values.isEmpty() ? 0 : sum / values.size();
+            }
+        };
+
+        for (TermVectorSimilarityStrategy simStrategy : TermVectorSimilarityStrategy.values()) {
+            for (TermWeightStrategy weightStrategy : TermWeightStrategy.values()) {
+                for (boolean treatMissingAsZero : new boolean[] { false, true }) {
+                    TermVectorSimilarityComputer mapBased = TermSimilarityWeightComputerFactory
+                            .getInstance().createTermVectorSimilarityComputer(simStrategy,
+                                    weightStrategy, termFrequencyComputer, treatMissingAsZero);
+                    TermVectorSimilarityComputer sparse = createSparseTermVectorSimilarityComputer(
+                            simStrategy, weightStrategy, treatMissingAsZero);
+
+                    for (Message message : this.messages) {
+                        String msg = simStrategy + " " + weightStrategy + " "
+                                + treatMissingAsZero + " " + message.getId();
+                        Collection<Term> terms = MessageHelper.getAllTerms(message);
+                        Map<Term, UserModelEntry> relevant = getRelevantEntries(
+                                userModelEntriesMap, terms);
+
+                        Assert.assertEquals(msg,
+                                mapBased.getSimilarity(null, relevant, terms),
+                                sparse.getSimilarity(null, relevant, terms), EPSILON);
+
+                        Map<String, Map<Term, UserModelEntry>> allEntries = new HashMap<String, Map<Term, UserModelEntry>>();
+                        allEntries.put(UserModel.DEFAULT_USER_MODEL_TYPE, relevant);
+                        allEntries.put("SECOND_USER_MODEL_TYPE",
+                                getRelevantEntries(secondUserModelEntries, terms));
+
+                        Float expected = mapBased.getSimilarity(null, allEntries,
+                                mergeValuesStrategy, terms);
+                        Float actual = sparse.getSimilarity(null, allEntries,
+                                mergeValuesStrategy, terms);
+                        Assert.assertEquals(msg, expected, actual, EPSILON);
+                    }
+                }
+            }
+        }
+    }
+
     public void testTermWeights(TermWeightStrategy termWeightStrategy,
             Map<String, Float> expectedValues) {
 
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import de.spektrumprojekt.callbacks.SimpleMessageGroupMemberRunner;
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.i.ranker.RankerConfiguration;
+import de.spektrumprojekt.i.ranker.UserModelConfiguration;
+import de.spektrumprojekt.i.ranker.chain.UserFeatureCommand;
+import de.spektrumprojekt.i.ranker.chain.features.ContentMatchFeatureCommand;
+import de.spektrumprojekt.i.term.TermSimilarityWeightComputerFactory;
+import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
+import de.spektrumprojekt.i.term.TermWeightStrategy;
+import de.spektrumprojekt.i.term.frequency.TermFrequencyComputer;
+import de.spektrumprojekt.i.term.similarity.TermVectorSimilarityComputer;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Benchmark for the {@link UserFeatureCommand} running the content match feature for a large
+ * message group with an increasing number of threads. Not a unit test, run it using the main
+ * method.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class UserFeatureCommandBenchmark {
+
+    private static final int NUMBER_OF_USERS = 5000;
+    private static final int NUMBER_OF_TERMS = 10000;
+    private static final int ENTRIES_PER_USER_MODEL = 200;
+    private static final int TERMS_PER_MESSAGE = 100;
+    private static final int MESSAGES = 20;
+    private static final int WARM_UP_MESSAGES = 5;
+
+    public static void main(String[] args) {
+        new UserFeatureCommandBenchmark().run();
+    }
+
+    private final Random random = new Random(42);
+
+    private final SimplePersistence persistence = new SimplePersistence();
+
+    private final List<Term> terms = new ArrayList<Term>();
+
+    private final MessageGroup messageGroup = new MessageGroup("benchmarkGroup");
+
+    private Message createMessage(int i) {
+        Message message = new Message("benchmarkMessage" + i, MessageType.CONTENT,
+                StatusType.OK, "subscriptionId", new Date());
+        message.setMessageGroup(messageGroup);
+        MessagePart messagePart = new MessagePart(MimeType.TEXT_PLAIN, "benchmark");
+        for (int t = 0; t < TERMS_PER_MESSAGE; t++) {
+            messagePart.getScoredTerms().add(
+                    new ScoredTerm(terms.get(random.nextInt(terms.size())), 1));
+        }
+        message.addMessagePart(messagePart);
+        return message;
+    }
+
+    private double measure(UserFeatureCommand command, List<Message> messages) {
+        for (int i = 0; i < WARM_UP_MESSAGES; i++) {
+            command.process(new MessageFeatureContext(persistence, messages.get(i), null));
+        }
+        long start = System.nanoTime();
+        for (Message message : messages) {
+            MessageFeatureContext context = new MessageFeatureContext(persistence, message, null);
+            command.process(context);
+            if (context.getUserContexts().size() != NUMBER_OF_USERS) {
+                throw new IllegalStateException("Expected " + NUMBER_OF_USERS
+                        + " user contexts but got " + context.getUserContexts().size());
+            }
+        }
+        long durationNs = System.nanoTime() - start;
+        return messages.size() * NUMBER_OF_USERS / (durationNs / 1000000000d);
+    }
+
+    public void run() {
+        for (int i = 0; i < NUMBER_OF_TERMS; i++) {
+            terms.add(persistence.getOrCreateTerm(TermCategory.TERM, "term" + i));
+        }
+        Collection<String> userGlobalIds = new HashSet<String>();
+        for (int i = 0; i < NUMBER_OF_USERS; i++) {
+            String userGlobalId = "user" + i;
+            userGlobalIds.add(userGlobalId);
+            // create everything upfront, so the concurrent access to the persistence is read only
+            UserModel userModel = persistence.getOrCreateUserModelByUser(userGlobalId,
+                    UserModel.DEFAULT_USER_MODEL_TYPE);
+            Collection<UserModelEntry> entries = new ArrayList<UserModelEntry>();
+            for (int e = 0; e < ENTRIES_PER_USER_MODEL; e++) {
+                Term term = terms.get(random.nextInt(terms.size()));
+                entries.add(new UserModelEntry(userModel, new ScoredTerm(term, random
+                        .nextFloat())));
+            }
+            persistence.storeOrUpdateUserModelEntries(userModel, entries);
+        }
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(createMessage(i));
+        }
+
+        RankerConfiguration rankerConfiguration = new RankerConfiguration(
+                TermWeightStrategy.TRIVIAL, TermVectorSimilarityStrategy.COSINUS);
+        rankerConfiguration.put(UserModel.DEFAULT_USER_MODEL_TYPE,
+                UserModelConfiguration.getPlainModelConfiguration());
+        TermVectorSimilarityComputer termVectorSimilarityComputer = TermSimilarityWeightComputerFactory
+                .getInstance().createTermVectorSimilarityComputer(rankerConfiguration,
+                        new TermFrequencyComputer(persistence, false));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        System.out.println("users=" + NUMBER_OF_USERS + " termsPerMessage=" + TERMS_PER_MESSAGE
+                + " entriesPerUserModel=" + ENTRIES_PER_USER_MODEL + " cores=" + cores);
+
+        double sequential = 0;
+        // at least 2 threads to always run the parallel mode
+        for (int threads = 1; threads <= Math.max(2, cores); threads *= 2) {
+            UserFeatureCommand command = new UserFeatureCommand(
+                    new SimpleMessageGroupMemberRunner<MessageFeatureContext>(userGlobalIds),
+                    threads);
+            command.addCommand(new ContentMatchFeatureCommand(persistence,
+                    termVectorSimilarityComputer, 0.75f, rankerConfiguration));
+            try {
+                double usersPerSecond = measure(command, messages);
+                if (threads == 1) {
+                    sequential = usersPerSecond;
+                }
+                System.out.println(String.format(
+                        "threads=%2d %10.0f user rankings/s speedup=%.2f", threads,
+                        usersPerSecond, usersPerSecond / sequential));
+            } finally {
+                command.close();
+            }
+        }
+    }
+}
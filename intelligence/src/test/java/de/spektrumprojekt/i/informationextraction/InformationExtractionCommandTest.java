@@ -0,0 +1,260 @@
+package de.spektrumprojekt.i.informationextraction;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.persistence.DelegatingPersistence;
+import de.spektrumprojekt.persistence.Persistence;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test the parallel extraction of the {@link InformationExtractionCommand}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class InformationExtractionCommandTest {
+
+    /**
+     * Persistence counting how often a term is requested
+     */
+    private static class CountingPersistence extends DelegatingPersistence {
+
+        private final ConcurrentMap<String, AtomicInteger> requests = new ConcurrentHashMap<String, AtomicInteger>();
+
+        public CountingPersistence(Persistence delegate) {
+            super(delegate);
+        }
+
+        private void count(Collection<String> names) {
+            for (String name : names) {
+                AtomicInteger count = new AtomicInteger();
+                AtomicInteger existing = requests.putIfAbsent(name, count);
+                (existing == null ? count : existing).incrementAndGet();
+            }
+        }
+
+        @Override
+        public Term getOrCreateTerm(TermCategory termCategory, String name) {
+            count(Collections.singleton(name));
+            return super.getOrCreateTerm(termCategory, name);
+        }
+
+        @Override
+        public Map<String, Term> getOrCreateTerms(TermCategory termCategory,
+                Collection<String> names) {
+            count(new HashSet<String>(names));
+            return super.getOrCreateTerms(termCategory, names);
+        }
+    }
+
+    /**
+     * Persistence failing like a unique constraint of a database if a term is created twice. Takes
+     * a while to create terms, so concurrent requests for a new term overlap.
+     */
+    private static class UniqueTermPersistence extends DelegatingPersistence {
+
+        private final Set<String> createdTerms = Collections.synchronizedSet(new HashSet<String>());
+
+        public UniqueTermPersistence(Persistence delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Term getOrCreateTerm(TermCategory termCategory, String name) {
+            return getOrCreateTerms(termCategory, Collections.singleton(name)).get(name);
+        }
+
+        @Override
+        public Map<String, Term> getOrCreateTerms(TermCategory termCategory,
+                Collection<String> names) {
+            List<String> newNames = new ArrayList<String>();
+            for (String name : new HashSet<String>(names)) {
+                if (!createdTerms.contains(termCategory + ":" + name)) {
+                    newNames.add(name);
+                }
+            }
+            if (!newNames.isEmpty()) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                for (String name : newNames) {
+                    if (!createdTerms.add(termCategory + ":" + name)) {
+                        throw new IllegalStateException("Term has been created twice: " + name);
+                    }
+                }
+            }
+            return super.getOrCreateTerms(termCategory, names);
+        }
+    }
+
+    private static final String[] WORDS = { "ranking", "messages", "running", "extraction",
+            "users", "models", "terms", "stemming", "parallel", "threads", "batches", "groups" };
+
+    private static void assertSameTerms(List<Message> expected, List<Message> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            Map<String, List<String>> expectedTerms = getTermValues(expected.get(i));
+            Assert.assertEquals(expected.get(i).getMessageParts().size(), expectedTerms.size());
+            for (List<String> termValues : expectedTerms.values()) {
+                Assert.assertFalse(termValues.isEmpty());
+            }
+            Assert.assertEquals(expectedTerms, getTermValues(actual.get(i)));
+        }
+    }
+
+    private static InformationExtractionCommand<MessageFeatureContext> createCommand(
+            Persistence persistence, int threadPoolSize) {
+        InformationExtractionConfiguration configuration = new InformationExtractionConfiguration();
+        configuration.setThreadPoolSize(threadPoolSize);
+        return InformationExtractionCommand.createDefaultGermanEnglish(persistence, configuration);
+    }
+
+    private static List<Message> createMessages(int count, int parts) {
+        Random random = new Random(42);
+        MessageGroup messageGroup = new MessageGroup("group");
+        List<Message> messages = new ArrayList<Message>();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message("message" + i, MessageType.CONTENT, StatusType.OK,
+                    "subscriptionId", new Date());
+            message.setMessageGroup(messageGroup);
+            for (int p = 0; p < parts; p++) {
+                StringBuilder text = new StringBuilder("<p>");
+                for (int w = 0; w < 30; w++) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+                }
+                text.append("part").append(p).append("</p>");
+                message.addMessagePart(new MessagePart(MimeType.TEXT_HTML, text.toString()));
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static Map<String, List<String>> getTermValues(Message message) {
+        Map<String, List<String>> termValues = new HashMap<String, List<String>>();
+        for (MessagePart messagePart : message.getMessageParts()) {
+            List<String> values = new ArrayList<String>();
+            for (ScoredTerm scoredTerm : messagePart.getScoredTerms()) {
+                values.add(scoredTerm.getTerm().getValue() + "=" + scoredTerm.getWeight());
+            }
+            Collections.sort(values);
+            termValues.put(messagePart.getContent(), values);
+        }
+        return termValues;
+    }
+
+    /**
+     * Test that the parts of a message extracted in parallel get the same terms
+     */
+    @Test
+    public void testPartsInParallel() {
+        SimplePersistence persistence = new SimplePersistence();
+        List<Message> expected = createMessages(5, 4);
+        List<Message> actual = createMessages(5, 4);
+
+        InformationExtractionCommand<MessageFeatureContext> sequential = createCommand(
+                persistence, 1);
+        InformationExtractionCommand<MessageFeatureContext> parallel = createCommand(persistence,
+                4);
+        try {
+            for (int i = 0; i < expected.size(); i++) {
+                sequential.process(new MessageFeatureContext(persistence, expected.get(i), null));
+                MessageFeatureContext context = new MessageFeatureContext(persistence,
+                        actual.get(i), null);
+                parallel.process(context);
+                Assert.assertEquals(4, context.getInformationExtractionContexts().size());
+            }
+        } finally {
+            parallel.close();
+        }
+        assertSameTerms(expected, actual);
+    }
+
+    /**
+     * Test that the parts of a message extracted in parallel never create the same term twice
+     */
+    @Test
+    public void testPartsInParallelCreateTermsOnce() {
+        UniqueTermPersistence persistence = new UniqueTermPersistence(new SimplePersistence());
+        InformationExtractionCommand<MessageFeatureContext> parallel = createCommand(persistence,
+                4);
+        try {
+            for (Message message : createMessages(5, 4)) {
+                parallel.process(new MessageFeatureContext(persistence, message, null));
+            }
+        } finally {
+            parallel.close();
+        }
+    }
+
+    /**
+     * Test that a batch extracted in parallel gets the same terms and requests every term once
+     */
+    @Test
+    public void testProcessAll() {
+        SimplePersistence persistence = new SimplePersistence();
+        List<Message> expected = createMessages(40, 2);
+        List<Message> actual = createMessages(40, 2);
+
+        InformationExtractionCommand<MessageFeatureContext> sequential = createCommand(
+                persistence, 1);
+        for (Message message : expected) {
+            sequential.process(new MessageFeatureContext(persistence, message, null));
+        }
+
+        CountingPersistence countingPersistence = new CountingPersistence(persistence);
+        InformationExtractionCommand<MessageFeatureContext> parallel = createCommand(
+                countingPersistence, 4);
+        List<MessageFeatureContext> contexts = new ArrayList<MessageFeatureContext>();
+        for (Message message : actual) {
+            contexts.add(new MessageFeatureContext(countingPersistence, message, null));
+        }
+        try {
+            parallel.processAll(contexts);
+            // already extracted
+            parallel.processAll(contexts);
+        } finally {
+            parallel.close();
+        }
+        assertSameTerms(expected, actual);
+
+        Set<String> termValues = new HashSet<String>();
+        for (Message message : actual) {
+            for (MessagePart messagePart : message.getMessageParts()) {
+                for (ScoredTerm scoredTerm : messagePart.getScoredTerms()) {
+                    termValues.add(scoredTerm.getTerm().getValue());
+                }
+            }
+        }
+        Assert.assertEquals(termValues, countingPersistence.requests.keySet());
+        for (Map.Entry<String, AtomicInteger> count : countingPersistence.requests.entrySet()) {
+            Assert.assertEquals(count.getKey(), 1, count.getValue().get());
+        }
+    }
+}
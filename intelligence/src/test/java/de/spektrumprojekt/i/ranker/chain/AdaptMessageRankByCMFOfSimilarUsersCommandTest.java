@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.ranker.chain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessageRank;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import de.spektrumprojekt.i.datamodel.MessageFeature;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.i.ranker.UserSpecificMessageFeatureContext;
+import de.spektrumprojekt.i.ranker.chain.features.Feature;
+import de.spektrumprojekt.persistence.Persistence;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test the {@link AdaptMessageRankByCMFOfSimilarUsersCommand}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class AdaptMessageRankByCMFOfSimilarUsersCommandTest {
+
+    private static final int USERS = 40;
+
+    private static final float MESSAGE_RANK_THRESHOLD = 0.5f;
+    private static final float MIN_USER_SIMILARITY = 0.3f;
+    private static final float MIN_CONTENT_MESSAGE_SCORE = 0.2f;
+
+    /**
+     * The adaptation as it has been done before the similarities were fetched with one query: the
+     * similarity of every user with a low rank to every user the content matches for is looked up
+     * one by one. The result depends on the order the users the content matches for are visited
+     * in, hence they are visited with the highest cmf first like the command does.
+     */
+    private static void adaptOneByOne(Persistence persistence, MessageFeatureContext context) {
+        String messageGroupGlobalId = context.getMessage().getMessageGroup() == null ? null
+                : context.getMessage().getMessageGroup().getGlobalId();
+        List<UserSpecificMessageFeatureContext> userContexts = new ArrayList<UserSpecificMessageFeatureContext>(
+                context.getUserContexts());
+        Collections.sort(userContexts, new Comparator<UserSpecificMessageFeatureContext>() {
+
+            @Override
+            public int compare(UserSpecificMessageFeatureContext context1,
+                    UserSpecificMessageFeatureContext context2) {
+                int result = Float.compare(
+                        context2.getFeatureValue(Feature.CONTENT_MATCH_FEATURE),
+                        context1.getFeatureValue(Feature.CONTENT_MATCH_FEATURE));
+                return result != 0 ? result : context1.getUserGlobalId().compareTo(
+                        context2.getUserGlobalId());
+            }
+        });
+        for (UserSpecificMessageFeatureContext contextForAdaptation : context.getUserContexts()) {
+            if (contextForAdaptation.getMessageRank().getRank() <= MESSAGE_RANK_THRESHOLD) {
+                float newRank = 0;
+                for (UserSpecificMessageFeatureContext userContext : userContexts) {
+                    float cmfRank = userContext.getFeatureValue(Feature.CONTENT_MATCH_FEATURE);
+                    if (cmfRank > MIN_CONTENT_MESSAGE_SCORE && cmfRank > newRank) {
+                        UserSimilarity userSimilarity = persistence.getUserSimilarity(
+                                contextForAdaptation.getUserGlobalId(),
+                                userContext.getUserGlobalId(), messageGroupGlobalId);
+                        if (userSimilarity != null
+                                && userSimilarity.getSimilarity() >= MIN_USER_SIMILARITY) {
+                            newRank = Math.max(newRank, userContext.getMessageRank().getRank());
+                        }
+                    }
+                }
+                float diff = newRank - contextForAdaptation.getMessageRank().getRank();
+                if (newRank > 0 && diff <= 0) {
+                    contextForAdaptation.getMessageRank().setRank(newRank);
+                }
+            }
+        }
+    }
+
+    private static MessageFeatureContext createContext(Persistence persistence,
+            MessageGroup messageGroup, long seed) {
+        Random random = new Random(seed);
+        Message message = new Message("message" + seed, MessageType.CONTENT, StatusType.OK,
+                "subscriptionId", new Date());
+        message.setMessageGroup(messageGroup);
+        MessageFeatureContext context = new MessageFeatureContext(persistence, message, null);
+        for (int i = 0; i < USERS; i++) {
+            UserSpecificMessageFeatureContext userContext = new UserSpecificMessageFeatureContext(
+                    "user" + i, context);
+            MessageFeature feature = new MessageFeature(Feature.CONTENT_MATCH_FEATURE);
+            feature.setValue(random.nextFloat());
+            userContext.addMessageFeature(feature);
+            MessageRank messageRank = new MessageRank(message.getGlobalId(), "user" + i);
+            messageRank.setRank(random.nextFloat());
+            userContext.setMessageRank(messageRank);
+            context.addUserContext(userContext);
+        }
+        return context;
+    }
+
+    /**
+     * Test that the ranks adapted using the similarities fetched with one query equal the ranks
+     * adapted by looking up the similarity of every pair of users, with and without message group
+     */
+    @Test
+    public void testSameRanksAsOneByOne() {
+        Random random = new Random(42);
+        SimplePersistence persistence = new SimplePersistence();
+        MessageGroup messageGroup = persistence.storeMessageGroup(new MessageGroup("group"));
+        List<UserSimilarity> similarities = new ArrayList<UserSimilarity>();
+        for (int i = 0; i < USERS; i++) {
+            for (int j = 0; j < USERS; j++) {
+                if (i != j && random.nextInt(3) == 0) {
+                    similarities.add(new UserSimilarity("user" + i, "user" + j,
+                            messageGroup.getGlobalId(), random.nextDouble()));
+                    similarities.add(new UserSimilarity("user" + i, "user" + j, "otherGroup",
+                            random.nextDouble()));
+                }
+            }
+        }
+        persistence.storeUserSimilarities(similarities);
+
+        AdaptMessageRankByCMFOfSimilarUsersCommand command = new AdaptMessageRankByCMFOfSimilarUsersCommand(
+                persistence, MESSAGE_RANK_THRESHOLD, MIN_USER_SIMILARITY,
+                MIN_CONTENT_MESSAGE_SCORE);
+        int changedRanks = 0;
+        for (long seed = 0; seed < 20; seed++) {
+            MessageGroup group = seed % 2 == 0 ? messageGroup : null;
+            MessageFeatureContext original = createContext(persistence, group, seed);
+            MessageFeatureContext expected = createContext(persistence, group, seed);
+            MessageFeatureContext actual = createContext(persistence, group, seed);
+            adaptOneByOne(persistence, expected);
+            command.process(actual);
+
+            for (UserSpecificMessageFeatureContext userContext : expected.getUserContexts()) {
+                String userGlobalId = userContext.getUserGlobalId();
+                float rank = userContext.getMessageRank().getRank();
+                Assert.assertEquals(userGlobalId, rank, actual.getUserContext(userGlobalId)
+                        .getMessageRank().getRank(), 0);
+                if (rank != original.getUserContext(userGlobalId).getMessageRank().getRank()) {
+                    changedRanks++;
+                }
+            }
+        }
+        Assert.assertTrue("some ranks must be adapted", changedRanks > 0);
+        Assert.assertTrue(command.getAdaptationCount() >= changedRanks);
+    }
+}
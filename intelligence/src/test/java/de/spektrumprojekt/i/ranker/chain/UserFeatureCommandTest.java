@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.ranker.chain;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.callbacks.SimpleMessageGroupMemberRunner;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.MessageRelation.MessageRelationType;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.helper.MessageHelper;
+import de.spektrumprojekt.i.datamodel.MessageFeature;
+import de.spektrumprojekt.i.ranker.MessageFeatureContext;
+import de.spektrumprojekt.i.ranker.UserSpecificMessageFeatureContext;
+import de.spektrumprojekt.i.ranker.chain.features.DiscussionMentionFeatureCommand;
+import de.spektrumprojekt.i.ranker.chain.features.DiscussionParticipationFeatureCommand;
+import de.spektrumprojekt.i.ranker.chain.features.Feature;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test the {@link UserFeatureCommand}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class UserFeatureCommandTest {
+
+    private static final int USERS = 50;
+
+    private static UserFeatureCommand createCommand(List<String> userGlobalIds,
+            int threadPoolSize) {
+        UserFeatureCommand command = new UserFeatureCommand(
+                new SimpleMessageGroupMemberRunner<MessageFeatureContext>(userGlobalIds),
+                threadPoolSize);
+        command.getUserSpecificCommandChain().addCommand(
+                new DiscussionParticipationFeatureCommand());
+        command.addCommand(new DiscussionMentionFeatureCommand());
+        return command;
+    }
+
+    private static Map<String, Map<Feature, Float>> getFeatures(MessageFeatureContext context) {
+        Map<String, Map<Feature, Float>> features = new HashMap<String, Map<Feature, Float>>();
+        for (UserSpecificMessageFeatureContext userContext : context.getUserContexts()) {
+            Map<Feature, Float> values = new HashMap<Feature, Float>();
+            for (MessageFeature feature : userContext.getFeatures().values()) {
+                values.put(feature.getFeatureId(), feature.getValue());
+            }
+            features.put(userContext.getUserGlobalId(), values);
+        }
+        return features;
+    }
+
+    /**
+     * Test that the users processed in parallel get the same features as processed one after
+     * another, for messages whose related messages are resolved by the user specific commands
+     */
+    @Test
+    public void testParallelWithRelations() {
+        Random random = new Random(42);
+        SimplePersistence persistence = new SimplePersistence();
+        MessageGroup messageGroup = persistence.storeMessageGroup(new MessageGroup("group"));
+        List<String> userGlobalIds = new ArrayList<String>();
+        for (int i = 0; i < USERS; i++) {
+            userGlobalIds.add("user" + i);
+        }
+
+        List<MessageFeatureContext> sequentialContexts = new ArrayList<MessageFeatureContext>();
+        List<MessageFeatureContext> parallelContexts = new ArrayList<MessageFeatureContext>();
+        for (int m = 0; m < 20; m++) {
+            String[] relatedGlobalIds = new String[10];
+            for (int r = 0; r < relatedGlobalIds.length; r++) {
+                Message related = new Message(MessageType.CONTENT, StatusType.OK,
+                        "subscriptionId", new Date());
+                related.setMessageGroup(messageGroup);
+                related.setAuthorGlobalId(userGlobalIds.get(random.nextInt(USERS)));
+                related.addProperty(MessageHelper.createMentionProperty(new String[] {
+                        userGlobalIds.get(random.nextInt(USERS)) }));
+                relatedGlobalIds[r] = persistence.storeMessage(related).getGlobalId();
+            }
+            Message message = new Message(MessageType.CONTENT, StatusType.OK, "subscriptionId",
+                    new Date());
+            message.setMessageGroup(messageGroup);
+            message.setAuthorGlobalId("author");
+            MessageRelation relation = new MessageRelation(MessageRelationType.DISCUSSION,
+                    relatedGlobalIds);
+            // every context resolves the related messages on first use
+            sequentialContexts.add(new MessageFeatureContext(persistence, message, relation));
+            parallelContexts.add(new MessageFeatureContext(persistence, message, relation));
+        }
+
+        UserFeatureCommand sequential = createCommand(userGlobalIds, 1);
+        UserFeatureCommand parallel = createCommand(userGlobalIds, 8);
+        try {
+            for (int i = 0; i < sequentialContexts.size(); i++) {
+                sequential.process(sequentialContexts.get(i));
+                parallel.process(parallelContexts.get(i));
+                Map<String, Map<Feature, Float>> expected = getFeatures(sequentialContexts
+                        .get(i));
+                Assert.assertEquals(USERS, expected.size());
+                Assert.assertEquals(expected, getFeatures(parallelContexts.get(i)));
+            }
+        } finally {
+            parallel.close();
+        }
+    }
+}
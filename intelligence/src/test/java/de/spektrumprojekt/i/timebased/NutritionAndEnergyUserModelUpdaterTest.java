@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.timebased;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.datamodel.user.UserModelEntryTimeBin;
+import de.spektrumprojekt.i.ranker.RankerConfiguration;
+import de.spektrumprojekt.i.ranker.UserModelConfiguration;
+import de.spektrumprojekt.i.term.TermVectorSimilarityStrategy;
+import de.spektrumprojekt.i.term.TermWeightStrategy;
+import de.spektrumprojekt.i.timebased.config.EnergyCalculationConfiguration;
+import de.spektrumprojekt.i.timebased.config.MergeValuesStrategy;
+import de.spektrumprojekt.i.timebased.config.ShortTermMemoryConfiguration;
+import de.spektrumprojekt.persistence.Persistence;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test the {@link NutritionAndEnergyUserModelUpdater}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class NutritionAndEnergyUserModelUpdaterTest {
+
+    private static final String USER_MODEL_TYPE = "shortTerm";
+
+    private static final int USERS = 7;
+    private static final int TERMS = 4;
+    private static final int BINS = 6;
+    // less than the number of users so that there are several pages and a partial last page
+    private static final int PAGE_SIZE = 3;
+    private static final long PRECISION = 1000;
+
+    private static final float K = 1;
+    private static final double D = 5;
+    private static final int ENERGY_HISTORY_LENGTH = 3;
+    private static final int NUTRITION_HISTORY_LENGTH = 2;
+
+    /**
+     * The energy as it has been calculated before the weighted average and its square were
+     * calculated once per entry
+     */
+    private static float getEnergyWithOldFormula(float[] nutrition) {
+        int length = nutrition.length - 1;
+        float energy = 0;
+        for (int histNutrIndex = length - ENERGY_HISTORY_LENGTH; histNutrIndex < length;
+                histNutrIndex++) {
+            float historicalNutrition;
+            if (histNutrIndex < 0) {
+                historicalNutrition = 0;
+            } else {
+                historicalNutrition = nutrition[histNutrIndex];
+            }
+            energy += (Math.pow(weightedAverageWithOldFormula(nutrition), 2) - Math.pow(
+                    historicalNutrition, 2)) / (length - histNutrIndex);
+        }
+        return energy;
+    }
+
+    private static float getWeightWithOldFormula(float[] nutrition) {
+        float currentNutrition = nutrition[nutrition.length - 1];
+        float energy = getEnergyWithOldFormula(nutrition);
+        double g = new EnergyCalculationConfiguration(K, D, ENERGY_HISTORY_LENGTH,
+                NUTRITION_HISTORY_LENGTH,
+                de.spektrumprojekt.i.timebased.config.NutritionCalculationStrategy.ABSOLUTE)
+                .getG();
+        return (float) (g / (1 + D * Math.pow(Math.E, -K * g * currentNutrition * energy)));
+    }
+
+    private static float weightedAverageWithOldFormula(float[] nutrition) {
+        int currentBin = nutrition.length - 1;
+        float result = nutrition[currentBin];
+        if (NUTRITION_HISTORY_LENGTH > 0) {
+            int binsToUse = Math.min(currentBin, NUTRITION_HISTORY_LENGTH);
+            for (int i = 0; i <= binsToUse; i++) {
+                result += (float) Math.pow(2, -i - 1) * nutrition[currentBin - i];
+            }
+        }
+        return result;
+    }
+
+    private RankerConfiguration createRankerConfiguration() {
+        RankerConfiguration rankerConfiguration = new RankerConfiguration(
+                TermWeightStrategy.TRIVIAL, TermVectorSimilarityStrategy.AVG);
+        rankerConfiguration.setShortTermMemoryConfiguration(new ShortTermMemoryConfiguration(
+                new EnergyCalculationConfiguration(K, D, ENERGY_HISTORY_LENGTH,
+                        NUTRITION_HISTORY_LENGTH,
+                        de.spektrumprojekt.i.timebased.config.NutritionCalculationStrategy.ABSOLUTE),
+                MergeValuesStrategy.WEIGHTED, PRECISION));
+        rankerConfiguration.put(USER_MODEL_TYPE,
+                UserModelConfiguration.getShortTermModelConfiguration(0, PRECISION, PRECISION));
+        return rankerConfiguration;
+    }
+
+    /**
+     * Creates the user models with the time bins. Every call creates the same user models.
+     */
+    private Persistence createUserModels() {
+        Random random = new Random(42);
+        SimplePersistence persistence = new SimplePersistence();
+        for (int i = 0; i < USERS; i++) {
+            UserModel userModel = persistence.getOrCreateUserModelByUser("user" + i,
+                    USER_MODEL_TYPE);
+            List<UserModelEntry> entries = new ArrayList<UserModelEntry>();
+            for (int j = 0; j < TERMS; j++) {
+                UserModelEntry entry = new UserModelEntry(userModel, new ScoredTerm(
+                        persistence.getOrCreateTerm(TermCategory.TERM, "term" + j), 0));
+                // vary the number of bins to also have less bins than the history lengths
+                for (int bin = 0; bin < 1 + (i + j) % BINS; bin++) {
+                    UserModelEntryTimeBin timeBin = new UserModelEntryTimeBin(bin * PRECISION);
+                    timeBin.setScoreSum(random.nextInt(4) == 0 ? 0 : random.nextFloat() * 2);
+                    timeBin.setScoreCount(1);
+                    entry.addTimeBinEntry(timeBin);
+                }
+                entries.add(entry);
+            }
+            persistence.storeOrUpdateUserModelEntries(userModel, entries);
+        }
+        return persistence;
+    }
+
+    private Map<String, UserModelEntry> getEntries(Persistence persistence) {
+        Map<String, UserModelEntry> entries = new HashMap<String, UserModelEntry>();
+        for (Entry<UserModel, Collection<UserModelEntry>> userModelEntries : persistence
+                .getUserModelEntries(USER_MODEL_TYPE, null, USERS).entrySet()) {
+            for (UserModelEntry entry : userModelEntries.getValue()) {
+                entries.put(userModelEntries.getKey().getUser().getGlobalId() + "-"
+                        + entry.getScoredTerm().getTerm().getValue(), entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Test that updating the user models sequentially and in parallel sets the same weights and
+     * calculates the same energies, which match the ones of the formula used before the updater
+     * worked page by page
+     */
+    @Test
+    public void testSequentialAndParallelMatchOldFormula() {
+        RankerConfiguration rankerConfiguration = createRankerConfiguration();
+        Persistence sequentialPersistence = createUserModels();
+        Persistence parallelPersistence = createUserModels();
+        NutritionAndEnergyUserModelUpdater sequentialUpdater = new NutritionAndEnergyUserModelUpdater(
+                sequentialPersistence, rankerConfiguration, PAGE_SIZE, 1);
+        NutritionAndEnergyUserModelUpdater parallelUpdater = new NutritionAndEnergyUserModelUpdater(
+                parallelPersistence, rankerConfiguration, PAGE_SIZE, 4);
+        try {
+            sequentialUpdater.updateUserModels();
+            parallelUpdater.updateUserModels();
+        } finally {
+            parallelUpdater.close();
+        }
+
+        Map<String, UserModelEntry> sequentialEntries = getEntries(sequentialPersistence);
+        Map<String, UserModelEntry> parallelEntries = getEntries(parallelPersistence);
+        Assert.assertEquals(USERS * TERMS, sequentialEntries.size());
+        Assert.assertEquals(sequentialEntries.keySet(), parallelEntries.keySet());
+        int positiveEnergies = 0;
+        for (Entry<String, UserModelEntry> entry : sequentialEntries.entrySet()) {
+            float[] nutrition = sequentialUpdater.strategy.getNutrition(entry.getValue(),
+                    sequentialPersistence);
+            float energy = sequentialUpdater.getEnergy(nutrition);
+            Assert.assertEquals(entry.getKey(), energy, parallelUpdater.getEnergy(nutrition), 0);
+            Assert.assertEquals(entry.getKey(), getEnergyWithOldFormula(nutrition), energy,
+                    0.0001f);
+            if (energy > 0) {
+                positiveEnergies++;
+            }
+
+            float weight = entry.getValue().getScoredTerm().getWeight();
+            Assert.assertEquals(entry.getKey(), weight, parallelEntries.get(entry.getKey())
+                    .getScoredTerm().getWeight(), 0);
+            Assert.assertEquals(entry.getKey(), getWeightWithOldFormula(nutrition), weight,
+                    0.00001f);
+        }
+        Assert.assertTrue("some energies must be positive", positiveEnergies > 0);
+    }
+}
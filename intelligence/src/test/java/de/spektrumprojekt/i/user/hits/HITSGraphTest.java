@@ -0,0 +1,124 @@
+package de.spektrumprojekt.i.user.hits;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.collections15.Transformer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import edu.uci.ics.jung.algorithms.scoring.HITS;
+import edu.uci.ics.jung.graph.DirectedSparseGraph;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+/**
+ * Test the {@link HITSGraph} against the HITS of JUNG
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class HITSGraphTest {
+
+    private static final double TOLERANCE = 1e-9;
+
+    private static void assertScores(Map<String, UserSimilarity> similarities, HITSGraph graph) {
+        DirectedSparseGraph<String, UserSimilarity> jungGraph = new DirectedSparseGraph<String, UserSimilarity>();
+        for (UserSimilarity similarity : similarities.values()) {
+            if (similarity.getNumberOfMentions() > 0) {
+                jungGraph.addEdge(similarity, similarity.getUserGlobalIdFrom(),
+                        similarity.getUserGlobalIdTo(), EdgeType.DIRECTED);
+            }
+        }
+        HITS<String, UserSimilarity> hits = new HITS<String, UserSimilarity>(jungGraph,
+                new Transformer<UserSimilarity, Double>() {
+
+                    @Override
+                    public Double transform(UserSimilarity input) {
+                        return (double) input.getNumberOfMentions();
+                    }
+                }, 0);
+        hits.setTolerance(TOLERANCE);
+        hits.setMaxIterations(1000);
+        hits.evaluate();
+
+        HITSGraph.Scores scores = graph.getScores();
+        for (String user : jungGraph.getVertices()) {
+            int index = scores.getIndex(user);
+            Assert.assertTrue(index >= 0);
+            Assert.assertEquals(hits.getVertexScore(user).hub, scores.getHub(index), 1e-6);
+            Assert.assertEquals(hits.getVertexScore(user).authority,
+                    scores.getAuthority(index), 1e-6);
+        }
+    }
+
+    private static void setMentions(Map<String, UserSimilarity> similarities, String from,
+            String to, int mentions) {
+        UserSimilarity similarity = new UserSimilarity(from, to, "group");
+        similarity.setNumberOfMentions(mentions);
+        similarities.put(similarity.getKey(), similarity);
+    }
+
+    /**
+     * Test that the scores match the scores of JUNG after the edges changed
+     */
+    @Test
+    public void testIncrementalUpdate() {
+        Random random = new Random(42);
+        Map<String, UserSimilarity> similarities = new HashMap<String, UserSimilarity>();
+        for (int i = 0; i < 300; i++) {
+            setMentions(similarities, "user" + random.nextInt(50), "user" + random.nextInt(50),
+                    1 + random.nextInt(5));
+        }
+        HITSGraph graph = new HITSGraph();
+        graph.synchronize(similarities.values());
+        Assert.assertTrue(graph.compute(TOLERANCE, 1000) > 0);
+        assertScores(similarities, graph);
+        Assert.assertEquals(0, graph.compute(TOLERANCE, 1000));
+
+        // change, remove and add some edges
+        List<UserSimilarity> changed = new ArrayList<UserSimilarity>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, UserSimilarity> change = new HashMap<String, UserSimilarity>();
+            setMentions(change, "user" + random.nextInt(60), "user" + random.nextInt(60),
+                    random.nextInt(3));
+            similarities.putAll(change);
+            changed.addAll(change.values());
+        }
+        graph.update(changed);
+        graph.compute(TOLERANCE, 1000);
+        assertScores(similarities, graph);
+    }
+
+    /**
+     * Test that edges missing in a synchronization are removed
+     */
+    @Test
+    public void testSynchronize() {
+        Map<String, UserSimilarity> similarities = new HashMap<String, UserSimilarity>();
+        setMentions(similarities, "a", "b", 2);
+        setMentions(similarities, "b", "c", 1);
+        setMentions(similarities, "c", "a", 3);
+        setMentions(similarities, "a", "a", 5);
+        HITSGraph graph = new HITSGraph();
+        graph.synchronize(similarities.values());
+        Assert.assertEquals(4, graph.getEdgeCount());
+        graph.compute(TOLERANCE, 1000);
+        assertScores(similarities, graph);
+
+        similarities.remove(UserSimilarity.getKey("c", "a", "group"));
+        graph.synchronize(similarities.values());
+        Assert.assertEquals(3, graph.getEdgeCount());
+        graph.compute(TOLERANCE, 1000);
+        assertScores(similarities, graph);
+
+        similarities.clear();
+        setMentions(similarities, "d", "b", 1);
+        graph.synchronize(similarities.values());
+        graph.compute(TOLERANCE, 1000);
+        Assert.assertEquals(-1, graph.getScores().getIndex("a"));
+        Assert.assertTrue(graph.getScores().getIndex("d") >= 0);
+    }
+}
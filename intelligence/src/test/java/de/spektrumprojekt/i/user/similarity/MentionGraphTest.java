@@ -0,0 +1,91 @@
+package de.spektrumprojekt.i.user.similarity;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import de.spektrumprojekt.i.user.similarity.UserSimilarityComputer.UserSimilaritySimType;
+
+/**
+ * Test the {@link MentionGraph}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class MentionGraphTest {
+
+    private static Map<String, UserSimilarity> byKey(Collection<UserSimilarity> similarities) {
+        Map<String, UserSimilarity> result = new HashMap<String, UserSimilarity>();
+        for (UserSimilarity similarity : similarities) {
+            result.put(similarity.getKey(), similarity);
+        }
+        return result;
+    }
+
+    /**
+     * Test that the changed similarities are returned once and mentions expire
+     */
+    @Test
+    public void testChangedSimilarities() {
+        MentionGraph graph = new MentionGraph(UserSimilaritySimType.FROM_PERCENTAGE);
+        graph.addMention(1, "a", "b", "g", null);
+        graph.addMention(2, "a", "c", "g", null);
+        graph.addMention(3, "a", "b", "g", null);
+
+        Map<String, UserSimilarity> changed = byKey(graph.getChangedSimilarities());
+        Assert.assertEquals(2, changed.size());
+        UserSimilarity ab = changed.get(UserSimilarity.getKey("a", "b", "g"));
+        Assert.assertEquals(2, ab.getNumberOfMentions());
+        Assert.assertEquals(2 / 300d, ab.getSimilarity(), 0.0001);
+        Assert.assertEquals(3, graph.getMentionsFrom("a"));
+        Assert.assertEquals(2, graph.getMentionsTo("b"));
+        Assert.assertTrue(graph.getChangedSimilarities().isEmpty());
+
+        // both similarities change as the number of mentions of a changes
+        graph.expire(2);
+        changed = byKey(graph.getChangedSimilarities());
+        Assert.assertEquals(2, changed.size());
+        Assert.assertEquals(1, changed.get(ab.getKey()).getNumberOfMentions());
+        Assert.assertEquals(1 / 200d, changed.get(ab.getKey()).getSimilarity(), 0.0001);
+
+        graph.expire(4);
+        changed = byKey(graph.getChangedSimilarities());
+        Assert.assertEquals(2, changed.size());
+        Assert.assertEquals(0, changed.get(ab.getKey()).getNumberOfMentions());
+        Assert.assertEquals(0, graph.getMentionsFrom("a"));
+        Assert.assertTrue(graph.getSimilarities().isEmpty());
+    }
+
+    /**
+     * Test the counts with many mentions of a user
+     */
+    @Test
+    public void testManyMentions() {
+        MentionGraph graph = new MentionGraph(UserSimilaritySimType.VOODOO);
+        for (int i = 0; i < 1000; i++) {
+            graph.addMention(i, "a", "user" + i % 100, "group" + i % 3, null);
+        }
+        graph.addMention(1000, "user1", "a", "group1", null);
+        Assert.assertEquals(300, graph.getSimilarities().size() - 1);
+        Assert.assertEquals(301, graph.getChangedSimilarities().size());
+
+        graph.expire(500);
+        graph.getChangedSimilarities();
+        Assert.assertEquals(500, graph.getMentionsFrom("a"));
+        for (int i = 0; i < 300; i++) {
+            String to = "user" + i % 100;
+            String messageGroup = "group" + i % 3;
+            int expected = 0;
+            for (int j = 500; j < 1000; j++) {
+                if (j % 100 == i % 100 && j % 3 == i % 3) {
+                    expected++;
+                }
+            }
+            Assert.assertEquals(expected, graph.getMentionCount("a", to, messageGroup));
+        }
+        Assert.assertEquals(1, graph.getMentionCount("user1", "a", "group1"));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.i.user.similarity;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import de.spektrumprojekt.helper.MessageHelper;
+import de.spektrumprojekt.i.user.similarity.UserSimilarityComputer.UserSimilaritySimType;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test the {@link UserSimilarityComputer}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class UserSimilarityComputerTest {
+
+    private static Message createMention(MessageGroup messageGroup, String authorGlobalId,
+            String mentionedUserGlobalId) {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, "subscriptionId",
+                new Date());
+        message.setMessageGroup(messageGroup);
+        message.setAuthorGlobalId(authorGlobalId);
+        message.addProperty(MessageHelper.createMentionProperty(new String[] {
+                mentionedUserGlobalId }));
+        return message;
+    }
+
+    /**
+     * Test that the mentions of messages without a message group are skipped, since similarities
+     * only exist within a message group. Before the mention graph creating the similarity of
+     * such a mention failed.
+     */
+    @Test
+    public void testMessageWithoutMessageGroup() {
+        SimplePersistence persistence = new SimplePersistence();
+        MessageGroup messageGroup = persistence.storeMessageGroup(new MessageGroup("group"));
+        UserSimilarityComputer computer = new UserSimilarityComputer(persistence,
+                UserSimilaritySimType.VOODOO);
+
+        computer.runForMessage(createMention(messageGroup, "user1", "user2"));
+        UserSimilarity similarity = persistence.getUserSimilarity("user1", "user2",
+                messageGroup.getGlobalId());
+        Assert.assertNotNull(similarity);
+        Assert.assertEquals(1, similarity.getNumberOfMentions());
+        int similarities = persistence.getUserSimilarities((String) null).size();
+
+        computer.runForMessage(createMention(null, "user1", "user2"));
+        computer.runForMessage(createMention(null, "user3", "user1"));
+        Assert.assertEquals(similarities, persistence.getUserSimilarities((String) null).size());
+        Assert.assertEquals(1, persistence.getUserSimilarity("user1", "user2",
+                messageGroup.getGlobalId()).getNumberOfMentions());
+        Assert.assertNull(persistence.getUserSimilarity("user3", "user1", null));
+    }
+}
@@ -2,13 +2,81 @@ package de.spektrumprojekt.informationextraction.extractors;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import opennlp.tools.tokenize.SimpleTokenizer;
+
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
 
 public class ExtractionUtilsTest {
-    
+
+    private static final String TEXT = "The quick brown fox jumps over the lazy dog... Der Hund"
+            + " läuft über die Wiese!? Version 2.0.1 released, see http://www.example.com/a?b=1"
+            + " --- e-mail:test@example.com\tnew\u00A0line\n\n123abc Öffentlichkeit running"
+            + " runners ran ((quoted)) the the";
+
+    private static Map<String, Integer> count(List<String> tokens) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (String token : tokens) {
+            Integer count = counts.get(token);
+            counts.put(token, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    private static Map<String, Integer> count(TermCounter counter) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (int i = 0; i < counter.size(); i++) {
+            counts.put(counter.getTerm(i), counter.getCount(i));
+        }
+        return counts;
+    }
+
+    private static List<String> removeStopwords(String language, List<String> tokens) {
+        List<String> result = new ArrayList<String>();
+        for (String token : tokens) {
+            if (!ExtractionUtils.isStopword(language, token)) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testCountStemmedTokens() {
+        for (String language : Arrays.asList("en", "de", "xx")) {
+            List<String> expected = new ArrayList<String>();
+            for (String token : ExtractionUtils.stem(language,
+                    removeStopwords(language, ExtractionUtils.tokenize(TEXT)))) {
+                if (token.length() >= 2 && token.matches("[A-Za-z0-9\\.]+")) {
+                    expected.add(token);
+                }
+            }
+            TermCounter counter = new TermCounter(2);
+            ExtractionUtils.countStemmedTokens(language, TEXT, counter);
+            assertEquals(count(expected), count(counter));
+        }
+    }
+
+    @Test
+    public void testCountWordAndCharNGrams() {
+        List<String> tokens = removeStopwords("en", ExtractionUtils.tokenize(TEXT));
+        TermCounter counter = new TermCounter();
+        ExtractionUtils.countWordNGrams("en", TEXT, 3, counter);
+        assertEquals(count(ExtractionUtils.createNGrams(tokens, 3)), count(counter));
+
+        String text = ExtractionUtils.removeStopwords("en", TEXT);
+        assertEquals(StringUtils.join(tokens, " "), text);
+        counter = new TermCounter();
+        ExtractionUtils.countCharNGrams(text, 4, counter);
+        assertEquals(count(ExtractionUtils.createCharNGrams(text, 4)), count(counter));
+    }
+
     @Test
     public void testCreateNGrams() {
         List<String> tokens = Arrays.asList("the","quick","brown","fox","jumps","over","the","lazy","dog");
@@ -32,4 +100,15 @@ public class ExtractionUtilsTest {
         assertEquals(66, charNGrams.size());
     }
 
+    @Test
+    public void testTextTokenizer() {
+        List<String> tokens = new ArrayList<String>();
+        TextTokenizer tokenizer = new TextTokenizer(TEXT);
+        while (tokenizer.next()) {
+            tokens.add(TEXT.substring(tokenizer.getStart(), tokenizer.getEnd()));
+        }
+        assertEquals(Arrays.asList(SimpleTokenizer.INSTANCE.tokenize(TEXT)), tokens);
+        assertEquals(false, new TextTokenizer(" \t ").next());
+    }
+
 }
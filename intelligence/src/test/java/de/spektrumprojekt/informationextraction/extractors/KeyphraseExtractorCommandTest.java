@@ -95,11 +95,16 @@ public class KeyphraseExtractorCommandTest {
     public void testWithVocab() {
         MockTagSource tagSource = new MockTagSource();
         tagSource.addTag(new Term(TermCategory.KEYPHRASE, "Romney"));
-        tagSource.addTag(new Term(TermCategory.KEYPHRASE, "Obama"));
+        Term obama = new Term(TermCategory.KEYPHRASE, "Obama");
+        tagSource.addTag(obama);
         tagSource.addTag(new Term(TermCategory.KEYPHRASE, "America"));
         KeyphraseExtractorCommand command = new KeyphraseExtractorCommand(tagSource);
         assertEquals(2, test(command, "en", null, text1).size());
         assertEquals(1, test(command, "en", title4, text4).size());
+
+        // the command notices changes of the vocabulary
+        tagSource.removeTag(obama);
+        assertEquals(1, test(command, "en", null, text1).size());
     }
 
 }
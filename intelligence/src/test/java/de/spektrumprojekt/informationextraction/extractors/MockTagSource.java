@@ -10,13 +10,26 @@ public final class MockTagSource implements TagSource {
 
     private final Set<Term> tags = new HashSet<Term>();
 
+    private long version;
+
     @Override
     public Collection<Term> getTags() {
         return tags;
     }
 
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
     public void addTag(Term tag) {
         tags.add(tag);
+        version++;
+    }
+
+    public void removeTag(Term tag) {
+        tags.remove(tag);
+        version++;
     }
 
     @Override
@@ -0,0 +1,123 @@
+package de.spektrumprojekt.informationextraction.extractors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+
+/**
+ * Benchmark comparing the {@link TagVocabularyIndex} with comparing a term with all tags, as the
+ * {@link KeyphraseExtractorCommand} did before having the index, for several vocabulary sizes.
+ * Not a unit test, run it using the main method.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class TagVocabularyIndexBenchmark {
+
+    private static final int[] VOCABULARY_SIZES = { 1000, 10000, 100000 };
+    private static final int QUERIES = 2000;
+    // scanning is slow, only scan for some of the queries
+    private static final long SCAN_OPERATIONS = 20000000L;
+    private static final float SIMILARITY_THRESHOLD = 0.85f;
+
+    public static void main(String[] args) {
+        new TagVocabularyIndexBenchmark().run();
+    }
+
+    private final Random random = new Random(42);
+
+    private long checksum;
+
+    private String createQuery(List<Term> tags) {
+        if (random.nextInt(4) > 0) {
+            // most n-grams of a text are not in the vocabulary
+            return createWord() + (random.nextBoolean() ? " " + createWord() : "");
+        }
+        // misspell a tag
+        StringBuilder query = new StringBuilder(tags.get(random.nextInt(tags.size())).getValue());
+        if (random.nextBoolean()) {
+            query.setCharAt(random.nextInt(query.length()), (char) ('a' + random.nextInt(26)));
+        }
+        return query.toString();
+    }
+
+    private String createWord() {
+        StringBuilder word = new StringBuilder();
+        int length = 4 + random.nextInt(10);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private String findByScan(List<Term> tags, String term) {
+        String lowercaseTerm = term.toLowerCase();
+        for (Term tag : tags) {
+            float sim = ExtractionUtils.getLevenshteinSimilarity(tag.getValue().toLowerCase(),
+                    lowercaseTerm);
+            if (sim > SIMILARITY_THRESHOLD) {
+                return tag.getValue();
+            }
+        }
+        return null;
+    }
+
+    public void run() {
+        System.out.println("queries=" + QUERIES + " (micro seconds per query)");
+        for (int vocabularySize : VOCABULARY_SIZES) {
+            List<Term> tags = new ArrayList<Term>(vocabularySize);
+            for (int i = 0; i < vocabularySize; i++) {
+                String tag = createWord();
+                if (random.nextInt(3) == 0) {
+                    tag += " " + createWord();
+                }
+                tags.add(new Term(TermCategory.KEYPHRASE, tag));
+            }
+            List<String> queries = new ArrayList<String>(QUERIES);
+            for (int i = 0; i < QUERIES; i++) {
+                queries.add(createQuery(tags));
+            }
+
+            long start = System.nanoTime();
+            TagVocabularyIndex index = new TagVocabularyIndex(SIMILARITY_THRESHOLD);
+            index.update(0, tags);
+            double buildDuration = (System.nanoTime() - start) / 1000000d;
+
+            int scanQueries = (int) Math.max(1, Math.min(QUERIES, SCAN_OPERATIONS
+                    / vocabularySize));
+            int scanFound = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < scanQueries; i++) {
+                if (findByScan(tags, queries.get(i)) != null) {
+                    scanFound++;
+                }
+            }
+            double scanDuration = (System.nanoTime() - start) / 1000d / scanQueries;
+
+            // warm up
+            for (String query : queries) {
+                checksum += index.find(query) == null ? 0 : 1;
+            }
+            int indexFound = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < scanQueries; i++) {
+                if (index.find(queries.get(i)) != null) {
+                    indexFound++;
+                }
+            }
+            for (int i = scanQueries; i < QUERIES; i++) {
+                checksum += index.find(queries.get(i)) == null ? 0 : 1;
+            }
+            double indexDuration = (System.nanoTime() - start) / 1000d / QUERIES;
+
+            System.out.println(String.format("vocabulary=%6d build=%7.1f ms scan=%10.1f"
+                    + " indexed=%7.1f (x%.0f) found scan=%d indexed=%d of %d", vocabularySize,
+                    buildDuration, scanDuration, indexDuration, scanDuration / indexDuration,
+                    scanFound, indexFound, scanQueries));
+        }
+        // print it to make sure the results are used
+        System.out.println("checksum=" + checksum);
+    }
+}
@@ -0,0 +1,110 @@
+package de.spektrumprojekt.informationextraction.extractors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+
+/**
+ * Test the {@link TagVocabularyIndex}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class TagVocabularyIndexTest {
+
+    private static final float THRESHOLD = 0.85f;
+
+    private static String createWord(Random random) {
+        StringBuilder word = new StringBuilder();
+        int length = 3 + random.nextInt(20);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(4)));
+        }
+        return word.toString();
+    }
+
+    private static String findByScan(List<Term> tags, String term) {
+        String best = null;
+        float bestSimilarity = THRESHOLD;
+        for (Term tag : tags) {
+            float similarity = ExtractionUtils.getLevenshteinSimilarity(tag.getValue()
+                    .toLowerCase(), term.toLowerCase());
+            if (similarity > bestSimilarity) {
+                best = tag.getValue();
+                bestSimilarity = similarity;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Test that the index finds a tag if and only if scanning all tags finds one
+     */
+    @Test
+    public void testFind() {
+        // a small alphabet to get many similar words
+        Random random = new Random(42);
+        List<Term> tags = new ArrayList<Term>();
+        for (int i = 0; i < 2000; i++) {
+            tags.add(new Term(TermCategory.KEYPHRASE, createWord(random)));
+        }
+        TagVocabularyIndex index = new TagVocabularyIndex(THRESHOLD);
+        index.update(1, tags);
+        Assert.assertTrue(index.getSize() > 0);
+
+        int found = 0;
+        for (int i = 0; i < 2000; i++) {
+            String term = createWord(random);
+            String expected = findByScan(tags, term);
+            String actual = index.find(term);
+            if (expected == null) {
+                Assert.assertNull(term, actual);
+            } else {
+                found++;
+                Assert.assertNotNull(term, actual);
+                // there can be several tags with the best similarity
+                Assert.assertEquals(term, ExtractionUtils.getLevenshteinSimilarity(expected, term),
+                        ExtractionUtils.getLevenshteinSimilarity(actual, term), 0);
+            }
+        }
+        Assert.assertTrue(found > 0);
+    }
+
+    /**
+     * Test adding and removing tags
+     */
+    @Test
+    public void testUpdate() {
+        List<Term> tags = new ArrayList<Term>();
+        tags.add(new Term(TermCategory.KEYPHRASE, "Olympics"));
+        tags.add(new Term(TermCategory.KEYPHRASE, "London"));
+        TagVocabularyIndex index = new TagVocabularyIndex(THRESHOLD);
+        index.update(1, tags);
+        Assert.assertEquals("Olympics", index.find("olympic"));
+        Assert.assertEquals("London", index.find("LONDON"));
+        Assert.assertNull(index.find("Paris"));
+
+        tags.remove(0);
+        // same version, nothing changes
+        index.update(1, tags);
+        Assert.assertEquals("Olympics", index.find("olympic"));
+
+        tags.add(new Term(TermCategory.KEYPHRASE, "Paris"));
+        index.update(2, tags);
+        Assert.assertNull(index.find("olympic"));
+        Assert.assertEquals("Paris", index.find("paris"));
+        Assert.assertEquals(2, index.getSize());
+
+        tags.clear();
+        tags.add(new Term(TermCategory.KEYPHRASE, "Olympics"));
+        index.update(3, tags);
+        Assert.assertEquals("Olympics", index.find("olympic"));
+        Assert.assertNull(index.find("london"));
+        Assert.assertEquals(1, index.getSize());
+    }
+}
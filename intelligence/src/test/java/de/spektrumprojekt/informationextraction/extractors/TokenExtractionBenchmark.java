@@ -0,0 +1,142 @@
+package de.spektrumprojekt.informationextraction.extractors;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.collections.Bag;
+import org.apache.commons.collections.bag.HashBag;
+import org.apache.commons.lang3.StringUtils;
+
+import de.spektrumprojekt.commons.SpektrumUtils;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.informationextraction.relations.FeedTestDataSource;
+
+/**
+ * Benchmark comparing the counting of the stemmed tokens, word n-grams and char n-grams using
+ * {@link TermCounter} with the list based extraction the extractor commands did before. Uses the
+ * test feed corpus if it is on the class path, generated texts otherwise. Not a unit test, run it
+ * using the main method.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class TokenExtractionBenchmark {
+
+    private static final String TEST_FEED = "/relations/testFeed.xml";
+    private static final int GENERATED_TEXTS = 2000;
+    private static final int ROUNDS = 20;
+    private static final String LANGUAGE = "en";
+
+    public static void main(String[] args) {
+        new TokenExtractionBenchmark().run();
+    }
+
+    private final Random random = new Random(42);
+
+    private long checksum;
+
+    private List<String> createTexts() {
+        List<String> texts = new ArrayList<String>();
+        try {
+            File testFile = SpektrumUtils.getTestResource(TEST_FEED);
+            for (Message message : new FeedTestDataSource(testFile)) {
+                for (MessagePart messagePart : message.getMessageParts()) {
+                    texts.add(messagePart.getContent());
+                }
+            }
+            System.out.println("corpus=" + TEST_FEED);
+            return texts;
+        } catch (FileNotFoundException e) {
+            System.out.println("corpus=generated, " + TEST_FEED + " is not available");
+        }
+        String[] words = { "the", "of", "and", "running", "extraction", "messages", "user",
+                "models", "ranking", "Spektrum", "version", "2.0", "http://www.example.com/",
+                "e-mail", "(see", "below)", "...", "über", "Öffentlichkeit", "is", "are" };
+        for (int i = 0; i < GENERATED_TEXTS; i++) {
+            StringBuilder text = new StringBuilder();
+            int length = 50 + random.nextInt(250);
+            for (int j = 0; j < length; j++) {
+                text.append(words[random.nextInt(words.length)]);
+                text.append(random.nextInt(10) == 0 ? ". " : " ");
+            }
+            texts.add(text.toString());
+        }
+        return texts;
+    }
+
+    private List<String> removeStopwords(List<String> tokens) {
+        List<String> result = new ArrayList<String>();
+        for (String token : tokens) {
+            if (!ExtractionUtils.isStopword(LANGUAGE, token.toLowerCase())) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
+    private double run(List<String> texts, String name, boolean counter) {
+        int terms = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String text : texts) {
+                terms += counter ? runCounter(text, name) : runLists(text, name);
+            }
+        }
+        checksum += terms;
+        return (System.nanoTime() - start) / 1000d / ROUNDS / texts.size();
+    }
+
+    public void run() {
+        List<String> texts = createTexts();
+        System.out.println("texts=" + texts.size() + " rounds=" + ROUNDS
+                + " (micro seconds per text)");
+        for (String name : new String[] { "stemmed", "word3grams", "char4grams" }) {
+            // warm up
+            run(texts, name, false);
+            run(texts, name, true);
+
+            double listDuration = run(texts, name, false);
+            double counterDuration = run(texts, name, true);
+            System.out.println(String.format("%-10s lists=%7.1f counter=%7.1f (x%.1f)", name,
+                    listDuration, counterDuration, listDuration / counterDuration));
+        }
+        // print it to make sure the results are used
+        System.out.println("checksum=" + checksum);
+    }
+
+    private int runCounter(String text, String name) {
+        TermCounter tokens = new TermCounter();
+        if (name.equals("stemmed")) {
+            ExtractionUtils.countStemmedTokens(LANGUAGE, text, tokens);
+        } else if (name.equals("word3grams")) {
+            ExtractionUtils.countWordNGrams(LANGUAGE, text, 3, tokens);
+        } else {
+            ExtractionUtils.countCharNGrams(ExtractionUtils.removeStopwords(LANGUAGE, text), 4,
+                    tokens);
+        }
+        return tokens.size() + tokens.getHighestCount();
+    }
+
+    private int runLists(String text, String name) {
+        List<String> tokens = removeStopwords(ExtractionUtils.tokenize(text));
+        if (name.equals("stemmed")) {
+            tokens = ExtractionUtils.stem(LANGUAGE, tokens);
+        } else if (name.equals("word3grams")) {
+            tokens = ExtractionUtils.createNGrams(tokens, 3);
+        } else {
+            tokens = ExtractionUtils.createCharNGrams(StringUtils.join(tokens, " "), 4);
+        }
+        List<String> cleanTokens = new ArrayList<String>();
+        for (String token : tokens) {
+            if (token.length() >= 2
+                    && (!name.equals("stemmed") || token.matches("[A-Za-z0-9\\.]+"))) {
+                cleanTokens.add(token);
+            }
+        }
+        Bag tokenBag = new HashBag(cleanTokens);
+        return tokenBag.uniqueSet().size() + BagHelper.getHighestCount(tokenBag);
+    }
+}
@@ -0,0 +1,72 @@
+package de.spektrumprojekt.informationextraction.relations;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the {@link NamePatternMatcher}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class NamePatternMatcherTest {
+
+    /**
+     * Test the extraction of the literal prefixes
+     */
+    @Test
+    public void testLiteralPrefix() {
+        Assert.assertEquals("https://jira.communardo.de/browse/",
+                NamePatternMatcher.getLiteralPrefix(Pattern
+                        .compile("https://jira\\.communardo\\.de/browse/([\\d\\w-]+)")));
+        Assert.assertEquals("http", NamePatternMatcher.getLiteralPrefix(Pattern
+                .compile("https?://example")));
+        Assert.assertEquals("aab", NamePatternMatcher.getLiteralPrefix(Pattern.compile("aab+c")));
+        Assert.assertEquals("", NamePatternMatcher.getLiteralPrefix(Pattern.compile("a|b")));
+        Assert.assertEquals("", NamePatternMatcher.getLiteralPrefix(Pattern.compile("\\d+")));
+        Assert.assertEquals("", NamePatternMatcher.getLiteralPrefix(Pattern.compile("ab",
+                Pattern.CASE_INSENSITIVE)));
+    }
+
+    /**
+     * Test that the matches are the same as the ones of running each regex over the text
+     */
+    @Test
+    public void testSameMatchesAsFind() {
+        List<NamePattern> patterns = new ArrayList<NamePattern>();
+        patterns.add(new NamePattern("jira", "https://jira\\.example\\.de/browse/([\\w-]+)"));
+        patterns.add(new NamePattern("wiki", "https://wiki\\.example\\.de/display/([^~?\\s\"]+)"));
+        patterns.add(new NamePattern("page", "https://wiki\\.example\\.de/pages/viewpage\\.action"
+                + "\\?pageId=(\\d+)"));
+        patterns.add(new NamePattern("repeat", "(aa)"));
+        patterns.add(new NamePattern("word", "\\bab(c+)"));
+        patterns.add(new NamePattern("ticket", "#(\\d+)"));
+        patterns.add(new NamePattern("any", "(?:x|y)(\\d)"));
+        NamePatternMatcher matcher = new NamePatternMatcher(patterns);
+
+        String text = "see https://jira.example.de/browse/SPEK-12 and"
+                + " https://wiki.example.de/display/SPEK/Home?x, https://wiki.example.de/pages/"
+                + "viewpage.action?pageId=4711 https://jira.example.de/browse/SPEK-13"
+                + " aaaaa xabc abccc #12 x1 y2 z3 https://jira.example.de/browse/";
+        Set<String> matches = new HashSet<String>();
+        matcher.addUniqueMatches(text, matches);
+
+        Set<String> expected = new HashSet<String>();
+        for (NamePattern pattern : patterns) {
+            Matcher regexMatcher = pattern.getPattern().matcher(text);
+            while (regexMatcher.find()) {
+                expected.add(pattern.getName() + "#" + regexMatcher.group(1));
+            }
+        }
+        Assert.assertEquals(expected, matches);
+        Assert.assertTrue(matches.contains("jira#SPEK-13"));
+        Assert.assertTrue(matches.contains("word#ccc"));
+        Assert.assertFalse(matches.contains("word#c"));
+    }
+}
@@ -0,0 +1,176 @@
+package de.spektrumprojekt.informationextraction.relations2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import de.spektrumprojekt.commons.chain.Command;
+import de.spektrumprojekt.commons.chain.CommandException;
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.common.Property;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.informationextraction.InformationExtractionContext;
+import de.spektrumprojekt.informationextraction.relations.FeedTestDataSource;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Benchmark comparing the {@link MinHashClusterCommand} with the {@link ClusterCommand}. The
+ * clusters of the {@link ClusterCommand} are taken as reference for the quality. Replays the RSS
+ * feed given as first argument or a generated feed of news with updates and comments. Not a unit
+ * test, run it using the main method.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class ClusterCommandBenchmark {
+
+    private static final int STORIES = 600;
+    private static final int MAX_MESSAGES_PER_STORY = 4;
+    // the number of stories published at the same time
+    private static final int OPEN_STORIES = 50;
+    private static final int MAX_CLUSTERS_TO_KEEP = 500;
+    private static final float SIMILARITY_THRESHOLD = 0.8f;
+
+    private static final String[] WORDS = { "release", "project", "meeting", "server", "update",
+            "customer", "report", "security", "network", "budget", "planning", "review",
+            "workshop", "migration", "database", "version", "feature", "support", "training",
+            "conference", "deadline", "proposal", "contract", "design", "launch", "market",
+            "quarter", "results", "partner", "office" };
+
+    public static void main(String[] args) throws CommandException {
+        List<Message> messages = args.length > 0 ? readFeed(new File(args[0]))
+                : new ClusterCommandBenchmark().createFeed();
+        new ClusterCommandBenchmark().run(messages);
+    }
+
+    private static List<Message> readFeed(File file) {
+        List<Message> messages = new ArrayList<Message>();
+        for (Message message : new FeedTestDataSource(file)) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private final Random random = new Random(42);
+
+    private Message createMessage(String title, String link, String author) {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, new Date());
+        message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN, title));
+        message.addProperty(new Property(Property.PROPERTY_KEY_TITLE, title));
+        message.addProperty(new Property(Property.PROPERTY_KEY_LINK, link));
+        message.addProperty(new Property(Property.PROPERTY_KEY_AUTHOR_NAME, author));
+        return message;
+    }
+
+    private List<Message> createFeed() {
+        List<Message> messages = new ArrayList<Message>();
+        List<List<Message>> openStories = new ArrayList<List<Message>>();
+        int story = 0;
+        while (story < STORIES || !openStories.isEmpty()) {
+            while (story < STORIES && openStories.size() < OPEN_STORIES) {
+                openStories.add(createStory(story++));
+            }
+            List<Message> openStory = openStories.get(random.nextInt(openStories.size()));
+            messages.add(openStory.remove(0));
+            if (openStory.isEmpty()) {
+                openStories.remove(openStory);
+            }
+        }
+        return messages;
+    }
+
+    private List<Message> createStory(int story) {
+        List<String> words = new ArrayList<String>();
+        for (int i = 0; i < 4 + random.nextInt(5); i++) {
+            words.add(WORDS[random.nextInt(WORDS.length)]);
+        }
+        String title = join(words, " ");
+        String link = "http://www.example.com/" + WORDS[random.nextInt(WORDS.length)] + "/"
+                + join(words, "-") + "-" + story;
+        String author = "author" + random.nextInt(100);
+
+        List<Message> messages = new ArrayList<Message>();
+        messages.add(createMessage(title, link, author));
+        for (int i = 1; i < 1 + random.nextInt(MAX_MESSAGES_PER_STORY); i++) {
+            List<String> changedWords = new ArrayList<String>(words);
+            changedWords.set(random.nextInt(changedWords.size()),
+                    WORDS[random.nextInt(WORDS.length)]);
+            messages.add(createMessage(random.nextBoolean() ? join(changedWords, " ") : title
+                    + " (update)", link + "?comment=" + i, author));
+        }
+        return messages;
+    }
+
+    private String join(List<String> words, String separator) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : words) {
+            if (builder.length() > 0) {
+                builder.append(separator);
+            }
+            builder.append(word);
+        }
+        return builder.toString();
+    }
+
+    /**
+     *
+     * @return the pairs of messages clustered together
+     */
+    private Set<String> process(String name, Command<InformationExtractionContext> command,
+            List<Message> messages) throws CommandException {
+        SimplePersistence persistence = new SimplePersistence();
+        Set<String> pairs = new HashSet<String>();
+        long maxDuration = 0;
+        long start = System.nanoTime();
+        for (Message message : messages) {
+            InformationExtractionContext context = new InformationExtractionContext(persistence,
+                    message, message.getMessageParts().iterator().next());
+            long messageStart = System.nanoTime();
+            command.process(context);
+            maxDuration = Math.max(maxDuration, System.nanoTime() - messageStart);
+            for (MessageRelation relation : context.getDetectedMessageRelations()) {
+                for (String id : relation.getRelatedMessageGlobalIds()) {
+                    if (!id.equals(message.getGlobalId())) {
+                        pairs.add(id + " " + message.getGlobalId());
+                    }
+                }
+            }
+        }
+        long duration = System.nanoTime() - start;
+        System.out.println(String.format("%-22s avg=%8.1f max=%8.1f (micro seconds per message)"
+                + " pairs=%d", name, duration / 1000d / messages.size(), maxDuration / 1000d,
+                pairs.size()));
+        return pairs;
+    }
+
+    public void run(List<Message> messages) throws CommandException {
+        System.out.println("messages=" + messages.size() + " maxClustersToKeep="
+                + MAX_CLUSTERS_TO_KEEP + " similarityThreshold=" + SIMILARITY_THRESHOLD);
+        // warm up
+        List<Message> warmUp = messages.subList(0, Math.min(messages.size(), 200));
+        process("warm up", new ClusterCommand(DefaultMessageSimilarity.INSTANCE,
+                SIMILARITY_THRESHOLD, MAX_CLUSTERS_TO_KEEP), warmUp);
+        process("warm up", new MinHashClusterCommand(DefaultMessageSimilarity.INSTANCE,
+                SIMILARITY_THRESHOLD, MAX_CLUSTERS_TO_KEEP), warmUp);
+
+        Set<String> reference = process("ClusterCommand", new ClusterCommand(
+                DefaultMessageSimilarity.INSTANCE, SIMILARITY_THRESHOLD, MAX_CLUSTERS_TO_KEEP),
+                messages);
+        Set<String> pairs = process("MinHashClusterCommand", new MinHashClusterCommand(
+                DefaultMessageSimilarity.INSTANCE, SIMILARITY_THRESHOLD, MAX_CLUSTERS_TO_KEEP),
+                messages);
+
+        Set<String> common = new HashSet<String>(pairs);
+        common.retainAll(reference);
+        System.out.println(String.format("precision=%.3f recall=%.3f",
+                pairs.isEmpty() ? 1 : common.size() / (double) pairs.size(),
+                reference.isEmpty() ? 1 : common.size() / (double) reference.size()));
+    }
+}
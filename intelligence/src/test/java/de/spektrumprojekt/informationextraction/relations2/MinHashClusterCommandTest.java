@@ -0,0 +1,109 @@
+package de.spektrumprojekt.informationextraction.relations2;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.common.Property;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.informationextraction.InformationExtractionContext;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test the {@link MinHashClusterCommand}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ */
+public class MinHashClusterCommandTest {
+
+    private static Message createMessage(String title, String link, String author) {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, new Date());
+        message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN, title));
+        message.addProperty(new Property(Property.PROPERTY_KEY_TITLE, title));
+        message.addProperty(new Property(Property.PROPERTY_KEY_LINK, link));
+        message.addProperty(new Property(Property.PROPERTY_KEY_AUTHOR_NAME, author));
+        return message;
+    }
+
+    private final SimplePersistence persistence = new SimplePersistence();
+
+    private List<MessageRelation> process(MinHashClusterCommand command, Message message) {
+        InformationExtractionContext context = new InformationExtractionContext(persistence,
+                message, message.getMessageParts().iterator().next());
+        command.process(context);
+        return context.getDetectedMessageRelations();
+    }
+
+    /**
+     * Test that similar messages are clustered, others are not and the least recently updated
+     * cluster is removed
+     */
+    @Test
+    public void testClusterCommand() {
+        MinHashClusterCommand command = new MinHashClusterCommand(
+                DefaultMessageSimilarity.INSTANCE, 0.8f, 2);
+
+        Message release = createMessage("Release 2.1 of the spektrum platform is available",
+                "http://www.spektrumprojekt.de/news/release-2-1", "anna");
+        Assert.assertTrue(process(command, release).isEmpty());
+        Message meeting = createMessage("Minutes of the project meeting in Berlin",
+                "http://www.spektrumprojekt.de/wiki/minutes-berlin", "bernd");
+        Assert.assertTrue(process(command, meeting).isEmpty());
+        Assert.assertEquals(2, command.getClusterCount());
+
+        Message releaseUpdate = createMessage(
+                "Release 2.1 of the spektrum platform is now available",
+                "http://www.spektrumprojekt.de/news/release-2-1?comment=1", "anna");
+        List<MessageRelation> relations = process(command, releaseUpdate);
+        Assert.assertEquals(1, relations.size());
+        List<String> relatedIds = new ArrayList<String>();
+        for (String id : relations.get(0).getRelatedMessageGlobalIds()) {
+            relatedIds.add(id);
+        }
+        Assert.assertEquals(2, relatedIds.size());
+        Assert.assertTrue(relatedIds.contains(release.getGlobalId()));
+        Assert.assertTrue(relatedIds.contains(releaseUpdate.getGlobalId()));
+        Assert.assertEquals(2, command.getClusterCount());
+
+        // the meeting cluster has been updated least recently
+        Message other = createMessage("Something completely different",
+                "http://www.example.com/different", "carl");
+        Assert.assertTrue(process(command, other).isEmpty());
+        Assert.assertEquals(2, command.getClusterCount());
+        Message meetingUpdate = createMessage("Minutes of the project meeting in Berlin",
+                "http://www.spektrumprojekt.de/wiki/minutes-berlin", "bernd");
+        Assert.assertTrue(process(command, meetingUpdate).isEmpty());
+        Message releaseComment = createMessage(
+                "Release 2.1 of the spektrum platform is available",
+                "http://www.spektrumprojekt.de/news/release-2-1?comment=2", "anna");
+        Assert.assertTrue(process(command, releaseComment).isEmpty());
+    }
+
+    /**
+     * Test that the similarity estimated from the signatures is close to the Jaccard similarity
+     */
+    @Test
+    public void testMinHash() {
+        MinHash minHash = new MinHash(50, 4, 1);
+        List<String> shingles1 = new ArrayList<String>();
+        List<String> shingles2 = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            shingles1.add("shingle" + i);
+            shingles2.add("shingle" + (i + 50));
+        }
+        // 50 common out of 150
+        float similarity = MinHash.estimateSimilarity(minHash.getSignature(shingles1),
+                minHash.getSignature(shingles2));
+        Assert.assertEquals(1 / 3f, similarity, 0.1f);
+        Assert.assertEquals(1f, MinHash.estimateSimilarity(minHash.getSignature(shingles1),
+                minHash.getSignature(shingles1)), 0);
+    }
+}
@@ -35,4 +35,8 @@ public class CommunicatorFactoryException extends Exception {
     public CommunicatorFactoryException(String message, MalformedURLException e) {
         super(message, e);
     }
+
+    public CommunicatorFactoryException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
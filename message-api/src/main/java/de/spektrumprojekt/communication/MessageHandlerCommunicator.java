@@ -22,6 +22,7 @@ package de.spektrumprojekt.communication;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,9 @@ public abstract class MessageHandlerCommunicator implements
     private Map<MessageHandler<? extends CommunicationMessage>, MessageHandler<? extends CommunicationMessage>> messageHandlers =
             new ConcurrentHashMap<MessageHandler<? extends CommunicationMessage>, MessageHandler<? extends CommunicationMessage>>();
 
+    // key is the class name of the message handler
+    private final ConcurrentMap<String, MessageHandlerStatistics> messageHandlerStatistics = new ConcurrentHashMap<String, MessageHandlerStatistics>();
+
     /**
      * Deliever the message to all known handlers, if an exception occurs it will be stored
      * 
@@ -46,9 +50,12 @@ public abstract class MessageHandlerCommunicator implements
 
         for (MessageHandler<? extends CommunicationMessage> handler : messageHandlers.keySet()) {
 
+            long start = System.nanoTime();
+            boolean delivered = false;
             try {
 
                 if (handler.supports(message)) {
+                    delivered = true;
 
                     // this is not nice. it assumes that supports checks for the type of the
                     // message.
@@ -62,10 +69,38 @@ public abstract class MessageHandlerCommunicator implements
                 LOGGER.error("Error delievering message message=" + message, th);
                 errors.put(handler, th);
             }
+            if (delivered) {
+                getOrCreateMessageHandlerStatistics(handler).add(System.nanoTime() - start,
+                        errors.containsKey(handler));
+            }
         }
         return errors;
     }
 
+    /**
+     * 
+     * @return the statistics of the message handlers the messages have been delivered to, the key
+     *         is the class name of the message handler
+     */
+    public Map<String, MessageHandlerStatistics> getMessageHandlerStatistics() {
+        return messageHandlerStatistics;
+    }
+
+    private MessageHandlerStatistics getOrCreateMessageHandlerStatistics(
+            MessageHandler<? extends CommunicationMessage> handler) {
+        String name = handler.getClass().getName();
+        MessageHandlerStatistics statistics = messageHandlerStatistics.get(name);
+        if (statistics == null) {
+            statistics = new MessageHandlerStatistics(name);
+            MessageHandlerStatistics existingStatistics = messageHandlerStatistics.putIfAbsent(
+                    name, statistics);
+            if (existingStatistics != null) {
+                statistics = existingStatistics;
+            }
+        }
+        return statistics;
+    }
+
     /**
      * {@inheritDoc}
      */
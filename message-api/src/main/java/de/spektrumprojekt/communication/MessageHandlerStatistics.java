@@ -0,0 +1,117 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+* 
+* http://www.apache.org/licenses/LICENSE-2.0
+* 
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package de.spektrumprojekt.communication;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the messages delivered to the message handlers of one class and the time the handlers
+ * took. Can be updated concurrently.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class MessageHandlerStatistics {
+
+    private final String messageHandlerName;
+
+    private final AtomicLong messageCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong totalDurationNanos = new AtomicLong();
+    private final AtomicLong maxDurationNanos = new AtomicLong();
+
+    /**
+     *
+     * @param messageHandlerName
+     *            the name of the message handler, usually the class name
+     */
+    public MessageHandlerStatistics(String messageHandlerName) {
+        if (messageHandlerName == null) {
+            throw new IllegalArgumentException("messageHandlerName cannot be null.");
+        }
+        this.messageHandlerName = messageHandlerName;
+    }
+
+    /**
+     *
+     * @param durationNanos
+     *            the time the handler took for the message in nano seconds
+     * @param error
+     *            true if the handler failed
+     */
+    public void add(long durationNanos, boolean error) {
+        messageCount.incrementAndGet();
+        if (error) {
+            errorCount.incrementAndGet();
+        }
+        totalDurationNanos.addAndGet(durationNanos);
+        long max = maxDurationNanos.get();
+        while (durationNanos > max && !maxDurationNanos.compareAndSet(max, durationNanos)) {
+            max = maxDurationNanos.get();
+        }
+    }
+
+    /**
+     *
+     * @return the average time the handler took for a message in milli seconds
+     */
+    public double getAverageDurationMillis() {
+        long count = messageCount.get();
+        return count == 0 ? 0 : totalDurationNanos.get() / (double) count
+                / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     *
+     * @return the longest time the handler took for a message in milli seconds
+     */
+    public long getMaxDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxDurationNanos.get());
+    }
+
+    public long getMessageCount() {
+        return messageCount.get();
+    }
+
+    public String getMessageHandlerName() {
+        return messageHandlerName;
+    }
+
+    /**
+     *
+     * @return the time the handler took for all messages in milli seconds
+     */
+    public long getTotalDurationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalDurationNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "MessageHandlerStatistics [messageHandlerName=" + messageHandlerName
+                + ", messageCount=" + getMessageCount() + ", errorCount=" + getErrorCount()
+                + ", averageDurationMillis=" + getAverageDurationMillis()
+                + ", maxDurationMillis=" + getMaxDurationMillis() + "]";
+    }
+}
@@ -0,0 +1,207 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+* 
+* http://www.apache.org/licenses/LICENSE-2.0
+* 
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package de.spektrumprojekt.communication.vm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.spektrumprojekt.commons.task.NamedThreadFactory;
+import de.spektrumprojekt.communication.CommunicationException;
+import de.spektrumprojekt.communication.CommunicationMessage;
+import de.spektrumprojekt.communication.MessageHandlerCommunicator;
+import de.spektrumprojekt.communication.MessageHandlerStatistics;
+
+/**
+ * Communicator within the virtual machine using blocking queues. In contrast to the
+ * {@link VirtualMachineCommunicator} the consumers wait on the queue instead of polling it, hence
+ * a message is delivered as soon as it arrives, and several consumer threads can deliver messages
+ * in parallel. The message handlers must be thread safe if more than one consumer is used.
+ *
+ * If the queue is bounded sending blocks while it is full. Closing the communicator delivers the
+ * messages still in the queue before the consumers stop.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class BlockingVirtualMachineCommunicator extends MessageHandlerCommunicator {
+
+    private final static org.slf4j.Logger LOGGER = org.slf4j.LoggerFactory
+            .getLogger(BlockingVirtualMachineCommunicator.class);
+
+    // the time a consumer waits for a message before checking if it should stop
+    private static final long POLL_TIMEOUT_MS = 100;
+
+    private static final long CLOSE_TIMEOUT_MS = 60000;
+
+    private final BlockingQueue<CommunicationMessage> outQueue, inQueue;
+
+    private final int numberOfConsumers;
+
+    private final ThreadFactory threadFactory = new NamedThreadFactory(
+            BlockingVirtualMachineCommunicator.class.getSimpleName(), true);
+
+    private final Collection<Thread> consumers = new ArrayList<Thread>();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private volatile boolean stop = false;
+
+    /**
+     *
+     * @param outQueue
+     *            the queue to send messages to
+     * @param inQueue
+     *            the queue to receive messages from
+     * @param numberOfConsumers
+     *            the number of threads delivering the received messages
+     */
+    public BlockingVirtualMachineCommunicator(BlockingQueue<CommunicationMessage> outQueue,
+            BlockingQueue<CommunicationMessage> inQueue, int numberOfConsumers) {
+        if (outQueue == null) {
+            throw new IllegalArgumentException("outQueue cannot be null");
+        }
+        if (inQueue == null) {
+            throw new IllegalArgumentException("inQueue cannot be null");
+        }
+        if (numberOfConsumers < 1) {
+            throw new IllegalArgumentException(
+                    "numberOfConsumers must be at least 1. numberOfConsumers=" + numberOfConsumers);
+        }
+        this.outQueue = outQueue;
+        this.inQueue = inQueue;
+        this.numberOfConsumers = numberOfConsumers;
+    }
+
+    /**
+     * Stops the consumers after the messages in the queue have been delivered. Waits until the
+     * consumers are stopped.
+     */
+    @Override
+    public synchronized void close() {
+        stop = true;
+        long end = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join(Math.max(1, end - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (consumer.isAlive()) {
+                LOGGER.warn("Consumer thread {} did not stop within {} ms.", consumer.getName(),
+                        CLOSE_TIMEOUT_MS);
+            }
+        }
+        consumers.clear();
+        LOGGER.info("Closed communicator. maxQueueDepth={}", maxQueueDepth);
+        for (MessageHandlerStatistics statistics : getMessageHandlerStatistics().values()) {
+            LOGGER.info(statistics.toString());
+        }
+    }
+
+    private void consume() {
+        try {
+            while (true) {
+                updateMaxQueueDepth(inQueue.size());
+                CommunicationMessage message = inQueue.poll(POLL_TIMEOUT_MS,
+                        TimeUnit.MILLISECONDS);
+                if (message == null) {
+                    if (stop) {
+                        // the queue is drained
+                        return;
+                    }
+                    continue;
+                }
+                deliverMessage(message);
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Got interrupted.", e);
+        }
+    }
+
+    /**
+     *
+     * @return the largest number of messages waiting in the queue the consumers have seen
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public int getNumberOfConsumers() {
+        return numberOfConsumers;
+    }
+
+    /**
+     *
+     * @return the number of received messages waiting for delivery
+     */
+    public int getQueueDepth() {
+        return inQueue.size();
+    }
+
+    @Override
+    public synchronized void open() {
+        if (!consumers.isEmpty()) {
+            LOGGER.debug("Consumer threads still open. Do nothing.");
+            return;
+        }
+        stop = false;
+        Runnable consumer = new Runnable() {
+
+            @Override
+            public void run() {
+                consume();
+            }
+        };
+        for (int i = 0; i < numberOfConsumers; i++) {
+            Thread thread = threadFactory.newThread(consumer);
+            consumers.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Sends the message. Blocks while the queue is full.
+     *
+     * @param message
+     *            the message
+     */
+    @Override
+    public void sendMessage(CommunicationMessage message) {
+        try {
+            this.outQueue.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommunicationException("Interrupted while waiting to send message="
+                    + message, e);
+        }
+    }
+
+    private void updateMaxQueueDepth(int queueDepth) {
+        int max = maxQueueDepth.get();
+        while (queueDepth > max && !maxQueueDepth.compareAndSet(max, queueDepth)) {
+            max = maxQueueDepth.get();
+        }
+    }
+}
@@ -19,11 +19,11 @@
 
 package de.spektrumprojekt.communication.vm;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 
@@ -38,6 +38,13 @@ import de.spektrumprojekt.configuration.Configuration;
  * 
  * If two vms are configured with the same endpoints the will be connected.
  * 
+ * Optional properties: "consumerThreads=4" creates {@link BlockingVirtualMachineCommunicator}s
+ * delivering the messages with the given number of threads, by default the polling
+ * {@link VirtualMachineCommunicator} is created. "queueCapacity=1000" bounds the queues of the
+ * endpoints, by default they are unbounded. A capacity can only be configured together with
+ * consumer threads, since only the {@link BlockingVirtualMachineCommunicator} waits for a full
+ * queue, the polling {@link VirtualMachineCommunicator} would fail to send.
+ * 
  * @author tlu
  * 
  */
@@ -45,11 +52,15 @@ public class VirtualMachineCommunicatorFactory implements CommunicatorFactory {
 
     private Configuration configuration;
 
-    private final Map<String, Queue<CommunicationMessage>> queues = new HashMap<String, Queue<CommunicationMessage>>();
+    private final Map<String, BlockingQueue<CommunicationMessage>> queues = new HashMap<String, BlockingQueue<CommunicationMessage>>();
+
+    private URI in;
 
-    private URL in;
+    private URI out;
 
-    private URL out;
+    private int consumerThreads;
+
+    private int queueCapacity;
 
     private boolean initalized;
 
@@ -59,17 +70,20 @@ public class VirtualMachineCommunicatorFactory implements CommunicatorFactory {
             throw new IllegalStateException("Not yet initalized. Forgot to call #initalize ?");
         }
 
-        Queue<CommunicationMessage> inQueue = getQueue(in.getHost());
-        Queue<CommunicationMessage> outQueue = getQueue(out.getHost());
+        BlockingQueue<CommunicationMessage> inQueue = getQueue(in.getHost());
+        BlockingQueue<CommunicationMessage> outQueue = getQueue(out.getHost());
 
+        if (consumerThreads > 0) {
+            return new BlockingVirtualMachineCommunicator(inQueue, outQueue, consumerThreads);
+        }
         VirtualMachineCommunicator communicator = new VirtualMachineCommunicator(inQueue, outQueue);
         return communicator;
     }
 
-    private synchronized Queue<CommunicationMessage> getQueue(String endpoint) {
-        Queue<CommunicationMessage> queue = queues.get(endpoint);
+    private synchronized BlockingQueue<CommunicationMessage> getQueue(String endpoint) {
+        BlockingQueue<CommunicationMessage> queue = queues.get(endpoint);
         if (queue == null) {
-            queue = new LinkedBlockingQueue<CommunicationMessage>();
+            queue = new LinkedBlockingQueue<CommunicationMessage>(queueCapacity);
             queues.put(endpoint, queue);
         }
         return queue;
@@ -89,6 +103,8 @@ public class VirtualMachineCommunicatorFactory implements CommunicatorFactory {
 
         String inUrl = this.configuration.getStringProperty("inUrl");
         String outUrl = this.configuration.getStringProperty("outUrl");
+        consumerThreads = this.configuration.getIntProperty("consumerThreads", 0);
+        queueCapacity = this.configuration.getIntProperty("queueCapacity", Integer.MAX_VALUE);
 
         if (inUrl == null) {
             throw new CommunicatorFactoryException(
@@ -98,25 +114,36 @@ public class VirtualMachineCommunicatorFactory implements CommunicatorFactory {
             throw new CommunicatorFactoryException(
                     "Error inializing, reading configuraion. Invalid url. outUrl is not configured.");
         }
+        if (queueCapacity < 1) {
+            throw new CommunicatorFactoryException(
+                    "Error inializing, reading configuraion. queueCapacity must be positive.");
+        }
+        if (queueCapacity != Integer.MAX_VALUE && consumerThreads < 1) {
+            throw new CommunicatorFactoryException(
+                    "Error inializing, reading configuraion. queueCapacity requires consumerThreads.");
+        }
 
         try {
-            in = new URL(inUrl);
-            out = new URL(outUrl);
+            // no URL, there is no stream handler for the vm protocol
+            in = new URI(inUrl);
+            out = new URI(outUrl);
 
-        } catch (MalformedURLException e) {
+        } catch (URISyntaxException e) {
             throw new CommunicatorFactoryException(
                     "Error inializing, reading configuraion. Invalid url.", e);
         }
 
-        if (!this.getURLHandler().equals(in.getProtocol().toLowerCase())) {
+        if (in.getScheme() == null
+                || !this.getURLHandler().equals(in.getScheme().toLowerCase())) {
             throw new CommunicatorFactoryException(
                     "Protocol of url does not match of communocator factory. protocol is "
-                            + in.getProtocol());
+                            + in.getScheme());
         }
-        if (!this.getURLHandler().equals(out.getProtocol().toLowerCase())) {
+        if (out.getScheme() == null
+                || !this.getURLHandler().equals(out.getScheme().toLowerCase())) {
             throw new CommunicatorFactoryException(
                     "Protocol of url does not match of communocator factory. protocol is "
-                            + out.getProtocol());
+                            + out.getScheme());
         }
 
         initalized = true;
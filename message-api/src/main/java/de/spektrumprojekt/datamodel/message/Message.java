@@ -19,12 +19,16 @@
 
 package de.spektrumprojekt.datamodel.message;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
@@ -55,6 +59,25 @@ import de.spektrumprojekt.datamodel.subscription.status.StatusType;
 @Table(uniqueConstraints = @UniqueConstraint(columnNames = "globalId"))
 public class Message extends Identifiable {
 
+    /**
+     * The properties by key and the split property values, built on first access
+     */
+    private static class PropertyIndex {
+        private final int size;
+        private final Map<String, Property> properties;
+        private final ConcurrentMap<String, Collection<String>> splitValues =
+                new ConcurrentHashMap<String, Collection<String>>();
+
+        public PropertyIndex(Collection<Property> properties) {
+            Map<String, Property> propertyMap = new HashMap<String, Property>();
+            for (Property p : properties) {
+                propertyMap.put(p.getPropertyKey(), p);
+            }
+            this.size = properties.size();
+            this.properties = Collections.unmodifiableMap(propertyMap);
+        }
+    }
+
     /**
      * 
      */
@@ -81,6 +104,9 @@ public class Message extends Identifiable {
     @Temporal(TemporalType.TIMESTAMP)
     private Date publicationDate;
 
+    // discarded if a property is added
+    private transient volatile PropertyIndex propertyIndex;
+
     protected Message() {
     }
 
@@ -129,10 +155,19 @@ public class Message extends Identifiable {
         messageParts.add(messagePart);
     }
 
-    public void addProperty(Property property) {
+    /**
+     * Adds the property. Can be called while other threads get the properties using
+     * {@link #getPropertiesAsMap()} or {@link #getProperty(String)}, e.g. by the information
+     * extraction of the parts of the message in parallel.
+     * 
+     * @param property
+     *            the property
+     */
+    public synchronized void addProperty(Property property) {
         Validate.notNull(property, "property cannot be null");
         // TODO how to deal with properties of same key ?
         this.properties.add(property);
+        this.propertyIndex = null;
     }
 
     public void clearMessageParts() {
@@ -160,27 +195,59 @@ public class Message extends Identifiable {
     }
 
     /**
-     * Build a map of properties of the available properties. The map is been build upon each call
-     * of this method.
+     * Get a map of the available properties. The map is built on the first call and kept until a
+     * property is added. Properties should be added using {@link #addProperty(Property)}, changes
+     * to the collection of {@link #getProperties()} are only noticed if they change its size.
      * 
-     * @return the map with key as {@link Property#getPropertyKey()} and value as {@link Property}
+     * @return the unmodifiable map with key as {@link Property#getPropertyKey()} and value as
+     *         {@link Property}
      */
     @JsonIgnore
     public Map<String, Property> getPropertiesAsMap() {
-        Map<String, Property> propertyMap = new HashMap<String, Property>();
-        for (Property p : this.properties) {
-            propertyMap.put(p.getPropertyKey(), p);
-        }
-        return propertyMap;
+        return getPropertyIndex().properties;
     }
 
     public Property getProperty(String propertyKey) {
-        for (Property property : properties) {
-            if (property.getPropertyKey().equals(propertyKey)) {
-                return property;
+        return getPropertyIndex().properties.get(propertyKey);
+    }
+
+    private PropertyIndex getPropertyIndex() {
+        PropertyIndex index = this.propertyIndex;
+        if (index == null || index.size != this.properties.size()) {
+            // build it under the lock of addProperty, so the properties do not change meanwhile
+            synchronized (this) {
+                index = new PropertyIndex(this.properties);
+                this.propertyIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the values of a property holding a list, e.g. the mentioned users. The values are split
+     * on the first call and kept like the map of {@link #getPropertiesAsMap()}, therefore a
+     * property must always be split using the same separator.
+     * 
+     * @param propertyKey
+     *            the key of the property
+     * @param separatorRegex
+     *            the regular expression to split the value with, see {@link String#split(String)}
+     * @return the unmodifiable set of values, empty if the property does not exist
+     */
+    public Collection<String> getPropertyValues(String propertyKey, String separatorRegex) {
+        PropertyIndex index = getPropertyIndex();
+        Collection<String> values = index.splitValues.get(propertyKey);
+        if (values == null) {
+            Property property = index.properties.get(propertyKey);
+            if (property != null && property.getPropertyValue() != null) {
+                values = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(property
+                        .getPropertyValue().split(separatorRegex))));
+            } else {
+                values = Collections.emptySet();
             }
+            index.splitValues.put(propertyKey, values);
         }
-        return null;
+        return values;
     }
 
     public Date getPublicationDate() {
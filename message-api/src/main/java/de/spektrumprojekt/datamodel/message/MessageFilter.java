@@ -14,6 +14,8 @@ public class MessageFilter {
 
     private String messageGroupGlobalId;
 
+    private Long minMessageId;
+
     private String sourceGlobalId;
 
     private Date minPublicationDate;
@@ -34,6 +36,10 @@ public class MessageFilter {
         return messageIdOrderDirection;
     }
 
+    public Long getMinMessageId() {
+        return minMessageId;
+    }
+
     public Date getMinPublicationDate() {
         return minPublicationDate;
     }
@@ -62,6 +68,17 @@ public class MessageFilter {
         this.messageIdOrderDirection = messageIdOrderDirection;
     }
 
+    /**
+     * 
+     * @param minMessageId
+     *            only return messages with an id greater or equal to this id. Use it together
+     *            with {@link #setMessageIdOrderDirection(OrderDirection)} and
+     *            {@link #setLastMessagesCount(int)} to page through the messages by id.
+     */
+    public void setMinMessageId(Long minMessageId) {
+        this.minMessageId = minMessageId;
+    }
+
     public void setMinPublicationDate(Date minPublicationDate) {
         this.minPublicationDate = minPublicationDate;
     }
@@ -66,6 +66,9 @@ public class TermFrequency extends Identifiable {
     private long uniqueTermCount;
     private long messageCount;
 
+    // id of the last message counted by an unfinished rebuild of the counts, null if there is none
+    private Long rebuildCheckpointMessageId;
+
     private static final transient ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private static final transient MapType MESSAGE_GROUP_MESSAGE_COUNTS_MAP_TYPE = MapType
@@ -90,6 +93,10 @@ public class TermFrequency extends Identifiable {
         return messageGroupMessageCounts;
     }
 
+    public Long getRebuildCheckpointMessageId() {
+        return rebuildCheckpointMessageId;
+    }
+
     public long getUniqueTermCount() {
         return uniqueTermCount;
     }
@@ -159,6 +166,10 @@ public class TermFrequency extends Identifiable {
         }
     }
 
+    public void setRebuildCheckpointMessageId(Long rebuildCheckpointMessageId) {
+        this.rebuildCheckpointMessageId = rebuildCheckpointMessageId;
+    }
+
     public void setUniqueTermCount(long uniqueTermCount) {
         this.uniqueTermCount = uniqueTermCount;
     }
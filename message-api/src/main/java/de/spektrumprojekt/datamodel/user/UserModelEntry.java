@@ -20,11 +20,16 @@
 package de.spektrumprojekt.datamodel.user;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
+import javax.persistence.JoinTable;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
@@ -51,10 +56,13 @@ public class UserModelEntry extends Identifiable {
     @OneToOne(cascade = { CascadeType.ALL }, fetch = FetchType.EAGER)
     private ScoredTerm scoredTerm;
 
+    // both time bin collections need their own join table, the default one would be shared
     @OneToMany(cascade = { CascadeType.ALL }, fetch = FetchType.EAGER)
+    @JoinTable(name = "UserModelEntry_TimeBin")
     private Collection<UserModelEntryTimeBin> timeBinEntries;
 
     @OneToMany(cascade = { CascadeType.ALL }, fetch = FetchType.EAGER)
+    @JoinTable(name = "UserModelEntry_TimeBinHistory")
     private final Collection<UserModelEntryTimeBin> timeBinEntriesHistory = new HashSet<UserModelEntryTimeBin>();;
 
     @ManyToOne(optional = false)
@@ -66,6 +74,9 @@ public class UserModelEntry extends Identifiable {
 
     private transient boolean adapted;
 
+    // the time bin entries by start time, built on first access
+    private transient SortedMap<Long, UserModelEntryTimeBin> timeBinIndex;
+
     /**
      * for the jpa
      */
@@ -82,16 +93,19 @@ public class UserModelEntry extends Identifiable {
         if (timeBin == null) {
             throw new IllegalArgumentException("timeBin cannot be null");
         }
-        if (this.getUserModelEntryTimeBinByStartTime(timeBin.getTimeBinStart()) != null) {
+        UserModelEntryTimeBin existing = getUserModelEntryTimeBinByStartTime(timeBin
+                .getTimeBinStart());
+        if (existing != null) {
             throw new IllegalStateException("timeBin with index " + timeBin.getTimeBinStart()
-                    + " already exits. existingTimeBin="
-                    + getUserModelEntryTimeBinByStartTime(timeBin.getTimeBinStart())
-                    + " newTimeBin=" + timeBin + " this=" + this);
+                    + " already exits. existingTimeBin=" + existing + " newTimeBin=" + timeBin
+                    + " this=" + this);
         }
         if (this.timeBinEntries == null) {
             this.timeBinEntries = new HashSet<UserModelEntryTimeBin>();
         }
-        this.timeBinEntries.add(timeBin);
+        if (this.timeBinEntries.add(timeBin)) {
+            getTimeBinIndex().put(timeBin.getTimeBinStart(), timeBin);
+        }
     }
 
     public boolean addToTimeBinEntriesHistory(UserModelEntryTimeBin e) {
@@ -137,24 +151,62 @@ public class UserModelEntry extends Identifiable {
         return timeBinEntriesHistory;
     }
 
-    public UserModelEntryTimeBin getUserModelEntryTimeBinByStartTime(long timeBinStartTime) {
-        if (this.timeBinEntries == null) {
-            return null;
-        }
-        for (UserModelEntryTimeBin timeBin : this.timeBinEntries) {
-            if (timeBin.getTimeBinStart() == timeBinStartTime) {
-                return timeBin;
+    /**
+     * 
+     * @return the unmodifiable time bin entries ordered by their start time
+     */
+    public Collection<UserModelEntryTimeBin> getTimeBinEntriesSorted() {
+        return Collections.unmodifiableCollection(getTimeBinIndex().values());
+    }
+
+    /**
+     * The index is kept in sync by the methods of this class. Changes made directly to the
+     * collection of {@link #getTimeBinEntries()} are only noticed if they change its size.
+     * 
+     * @return the time bin entries by start time
+     */
+    private SortedMap<Long, UserModelEntryTimeBin> getTimeBinIndex() {
+        int size = this.timeBinEntries == null ? 0 : this.timeBinEntries.size();
+        if (this.timeBinIndex == null || this.timeBinIndex.size() != size) {
+            this.timeBinIndex = new TreeMap<Long, UserModelEntryTimeBin>();
+            if (this.timeBinEntries != null) {
+                for (UserModelEntryTimeBin timeBin : this.timeBinEntries) {
+                    this.timeBinIndex.put(timeBin.getTimeBinStart(), timeBin);
+                }
             }
         }
-        return null;
+        return this.timeBinIndex;
+    }
+
+    public UserModelEntryTimeBin getUserModelEntryTimeBinByStartTime(long timeBinStartTime) {
+        return getTimeBinIndex().get(timeBinStartTime);
     }
 
     public boolean isAdapted() {
         return adapted;
     }
 
+    /**
+     * Removes the time bin entries starting before the given time
+     * 
+     * @param timeBinStartTime
+     *            the start time of the first time bin to keep
+     * @return the number of removed time bin entries
+     */
+    public int removeTimeBinEntriesBefore(long timeBinStartTime) {
+        int removed = 0;
+        Iterator<UserModelEntryTimeBin> it = getTimeBinIndex().headMap(timeBinStartTime).values()
+                .iterator();
+        while (it.hasNext()) {
+            this.timeBinEntries.remove(it.next());
+            it.remove();
+            removed++;
+        }
+        return removed;
+    }
+
     public UserModelEntryTimeBin removeUserModelEntryTimeBin(long timeBinStartTime) {
-        UserModelEntryTimeBin timeBin = getUserModelEntryTimeBinByStartTime(timeBinStartTime);
+        UserModelEntryTimeBin timeBin = getTimeBinIndex().remove(timeBinStartTime);
         if (timeBin != null) {
             this.timeBinEntries.remove(timeBin);
         }
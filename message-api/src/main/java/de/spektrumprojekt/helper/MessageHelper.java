@@ -19,11 +19,8 @@
 
 package de.spektrumprojekt.helper;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
-import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -130,31 +127,29 @@ public final class MessageHelper {
         return terms;
     }
 
+    /**
+     * The values are split once per message and cached by the message, so calling this for every
+     * user a message is ranked for is cheap.
+     * 
+     * @return the unmodifiable set of values of the property
+     */
     private static Collection<String> getListProperty(Message message, String propertyKey,
             String seperationString) {
-        Map<String, Property> properties = message.getPropertiesAsMap();
-        Property property = properties.get(propertyKey);
-        Collection<String> splittedPropertyValues = null;
-        if (property != null && property.getPropertyValue() != null) {
-            String[] propertyValues = property.getPropertyValue().split(
-                    seperationString);
-            splittedPropertyValues = new HashSet<String>(Arrays.asList(propertyValues));
-        }
-        if (splittedPropertyValues == null) {
-            splittedPropertyValues = Collections.emptySet();
-        }
-        return splittedPropertyValues;
-
+        return message.getPropertyValues(propertyKey, seperationString);
     }
 
+    /**
+     * 
+     * @param message
+     *            the message
+     * @return the unmodifiable set of global ids of the mentioned users
+     */
     public static Collection<String> getMentions(Message message) {
         return getListProperty(message, PROPERTY_KEY_MENTIONS, MENTION_SEPERATOR_STR);
     }
 
     public static Property getParentMessage(Message message) {
-        Map<String, Property> properties = message.getPropertiesAsMap();
-        Property property = properties.get(PROPERTY_KEY_PARENT_MESSAGE);
-        return property;
+        return message.getProperty(PROPERTY_KEY_PARENT_MESSAGE);
     }
 
     public static Collection<String> getTags(Message message) {
@@ -172,7 +167,7 @@ public final class MessageHelper {
     public static String getTitle(Message message) {
         Validate.notNull(message, "message must not be null");
 
-        Property property = message.getPropertiesAsMap().get(Property.PROPERTY_KEY_TITLE);
+        Property property = message.getProperty(Property.PROPERTY_KEY_TITLE);
         if (property == null) {
             return null;
         }
@@ -0,0 +1,435 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.persistence;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import de.spektrumprojekt.datamodel.common.Property;
+import de.spektrumprojekt.datamodel.duplicationdetection.HashWithDate;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessageRank;
+import de.spektrumprojekt.datamodel.message.MessageRelation;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.message.TermFrequency;
+import de.spektrumprojekt.datamodel.observation.Observation;
+import de.spektrumprojekt.datamodel.observation.ObservationType;
+import de.spektrumprojekt.datamodel.source.Source;
+import de.spektrumprojekt.datamodel.source.SourceNotFoundException;
+import de.spektrumprojekt.datamodel.source.SourceStatus;
+import de.spektrumprojekt.datamodel.subscription.Subscription;
+import de.spektrumprojekt.datamodel.subscription.SubscriptionFilter;
+import de.spektrumprojekt.datamodel.subscription.SubscriptionSourceStatus;
+import de.spektrumprojekt.datamodel.user.User;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+import de.spektrumprojekt.exceptions.SubscriptionNotFoundException;
+
+/**
+ * Persistence passing all calls to another persistence. Decorators of a persistence extend it and
+ * override the methods they change.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class DelegatingPersistence implements Persistence {
+
+    private final Persistence delegate;
+
+    /**
+     * 
+     * @param delegate
+     *            the persistence to pass the calls to
+     */
+    public DelegatingPersistence(Persistence delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate cannot be null.");
+        }
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public Statistics computeStatistics() {
+        return delegate.computeStatistics();
+    }
+
+    @Override
+    public void deleteAggregationSubscription(String subscriptionId) {
+        delegate.deleteAggregationSubscription(subscriptionId);
+    }
+
+    @Override
+    public void deleteAndCreateUserSimilarities(Collection<UserSimilarity> values) {
+        delegate.deleteAndCreateUserSimilarities(values);
+    }
+
+    @Override
+    public void deleteHashWithDates(List<HashWithDate> hashesToDelete) {
+        delegate.deleteHashWithDates(hashesToDelete);
+    }
+
+    @Override
+    public void deleteSource(String sourceGlobalId) {
+        delegate.deleteSource(sourceGlobalId);
+    }
+
+    @Override
+    public void deleteSubscription(String subscriptionGlobalId) {
+        delegate.deleteSubscription(subscriptionGlobalId);
+    }
+
+    @Override
+    public Source findSource(String connectorType, Collection<Property> accessParameters) {
+        return delegate.findSource(connectorType, accessParameters);
+    }
+
+    @Override
+    public List<SourceStatus> findSourceStatusByProperty(Property property) {
+        return delegate.findSourceStatusByProperty(property);
+    }
+
+    @Override
+    public Collection<MessageGroup> getAllMessageGroups() {
+        return delegate.getAllMessageGroups();
+    }
+
+    @Override
+    public Collection<Term> getAllTerms() {
+        return delegate.getAllTerms();
+    }
+
+    @Override
+    public Map<UserModel, Collection<UserModelEntry>> getAllUserModelEntries(String userModelType) {
+        return delegate.getAllUserModelEntries(userModelType);
+    }
+
+    @Override
+    public Collection<User> getAllUsers() {
+        return delegate.getAllUsers();
+    }
+
+    /**
+     * 
+     * @return the persistence the calls are passed to
+     */
+    public Persistence getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public List<HashWithDate> getHashsByGlobalSubscriptionId(String subscriptionGlobalId) {
+        return delegate.getHashsByGlobalSubscriptionId(subscriptionGlobalId);
+    }
+
+    @Override
+    public Message getMessageByGlobalId(String messageGlobalId) {
+        return delegate.getMessageByGlobalId(messageGlobalId);
+    }
+
+    @Override
+    public MessageGroup getMessageGroupByGlobalId(String globalIdString) {
+        return delegate.getMessageGroupByGlobalId(globalIdString);
+    }
+
+    @Override
+    public MessageRank getMessageRank(String userGlobalId, String messageGlobalId) {
+        return delegate.getMessageRank(userGlobalId, messageGlobalId);
+    }
+
+    @Override
+    public MessageRelation getMessageRelation(Message message) {
+        return delegate.getMessageRelation(message);
+    }
+
+    @Override
+    public List<Message> getMessages(MessageFilter messageFilter) {
+        return delegate.getMessages(messageFilter);
+    }
+
+    @Override
+    public int getNumberOfSubscriptionsBySourceGlobalId(String globalId) {
+        return delegate.getNumberOfSubscriptionsBySourceGlobalId(globalId);
+    }
+
+    @Override
+    public Collection<Observation> getObservations(String userGlobalId, String messageGlobalId,
+            ObservationType observationType) {
+        return delegate.getObservations(userGlobalId, messageGlobalId, observationType);
+    }
+
+    @Override
+    public Term getOrCreateTerm(TermCategory termCategory, String name) {
+        return delegate.getOrCreateTerm(termCategory, name);
+    }
+
+    @Override
+    public Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names) {
+        return delegate.getOrCreateTerms(termCategory, names);
+    }
+
+    @Override
+    public User getOrCreateUser(String userGlobalId) {
+        return delegate.getOrCreateUser(userGlobalId);
+    }
+
+    @Override
+    public UserModel getOrCreateUserModelByUser(String userGlobalId, String userModelType) {
+        return delegate.getOrCreateUserModelByUser(userGlobalId, userModelType);
+    }
+
+    @Override
+    public Source getSourceByGlobalId(String sourceGlobalId) throws SourceNotFoundException {
+        return delegate.getSourceByGlobalId(sourceGlobalId);
+    }
+
+    @Override
+    public SourceStatus getSourceStatusBySourceGlobalId(String sourceGlobalId) {
+        return delegate.getSourceStatusBySourceGlobalId(sourceGlobalId);
+    }
+
+    @Override
+    public List<SourceStatus> getSourceStatusList() {
+        return delegate.getSourceStatusList();
+    }
+
+    @Override
+    public Subscription getSubscriptionByGlobalId(String subscriptionGlobalId)
+            throws SubscriptionNotFoundException {
+        return delegate.getSubscriptionByGlobalId(subscriptionGlobalId);
+    }
+
+    @Override
+    public List<Subscription> getSubscriptions(SubscriptionFilter subscriptionFilter) {
+        return delegate.getSubscriptions(subscriptionFilter);
+    }
+
+    @Override
+    public List<SubscriptionSourceStatus> getSubscriptionsWithSourceStatus(
+            SubscriptionFilter subscriptionFilter) {
+        return delegate.getSubscriptionsWithSourceStatus(subscriptionFilter);
+    }
+
+    @Override
+    public TermFrequency getTermFrequency() {
+        return delegate.getTermFrequency();
+    }
+
+    @Override
+    public Map<UserModel, Collection<UserModelEntry>> getUserModelEntries(String userModelType,
+            String afterUserGlobalId, int maxUserModels) {
+        return delegate.getUserModelEntries(userModelType, afterUserGlobalId, maxUserModels);
+    }
+
+    @Override
+    public Map<String, String> getUserModelEntriesCountDescription() {
+        return delegate.getUserModelEntriesCountDescription();
+    }
+
+    @Override
+    public Map<Term, UserModelEntry> getUserModelEntriesForTerms(UserModel userModel,
+            Collection<Term> terms) {
+        return delegate.getUserModelEntriesForTerms(userModel, terms);
+    }
+
+    @Override
+    public Map<String, Map<String, Map<Term, UserModelEntry>>> getUserModelEntriesForTerms(
+            Collection<String> userGlobalIds, Collection<String> userModelTypes,
+            Collection<Term> terms) {
+        return delegate.getUserModelEntriesForTerms(userGlobalIds, userModelTypes, terms);
+    }
+
+    @Override
+    public Collection<UserSimilarity> getUserSimilarities(String messageGroupGlobalId) {
+        return delegate.getUserSimilarities(messageGroupGlobalId);
+    }
+
+    @Override
+    public Collection<UserSimilarity> getUserSimilarities(Collection<String> userGlobalIdsFrom,
+            Collection<String> userGlobalIdsTo, String messageGroupGlobalId,
+            double userSimilarityThreshold) {
+        return delegate.getUserSimilarities(userGlobalIdsFrom, userGlobalIdsTo,
+                messageGroupGlobalId, userSimilarityThreshold);
+    }
+
+    @Override
+    public Collection<UserSimilarity> getUserSimilarities(String userGlobalId,
+            Collection<String> users, String messageGroupGlobalId, double userSimilarityThreshold) {
+        return delegate.getUserSimilarities(userGlobalId, users, messageGroupGlobalId,
+                userSimilarityThreshold);
+    }
+
+    @Override
+    public UserSimilarity getUserSimilarity(String userGlobalIdFrom, String userGlobalIdTo,
+            String messageGroupGlobalId) {
+        return delegate.getUserSimilarity(userGlobalIdFrom, userGlobalIdTo, messageGroupGlobalId);
+    }
+
+    @Override
+    public Collection<UserModel> getUsersWithUserModel(Collection<Term> terms,
+            String userModelType) {
+        return delegate.getUsersWithUserModel(terms, userModelType);
+    }
+
+    @Override
+    public void initialize() {
+        delegate.initialize();
+    }
+
+    @Override
+    public void removeUserModelEntry(UserModel userModel, UserModelEntry userModelEntry) {
+        delegate.removeUserModelEntry(userModel, userModelEntry);
+    }
+
+    @Override
+    public void resetTermCount() {
+        delegate.resetTermCount();
+    }
+
+    @Override
+    public HashWithDate saveHashWithDate(HashWithDate hashWithDate) {
+        return delegate.saveHashWithDate(hashWithDate);
+    }
+
+    @Override
+    public void saveHashWithDates(List<HashWithDate> hashesWithDates) {
+        delegate.saveHashWithDates(hashesWithDates);
+    }
+
+    @Override
+    public Source saveSource(Source source) {
+        return delegate.saveSource(source);
+    }
+
+    @Override
+    public SourceStatus saveSourceStatus(SourceStatus sourceStatus) {
+        return delegate.saveSourceStatus(sourceStatus);
+    }
+
+    @Override
+    public Message storeMessage(Message message) {
+        return delegate.storeMessage(message);
+    }
+
+    @Override
+    public MessageGroup storeMessageGroup(MessageGroup messageGroup) {
+        return delegate.storeMessageGroup(messageGroup);
+    }
+
+    @Override
+    public void storeMessagePattern(String pattern, Message message) {
+        delegate.storeMessagePattern(pattern, message);
+    }
+
+    @Override
+    public Map<String, List<Message>> storeMessagePatterns(Message message,
+            Collection<String> patterns, Date minPublicationDate) {
+        return delegate.storeMessagePatterns(message, patterns, minPublicationDate);
+    }
+
+    @Override
+    public void storeMessageRanks(Collection<MessageRank> ranks) {
+        delegate.storeMessageRanks(ranks);
+    }
+
+    @Override
+    public void storeMessageRelation(Message message, MessageRelation relatedMessages) {
+        delegate.storeMessageRelation(message, relatedMessages);
+    }
+
+    @Override
+    public void storeObservation(Observation observation) {
+        delegate.storeObservation(observation);
+    }
+
+    @Override
+    public Collection<UserModelEntry> storeOrUpdateUserModelEntries(UserModel userModel,
+            Collection<UserModelEntry> changedEntries) {
+        return delegate.storeOrUpdateUserModelEntries(userModel, changedEntries);
+    }
+
+    @Override
+    public void storeOrUpdateUserModelEntries(
+            Map<UserModel, Collection<UserModelEntry>> changedEntries) {
+        delegate.storeOrUpdateUserModelEntries(changedEntries);
+    }
+
+    @Override
+    public Subscription storeSubscription(Subscription subscription) {
+        return delegate.storeSubscription(subscription);
+    }
+
+    @Override
+    public void storeUserSimilarities(Collection<UserSimilarity> userSimilarities) {
+        delegate.storeUserSimilarities(userSimilarities);
+    }
+
+    @Override
+    public void storeUserSimilarity(UserSimilarity stat) {
+        delegate.storeUserSimilarity(stat);
+    }
+
+    @Override
+    public void updateMessageRank(MessageRank rankToUpdate) {
+        delegate.updateMessageRank(rankToUpdate);
+    }
+
+    @Override
+    public Source updateSource(Source source) throws SourceNotFoundException {
+        return delegate.updateSource(source);
+    }
+
+    @Override
+    public void updateSourceStatus(SourceStatus sourceStatus) {
+        delegate.updateSourceStatus(sourceStatus);
+    }
+
+    @Override
+    public Subscription updateSubscription(Subscription subscription)
+            throws SubscriptionNotFoundException {
+        return delegate.updateSubscription(subscription);
+    }
+
+    @Override
+    public void updateTermFrequency(TermFrequency termFrequency) {
+        delegate.updateTermFrequency(termFrequency);
+    }
+
+    @Override
+    public void updateTerms(Collection<Term> termsChanged) {
+        delegate.updateTerms(termsChanged);
+    }
+
+    @Override
+    public void visitAllMessageRanks(MessageRankVisitor visitor, Date startDate, Date endDate)
+            throws Exception {
+        delegate.visitAllMessageRanks(visitor, startDate, endDate);
+    }
+}
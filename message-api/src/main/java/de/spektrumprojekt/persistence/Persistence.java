@@ -135,6 +135,17 @@ public interface Persistence {
      */
     Term getOrCreateTerm(TermCategory termCategory, String name);
 
+    /**
+     * Get the terms for the names, the missing terms are created at once
+     * 
+     * @param termCategory
+     *            the type of the terms
+     * @param names
+     *            the names of the terms
+     * @return the terms mapped by their names
+     */
+    Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names);
+
     User getOrCreateUser(String userGlobalId);
 
     /**
@@ -159,6 +170,25 @@ public interface Persistence {
 
     TermFrequency getTermFrequency();
 
+    /**
+     * Returns the entries of a page of the user models of a type, the user models are ordered by
+     * the global id of their user. Use it instead of {@link #getAllUserModelEntries(String)} to
+     * process all user models without loading all of them at once.
+     * 
+     * @param userModelType
+     *            the type of the user models
+     * @param afterUserGlobalId
+     *            the global id of the user of the last user model of the previous page, null to
+     *            get the first page
+     * @param maxUserModels
+     *            the maximum number of user models of the page
+     * @return the user models of the page and their entries, iterating in the order of the
+     *         global ids of the users. If it contains less than maxUserModels user models it is
+     *         the last page.
+     */
+    Map<UserModel, Collection<UserModelEntry>> getUserModelEntries(String userModelType,
+            String afterUserGlobalId, int maxUserModels);
+
     Map<String, String> getUserModelEntriesCountDescription();
 
     /**
@@ -173,8 +203,48 @@ public interface Persistence {
     Map<Term, UserModelEntry> getUserModelEntriesForTerms(UserModel userModel,
             Collection<Term> terms);
 
+    /**
+     * Bulk variant of {@link #getUserModelEntriesForTerms(UserModel, Collection)} that loads the
+     * entries of several users and user model types at once. User models that do not exist yet
+     * will not be created.
+     * 
+     * @param userGlobalIds
+     *            the global ids of the users
+     * @param userModelTypes
+     *            the user model types
+     * @param terms
+     *            the terms
+     * @return a map of the user global id to a map of the user model type to the entries of the
+     *         terms (as in {@link #getUserModelEntriesForTerms(UserModel, Collection)}). Every
+     *         requested user and user model type is contained in the result, if there are no
+     *         entries the inner map is empty.
+     */
+    Map<String, Map<String, Map<Term, UserModelEntry>>> getUserModelEntriesForTerms(
+            Collection<String> userGlobalIds, Collection<String> userModelTypes,
+            Collection<Term> terms);
+
     Collection<UserSimilarity> getUserSimilarities(String messageGroupGlobalId);
 
+    /**
+     * Bulk variant of
+     * {@link #getUserSimilarities(String, Collection, String, double)} that gets the
+     * similarities between several users at once
+     * 
+     * @param userGlobalIdsFrom
+     *            the users the similarities are from
+     * @param userGlobalIdsTo
+     *            the users the similarities are to
+     * @param messageGroupGlobalId
+     *            the message group of the similarities
+     * @param userSimilarityThreshold
+     *            the minimum similarity
+     * @return the similarities from any of the users to any of the other users with at least the
+     *         given similarity
+     */
+    Collection<UserSimilarity> getUserSimilarities(Collection<String> userGlobalIdsFrom,
+            Collection<String> userGlobalIdsTo, String messageGroupGlobalId,
+            double userSimilarityThreshold);
+
     Collection<UserSimilarity> getUserSimilarities(String userGlobalId, Collection<String> users,
             String messageGroupGlobalId, double userSimilarityThreshold);
 
@@ -191,6 +261,14 @@ public interface Persistence {
 
     HashWithDate saveHashWithDate(HashWithDate hashWithDate);
 
+    /**
+     * Saves the new hashes at once
+     * 
+     * @param hashesWithDates
+     *            the hashes
+     */
+    void saveHashWithDates(List<HashWithDate> hashesWithDates);
+
     Source saveSource(Source source);
 
     SourceStatus saveSourceStatus(SourceStatus sourceStatus);
@@ -214,6 +292,22 @@ public interface Persistence {
 
     void storeMessagePattern(String pattern, Message message);
 
+    /**
+     * Stores the patterns of the message and gets the messages with the same patterns in one go,
+     * replacing a {@link #storeMessagePattern(String, Message)} and a
+     * {@link #getMessages(MessageFilter)} per pattern
+     * 
+     * @param message
+     *            the message
+     * @param patterns
+     *            the patterns found in the message
+     * @param minPublicationDate
+     *            the minimum publication date of the messages to get, can be null
+     * @return the messages with the pattern including the message itself by pattern
+     */
+    Map<String, List<Message>> storeMessagePatterns(Message message, Collection<String> patterns,
+            Date minPublicationDate);
+
     /**
      * 
      * @param ranks
@@ -247,8 +341,24 @@ public interface Persistence {
     Collection<UserModelEntry> storeOrUpdateUserModelEntries(UserModel userModel,
             Collection<UserModelEntry> changedEntries);
 
+    /**
+     * Store(create) or update the changed entries of several user models at once
+     * 
+     * @param changedEntries
+     *            the changed entries by user model
+     */
+    void storeOrUpdateUserModelEntries(Map<UserModel, Collection<UserModelEntry>> changedEntries);
+
     Subscription storeSubscription(Subscription subscription);
 
+    /**
+     * Store(create) or update the user similarities at once
+     * 
+     * @param userSimilarities
+     *            the changed user similarities
+     */
+    void storeUserSimilarities(Collection<UserSimilarity> userSimilarities);
+
     void storeUserSimilarity(UserSimilarity stat);
 
     void updateMessageRank(MessageRank rankToUpdate);
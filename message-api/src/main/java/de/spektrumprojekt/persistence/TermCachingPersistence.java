@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.persistence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+
+/**
+ * Persistence caching the terms by category and value, so getting an existing term does not need
+ * to ask the decorated persistence. The cache is bounded and removes the least recently used terms.
+ * It is split into segments by the hash of the value, which are locked separately, so it can be
+ * used concurrently.
+ * 
+ * Updated terms replace the cached ones, and resetting the term counts clears the cache, so the
+ * counts of the cached terms stay up to date.
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class TermCachingPersistence extends DelegatingPersistence {
+
+    /**
+     * Terms of one segment ordered by their last access
+     */
+    private static class Segment extends LinkedHashMap<String, Term> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        public Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Term> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * The number of terms cached if not defined otherwise
+     */
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    /**
+     * The minimum number of terms to cache, one per segment
+     */
+    public static final int MIN_MAX_SIZE = 16;
+
+    private static final int NUMBER_OF_SEGMENTS = MIN_MAX_SIZE;
+
+    private final Map<TermCategory, Segment[]> segments = new EnumMap<TermCategory, Segment[]>(
+            TermCategory.class);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * 
+     * @param delegate
+     *            the persistence to cache the terms of
+     */
+    public TermCachingPersistence(Persistence delegate) {
+        this(delegate, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * 
+     * @param delegate
+     *            the persistence to cache the terms of
+     * @param maxSize
+     *            the maximum number of terms to cache per category, at least
+     *            {@value #MIN_MAX_SIZE}
+     */
+    public TermCachingPersistence(Persistence delegate, int maxSize) {
+        super(delegate);
+        if (maxSize < MIN_MAX_SIZE) {
+            throw new IllegalArgumentException("maxSize must be at least " + MIN_MAX_SIZE
+                    + ". maxSize=" + maxSize);
+        }
+        for (TermCategory termCategory : TermCategory.values()) {
+            Segment[] categorySegments = new Segment[NUMBER_OF_SEGMENTS];
+            for (int i = 0; i < categorySegments.length; i++) {
+                categorySegments[i] = new Segment(maxSize / NUMBER_OF_SEGMENTS);
+            }
+            segments.put(termCategory, categorySegments);
+        }
+    }
+
+    /**
+     * Removes all terms from the cache
+     */
+    public void clear() {
+        for (Segment[] categorySegments : segments.values()) {
+            for (Segment segment : categorySegments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
+    }
+
+    private Term getCachedTerm(TermCategory termCategory, String name) {
+        Segment segment = getSegment(termCategory, name);
+        Term term;
+        synchronized (segment) {
+            term = segment.get(name);
+        }
+        if (term == null) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return term;
+    }
+
+    /**
+     * 
+     * @return the number of terms found in the cache
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * 
+     * @return the share of the terms found in the cache, 0 if no term has been requested
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long requests = hits + missCount.get();
+        return requests == 0 ? 0 : hits / (double) requests;
+    }
+
+    /**
+     * 
+     * @return the number of terms not found in the cache
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public Term getOrCreateTerm(TermCategory termCategory, String name) {
+        Term term = getCachedTerm(termCategory, name);
+        if (term == null) {
+            term = super.getOrCreateTerm(termCategory, name);
+            putTerm(term);
+        }
+        return term;
+    }
+
+    @Override
+    public Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names) {
+        Map<String, Term> terms = new HashMap<String, Term>();
+        List<String> missingNames = new ArrayList<String>();
+        for (String name : names) {
+            if (terms.containsKey(name)) {
+                continue;
+            }
+            Term term = getCachedTerm(termCategory, name);
+            if (term == null) {
+                missingNames.add(name);
+            }
+            terms.put(name, term);
+        }
+        if (!missingNames.isEmpty()) {
+            Map<String, Term> missingTerms = super.getOrCreateTerms(termCategory, missingNames);
+            for (Term term : missingTerms.values()) {
+                putTerm(term);
+            }
+            terms.putAll(missingTerms);
+        }
+        return terms;
+    }
+
+    private Segment getSegment(TermCategory termCategory, String name) {
+        Segment[] categorySegments = segments.get(termCategory);
+        if (categorySegments == null) {
+            throw new IllegalArgumentException("termCategory is not known: " + termCategory);
+        }
+        return categorySegments[(name.hashCode() & Integer.MAX_VALUE) % NUMBER_OF_SEGMENTS];
+    }
+
+    /**
+     * 
+     * @return the number of cached terms
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment[] categorySegments : segments.values()) {
+            for (Segment segment : categorySegments) {
+                synchronized (segment) {
+                    size += segment.size();
+                }
+            }
+        }
+        return size;
+    }
+
+    private void putTerm(Term term) {
+        Segment segment = getSegment(term.getCategory(), term.getValue());
+        synchronized (segment) {
+            segment.put(term.getValue(), term);
+        }
+    }
+
+    /**
+     * Resets the counts and clears the cache, since the cached terms still have the old counts
+     */
+    @Override
+    public void resetTermCount() {
+        super.resetTermCount();
+        clear();
+    }
+
+    @Override
+    public String toString() {
+        return "TermCachingPersistence [size=" + getSize() + ", hitCount=" + getHitCount()
+                + ", missCount=" + getMissCount() + ", hitRate=" + getHitRate() + "]";
+    }
+
+    /**
+     * Updates the terms and replaces the cached terms by the updated ones
+     */
+    @Override
+    public void updateTerms(Collection<Term> termsChanged) {
+        super.updateTerms(termsChanged);
+        for (Term term : termsChanged) {
+            if (term.getCategory() == null) {
+                continue;
+            }
+            Segment segment = getSegment(term.getCategory(), term.getValue());
+            synchronized (segment) {
+                if (segment.containsKey(term.getValue())) {
+                    segment.put(term.getValue(), term);
+                }
+            }
+        }
+    }
+}
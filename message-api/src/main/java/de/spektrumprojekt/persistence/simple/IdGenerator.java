@@ -20,9 +20,10 @@
 package de.spektrumprojekt.persistence.simple;
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Generate ids for the simple persistence
+ * Generate ids for the simple persistence, can be used concurrently
  * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * 
@@ -33,42 +34,39 @@ public class IdGenerator implements Serializable {
      * 
      */
     private static final long serialVersionUID = 1L;
-    private long userId;
-    private long userModelId;
-    private long userModelEntryId;
-    private long messageGroupId;
-    private long messageRelationId;
-    private long termId;
+    private final AtomicLong userId = new AtomicLong();
+    private final AtomicLong userModelId = new AtomicLong();
+    private final AtomicLong userModelEntryId = new AtomicLong();
+    private final AtomicLong messageGroupId = new AtomicLong();
+    private final AtomicLong messageId = new AtomicLong();
+    private final AtomicLong messageRelationId = new AtomicLong();
+    private final AtomicLong termId = new AtomicLong();
 
     public Long getNextMessageGroupId() {
-        Long returnId = messageGroupId++;
-        return returnId;
+        return messageGroupId.getAndIncrement();
+    }
+
+    public Long getNextMessageId() {
+        return messageId.getAndIncrement();
     }
 
     public Long getNextMessageRelationId() {
-        Long returnId = messageRelationId++;
-        return returnId;
+        return messageRelationId.getAndIncrement();
     }
 
     public Long getNextTermId() {
-        Long returnId = termId++;
-        return returnId;
+        return termId.getAndIncrement();
     }
 
     public Long getNextUserId() {
-        Long returnId = userId++;
-
-        return returnId;
+        return userId.getAndIncrement();
     }
 
     public Long getNextUserModelEntryId() {
-        Long returnId = userModelEntryId++;
-
-        return returnId;
+        return userModelEntryId.getAndIncrement();
     }
 
     public Long getNextUserModelId() {
-        Long returnId = userModelId++;
-        return returnId;
+        return userModelId.getAndIncrement();
     }
 }
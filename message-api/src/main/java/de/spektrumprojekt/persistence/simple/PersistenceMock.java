@@ -166,6 +166,11 @@ public class PersistenceMock implements Persistence {
         return null;
     }
 
+    @Override
+    public Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names) {
+        return new HashMap<String, Term>();
+    }
+
     @Override
     public User getOrCreateUser(String userGlobalId) {
         return null;
@@ -212,6 +217,12 @@ public class PersistenceMock implements Persistence {
         return null;
     }
 
+    @Override
+    public Map<UserModel, Collection<UserModelEntry>> getUserModelEntries(String userModelType,
+            String afterUserGlobalId, int maxUserModels) {
+        return null;
+    }
+
     @Override
     public Map<String, String> getUserModelEntriesCountDescription() {
         Map<String, String> countDesc = new HashMap<String, String>();
@@ -225,11 +236,25 @@ public class PersistenceMock implements Persistence {
         return null;
     }
 
+    @Override
+    public Map<String, Map<String, Map<Term, UserModelEntry>>> getUserModelEntriesForTerms(
+            Collection<String> userGlobalIds, Collection<String> userModelTypes,
+            Collection<Term> terms) {
+        return null;
+    }
+
     @Override
     public Collection<UserSimilarity> getUserSimilarities(String messageGroupGlobalId) {
         return null;
     }
 
+    @Override
+    public Collection<UserSimilarity> getUserSimilarities(Collection<String> userGlobalIdsFrom,
+            Collection<String> userGlobalIdsTo, String messageGroupGlobalId,
+            double userSimilarityThreshold) {
+        return null;
+    }
+
     @Override
     public Collection<UserSimilarity> getUserSimilarities(String userGlobalId,
             Collection<String> users, String messageGroupGlobalId, double userSimilarityThreshold) {
@@ -266,6 +291,10 @@ public class PersistenceMock implements Persistence {
         return null;
     }
 
+    @Override
+    public void saveHashWithDates(List<HashWithDate> hashesWithDates) {
+    }
+
     @Override
     public Source saveSource(Source source) {
         return null;
@@ -290,6 +319,12 @@ public class PersistenceMock implements Persistence {
     public void storeMessagePattern(String pattern, Message message) {
     }
 
+    @Override
+    public Map<String, List<Message>> storeMessagePatterns(Message message,
+            Collection<String> patterns, Date minPublicationDate) {
+        return new HashMap<String, List<Message>>();
+    }
+
     @Override
     public void storeMessageRanks(Collection<MessageRank> ranks) {
     }
@@ -308,11 +343,21 @@ public class PersistenceMock implements Persistence {
         return null;
     }
 
+    @Override
+    public void storeOrUpdateUserModelEntries(
+            Map<UserModel, Collection<UserModelEntry>> changedEntries) {
+    }
+
     @Override
     public Subscription storeSubscription(Subscription subscription) {
         return null;
     }
 
+    @Override
+    public void storeUserSimilarities(Collection<UserSimilarity> userSimilarities) {
+
+    }
+
     @Override
     public void storeUserSimilarity(UserSimilarity stat) {
 
@@ -22,19 +22,28 @@ package de.spektrumprojekt.persistence.simple;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 import de.spektrumprojekt.datamodel.common.Property;
 import de.spektrumprojekt.datamodel.duplicationdetection.HashWithDate;
 import de.spektrumprojekt.datamodel.message.Message;
 import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessageFilter.OrderDirection;
 import de.spektrumprojekt.datamodel.message.MessageGroup;
 import de.spektrumprojekt.datamodel.message.MessagePart;
 import de.spektrumprojekt.datamodel.message.MessagePublicationDateComperator;
@@ -63,6 +72,15 @@ import de.spektrumprojekt.persistence.Statistics;
  * This persistence maintains the data completly in memory and may (not yet implemented) load and
  * store it into seralizable files.
  * 
+ * The persistence can be used concurrently, e.g. by a ranker and a learner running in different
+ * threads. The data is kept in concurrent maps, the get or create methods are atomic and reading
+ * does not block. The returned entities themselves are not synchronized.
+ * 
+ * To avoid scanning all data on every query the persistence maintains secondary indexes: the user
+ * similarities by user and message group, the messages by id, by publication date and by message
+ * group and the user models by the terms they have an entry for. The indexes are updated on
+ * storing and removing, hence entities must not change the indexed properties after being stored.
+ * 
  * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
  * @author Philipp Katz
  */
@@ -145,36 +163,116 @@ public class SimplePersistence implements Persistence {
         }
     }
 
+    /**
+     * Key of the publication date index. Orders like the {@link MessagePublicationDateComperator}
+     * but is unique for every message.
+     */
+    private static class PublicationDateKey implements Comparable<PublicationDateKey> {
+
+        private static long getTime(Date date) {
+            return date == null ? Long.MIN_VALUE : date.getTime();
+        }
+
+        private final long time;
+
+        // null for a key behind all messages of the same time
+        private final String messageGlobalId;
+
+        public PublicationDateKey(Date date, String messageGlobalId) {
+            this.time = getTime(date);
+            this.messageGlobalId = messageGlobalId;
+        }
+
+        public PublicationDateKey(Message message) {
+            this(message.getPublicationDate(), message.getGlobalId());
+        }
+
+        @Override
+        public int compareTo(PublicationDateKey other) {
+            if (time != other.time) {
+                return time < other.time ? -1 : 1;
+            }
+            if (messageGlobalId == null || other.messageGlobalId == null) {
+                return messageGlobalId == other.messageGlobalId ? 0
+                        : messageGlobalId == null ? 1 : -1;
+            }
+            int hash = messageGlobalId.hashCode();
+            int otherHash = other.messageGlobalId.hashCode();
+            if (hash != otherHash) {
+                return hash < otherHash ? -1 : 1;
+            }
+            return messageGlobalId.compareTo(other.messageGlobalId);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            return compareTo((PublicationDateKey) obj) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (time ^ time >>> 32);
+            return 31 * result + (messageGlobalId == null ? 0 : messageGlobalId.hashCode());
+        }
+    }
+
+    private static String getUserSimilarityIndexKey(String userGlobalIdFrom,
+            String messageGroupGlobalId) {
+        return userGlobalIdFrom + "#" + messageGroupGlobalId;
+    }
+
     private final IdGenerator idGenerator = new IdGenerator();
 
-    private final Map<String, User> users = new HashMap<String, User>();
+    private final ConcurrentMap<String, User> users = new ConcurrentHashMap<String, User>();
 
     // first key: userModelType, second key: user of user model
-    private final Map<String, Map<User, UserModelHolder>> userModelByTypeHolders = new HashMap<String, Map<User, UserModelHolder>>();
+    private final ConcurrentMap<String, Map<User, UserModelHolder>> userModelByTypeHolders = new ConcurrentHashMap<String, Map<User, UserModelHolder>>();
 
-    private final Map<String, Message> messages = new HashMap<String, Message>();
+    private final Map<String, Message> messages = new ConcurrentHashMap<String, Message>();
+
+    private final ConcurrentNavigableMap<Long, Message> messagesById = new ConcurrentSkipListMap<Long, Message>();
+
+    private final ConcurrentNavigableMap<PublicationDateKey, Message> messagesByPublicationDate = new ConcurrentSkipListMap<PublicationDateKey, Message>();
+
+    // key is global id of message group
+    private final ConcurrentMap<String, ConcurrentNavigableMap<PublicationDateKey, Message>> messagesByMessageGroup = new ConcurrentHashMap<String, ConcurrentNavigableMap<PublicationDateKey, Message>>();
 
     // key is global id of message
-    private final Map<String, MessageRelation> messageRelations = new HashMap<String, MessageRelation>();
+    private final Map<String, MessageRelation> messageRelations = new ConcurrentHashMap<String, MessageRelation>();
 
     // key is global id of message group
-    private final Map<String, MessageGroup> messageGroups = new HashMap<String, MessageGroup>();
+    private final Map<String, MessageGroup> messageGroups = new ConcurrentHashMap<String, MessageGroup>();
+
+    private final Map<UserMessageIdentifier, MessageRank> messageRanks = new ConcurrentHashMap<UserMessageIdentifier, MessageRank>();
 
-    private final Map<UserMessageIdentifier, MessageRank> messageRanks = new HashMap<UserMessageIdentifier, MessageRank>();
+    private final ConcurrentMap<String, Term> termsTerms = new ConcurrentHashMap<String, Term>();
 
-    private final Map<String, Term> termsTerms = new HashMap<String, Term>();
+    private final ConcurrentMap<String, Term> keyPhraseTerms = new ConcurrentHashMap<String, Term>();
 
-    private final Map<String, Term> keyPhraseTerms = new HashMap<String, Term>();
+    private final Map<String, UserSimilarity> userSimilarities = new ConcurrentHashMap<String, UserSimilarity>();
 
-    private final Map<String, UserSimilarity> userSimilarities = new HashMap<String, UserSimilarity>();
+    // first key: user from and message group, second key: user to
+    private final ConcurrentMap<String, ConcurrentMap<String, UserSimilarity>> userSimilaritiesByUserAndMessageGroup = new ConcurrentHashMap<String, ConcurrentMap<String, UserSimilarity>>();
 
-    private final Map<String, List<Message>> patternMessages = new HashMap<String, List<Message>>();
+    // first key: message group, second key: key of the similarity
+    private final ConcurrentMap<String, ConcurrentMap<String, UserSimilarity>> userSimilaritiesByMessageGroup = new ConcurrentHashMap<String, ConcurrentMap<String, UserSimilarity>>();
 
-    private final Map<ObservationKey, Collection<Observation>> observations = new HashMap<SimplePersistence.ObservationKey, Collection<Observation>>();
+    // first key: userModelType, second key: term of the user model entries
+    private final ConcurrentMap<String, ConcurrentMap<Term, Set<UserModel>>> userModelsByTypeAndTerm = new ConcurrentHashMap<String, ConcurrentMap<Term, Set<UserModel>>>();
 
-    private final Map<String, SourceStatus> sourceStatusMap = new HashMap<String, SourceStatus>();
+    private final ConcurrentMap<String, List<Message>> patternMessages = new ConcurrentHashMap<String, List<Message>>();
 
-    private TermFrequency termFrequency = new TermFrequency();
+    private final ConcurrentMap<ObservationKey, Collection<Observation>> observations = new ConcurrentHashMap<SimplePersistence.ObservationKey, Collection<Observation>>();
+
+    private final Map<String, SourceStatus> sourceStatusMap = new ConcurrentHashMap<String, SourceStatus>();
+
+    private volatile TermFrequency termFrequency = new TermFrequency();
 
     public void clearMessageRanks() {
         this.messageRanks.clear();
@@ -182,6 +280,9 @@ public class SimplePersistence implements Persistence {
 
     public void clearMessages() {
         this.messages.clear();
+        this.messagesById.clear();
+        this.messagesByPublicationDate.clear();
+        this.messagesByMessageGroup.clear();
     }
 
     @Override
@@ -216,8 +317,10 @@ public class SimplePersistence implements Persistence {
     @Override
     public void deleteAndCreateUserSimilarities(Collection<UserSimilarity> values) {
         this.userSimilarities.clear();
+        this.userSimilaritiesByUserAndMessageGroup.clear();
+        this.userSimilaritiesByMessageGroup.clear();
         for (UserSimilarity sim : values) {
-            this.userSimilarities.put(sim.getKey(), sim);
+            storeUserSimilarity(sim);
         }
     }
 
@@ -292,12 +395,13 @@ public class SimplePersistence implements Persistence {
 
     @Override
     public Message getMessageByGlobalId(String messageGlobalId) {
-        return this.messages.get(messageGlobalId);
+        return messageGlobalId == null ? null : this.messages.get(messageGlobalId);
     }
 
     @Override
     public MessageGroup getMessageGroupByGlobalId(String messageGroupGlobalId) {
-        return this.messageGroups.get(messageGroupGlobalId);
+        return messageGroupGlobalId == null ? null : this.messageGroups
+                .get(messageGroupGlobalId);
     }
 
     @Override
@@ -318,16 +422,41 @@ public class SimplePersistence implements Persistence {
     @Override
     public List<Message> getMessages(MessageFilter messageFilter) {
         List<Message> filteredMessages = new ArrayList<Message>();
-        List<Message> baseMessages = new ArrayList<Message>();
+        Collection<Message> baseMessages;
 
         if (messageFilter.getPattern() != null) {
-            baseMessages.addAll(patternMessages.get(messageFilter.getPattern()));
+            baseMessages = getPatternMessages(messageFilter);
+        } else if (messageFilter.getMessageIdOrderDirection() != null) {
+            NavigableMap<Long, Message> messagesById = this.messagesById;
+            if (messageFilter.getMinMessageId() != null) {
+                messagesById = messagesById.tailMap(messageFilter.getMinMessageId(), true);
+            }
+            if (!OrderDirection.ASC.equals(messageFilter.getMessageIdOrderDirection())) {
+                messagesById = messagesById.descendingMap();
+            }
+            baseMessages = messagesById.values();
         } else {
-            baseMessages.addAll(this.messages.values());
+            NavigableMap<PublicationDateKey, Message> messagesByDate = this.messagesByPublicationDate;
+            if (messageFilter.getMessageGroupGlobalId() != null) {
+                messagesByDate = this.messagesByMessageGroup.get(messageFilter
+                        .getMessageGroupGlobalId());
+                if (messagesByDate == null) {
+                    return filteredMessages;
+                }
+            }
+            if (messageFilter.getMinPublicationDate() != null) {
+                messagesByDate = messagesByDate.tailMap(new PublicationDateKey(
+                        messageFilter.getMinPublicationDate(), null), false);
+            }
+            baseMessages = messagesByDate.values();
         }
-        Collections.sort(baseMessages, new MessagePublicationDateComperator());
 
         for (Message message : baseMessages) {
+            if (messageFilter.getMinMessageId() != null
+                    && (message.getId() == null || message.getId() < messageFilter
+                            .getMinMessageId())) {
+                continue;
+            }
             if (messageFilter.getMessageGroupGlobalId() != null
                     && !messageFilter.getMessageGroupGlobalId().equals(
                             message.getMessageGroup().getGlobalId())) {
@@ -366,7 +495,7 @@ public class SimplePersistence implements Persistence {
 
     @Override
     public Term getOrCreateTerm(TermCategory termCategory, String name) {
-        Map<String, Term> terms;
+        ConcurrentMap<String, Term> terms;
         switch (termCategory) {
         case KEYPHRASE:
             terms = keyPhraseTerms;
@@ -381,18 +510,33 @@ public class SimplePersistence implements Persistence {
         if (term == null) {
             term = new Term(termCategory, name);
             term.setId(idGenerator.getNextTermId());
-            terms.put(term.getValue(), term);
+            Term existingTerm = terms.putIfAbsent(term.getValue(), term);
+            if (existingTerm != null) {
+                term = existingTerm;
+            }
         }
         return term;
     }
 
+    @Override
+    public Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names) {
+        Map<String, Term> terms = new HashMap<String, Term>();
+        for (String name : names) {
+            terms.put(name, getOrCreateTerm(termCategory, name));
+        }
+        return terms;
+    }
+
     @Override
     public User getOrCreateUser(String userGlobalId) {
         User user = users.get(userGlobalId);
         if (user == null) {
             user = new User(userGlobalId);
-            users.put(userGlobalId, user);
             user.setId(idGenerator.getNextUserId());
+            User existingUser = users.putIfAbsent(userGlobalId, user);
+            if (existingUser != null) {
+                user = existingUser;
+            }
         }
         return user;
     }
@@ -400,32 +544,87 @@ public class SimplePersistence implements Persistence {
     @Override
     public UserModel getOrCreateUserModelByUser(String userGlobalId, String userModelType) {
         User user = getOrCreateUser(userGlobalId);
-        Map<User, UserModelHolder> userModelTypeHolders = getOrCreateUserModelTypeHoldersByUserModelType(userModelType);
+        ConcurrentMap<User, UserModelHolder> userModelTypeHolders = getOrCreateUserModelTypeHoldersByUserModelType(userModelType);
         UserModelHolder userModelHolder = userModelTypeHolders.get(user);
         if (userModelHolder == null) {
             UserModel userModel = new UserModel(user, userModelType);
             userModel.setId(idGenerator.getNextUserModelId());
             userModelHolder = new UserModelHolder(userModel);
-            userModelTypeHolders.put(user, userModelHolder);
+            UserModelHolder existingUserModelHolder = userModelTypeHolders.putIfAbsent(user,
+                    userModelHolder);
+            if (existingUserModelHolder != null) {
+                userModelHolder = existingUserModelHolder;
+            }
         }
 
         return userModelHolder.getUserModel();
     }
 
-    private Map<User, UserModelHolder> getOrCreateUserModelTypeHoldersByUserModelType(
+    private Set<UserModel> getOrCreateUserModelsOfTerm(String userModelType, Term term) {
+        ConcurrentMap<Term, Set<UserModel>> userModelsByTerm = this.userModelsByTypeAndTerm
+                .get(userModelType);
+        if (userModelsByTerm == null) {
+            userModelsByTerm = new ConcurrentHashMap<Term, Set<UserModel>>();
+            ConcurrentMap<Term, Set<UserModel>> existingUserModelsByTerm = this.userModelsByTypeAndTerm
+                    .putIfAbsent(userModelType, userModelsByTerm);
+            if (existingUserModelsByTerm != null) {
+                userModelsByTerm = existingUserModelsByTerm;
+            }
+        }
+        Set<UserModel> userModels = userModelsByTerm.get(term);
+        if (userModels == null) {
+            userModels = Collections.newSetFromMap(new ConcurrentHashMap<UserModel, Boolean>());
+            Set<UserModel> existingUserModels = userModelsByTerm.putIfAbsent(term, userModels);
+            if (existingUserModels != null) {
+                userModels = existingUserModels;
+            }
+        }
+        return userModels;
+    }
+
+    private ConcurrentMap<User, UserModelHolder> getOrCreateUserModelTypeHoldersByUserModelType(
             String userModelType) {
         Map<User, UserModelHolder> userModelHolder = this.userModelByTypeHolders.get(userModelType);
         if (userModelHolder == null) {
-            userModelHolder = new HashMap<User, UserModelHolder>();
-            this.userModelByTypeHolders.put(userModelType, userModelHolder);
+            userModelHolder = new ConcurrentHashMap<User, UserModelHolder>();
+            Map<User, UserModelHolder> existingUserModelHolder = this.userModelByTypeHolders
+                    .putIfAbsent(userModelType, userModelHolder);
+            if (existingUserModelHolder != null) {
+                userModelHolder = existingUserModelHolder;
+            }
         }
-        return userModelHolder;
+        return (ConcurrentMap<User, UserModelHolder>) userModelHolder;
     }
 
     public Map<String, List<Message>> getPatternMessages() {
         return patternMessages;
     }
 
+    private List<Message> getPatternMessages(MessageFilter messageFilter) {
+        List<Message> baseMessages = new ArrayList<Message>();
+        List<Message> messages = patternMessages.get(messageFilter.getPattern());
+        if (messages != null) {
+            baseMessages.addAll(messages);
+        }
+        if (messageFilter.getMessageIdOrderDirection() != null) {
+            final boolean ascending = OrderDirection.ASC.equals(messageFilter
+                    .getMessageIdOrderDirection());
+            Collections.sort(baseMessages, new Comparator<Message>() {
+
+                @Override
+                public int compare(Message message1, Message message2) {
+                    long id1 = message1.getId() == null ? Long.MIN_VALUE : message1.getId();
+                    long id2 = message2.getId() == null ? Long.MIN_VALUE : message2.getId();
+                    int compare = id1 < id2 ? -1 : id1 == id2 ? 0 : 1;
+                    return ascending ? compare : -compare;
+                }
+            });
+        } else {
+            Collections.sort(baseMessages, new MessagePublicationDateComperator());
+        }
+        return baseMessages;
+    }
+
     @Override
     public Source getSourceByGlobalId(String sourceGlobalId) {
         throw new UnsupportedOperationException("Implement me ...");
@@ -433,7 +632,7 @@ public class SimplePersistence implements Persistence {
 
     @Override
     public SourceStatus getSourceStatusBySourceGlobalId(String subscriptionId) {
-        return sourceStatusMap.get(subscriptionId);
+        return subscriptionId == null ? null : sourceStatusMap.get(subscriptionId);
     }
 
     @Override
@@ -460,7 +659,10 @@ public class SimplePersistence implements Persistence {
 
     @Override
     public TermFrequency getTermFrequency() {
-        termFrequency.init();
+        TermFrequency termFrequency = this.termFrequency;
+        if (termFrequency.getMessageGroupMessageCounts() == null) {
+            termFrequency.init();
+        }
         return termFrequency;
     }
 
@@ -478,6 +680,44 @@ public class SimplePersistence implements Persistence {
         return userModelByTypeHolders;
     }
 
+    @Override
+    public Map<UserModel, Collection<UserModelEntry>> getUserModelEntries(String userModelType,
+            String afterUserGlobalId, int maxUserModels) {
+        Map<User, UserModelHolder> map = userModelByTypeHolders.get(userModelType);
+        if (map == null || maxUserModels <= 0) {
+            return Collections.emptyMap();
+        }
+        // keep the first user models of the page, the last of them on top
+        PriorityQueue<UserModelHolder> page = new PriorityQueue<UserModelHolder>(
+                maxUserModels + 1, new Comparator<UserModelHolder>() {
+
+                    @Override
+                    public int compare(UserModelHolder holder1, UserModelHolder holder2) {
+                        return holder2.getUserModel().getUser().getGlobalId()
+                                .compareTo(holder1.getUserModel().getUser().getGlobalId());
+                    }
+                });
+        for (UserModelHolder holder : map.values()) {
+            String userGlobalId = holder.getUserModel().getUser().getGlobalId();
+            if (afterUserGlobalId == null || userGlobalId.compareTo(afterUserGlobalId) > 0) {
+                page.add(holder);
+                if (page.size() > maxUserModels) {
+                    page.poll();
+                }
+            }
+        }
+        UserModelHolder[] holders = new UserModelHolder[page.size()];
+        for (int i = holders.length - 1; i >= 0; i--) {
+            holders[i] = page.poll();
+        }
+        Map<UserModel, Collection<UserModelEntry>> result = new LinkedHashMap<UserModel, Collection<UserModelEntry>>();
+        for (UserModelHolder holder : holders) {
+            result.put(holder.getUserModel(), new ArrayList<UserModelEntry>(holder
+                    .getUserModelEntries().values()));
+        }
+        return result;
+    }
+
     /**
      * 
      * @return a map of user model type => description of the counts
@@ -522,8 +762,37 @@ public class SimplePersistence implements Persistence {
         return entries;
     }
 
+    @Override
+    public Map<String, Map<String, Map<Term, UserModelEntry>>> getUserModelEntriesForTerms(
+            Collection<String> userGlobalIds, Collection<String> userModelTypes,
+            Collection<Term> terms) {
+        Map<String, Map<String, Map<Term, UserModelEntry>>> entries = new HashMap<String, Map<String, Map<Term, UserModelEntry>>>();
+        for (String userGlobalId : userGlobalIds) {
+            User user = users.get(userGlobalId);
+            Map<String, Map<Term, UserModelEntry>> entriesOfUser = new HashMap<String, Map<Term, UserModelEntry>>();
+            for (String userModelType : userModelTypes) {
+                Map<User, UserModelHolder> holders = userModelByTypeHolders.get(userModelType);
+                UserModelHolder userModelHolder = user == null || holders == null ? null : holders
+                        .get(user);
+                Map<Term, UserModelEntry> entriesOfType = new HashMap<Term, UserModelEntry>();
+                if (userModelHolder != null) {
+                    for (Term t : terms) {
+                        UserModelEntry entry = userModelHolder.getUserModelEntry(t);
+                        if (entry != null) {
+                            entriesOfType.put(t, entry);
+                        }
+                    }
+                }
+                entriesOfUser.put(userModelType, entriesOfType);
+            }
+            entries.put(userGlobalId, entriesOfUser);
+        }
+        return entries;
+    }
+
     public UserModelHolder getUserModelHolder(User user, String userModelType) {
-        return this.getOrCreateUserModelTypeHoldersByUserModelType(userModelType).get(user);
+        return user == null ? null : this.getOrCreateUserModelTypeHoldersByUserModelType(
+                userModelType).get(user);
     }
 
     private UserModelHolder getUserModelHolder(UserModel userModel) {
@@ -542,11 +811,27 @@ public class SimplePersistence implements Persistence {
         if (messageGroupGlobalId == null) {
             return new HashSet<UserSimilarity>(this.userSimilarities.values());
         }
+        Map<String, UserSimilarity> sims = this.userSimilaritiesByMessageGroup
+                .get(messageGroupGlobalId);
+        if (sims == null) {
+            return new HashSet<UserSimilarity>();
+        }
+        return new HashSet<UserSimilarity>(sims.values());
+    }
+
+    @Override
+    public Collection<UserSimilarity> getUserSimilarities(Collection<String> userGlobalIdsFrom,
+            Collection<String> userGlobalIdsTo, String messageGroupGlobalId,
+            double userSimilarityThreshold) {
         Collection<UserSimilarity> sims = new HashSet<UserSimilarity>();
-        for (UserSimilarity similarity : this.userSimilarities.values()) {
-            if (messageGroupGlobalId.equals(similarity.getMessageGroupGlobalId())) {
-                sims.add(similarity);
-            }
+        if (userGlobalIdsTo.isEmpty()) {
+            return sims;
+        }
+        Set<String> users = userGlobalIdsTo instanceof Set ? (Set<String>) userGlobalIdsTo
+                : new HashSet<String>(userGlobalIdsTo);
+        for (String userGlobalId : userGlobalIdsFrom) {
+            sims.addAll(getUserSimilarities(userGlobalId, users, messageGroupGlobalId,
+                    userSimilarityThreshold));
         }
         return sims;
     }
@@ -555,14 +840,25 @@ public class SimplePersistence implements Persistence {
     public Collection<UserSimilarity> getUserSimilarities(String userGlobalId,
             Collection<String> users, String messageGroupGlobalId, double userSimilarityThreshold) {
         Collection<UserSimilarity> sims = new HashSet<UserSimilarity>();
-        for (UserSimilarity similarity : this.userSimilarities.values()) {
-            if (similarity.getUserGlobalIdFrom().equals(userGlobalId)
-                    && users.contains(similarity.getUserGlobalIdTo())
-                    && (messageGroupGlobalId == null
-                            && similarity.getMessageGroupGlobalId() == null || similarity
-                            .getMessageGroupGlobalId().equals(messageGroupGlobalId))
-                    && similarity.getSimilarity() >= userSimilarityThreshold) {
-                sims.add(similarity);
+        Map<String, UserSimilarity> simsOfUser = this.userSimilaritiesByUserAndMessageGroup
+                .get(getUserSimilarityIndexKey(userGlobalId, messageGroupGlobalId));
+        if (simsOfUser == null) {
+            return sims;
+        }
+        if (users.size() <= simsOfUser.size() || !(users instanceof Set)) {
+            for (String userGlobalIdTo : users) {
+                UserSimilarity similarity = userGlobalIdTo == null ? null : simsOfUser
+                        .get(userGlobalIdTo);
+                if (similarity != null && similarity.getSimilarity() >= userSimilarityThreshold) {
+                    sims.add(similarity);
+                }
+            }
+        } else {
+            for (UserSimilarity similarity : simsOfUser.values()) {
+                if (users.contains(similarity.getUserGlobalIdTo())
+                        && similarity.getSimilarity() >= userSimilarityThreshold) {
+                    sims.add(similarity);
+                }
             }
         }
         return sims;
@@ -578,33 +874,81 @@ public class SimplePersistence implements Persistence {
     @Override
     public Collection<UserModel> getUsersWithUserModel(Collection<Term> terms, String userModelType) {
         Collection<UserModel> userModels = new HashSet<UserModel>();
-        userModels: for (UserModelHolder holder : this
-                .getOrCreateUserModelTypeHoldersByUserModelType(userModelType).values()) {
-            for (Term term : terms) {
-                if (holder.getUserModelEntry(term) != null) {
-                    userModels.add(holder.getUserModel());
-                    continue userModels;
-                }
+        Map<Term, Set<UserModel>> userModelsByTerm = this.userModelsByTypeAndTerm
+                .get(userModelType);
+        if (userModelsByTerm == null) {
+            return userModels;
+        }
+        for (Term term : terms) {
+            Set<UserModel> userModelsOfTerm = term == null ? null : userModelsByTerm.get(term);
+            if (userModelsOfTerm != null) {
+                userModels.addAll(userModelsOfTerm);
             }
         }
         return userModels;
     }
 
+    private void indexMessage(Message message) {
+        if (message.getId() != null) {
+            this.messagesById.put(message.getId(), message);
+        }
+        PublicationDateKey key = new PublicationDateKey(message);
+        this.messagesByPublicationDate.put(key, message);
+        if (message.getMessageGroup() != null && message.getMessageGroup().getGlobalId() != null) {
+            String messageGroupGlobalId = message.getMessageGroup().getGlobalId();
+            ConcurrentNavigableMap<PublicationDateKey, Message> messagesOfGroup = this.messagesByMessageGroup
+                    .get(messageGroupGlobalId);
+            if (messagesOfGroup == null) {
+                messagesOfGroup = new ConcurrentSkipListMap<PublicationDateKey, Message>();
+                ConcurrentNavigableMap<PublicationDateKey, Message> existingMessagesOfGroup = this.messagesByMessageGroup
+                        .putIfAbsent(messageGroupGlobalId, messagesOfGroup);
+                if (existingMessagesOfGroup != null) {
+                    messagesOfGroup = existingMessagesOfGroup;
+                }
+            }
+            messagesOfGroup.put(key, message);
+        }
+    }
+
+    private void indexUserSimilarity(
+            ConcurrentMap<String, ConcurrentMap<String, UserSimilarity>> index, String indexKey,
+            String key, UserSimilarity similarity) {
+        ConcurrentMap<String, UserSimilarity> similarities = index.get(indexKey);
+        if (similarities == null) {
+            similarities = new ConcurrentHashMap<String, UserSimilarity>();
+            ConcurrentMap<String, UserSimilarity> existingSimilarities = index.putIfAbsent(
+                    indexKey, similarities);
+            if (existingSimilarities != null) {
+                similarities = existingSimilarities;
+            }
+        }
+        similarities.put(key, similarity);
+    }
+
     @Override
     public void initialize() {
 
     }
 
     public void removeMessage(String globalId) {
-        this.messages.remove(globalId);
-
+        Message message = this.messages.remove(globalId);
+        if (message != null) {
+            unindexMessage(message);
+        }
     }
 
     @Override
     public void removeUserModelEntry(UserModel userModel, UserModelEntry userModelEntry) {
         UserModelHolder userModelHolder = this.getOrCreateUserModelTypeHoldersByUserModelType(
                 userModel.getUserModelType()).get(userModel.getUser());
-        userModelHolder.getUserModelEntries().remove(userModelEntry.getScoredTerm().getTerm());
+        Term term = userModelEntry.getScoredTerm().getTerm();
+        userModelHolder.getUserModelEntries().remove(term);
+        Map<Term, Set<UserModel>> userModelsByTerm = this.userModelsByTypeAndTerm.get(userModel
+                .getUserModelType());
+        Set<UserModel> userModels = userModelsByTerm == null ? null : userModelsByTerm.get(term);
+        if (userModels != null) {
+            userModels.remove(userModelHolder.getUserModel());
+        }
     }
 
     @Override
@@ -635,6 +979,11 @@ public class SimplePersistence implements Persistence {
         throw new UnsupportedOperationException("Not yet implemented.");
     }
 
+    @Override
+    public void saveHashWithDates(List<HashWithDate> hashesWithDates) {
+        throw new UnsupportedOperationException("Not yet implemented.");
+    }
+
     @Override
     public Source saveSource(Source source) {
         throw new UnsupportedOperationException("Implement me ...");
@@ -651,8 +1000,7 @@ public class SimplePersistence implements Persistence {
     public Message storeMessage(Message message) {
         // TODO check that terms have an id ?
         if (message.getId() == null) {
-            // TODO
-            // message.setId(idGenerator.getNextMessage());
+            message.setId(idGenerator.getNextMessageId());
         }
         for (MessagePart mp : message.getMessageParts()) {
             for (ScoredTerm scoredTerm : mp.getScoredTerms()) {
@@ -661,7 +1009,11 @@ public class SimplePersistence implements Persistence {
                 scoredTerm.setTerm(term);
             }
         }
-        this.messages.put(message.getGlobalId(), message);
+        Message previousMessage = this.messages.put(message.getGlobalId(), message);
+        if (previousMessage != null) {
+            unindexMessage(previousMessage);
+        }
+        indexMessage(message);
         return message;
     }
 
@@ -677,12 +1029,29 @@ public class SimplePersistence implements Persistence {
     public void storeMessagePattern(String pattern, Message message) {
         List<Message> messages = patternMessages.get(pattern);
         if (messages == null) {
-            messages = new ArrayList<Message>();
-            patternMessages.put(pattern, messages);
+            messages = Collections.synchronizedList(new ArrayList<Message>());
+            List<Message> existingMessages = patternMessages.putIfAbsent(pattern, messages);
+            if (existingMessages != null) {
+                messages = existingMessages;
+            }
         }
         messages.add(message);
     }
 
+    @Override
+    public Map<String, List<Message>> storeMessagePatterns(Message message,
+            Collection<String> patterns, Date minPublicationDate) {
+        Map<String, List<Message>> patternMessages = new HashMap<String, List<Message>>();
+        for (String pattern : patterns) {
+            storeMessagePattern(pattern, message);
+            MessageFilter messageFilter = new MessageFilter();
+            messageFilter.setPattern(pattern);
+            messageFilter.setMinPublicationDate(minPublicationDate);
+            patternMessages.put(pattern, getMessages(messageFilter));
+        }
+        return patternMessages;
+    }
+
     @Override
     public void storeMessageRanks(Collection<MessageRank> ranks) {
         for (MessageRank messageRank : ranks) {
@@ -703,8 +1072,13 @@ public class SimplePersistence implements Persistence {
                 observation.getMessageGlobalId(), observation.getObservationType());
         Collection<Observation> observations = this.observations.get(key);
         if (observations == null) {
-            observations = new HashSet<Observation>();
-            this.observations.put(key, observations);
+            observations = Collections
+                    .newSetFromMap(new ConcurrentHashMap<Observation, Boolean>());
+            Collection<Observation> existingObservations = this.observations.putIfAbsent(key,
+                    observations);
+            if (existingObservations != null) {
+                observations = existingObservations;
+            }
         }
         observations.add(observation);
     }
@@ -720,19 +1094,57 @@ public class SimplePersistence implements Persistence {
             // internal its just a put.
             // for optimization we could ommit this iff entry.getId != null
             holder.addUserModelEntry(entry);
+            getOrCreateUserModelsOfTerm(holder.getUserModel().getUserModelType(),
+                    entry.getScoredTerm().getTerm()).add(holder.getUserModel());
         }
         return changedEntries;
     }
 
+    @Override
+    public void storeOrUpdateUserModelEntries(
+            Map<UserModel, Collection<UserModelEntry>> changedEntries) {
+        for (Entry<UserModel, Collection<UserModelEntry>> entries : changedEntries.entrySet()) {
+            storeOrUpdateUserModelEntries(entries.getKey(), entries.getValue());
+        }
+    }
+
     @Override
     public Subscription storeSubscription(Subscription subscription) {
         throw new UnsupportedOperationException("Implement me ...");
     }
 
+    @Override
+    public void storeUserSimilarities(Collection<UserSimilarity> userSimilarities) {
+        for (UserSimilarity userSimilarity : userSimilarities) {
+            storeUserSimilarity(userSimilarity);
+        }
+    }
+
     @Override
     public void storeUserSimilarity(UserSimilarity stat) {
         this.userSimilarities.put(stat.getKey(), stat);
+        indexUserSimilarity(this.userSimilaritiesByUserAndMessageGroup,
+                getUserSimilarityIndexKey(stat.getUserGlobalIdFrom(),
+                        stat.getMessageGroupGlobalId()), stat.getUserGlobalIdTo(), stat);
+        if (stat.getMessageGroupGlobalId() != null) {
+            indexUserSimilarity(this.userSimilaritiesByMessageGroup,
+                    stat.getMessageGroupGlobalId(), stat.getKey(), stat);
+        }
+    }
 
+    private void unindexMessage(Message message) {
+        if (message.getId() != null) {
+            this.messagesById.remove(message.getId(), message);
+        }
+        PublicationDateKey key = new PublicationDateKey(message);
+        this.messagesByPublicationDate.remove(key, message);
+        if (message.getMessageGroup() != null && message.getMessageGroup().getGlobalId() != null) {
+            Map<PublicationDateKey, Message> messagesOfGroup = this.messagesByMessageGroup
+                    .get(message.getMessageGroup().getGlobalId());
+            if (messagesOfGroup != null) {
+                messagesOfGroup.remove(key, message);
+            }
+        }
     }
 
     @Override
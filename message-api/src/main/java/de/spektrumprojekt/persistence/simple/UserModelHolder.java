@@ -20,8 +20,8 @@
 package de.spektrumprojekt.persistence.simple;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.spektrumprojekt.datamodel.message.Term;
 import de.spektrumprojekt.datamodel.user.UserModel;
@@ -39,7 +39,7 @@ public class UserModelHolder implements Serializable {
      */
     private static final long serialVersionUID = 1L;
     private final UserModel userModel;
-    private final Map<Term, UserModelEntry> userModelEntries = new HashMap<Term, UserModelEntry>();
+    private final Map<Term, UserModelEntry> userModelEntries = new ConcurrentHashMap<Term, UserModelEntry>();
 
     public UserModelHolder(UserModel userModel) {
         if (userModel == null) {
@@ -0,0 +1,127 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package de.spektrumprojekt.communication.vm;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.communication.CommunicationMessage;
+import de.spektrumprojekt.communication.MessageHandler;
+import de.spektrumprojekt.communication.MessageHandlerStatistics;
+import de.spektrumprojekt.communication.transfer.SynchronizeSubscriptionsMessage;
+
+/**
+ * Test for the {@link BlockingVirtualMachineCommunicator}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class BlockingVirtualMachineCommunicatorTest {
+
+    private static class WaitingMessageHandler implements
+            MessageHandler<SynchronizeSubscriptionsMessage> {
+
+        private final CountDownLatch release;
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final Set<String> threadNames = Collections.synchronizedSet(new HashSet<String>());
+
+        public WaitingMessageHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void deliverMessage(SynchronizeSubscriptionsMessage message) throws Exception {
+            threadNames.add(Thread.currentThread().getName());
+            release.await();
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public Class<SynchronizeSubscriptionsMessage> getMessageClass() {
+            return SynchronizeSubscriptionsMessage.class;
+        }
+
+        @Override
+        public boolean supports(CommunicationMessage message) {
+            return message instanceof SynchronizeSubscriptionsMessage;
+        }
+    }
+
+    /**
+     * Tests that the messages are delivered by several consumers, sending blocks on a full queue
+     * and closing delivers the remaining messages
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testDeliverWithBackpressure() throws Exception {
+        final int consumers = 3;
+        final int capacity = 2;
+        BlockingQueue<CommunicationMessage> queue = new ArrayBlockingQueue<CommunicationMessage>(
+                capacity);
+        final BlockingVirtualMachineCommunicator communicator = new BlockingVirtualMachineCommunicator(
+                queue, queue, consumers);
+        CountDownLatch release = new CountDownLatch(1);
+        WaitingMessageHandler handler = new WaitingMessageHandler(release);
+        communicator.registerMessageHandler(handler);
+        communicator.open();
+
+        // every consumer takes one message and waits, the queue gets full
+        for (int i = 0; i < consumers + capacity; i++) {
+            communicator.sendMessage(new SynchronizeSubscriptionsMessage());
+        }
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                communicator.sendMessage(new SynchronizeSubscriptionsMessage());
+                sent.countDown();
+            }
+        };
+        producer.start();
+        Assert.assertFalse("sending must block while the queue is full",
+                sent.await(300, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(consumers, handler.threadNames.size());
+
+        release.countDown();
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+        communicator.close();
+
+        int messages = consumers + capacity + 1;
+        Assert.assertEquals(messages, handler.delivered.get());
+        Assert.assertEquals(0, communicator.getQueueDepth());
+        Assert.assertEquals(capacity, communicator.getMaxQueueDepth());
+        MessageHandlerStatistics statistics = communicator.getMessageHandlerStatistics().get(
+                WaitingMessageHandler.class.getName());
+        Assert.assertEquals(messages, statistics.getMessageCount());
+        Assert.assertEquals(0, statistics.getErrorCount());
+    }
+}
@@ -0,0 +1,115 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package de.spektrumprojekt.communication.vm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.communication.Communicator;
+import de.spektrumprojekt.communication.CommunicatorFactoryException;
+import de.spektrumprojekt.communication.transfer.SynchronizeSubscriptionsMessage;
+import de.spektrumprojekt.configuration.properties.SimpleProperties;
+
+/**
+ * Test for the {@link VirtualMachineCommunicatorFactory}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class VirtualMachineCommunicatorFactoryTest {
+
+    private static VirtualMachineCommunicatorFactory createFactory(Integer consumerThreads,
+            Integer queueCapacity) throws CommunicatorFactoryException {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("inUrl", "vm://endpoint");
+        properties.put("outUrl", "vm://endpoint");
+        if (consumerThreads != null) {
+            properties.put("consumerThreads", consumerThreads.toString());
+        }
+        if (queueCapacity != null) {
+            properties.put("queueCapacity", queueCapacity.toString());
+        }
+        VirtualMachineCommunicatorFactory factory = new VirtualMachineCommunicatorFactory();
+        factory.initialize(new SimpleProperties(properties));
+        return factory;
+    }
+
+    /**
+     * Tests that sending to a full queue of the configured capacity blocks until a consumer takes
+     * a message
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testFullQueue() throws Exception {
+        final int capacity = 3;
+        final Communicator communicator = createFactory(1, capacity).createCommunicator();
+        Assert.assertTrue(communicator instanceof BlockingVirtualMachineCommunicator);
+
+        // not opened yet, nobody takes the messages
+        for (int i = 0; i < capacity; i++) {
+            communicator.sendMessage(new SynchronizeSubscriptionsMessage());
+        }
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread producer = new Thread() {
+
+            @Override
+            public void run() {
+                communicator.sendMessage(new SynchronizeSubscriptionsMessage());
+                sent.countDown();
+            }
+        };
+        producer.start();
+        Assert.assertFalse("sending must block while the queue is full",
+                sent.await(300, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(capacity,
+                ((BlockingVirtualMachineCommunicator) communicator).getQueueDepth());
+
+        communicator.open();
+        Assert.assertTrue(sent.await(5, TimeUnit.SECONDS));
+        communicator.close();
+        Assert.assertEquals(0, ((BlockingVirtualMachineCommunicator) communicator).getQueueDepth());
+    }
+
+    /**
+     * Tests that the polling communicator, which cannot wait for a full queue, cannot be
+     * configured with a capacity
+     *
+     * @throws Exception
+     *             in case of an error
+     */
+    @Test
+    public void testQueueCapacityRequiresConsumerThreads() throws Exception {
+        Communicator communicator = createFactory(null, null).createCommunicator();
+        Assert.assertTrue(communicator instanceof VirtualMachineCommunicator);
+        try {
+            createFactory(null, 3);
+            Assert.fail("the polling communicator must not get a bounded queue");
+        } catch (CommunicatorFactoryException e) {
+            // expected
+        }
+    }
+}
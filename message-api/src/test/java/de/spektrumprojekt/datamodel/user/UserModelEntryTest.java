@@ -0,0 +1,85 @@
+/*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+* 
+* http://www.apache.org/licenses/LICENSE-2.0
+* 
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*/
+
+package de.spektrumprojekt.datamodel.user;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+
+/**
+ * Test the time bins of the {@link UserModelEntry}
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class UserModelEntryTest {
+
+    /**
+     * Test adding, getting and removing time bins
+     */
+    @Test
+    public void testTimeBins() {
+        UserModel userModel = new UserModel(new User("user"), UserModel.DEFAULT_USER_MODEL_TYPE);
+        UserModelEntry entry = new UserModelEntry(userModel, new ScoredTerm(new Term(
+                TermCategory.TERM, "term"), 1));
+        Assert.assertNull(entry.getUserModelEntryTimeBinByStartTime(0));
+        Assert.assertTrue(entry.getTimeBinEntriesSorted().isEmpty());
+
+        for (long start : new long[] { 300, 100, 400, 0, 200 }) {
+            UserModelEntryTimeBin timeBin = new UserModelEntryTimeBin(start);
+            timeBin.setScoreSum(start);
+            entry.addTimeBinEntry(timeBin);
+        }
+        Assert.assertEquals(5, entry.getTimeBinEntries().size());
+        Assert.assertEquals(200, entry.getUserModelEntryTimeBinByStartTime(200).getScoreSum(), 0);
+
+        List<Long> starts = new ArrayList<Long>();
+        for (UserModelEntryTimeBin timeBin : entry.getTimeBinEntriesSorted()) {
+            starts.add(timeBin.getTimeBinStart());
+        }
+        Assert.assertEquals("[0, 100, 200, 300, 400]", starts.toString());
+
+        Assert.assertEquals(2, entry.removeTimeBinEntriesBefore(200));
+        Assert.assertEquals(3, entry.getTimeBinEntries().size());
+        Assert.assertNull(entry.getUserModelEntryTimeBinByStartTime(100));
+        Assert.assertNotNull(entry.removeUserModelEntryTimeBin(300));
+        Assert.assertEquals(2, entry.getTimeBinEntriesSorted().size());
+
+        // changes to the collection itself are noticed too
+        UserModelEntryTimeBin timeBin = entry.getUserModelEntryTimeBinByStartTime(400);
+        entry.getTimeBinEntries().remove(timeBin);
+        Assert.assertNull(entry.getUserModelEntryTimeBinByStartTime(400));
+        entry.getTimeBinEntries().add(timeBin);
+        Assert.assertSame(timeBin, entry.getUserModelEntryTimeBinByStartTime(400));
+
+        try {
+            entry.addTimeBinEntry(new UserModelEntryTimeBin(400));
+            Assert.fail("adding a time bin with the same start must fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
@@ -19,6 +19,8 @@
 
 package de.spektrumprojekt.helper;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 
 import org.junit.Assert;
@@ -65,6 +67,32 @@ public class MessageHelperTest {
         }
     }
 
+    /**
+     * Test that the split values are cached by the message until a property is added
+     */
+    @Test
+    public void testCachedProperties() {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, "subscriptionGlobalId",
+                new Date());
+        Assert.assertTrue(MessageHelper.getTags(message).isEmpty());
+        Assert.assertNull(MessageHelper.getTitle(message));
+
+        message.addProperty(MessageHelper.createTagProperty(Arrays.asList("tag1", "tag2")));
+        message.addProperty(new Property(Property.PROPERTY_KEY_TITLE, "title"));
+
+        Collection<String> tags = MessageHelper.getTags(message);
+        Assert.assertEquals(2, tags.size());
+        Assert.assertTrue(tags.contains("tag1"));
+        Assert.assertTrue(tags.contains("tag2"));
+        Assert.assertSame(tags, MessageHelper.getTags(message));
+        Assert.assertEquals("title", MessageHelper.getTitle(message));
+        Assert.assertTrue(MessageHelper.getMentions(message).isEmpty());
+
+        message.addProperty(MessageHelper.createMentionProperty(new String[] { "id1" }));
+        Assert.assertTrue(MessageHelper.isMentioned(message, "id1"));
+        Assert.assertEquals(tags, MessageHelper.getTags(message));
+    }
+
     /**
      * Test the mentions (splitting and parsing)
      */
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.persistence;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.persistence.simple.PersistenceMock;
+import de.spektrumprojekt.persistence.simple.SimplePersistence;
+
+/**
+ * Test for the {@link TermCachingPersistence}
+ * 
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ * 
+ */
+public class TermCachingPersistenceTest {
+
+    /**
+     * Creates a new term for every request, as a database would return a new object
+     */
+    private static class TermCreatingPersistence extends PersistenceMock {
+
+        private int termRequests;
+
+        @Override
+        public Term getOrCreateTerm(TermCategory termCategory, String name) {
+            termRequests++;
+            return new Term(termCategory, name);
+        }
+
+        @Override
+        public Map<String, Term> getOrCreateTerms(TermCategory termCategory,
+                Collection<String> names) {
+            Map<String, Term> terms = new HashMap<String, Term>();
+            for (String name : names) {
+                terms.put(name, getOrCreateTerm(termCategory, name));
+            }
+            return terms;
+        }
+    }
+
+    @Test
+    public void testGetOrCreateTerms() {
+        TermCreatingPersistence persistence = new TermCreatingPersistence();
+        TermCachingPersistence cachingPersistence = new TermCachingPersistence(persistence, 32);
+
+        Term term = cachingPersistence.getOrCreateTerm(TermCategory.TERM, "a");
+        Assert.assertSame(term, cachingPersistence.getOrCreateTerm(TermCategory.TERM, "a"));
+        Assert.assertEquals(1, persistence.termRequests);
+
+        Map<String, Term> terms = cachingPersistence.getOrCreateTerms(TermCategory.TERM,
+                Arrays.asList("a", "b", "c", "b"));
+        Assert.assertEquals(3, terms.size());
+        Assert.assertSame(term, terms.get("a"));
+        // only the missing terms are requested
+        Assert.assertEquals(3, persistence.termRequests);
+        Assert.assertEquals(2, cachingPersistence.getHitCount());
+        Assert.assertEquals(3, cachingPersistence.getMissCount());
+
+        // the category is part of the key
+        Term keyphrase = cachingPersistence.getOrCreateTerm(TermCategory.KEYPHRASE, "a");
+        Assert.assertEquals(TermCategory.KEYPHRASE, keyphrase.getCategory());
+        Assert.assertEquals(4, cachingPersistence.getSize());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTermsAreRemoved() {
+        TermCachingPersistence cachingPersistence = new TermCachingPersistence(
+                new SimplePersistence(), 16);
+        for (int i = 0; i < 1000; i++) {
+            cachingPersistence.getOrCreateTerm(TermCategory.TERM, "term" + i);
+        }
+        Assert.assertTrue(cachingPersistence.getSize() <= 16);
+    }
+
+    @Test
+    public void testUpdateTerms() {
+        TermCachingPersistence cachingPersistence = new TermCachingPersistence(
+                new TermCreatingPersistence(), 32);
+        Term term = cachingPersistence.getOrCreateTerm(TermCategory.TERM, "a");
+
+        Term updatedTerm = new Term(TermCategory.TERM, "a");
+        updatedTerm.setCount(5);
+        Collection<Term> updatedTerms = Collections.singleton(updatedTerm);
+        cachingPersistence.updateTerms(updatedTerms);
+        Assert.assertEquals(5, cachingPersistence.getOrCreateTerm(TermCategory.TERM, "a")
+                .getCount());
+
+        cachingPersistence.resetTermCount();
+        Assert.assertEquals(0, cachingPersistence.getSize());
+        Assert.assertNotSame(term, cachingPersistence.getOrCreateTerm(TermCategory.TERM, "a"));
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.persistence.simple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessageFilter.OrderDirection;
+import de.spektrumprojekt.datamodel.message.MessageGroup;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.datamodel.user.UserSimilarity;
+
+/**
+ * Test for the queries of the {@link SimplePersistence} answered by its indexes
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class SimplePersistenceTest {
+
+    private Message createMessage(SimplePersistence persistence, MessageGroup messageGroup,
+            long time) {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, new Date(time));
+        message.setMessageGroup(messageGroup);
+        return persistence.storeMessage(message);
+    }
+
+    /**
+     * Tests getting the messages by group, publication date and id
+     */
+    @Test
+    public void testGetMessages() {
+        SimplePersistence persistence = new SimplePersistence();
+        MessageGroup group1 = persistence.storeMessageGroup(new MessageGroup("group1"));
+        MessageGroup group2 = persistence.storeMessageGroup(new MessageGroup("group2"));
+        Message message1 = createMessage(persistence, group1, 3000);
+        Message message2 = createMessage(persistence, group2, 1000);
+        Message message3 = createMessage(persistence, group1, 2000);
+        Message message4 = createMessage(persistence, group1, 2000);
+
+        MessageFilter messageFilter = new MessageFilter();
+        List<Message> messages = persistence.getMessages(messageFilter);
+        Assert.assertEquals(4, messages.size());
+        Assert.assertEquals(message2, messages.get(0));
+        Assert.assertEquals(new HashSet<Message>(Arrays.asList(message3, message4)),
+                new HashSet<Message>(messages.subList(1, 3)));
+        Assert.assertEquals(message1, messages.get(3));
+
+        messageFilter.setMessageGroupGlobalId(group1.getGlobalId());
+        messageFilter.setMinPublicationDate(new Date(2000));
+        Assert.assertEquals(Collections.singletonList(message1),
+                persistence.getMessages(messageFilter));
+
+        messageFilter = new MessageFilter();
+        messageFilter.setMessageGroupGlobalId("unknown");
+        Assert.assertTrue(persistence.getMessages(messageFilter).isEmpty());
+
+        messageFilter = new MessageFilter();
+        messageFilter.setMessageIdOrderDirection(OrderDirection.DESC);
+        messageFilter.setLastMessagesCount(2);
+        Assert.assertEquals(Arrays.asList(message4, message3),
+                persistence.getMessages(messageFilter));
+
+        persistence.removeMessage(message1.getGlobalId());
+        messageFilter = new MessageFilter();
+        messageFilter.setMessageGroupGlobalId(group1.getGlobalId());
+        Assert.assertEquals(2, persistence.getMessages(messageFilter).size());
+    }
+
+    /**
+     * Tests getting the similarities of a user within a message group
+     */
+    @Test
+    public void testGetUserSimilarities() {
+        SimplePersistence persistence = new SimplePersistence();
+        UserSimilarity similarity12 = new UserSimilarity("user1", "user2", "group1", 0.5);
+        UserSimilarity similarity13 = new UserSimilarity("user1", "user3", "group1", 0.1);
+        UserSimilarity similarity14 = new UserSimilarity("user1", "user4", "group2", 0.5);
+        UserSimilarity similarity21 = new UserSimilarity("user2", "user1", "group1", 0.5);
+        persistence.deleteAndCreateUserSimilarities(Arrays.asList(similarity12, similarity13,
+                similarity14, similarity21));
+
+        Collection<UserSimilarity> similarities = persistence.getUserSimilarities("user1",
+                Arrays.asList("user2", "user3", "user4"), "group1", 0.2);
+        Assert.assertEquals(Collections.singleton(similarity12), similarities);
+
+        similarities = persistence.getUserSimilarities("user1", new HashSet<String>(Arrays.asList(
+                "user3", "user4")), "group1", 0);
+        Assert.assertEquals(Collections.singleton(similarity13), similarities);
+
+        Assert.assertEquals(3, persistence.getUserSimilarities("group1").size());
+        Assert.assertEquals(1, persistence.getUserSimilarities("group2").size());
+        Assert.assertEquals(4, persistence.getUserSimilarities((String) null).size());
+
+        UserSimilarity updated = new UserSimilarity("user1", "user3", "group1", 0.3);
+        persistence.storeUserSimilarity(updated);
+        similarities = persistence.getUserSimilarities("user1", Arrays.asList("user3"), "group1",
+                0.2);
+        Assert.assertEquals(Collections.singleton(updated), similarities);
+        Assert.assertEquals(3, persistence.getUserSimilarities("group1").size());
+    }
+
+    /**
+     * Tests getting the similarities between several users within a message group
+     */
+    @Test
+    public void testGetUserSimilaritiesOfSeveralUsers() {
+        SimplePersistence persistence = new SimplePersistence();
+        UserSimilarity similarity12 = new UserSimilarity("user1", "user2", "group1", 0.5);
+        UserSimilarity similarity13 = new UserSimilarity("user1", "user3", "group1", 0.1);
+        UserSimilarity similarity14 = new UserSimilarity("user1", "user4", "group2", 0.5);
+        UserSimilarity similarity21 = new UserSimilarity("user2", "user1", "group1", 0.5);
+        UserSimilarity similarity23 = new UserSimilarity("user2", "user3", "group1", 0.2);
+        UserSimilarity similarity32 = new UserSimilarity("user3", "user2", "group1", 0.9);
+        persistence.deleteAndCreateUserSimilarities(Arrays.asList(similarity12, similarity13,
+                similarity14, similarity21, similarity23, similarity32));
+
+        Collection<String> from = Arrays.asList("user1", "user2");
+        Collection<String> to = Arrays.asList("user2", "user3", "user4");
+        Assert.assertEquals(new HashSet<UserSimilarity>(Arrays.asList(similarity12,
+                similarity13, similarity23)), persistence.getUserSimilarities(from, to, "group1",
+                0));
+        Assert.assertEquals(Collections.singleton(similarity12),
+                persistence.getUserSimilarities(from, to, "group1", 0.3));
+        Assert.assertEquals(Collections.singleton(similarity14),
+                persistence.getUserSimilarities(from, to, "group2", 0));
+        Assert.assertEquals(Collections.singleton(similarity21),
+                persistence.getUserSimilarities(Arrays.asList("user2"), Arrays.asList("user1"),
+                        "group1", 0.5));
+        Assert.assertTrue(persistence.getUserSimilarities(from,
+                Collections.<String> emptyList(), "group1", 0).isEmpty());
+        Assert.assertTrue(persistence.getUserSimilarities(Collections.<String> emptyList(), to,
+                "group1", 0).isEmpty());
+    }
+
+    /**
+     * Tests getting the user model entries page by page ordered by the user global id
+     */
+    @Test
+    public void testGetUserModelEntries() {
+        SimplePersistence persistence = new SimplePersistence();
+        Term term = persistence.getOrCreateTerm(TermCategory.TERM, "term");
+        List<String> userGlobalIds = Arrays.asList("user3", "user1", "user5", "user2", "user4");
+        for (String userGlobalId : userGlobalIds) {
+            UserModel userModel = persistence.getOrCreateUserModelByUser(userGlobalId,
+                    UserModel.DEFAULT_USER_MODEL_TYPE);
+            persistence.storeOrUpdateUserModelEntries(userModel,
+                    Arrays.asList(new UserModelEntry(userModel, new ScoredTerm(term, 1))));
+        }
+
+        List<String> pagedUserGlobalIds = new ArrayList<String>();
+        String lastUserGlobalId = null;
+        Map<UserModel, Collection<UserModelEntry>> page;
+        do {
+            page = persistence.getUserModelEntries(UserModel.DEFAULT_USER_MODEL_TYPE,
+                    lastUserGlobalId, 2);
+            for (Entry<UserModel, Collection<UserModelEntry>> entries : page.entrySet()) {
+                lastUserGlobalId = entries.getKey().getUser().getGlobalId();
+                pagedUserGlobalIds.add(lastUserGlobalId);
+                Assert.assertEquals(1, entries.getValue().size());
+            }
+        } while (page.size() == 2);
+        Assert.assertEquals(Arrays.asList("user1", "user2", "user3", "user4", "user5"),
+                pagedUserGlobalIds);
+        Assert.assertTrue(persistence.getUserModelEntries("other", null, 2).isEmpty());
+    }
+
+    /**
+     * Tests getting the user models having an entry for a term
+     */
+    @Test
+    public void testGetUsersWithUserModel() {
+        SimplePersistence persistence = new SimplePersistence();
+        Term term1 = persistence.getOrCreateTerm(TermCategory.TERM, "term1");
+        Term term2 = persistence.getOrCreateTerm(TermCategory.TERM, "term2");
+        Term term3 = persistence.getOrCreateTerm(TermCategory.TERM, "term3");
+        UserModel userModel1 = persistence.getOrCreateUserModelByUser("user1",
+                UserModel.DEFAULT_USER_MODEL_TYPE);
+        UserModel userModel2 = persistence.getOrCreateUserModelByUser("user2",
+                UserModel.DEFAULT_USER_MODEL_TYPE);
+
+        UserModelEntry entry11 = new UserModelEntry(userModel1, new ScoredTerm(term1, 1));
+        persistence.storeOrUpdateUserModelEntries(userModel1, Arrays.asList(entry11,
+                new UserModelEntry(userModel1, new ScoredTerm(term2, 1))));
+        persistence.storeOrUpdateUserModelEntries(userModel2,
+                Arrays.asList(new UserModelEntry(userModel2, new ScoredTerm(term2, 1))));
+
+        Assert.assertEquals(Collections.singleton(userModel1), persistence.getUsersWithUserModel(
+                Arrays.asList(term1, term3), UserModel.DEFAULT_USER_MODEL_TYPE));
+        Assert.assertEquals(new HashSet<UserModel>(Arrays.asList(userModel1, userModel2)),
+                persistence.getUsersWithUserModel(Arrays.asList(term1, term2),
+                        UserModel.DEFAULT_USER_MODEL_TYPE));
+        Assert.assertTrue(persistence.getUsersWithUserModel(Arrays.asList(term1), "other")
+                .isEmpty());
+
+        persistence.removeUserModelEntry(userModel1, entry11);
+        Assert.assertTrue(persistence.getUsersWithUserModel(Arrays.asList(term1),
+                UserModel.DEFAULT_USER_MODEL_TYPE).isEmpty());
+    }
+}
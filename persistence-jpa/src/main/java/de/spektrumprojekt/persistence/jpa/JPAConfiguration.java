@@ -47,6 +47,17 @@ public class JPAConfiguration extends SimpleConfigurationHolder {
      * Property Key Name for JPA Config. The jdbc driver.
      */
     public static final String JAVAX_PERSISTENCE_JDBC_DRIVER = "javax.persistence.jdbc.driver";
+    /**
+     * Property Key Name for JPA Config. The number of statements sent to the database in one JDBC
+     * batch. Also the number of entities after which a bulk write flushes the entity manager.
+     */
+    public static final String ECLIPSELINK_JDBC_BATCH_WRITING_SIZE =
+            "eclipselink.jdbc.batch-writing.size";
+
+    /**
+     * The batch size used if none is configured
+     */
+    public static final int DEFAULT_BATCH_SIZE = 100;
 
     private Properties jpaProperties;
 
@@ -70,6 +81,22 @@ public class JPAConfiguration extends SimpleConfigurationHolder {
                 jpaProperties.put(key, value);
             }
         }
+        jpaProperties.put(ECLIPSELINK_JDBC_BATCH_WRITING_SIZE, String.valueOf(getBatchSize()));
+    }
+
+    /**
+     * 
+     * @return the number of entities written in one JDBC batch, if not defined the
+     *         {@value #DEFAULT_BATCH_SIZE} will be used
+     */
+    public int getBatchSize() {
+        int batchSize = this.getConfiguration().getIntProperty(
+                ECLIPSELINK_JDBC_BATCH_WRITING_SIZE, DEFAULT_BATCH_SIZE);
+        if (batchSize < 1) {
+            throw new IllegalArgumentException(ECLIPSELINK_JDBC_BATCH_WRITING_SIZE
+                    + " must be at least 1. batchSize=" + batchSize);
+        }
+        return batchSize;
     }
 
     /**
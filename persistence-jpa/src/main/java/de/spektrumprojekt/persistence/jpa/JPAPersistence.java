@@ -217,6 +217,11 @@ public class JPAPersistence implements Persistence {
         return this.messagePersistence.getOrCreateTerm(termCategory, name);
     }
 
+    @Override
+    public Map<String, Term> getOrCreateTerms(TermCategory termCategory, Collection<String> names) {
+        return this.messagePersistence.getOrCreateTerms(termCategory, names);
+    }
+
     @Override
     public User getOrCreateUser(String userGlobalId) {
         return this.userPersistence.getOrCreateUser(userGlobalId);
@@ -263,6 +268,13 @@ public class JPAPersistence implements Persistence {
         return this.messagePersistence.getTermFrequency();
     }
 
+    @Override
+    public Map<UserModel, Collection<UserModelEntry>> getUserModelEntries(String userModelType,
+            String afterUserGlobalId, int maxUserModels) {
+        return userPersistence.getUserModelEntries(userModelType, afterUserGlobalId,
+                maxUserModels);
+    }
+
     @Override
     public Map<String, String> getUserModelEntriesCountDescription() {
         Map<String, String> countDesc = new HashMap<String, String>();
@@ -276,11 +288,26 @@ public class JPAPersistence implements Persistence {
         return userPersistence.getUserModelEntriesForTerms(userModel, terms);
     }
 
+    @Override
+    public Map<String, Map<String, Map<Term, UserModelEntry>>> getUserModelEntriesForTerms(
+            Collection<String> userGlobalIds, Collection<String> userModelTypes,
+            Collection<Term> terms) {
+        return userPersistence.getUserModelEntriesForTerms(userGlobalIds, userModelTypes, terms);
+    }
+
     @Override
     public Collection<UserSimilarity> getUserSimilarities(String messageGroupGlobalId) {
         return this.userPersistence.getUserSimilarities(messageGroupGlobalId);
     }
 
+    @Override
+    public Collection<UserSimilarity> getUserSimilarities(Collection<String> userGlobalIdsFrom,
+            Collection<String> userGlobalIdsTo, String messageGroupGlobalId,
+            double userSimilarityThreshold) {
+        return this.userPersistence.getUserSimilarities(userGlobalIdsFrom, userGlobalIdsTo,
+                messageGroupGlobalId, userSimilarityThreshold);
+    }
+
     @Override
     public Collection<UserSimilarity> getUserSimilarities(String userGlobalId,
             Collection<String> users, String messageGroupGlobalId, double userSimilarityThreshold) {
@@ -330,6 +357,11 @@ public class JPAPersistence implements Persistence {
         return duplicationDetectionPersistence.saveHashWithDate(hashWithDate);
     }
 
+    @Override
+    public void saveHashWithDates(List<HashWithDate> hashesWithDates) {
+        duplicationDetectionPersistence.saveHashWithDates(hashesWithDates);
+    }
+
     @Override
     public Source saveSource(Source source) {
         return this.sourcePersistence.saveSource(source);
@@ -356,6 +388,12 @@ public class JPAPersistence implements Persistence {
         messagePersistence.storeMessagePattern(pattern, message);
     }
 
+    @Override
+    public Map<String, List<Message>> storeMessagePatterns(Message message,
+            Collection<String> patterns, Date minPublicationDate) {
+        return messagePersistence.storeMessagePatterns(message, patterns, minPublicationDate);
+    }
+
     @Override
     public void storeMessageRanks(Collection<MessageRank> ranks) {
         messagePersistence.storeMessageRanks(ranks);
@@ -377,12 +415,23 @@ public class JPAPersistence implements Persistence {
         return userPersistence.storeOrUpdateUserModelEntries(userModel, changedEntries);
     }
 
+    @Override
+    public void storeOrUpdateUserModelEntries(
+            Map<UserModel, Collection<UserModelEntry>> changedEntries) {
+        userPersistence.storeOrUpdateUserModelEntries(changedEntries);
+    }
+
     @Override
     public Subscription storeSubscription(Subscription subscription) {
 
         return this.subscriptionPersistence.storeSubscription(subscription);
     }
 
+    @Override
+    public void storeUserSimilarities(Collection<UserSimilarity> userSimilarities) {
+        this.userPersistence.storeUserSimilarities(userSimilarities);
+    }
+
     @Override
     public void storeUserSimilarity(UserSimilarity stat) {
         this.userPersistence.storeUserSimilarity(stat);
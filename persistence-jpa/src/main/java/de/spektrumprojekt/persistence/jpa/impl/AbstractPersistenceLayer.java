@@ -74,6 +74,13 @@ public abstract class AbstractPersistenceLayer {
      */
     private final EntityManagerFactory entityManagerFactory;
 
+    /**
+     * <p>
+     * The number of entities after which a bulk write flushes and clears the entity manager.
+     * </p>
+     */
+    private final int batchSize;
+
     /**
      * <p>
      * Initialize a new {@link AbstractPersistenceLayer}.
@@ -83,6 +90,7 @@ public abstract class AbstractPersistenceLayer {
      */
     protected AbstractPersistenceLayer(EntityManagerFactory entityManagerFactory) {
         this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = JPAConfiguration.DEFAULT_BATCH_SIZE;
     }
 
     /**
@@ -107,6 +115,7 @@ public abstract class AbstractPersistenceLayer {
         }
         entityManagerFactory = Persistence.createEntityManagerFactory(
                 jpaConfiguration.getPersistenceUnitName(), properties);
+        batchSize = jpaConfiguration.getBatchSize();
 
         // check the entity manager
         EntityManager em = entityManagerFactory.createEntityManager();
@@ -127,6 +136,25 @@ public abstract class AbstractPersistenceLayer {
         }
     }
 
+    /**
+     * <p>
+     * Flushes and clears the entity manager after every batch of written entities. The pending
+     * statements of the batch are sent as JDBC batch and the persistence context does not grow
+     * with the number of entities written within one transaction.
+     * </p>
+     * 
+     * @param entityManager
+     *            the entity manager used for writing
+     * @param numberOfEntities
+     *            the number of entities written so far
+     */
+    protected final void flushBatch(EntityManager entityManager, int numberOfEntities) {
+        if (numberOfEntities % batchSize == 0) {
+            entityManager.flush();
+            entityManager.clear();
+        }
+    }
+
     /**
      * <p>
      * Return all entities of a specific type.
@@ -150,6 +178,14 @@ public abstract class AbstractPersistenceLayer {
         return result;
     }
 
+    /**
+     * 
+     * @return the number of entities written in one batch
+     */
+    protected final int getBatchSize() {
+        return batchSize;
+    }
+
     /**
      * Get the given identifiable identity by using the global id
      * 
@@ -194,6 +230,28 @@ public abstract class AbstractPersistenceLayer {
         return entityManagerFactory.createEntityManager();
     }
 
+    /**
+     * <p>
+     * Persists the entity if it is new, that is an {@link Identifiable} without id, otherwise
+     * merges it. Persisting saves the lookup merge does to find out if the entity exists and makes
+     * the given entity the managed one, hence it will get its id.
+     * </p>
+     * 
+     * @param entityManager
+     *            the entity manager to use
+     * @param object
+     *            the entity to save
+     * @return the managed entity
+     */
+    protected final <T extends SpektrumEntity> T persistOrMerge(EntityManager entityManager,
+            T object) {
+        if (object instanceof Identifiable && ((Identifiable) object).getId() == null) {
+            entityManager.persist(object);
+            return object;
+        }
+        return entityManager.merge(object);
+    }
+
     protected final <T extends Identifiable> void remove(final T object) {
         if (object == null) {
             throw new IllegalArgumentException("cannot remove null object.");
@@ -235,7 +293,8 @@ public abstract class AbstractPersistenceLayer {
     }
 
     /**
-     * Saves all objects
+     * Saves all objects within one transaction. New objects are persisted, existing ones merged,
+     * the statements are sent in batches of {@link #getBatchSize()}.
      * 
      * @param objects
      *            the to save
@@ -250,8 +309,8 @@ public abstract class AbstractPersistenceLayer {
             protected List<T> doTransaction(EntityManager entityManager) {
                 final List<T> result = new ArrayList<T>(objects.size());
                 for (T obj : objects) {
-                    obj = entityManager.merge(obj);
-                    result.add(obj);
+                    result.add(persistOrMerge(entityManager, obj));
+                    flushBatch(entityManager, result.size());
                 }
                 return result;
             }
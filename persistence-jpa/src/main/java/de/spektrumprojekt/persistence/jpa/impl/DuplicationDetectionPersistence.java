@@ -20,11 +20,14 @@
 package de.spektrumprojekt.persistence.jpa.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.persistence.EntityManager;
-import javax.persistence.EntityTransaction;
 import javax.persistence.NoResultException;
+import javax.persistence.Query;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
@@ -34,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import de.spektrumprojekt.datamodel.duplicationdetection.HashWithDate;
 import de.spektrumprojekt.persistence.jpa.JPAConfiguration;
+import de.spektrumprojekt.persistence.jpa.transaction.Transaction;
 
 /**
  * 
@@ -51,19 +55,44 @@ public class DuplicationDetectionPersistence extends AbstractPersistenceLayer {
         super(jpaConfiguration, null);
     }
 
+    /**
+     * Deletes the hashes using one query per subscription and batch of hashes
+     * 
+     * @param hashesToDelete
+     *            the hashes to delete
+     */
     public void deleteHashWithDates(List<HashWithDate> hashesToDelete) {
-        EntityManager entityManager = getEntityManager();
-        EntityTransaction transaction = entityManager.getTransaction();
-        transaction.begin();
+        final Map<String, List<String>> hashesBySubscription = new HashMap<String, List<String>>();
         for (HashWithDate hash : hashesToDelete) {
-            LOG.trace(">remove {}", hash);
-            hash = entityManager.merge(hash);
-            entityManager.remove(hash);
-            LOG.trace("<removed {}", hash);
+            List<String> hashes = hashesBySubscription.get(hash.getSubscriptionGlobalId());
+            if (hashes == null) {
+                hashes = new ArrayList<String>();
+                hashesBySubscription.put(hash.getSubscriptionGlobalId(), hashes);
+            }
+            hashes.add(hash.getHash());
         }
-        transaction.commit();
-        entityManager.close();
+        Transaction<Integer> transaction = new Transaction<Integer>() {
 
+            @Override
+            protected Integer doTransaction(EntityManager entityManager) {
+                Query query = entityManager.createQuery("DELETE FROM HashWithDate h"
+                        + " WHERE h.subscriptionGlobalId = :subscriptionGlobalId"
+                        + " AND h.hash IN :hashes");
+                int deleted = 0;
+                for (Entry<String, List<String>> entry : hashesBySubscription.entrySet()) {
+                    List<String> hashes = entry.getValue();
+                    for (int i = 0; i < hashes.size(); i += getBatchSize()) {
+                        query.setParameter("subscriptionGlobalId", entry.getKey());
+                        query.setParameter("hashes",
+                                hashes.subList(i, Math.min(i + getBatchSize(), hashes.size())));
+                        deleted += query.executeUpdate();
+                    }
+                }
+                return deleted;
+            }
+        };
+        int deleted = transaction.executeTransaction(getEntityManager());
+        LOG.trace("removed {} hashes", deleted);
     }
 
     public List<HashWithDate> getHashsByGlobalSubscriptionId(String subscriptionGlobalId) {
@@ -86,4 +115,8 @@ public class DuplicationDetectionPersistence extends AbstractPersistenceLayer {
         return save(hashWithDate);
     }
 
+    public void saveHashWithDates(List<HashWithDate> hashesWithDates) {
+        saveAll(hashesWithDates);
+    }
+
 }
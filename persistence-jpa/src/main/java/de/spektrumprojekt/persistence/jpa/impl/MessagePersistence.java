@@ -23,7 +23,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
@@ -210,6 +214,15 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
         return transaction.executeTransaction(getEntityManager());
     }
 
+    private Collection<String> getUserGlobalIdsWithMessageRank(EntityManager entityManager,
+            String messageGlobalId) {
+        TypedQuery<String> query = entityManager.createQuery(
+                "SELECT r.userGlobalId FROM MessageRank r"
+                        + " WHERE r.messageGlobalId = :messageGlobalId", String.class);
+        query.setParameter("messageGlobalId", messageGlobalId);
+        return new HashSet<String>(query.getResultList());
+    }
+
     public MessageRelation getMessageRelation(Message message) {
         Validate.notNull(message, "message must not be null");
         EntityManager entityManager = getEntityManager();
@@ -268,6 +281,12 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
                     predicates.add(datePred);
                 }
 
+                // filter for message id
+                if (messageFilter.getMinMessageId() != null) {
+                    predicates.add(cb.greaterThanOrEqualTo(messageLongId,
+                            messageFilter.getMinMessageId()));
+                }
+
                 // filter for message group
                 if (messageFilter.getMessageGroupGlobalId() != null) {
                     Join<Message, MessageGroup> messageGroupEntity = messageEntity
@@ -389,6 +408,50 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
         return transaction.executeTransaction(getEntityManager());
     }
 
+    /**
+     * Gets the terms of the category with one query per batch of names and persists the missing
+     * ones in the same transaction, so they are written using JDBC batches.
+     * 
+     * @param termCategory
+     *            the category of the terms
+     * @param names
+     *            the names of the terms
+     * @return the terms mapped by their names
+     */
+    public Map<String, Term> getOrCreateTerms(final TermCategory termCategory,
+            Collection<String> names) {
+        final List<String> values = new ArrayList<String>(new HashSet<String>(names));
+        Transaction<Map<String, Term>> transaction = new Transaction<Map<String, Term>>() {
+
+            @Override
+            protected Map<String, Term> doTransaction(EntityManager entityManager) {
+                Map<String, Term> terms = new HashMap<String, Term>();
+                TypedQuery<Term> query = entityManager.createQuery("SELECT t FROM Term t"
+                        + " WHERE t.category = :category AND t.value IN :values", Term.class);
+                for (int i = 0; i < values.size(); i += getBatchSize()) {
+                    query.setParameter("category", termCategory);
+                    query.setParameter("values",
+                            values.subList(i, Math.min(i + getBatchSize(), values.size())));
+                    for (Term term : query.getResultList()) {
+                        terms.put(term.getValue(), term);
+                    }
+                }
+                int created = 0;
+                for (String value : values) {
+                    if (!terms.containsKey(value)) {
+                        Term term = new Term(termCategory, value);
+                        entityManager.persist(term);
+                        terms.put(value, term);
+                        flushBatch(entityManager, ++created);
+                    }
+                }
+                return terms;
+            }
+        };
+
+        return transaction.executeTransaction(getEntityManager());
+    }
+
     public TermFrequency getTermFrequency() {
         TermFrequency termFrequency = getEntityByGlobalId(TermFrequency.class,
                 TermFrequency.SINGLE_GLOBAL_ID);
@@ -416,12 +479,35 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
         transaction.executeTransaction(getEntityManager());
     }
 
-    public Message storeMessage(Message message) {
-        Message existing = this.getMessageByGlobalId(message.getGlobalId());
-        if (existing != null) {
-            this.remove(existing);
-        }
-        return this.save(message);
+    /**
+     * Stores the message, replacing an existing message with the same global id. The lookup, the
+     * removal and the insert are done within one transaction.
+     * 
+     * @param message
+     *            the message
+     * @return the stored message
+     */
+    public Message storeMessage(final Message message) {
+        Validate.notNull(message, "message must not be null");
+        Transaction<Message> transaction = new Transaction<Message>() {
+
+            @Override
+            protected Message doTransaction(EntityManager entityManager) {
+                Message existing = findByGlobalId(entityManager, Message.class,
+                        message.getGlobalId());
+                if (existing != null) {
+                    if (existing.getId().equals(message.getId())) {
+                        // the message itself has been stored before
+                        return entityManager.merge(message);
+                    }
+                    entityManager.remove(existing);
+                    // delete the row before inserting the message again
+                    entityManager.flush();
+                }
+                return persistOrMerge(entityManager, message);
+            }
+        };
+        return transaction.executeTransaction(getEntityManager());
     }
 
     /**
@@ -452,6 +538,52 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
         // save(messagePattern);
     }
 
+    public Map<String, List<Message>> storeMessagePatterns(final Message message,
+            final Collection<String> patterns, final Date minPublicationDate) {
+        Validate.notNull(message, "message must not be null");
+        Validate.notNull(patterns, "patterns must not be null");
+        final Map<String, List<Message>> patternMessages = new HashMap<String, List<Message>>();
+        if (patterns.isEmpty()) {
+            return patternMessages;
+        }
+        Transaction<Map<String, List<Message>>> transaction = new Transaction<Map<String, List<Message>>>() {
+
+            @Override
+            protected Map<String, List<Message>> doTransaction(EntityManager entityManager) {
+                TypedQuery<Message> messageQuery = entityManager.createQuery(
+                        "SELECT m FROM Message m WHERE m.globalId = :globalId", Message.class);
+                messageQuery.setParameter("globalId", message.getGlobalId());
+                Message storedMessage = messageQuery.getSingleResult();
+                for (String pattern : patterns) {
+                    entityManager.merge(new MessagePattern(storedMessage, pattern));
+                }
+                entityManager.flush();
+
+                String queryString = "SELECT mp FROM MessagePattern mp"
+                        + " WHERE mp.pattern IN :patterns";
+                if (minPublicationDate != null) {
+                    queryString += " AND mp.message.publicationDate >= :minPublicationDate";
+                }
+                TypedQuery<MessagePattern> query = entityManager.createQuery(queryString,
+                        MessagePattern.class);
+                query.setParameter("patterns", patterns);
+                if (minPublicationDate != null) {
+                    query.setParameter("minPublicationDate", minPublicationDate);
+                }
+                for (MessagePattern messagePattern : query.getResultList()) {
+                    List<Message> messages = patternMessages.get(messagePattern.getPattern());
+                    if (messages == null) {
+                        messages = new ArrayList<Message>();
+                        patternMessages.put(messagePattern.getPattern(), messages);
+                    }
+                    messages.add(messagePattern.getMessage());
+                }
+                return patternMessages;
+            }
+        };
+        return transaction.executeTransaction(getEntityManager());
+    }
+
     /**
      * 
      * @param ranks
@@ -464,7 +596,40 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
         if (ranks.contains(null)) {
             throw new IllegalArgumentException("ranks cannot contain a null value.");
         }
-        this.saveAll(ranks);
+        final Map<String, List<MessageRank>> ranksByMessage =
+                new HashMap<String, List<MessageRank>>();
+        for (MessageRank rank : ranks) {
+            List<MessageRank> ranksOfMessage = ranksByMessage.get(rank.getMessageGlobalId());
+            if (ranksOfMessage == null) {
+                ranksOfMessage = new ArrayList<MessageRank>();
+                ranksByMessage.put(rank.getMessageGlobalId(), ranksOfMessage);
+            }
+            ranksOfMessage.add(rank);
+        }
+
+        Transaction<Object> transaction = new Transaction<Object>() {
+
+            @Override
+            protected Object doTransaction(EntityManager entityManager) {
+                int stored = 0;
+                for (Entry<String, List<MessageRank>> entry : ranksByMessage.entrySet()) {
+                    // the ranks have a composite id, so ask the database once for the message
+                    // which ones exist instead of letting merge do it for every rank
+                    Collection<String> existingUserGlobalIds = getUserGlobalIdsWithMessageRank(
+                            entityManager, entry.getKey());
+                    for (MessageRank rank : entry.getValue()) {
+                        if (existingUserGlobalIds.add(rank.getUserGlobalId())) {
+                            entityManager.persist(rank);
+                        } else {
+                            entityManager.merge(rank);
+                        }
+                        flushBatch(entityManager, ++stored);
+                    }
+                }
+                return null;
+            }
+        };
+        transaction.executeTransaction(getEntityManager());
     }
 
     /**
@@ -488,8 +653,16 @@ public final class MessagePersistence extends AbstractPersistenceLayer {
         this.save(relatedMessages);
     }
 
-    public void storeObservation(Observation observation) {
-        this.save(observation);
+    public void storeObservation(final Observation observation) {
+        Validate.notNull(observation, "observation must not be null");
+        Transaction<Observation> transaction = new Transaction<Observation>() {
+
+            @Override
+            protected Observation doTransaction(EntityManager entityManager) {
+                return persistOrMerge(entityManager, observation);
+            }
+        };
+        transaction.executeTransaction(getEntityManager());
     }
 
     public void updateMessageRank(MessageRank rankToUpdate) {
@@ -23,6 +23,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -169,6 +171,73 @@ public class UserPersistence extends AbstractPersistenceLayer {
         return result;
     }
 
+    /**
+     * Get the entries of a page of the user models of a type, ordered by the global id of the user
+     * 
+     * @param userModelType
+     *            the type of the user models
+     * @param afterUserGlobalId
+     *            the global id of the user of the last user model of the previous page, null for
+     *            the first page
+     * @param maxUserModels
+     *            the maximum number of user models of the page
+     * @return the user models of the page and their entries
+     */
+    public Map<UserModel, Collection<UserModelEntry>> getUserModelEntries(
+            final String userModelType, final String afterUserGlobalId, final int maxUserModels) {
+        Transaction<Map<UserModel, Collection<UserModelEntry>>> transaction = new Transaction<Map<UserModel, Collection<UserModelEntry>>>() {
+
+            @Override
+            protected Map<UserModel, Collection<UserModelEntry>> doTransaction(
+                    EntityManager entityManager) {
+                String qlString = "";
+                qlString += "select userModel ";
+                qlString += "from UserModel userModel ";
+                qlString += "left join userModel.user user ";
+                qlString += "where userModel.userModelType = :userModelType ";
+                if (afterUserGlobalId != null) {
+                    qlString += "and user.globalId > :afterUserGlobalId ";
+                }
+                qlString += "order by user.globalId";
+
+                TypedQuery<UserModel> userModelQuery = entityManager.createQuery(qlString,
+                        UserModel.class);
+                userModelQuery.setParameter("userModelType", userModelType);
+                if (afterUserGlobalId != null) {
+                    userModelQuery.setParameter("afterUserGlobalId", afterUserGlobalId);
+                }
+                userModelQuery.setMaxResults(maxUserModels);
+
+                Map<UserModel, Collection<UserModelEntry>> resultMap = new LinkedHashMap<UserModel, Collection<UserModelEntry>>();
+                Map<Long, Collection<UserModelEntry>> entriesById = new HashMap<Long, Collection<UserModelEntry>>();
+                for (UserModel userModel : userModelQuery.getResultList()) {
+                    Collection<UserModelEntry> entries = new ArrayList<UserModelEntry>();
+                    resultMap.put(userModel, entries);
+                    entriesById.put(userModel.getId(), entries);
+                }
+                if (entriesById.isEmpty()) {
+                    return resultMap;
+                }
+
+                qlString = "";
+                qlString += "select entries, userModel.id ";
+                qlString += "from UserModelEntry entries ";
+                qlString += "left join entries.userModel userModel ";
+                qlString += "where userModel.id in :userModelIds";
+
+                TypedQuery<Object[]> entryQuery = entityManager.createQuery(qlString,
+                        Object[].class);
+                entryQuery.setParameter("userModelIds", entriesById.keySet());
+                for (Object[] row : entryQuery.getResultList()) {
+                    entriesById.get(row[1]).add((UserModelEntry) row[0]);
+                }
+                return resultMap;
+            }
+        };
+
+        return transaction.executeTransaction(getEntityManager());
+    }
+
     /**
      * get the user model entry for the term
      * 
@@ -241,6 +310,75 @@ public class UserPersistence extends AbstractPersistenceLayer {
         return transaction.executeTransaction(getEntityManager());
     }
 
+    public Map<String, Map<String, Map<Term, UserModelEntry>>> getUserModelEntriesForTerms(
+            final Collection<String> userGlobalIds, final Collection<String> userModelTypes,
+            final Collection<Term> terms) {
+        final Map<String, Map<String, Map<Term, UserModelEntry>>> resultMap = new HashMap<String, Map<String, Map<Term, UserModelEntry>>>();
+        for (String userGlobalId : userGlobalIds) {
+            Map<String, Map<Term, UserModelEntry>> entriesOfUser = new HashMap<String, Map<Term, UserModelEntry>>();
+            for (String userModelType : userModelTypes) {
+                entriesOfUser.put(userModelType, new HashMap<Term, UserModelEntry>());
+            }
+            resultMap.put(userGlobalId, entriesOfUser);
+        }
+        if (resultMap.isEmpty() || userModelTypes.isEmpty() || terms == null
+                || terms.size() == 0) {
+            return resultMap;
+        }
+        Transaction<Map<String, Map<String, Map<Term, UserModelEntry>>>> transaction = new Transaction<Map<String, Map<String, Map<Term, UserModelEntry>>>>() {
+
+            /**
+             * {@inheritedDoc}
+             */
+            @Override
+            protected Map<String, Map<String, Map<Term, UserModelEntry>>> doTransaction(
+                    EntityManager entityManager) {
+
+                List<Long> termIds = new ArrayList<Long>(terms.size());
+                for (Term t : terms) {
+                    termIds.add(t.getId());
+                }
+                List<String> users = new ArrayList<String>(resultMap.keySet());
+
+                String qlString = "";
+                qlString += "select entries, user.globalId, userModel.userModelType ";
+                qlString += "from UserModelEntry entries ";
+                qlString += "left join entries.scoredTerm sTerm ";
+                qlString += "left join sTerm.term term ";
+                qlString += "left join entries.userModel userModel ";
+                qlString += "left join userModel.user user ";
+                qlString += "where user.globalId in :userGlobalIds ";
+                qlString += "and userModel.userModelType in :userModelTypes ";
+                qlString += "and term.id in :termIds";
+
+                TypedQuery<Object[]> typedQuery = entityManager.createQuery(qlString,
+                        Object[].class);
+                // the users and terms are queried in chunks of the batch size
+                for (int i = 0; i < users.size(); i += getBatchSize()) {
+                    for (int j = 0; j < termIds.size(); j += getBatchSize()) {
+                        typedQuery.setParameter("userGlobalIds",
+                                users.subList(i, Math.min(i + getBatchSize(), users.size())));
+                        typedQuery.setParameter("userModelTypes", userModelTypes);
+                        typedQuery.setParameter("termIds",
+                                termIds.subList(j, Math.min(j + getBatchSize(), termIds.size())));
+
+                        try {
+                            for (Object[] row : typedQuery.getResultList()) {
+                                UserModelEntry entry = (UserModelEntry) row[0];
+                                resultMap.get(row[1]).get(row[2])
+                                        .put(entry.getScoredTerm().getTerm(), entry);
+                            }
+                        } catch (NoResultException e) {
+                        }
+                    }
+                }
+                return resultMap;
+            }
+        };
+
+        return transaction.executeTransaction(getEntityManager());
+    }
+
     public Collection<UserSimilarity> getUserSimilarities(final String messageGroupGlobalId) {
 
         Transaction<Collection<UserSimilarity>> transaction = new Transaction<Collection<UserSimilarity>>() {
@@ -267,6 +405,58 @@ public class UserPersistence extends AbstractPersistenceLayer {
         return transaction.executeTransaction(getEntityManager());
     }
 
+    /**
+     * Get the similarities from any of the users to any of the other users. The users are queried
+     * in chunks of the batch size.
+     * 
+     * @param userGlobalIdsFrom
+     *            the users the similarities are from
+     * @param userGlobalIdsTo
+     *            the users the similarities are to
+     * @param messageGroupGlobalId
+     *            the message group of the similarities, null for all message groups
+     * @param userSimilarityThreshold
+     *            the minimum similarity
+     * @return the similarities
+     */
+    public Collection<UserSimilarity> getUserSimilarities(
+            final Collection<String> userGlobalIdsFrom, final Collection<String> userGlobalIdsTo,
+            final String messageGroupGlobalId, final double userSimilarityThreshold) {
+        if (userGlobalIdsFrom.isEmpty() || userGlobalIdsTo.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<String> from = new ArrayList<String>(new HashSet<String>(userGlobalIdsFrom));
+        final List<String> to = new ArrayList<String>(new HashSet<String>(userGlobalIdsTo));
+        Transaction<Collection<UserSimilarity>> transaction = new Transaction<Collection<UserSimilarity>>() {
+
+            @Override
+            protected Collection<UserSimilarity> doTransaction(EntityManager entityManager) {
+                Collection<UserSimilarity> similarities = new ArrayList<UserSimilarity>();
+                TypedQuery<UserSimilarity> query = entityManager.createQuery(
+                        "SELECT s FROM UserSimilarity s WHERE s.userGlobalIdFrom IN :from"
+                                + " AND s.userGlobalIdTo IN :to AND s.similarity >= :threshold"
+                                + (messageGroupGlobalId == null ? ""
+                                        : " AND s.messageGroupGlobalId = :messageGroupGlobalId"),
+                        UserSimilarity.class);
+                for (int i = 0; i < from.size(); i += getBatchSize()) {
+                    for (int j = 0; j < to.size(); j += getBatchSize()) {
+                        query.setParameter("from",
+                                from.subList(i, Math.min(i + getBatchSize(), from.size())));
+                        query.setParameter("to",
+                                to.subList(j, Math.min(j + getBatchSize(), to.size())));
+                        query.setParameter("threshold", userSimilarityThreshold);
+                        if (messageGroupGlobalId != null) {
+                            query.setParameter("messageGroupGlobalId", messageGroupGlobalId);
+                        }
+                        similarities.addAll(query.getResultList());
+                    }
+                }
+                return similarities;
+            }
+        };
+        return transaction.executeTransaction(getEntityManager());
+    }
+
     public Collection<UserSimilarity> getUserSimilarities(final String userGlobalId,
             final Collection<String> users, final String messageGroupGlobalId,
             final double userSimilarityThreshold) {
@@ -399,6 +589,31 @@ public class UserPersistence extends AbstractPersistenceLayer {
         return this.saveAll(changedEntries);
     }
 
+    /**
+     * Store(create) or update the changed entries of several user models within one transaction
+     * 
+     * @param changedEntries
+     *            the changed entries by user model
+     */
+    public void storeOrUpdateUserModelEntries(
+            Map<UserModel, Collection<UserModelEntry>> changedEntries) {
+        List<UserModelEntry> entries = new ArrayList<UserModelEntry>();
+        for (Collection<UserModelEntry> entriesOfUserModel : changedEntries.values()) {
+            entries.addAll(entriesOfUserModel);
+        }
+        this.saveAll(entries);
+    }
+
+    /**
+     * Store(create) or update the user similarities within one transaction
+     * 
+     * @param userSimilarities
+     *            the user similarities
+     */
+    public void storeUserSimilarities(Collection<UserSimilarity> userSimilarities) {
+        this.saveAll(userSimilarities);
+    }
+
     public void storeUserSimilarity(UserSimilarity stat) {
         this.save(stat);
     }
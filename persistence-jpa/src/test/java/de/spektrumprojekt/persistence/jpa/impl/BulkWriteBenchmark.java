@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.persistence.jpa.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+
+import de.spektrumprojekt.configuration.properties.SimpleProperties;
+import de.spektrumprojekt.datamodel.common.MimeType;
+import de.spektrumprojekt.datamodel.message.Message;
+import de.spektrumprojekt.datamodel.message.MessagePart;
+import de.spektrumprojekt.datamodel.message.MessageRank;
+import de.spektrumprojekt.datamodel.message.MessageType;
+import de.spektrumprojekt.datamodel.message.ScoredTerm;
+import de.spektrumprojekt.datamodel.message.Term;
+import de.spektrumprojekt.datamodel.message.Term.TermCategory;
+import de.spektrumprojekt.datamodel.observation.Interest;
+import de.spektrumprojekt.datamodel.observation.Observation;
+import de.spektrumprojekt.datamodel.observation.ObservationPriority;
+import de.spektrumprojekt.datamodel.observation.ObservationType;
+import de.spektrumprojekt.datamodel.subscription.status.StatusType;
+import de.spektrumprojekt.datamodel.user.UserModel;
+import de.spektrumprojekt.datamodel.user.UserModelEntry;
+import de.spektrumprojekt.datamodel.user.UserModelEntryTimeBin;
+import de.spektrumprojekt.persistence.jpa.JPAConfiguration;
+import de.spektrumprojekt.persistence.jpa.transaction.Transaction;
+
+/**
+ * Benchmark comparing the bulk write path of the persistence layers with writing entity by entity
+ * using merge, as the layers did before, against the embedded HSQLDB of the test persistence unit.
+ * Not a unit test, run it using the main method.
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class BulkWriteBenchmark {
+
+    private interface Write {
+        /**
+         * Writes {@link BulkWriteBenchmark#ROWS} entities
+         *
+         * @param round
+         *            the number of the round
+         */
+        void run(int round);
+    }
+
+    private static final String PERSISTENCE_UNIT_NAME = "de.spektrumprojekt.datamodel.test";
+
+    private static final int ROWS = 2000;
+    private static final int ROUNDS = 10;
+    // every message has one part, so it has less entities
+    private static final int MESSAGES = ROWS / 10;
+
+    public static void main(String[] args) {
+        new BulkWriteBenchmark().run();
+    }
+
+    private final MessagePersistence messagePersistence;
+
+    private final UserPersistence userPersistence;
+
+    private final List<Term> terms = new ArrayList<Term>();
+
+    public BulkWriteBenchmark() {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("persistenceUnit", PERSISTENCE_UNIT_NAME);
+        JPAConfiguration jpaConfiguration = new JPAConfiguration(new SimpleProperties(properties));
+        messagePersistence = new MessagePersistence(jpaConfiguration);
+        userPersistence = new UserPersistence(jpaConfiguration);
+    }
+
+    private Message createMessage() {
+        Message message = new Message(MessageType.CONTENT, StatusType.OK, null, new Date());
+        message.addMessagePart(new MessagePart(MimeType.TEXT_PLAIN, "bulk write benchmark"));
+        return message;
+    }
+
+    private List<MessageRank> createMessageRanks() {
+        String messageGlobalId = UUID.randomUUID().toString();
+        List<MessageRank> ranks = new ArrayList<MessageRank>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            MessageRank rank = new MessageRank(messageGlobalId, "user" + i);
+            rank.setRank(0.5f);
+            ranks.add(rank);
+        }
+        return ranks;
+    }
+
+    private Observation createObservation() {
+        return new Observation(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                ObservationType.LIKE, ObservationPriority.USER_FEEDBACK, null, new Date(),
+                Interest.HIGH);
+    }
+
+    private UserModel createUserModel() {
+        return userPersistence.getOrCreateUserModelByUser(UUID.randomUUID().toString(),
+                UserModel.DEFAULT_USER_MODEL_TYPE);
+    }
+
+    private List<UserModelEntry> createUserModelEntries(UserModel userModel) {
+        List<UserModelEntry> entries = new ArrayList<UserModelEntry>(ROWS);
+        for (Term term : terms) {
+            UserModelEntry entry = new UserModelEntry(userModel, new ScoredTerm(term, 0.5f));
+            entry.addTimeBinEntry(new UserModelEntryTimeBin(0));
+            entry.addTimeBinEntry(new UserModelEntryTimeBin(1000));
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    private <T> void mergeAll(final Collection<T> objects) {
+        Transaction<Object> transaction = new Transaction<Object>() {
+
+            @Override
+            protected Object doTransaction(EntityManager entityManager) {
+                for (T object : objects) {
+                    entityManager.merge(object);
+                }
+                return null;
+            }
+        };
+        transaction.executeTransaction(messagePersistence.getEntityManager());
+    }
+
+    private void print(String name, int rows, Write before, Write bulk) {
+        // warm up
+        before.run(0);
+        bulk.run(0);
+        // alternate the writes so both see the same amount of data in the database
+        long beforeDuration = 0;
+        long bulkDuration = 0;
+        for (int round = 1; round <= ROUNDS; round++) {
+            long start = System.nanoTime();
+            before.run(round);
+            beforeDuration += System.nanoTime() - start;
+            start = System.nanoTime();
+            bulk.run(round);
+            bulkDuration += System.nanoTime() - start;
+        }
+        double beforeRowsPerSecond = rows * (double) ROUNDS / beforeDuration * 1000000000d;
+        double bulkRowsPerSecond = rows * (double) ROUNDS / bulkDuration * 1000000000d;
+        System.out.println(String.format("%-30s before=%8.0f bulk=%8.0f (x%.1f)", name,
+                beforeRowsPerSecond, bulkRowsPerSecond, bulkRowsPerSecond / beforeRowsPerSecond));
+    }
+
+    public void run() {
+        for (int i = 0; i < ROWS; i++) {
+            terms.add(messagePersistence.getOrCreateTerm(TermCategory.TERM, "bulk" + i));
+        }
+
+        System.out.println("rows=" + ROWS + " rounds=" + ROUNDS + " batchSize="
+                + messagePersistence.getBatchSize() + " (entities per second)");
+
+        print("storeMessageRanks (insert)", ROWS, new Write() {
+
+            @Override
+            public void run(int round) {
+                mergeAll(createMessageRanks());
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                messagePersistence.storeMessageRanks(createMessageRanks());
+            }
+        });
+
+        final List<MessageRank> beforeRanks = createMessageRanks();
+        final List<MessageRank> bulkRanks = createMessageRanks();
+        messagePersistence.storeMessageRanks(beforeRanks);
+        messagePersistence.storeMessageRanks(bulkRanks);
+        print("storeMessageRanks (update)", ROWS, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (MessageRank rank : beforeRanks) {
+                    rank.setRank(round);
+                }
+                mergeAll(beforeRanks);
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (MessageRank rank : bulkRanks) {
+                    rank.setRank(round);
+                }
+                messagePersistence.storeMessageRanks(bulkRanks);
+            }
+        });
+
+        print("storeOrUpdateUserModelEntries", ROWS, new Write() {
+
+            @Override
+            public void run(int round) {
+                mergeAll(createUserModelEntries(createUserModel()));
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                UserModel userModel = createUserModel();
+                userPersistence.storeOrUpdateUserModelEntries(userModel,
+                        createUserModelEntries(userModel));
+            }
+        });
+
+        print("updateTerms", ROWS, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (Term term : terms) {
+                    term.setCount(round);
+                }
+                mergeAll(terms);
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (Term term : terms) {
+                    term.setCount(round);
+                }
+                messagePersistence.updateTerms(terms);
+            }
+        });
+
+        print("getOrCreateTerms", ROWS, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (int i = 0; i < ROWS; i++) {
+                    messagePersistence.getOrCreateTerm(TermCategory.TERM, "before" + round + "_"
+                            + i);
+                }
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                List<String> names = new ArrayList<String>(ROWS);
+                for (int i = 0; i < ROWS; i++) {
+                    names.add("bulk" + round + "_" + i);
+                }
+                messagePersistence.getOrCreateTerms(TermCategory.TERM, names);
+            }
+        });
+
+        print("storeObservation", ROWS, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (int i = 0; i < ROWS; i++) {
+                    messagePersistence.save(createObservation());
+                }
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (int i = 0; i < ROWS; i++) {
+                    messagePersistence.storeObservation(createObservation());
+                }
+            }
+        });
+
+        print("storeMessage", MESSAGES, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (int i = 0; i < MESSAGES; i++) {
+                    Message message = createMessage();
+                    Message existing = messagePersistence.getMessageByGlobalId(message
+                            .getGlobalId());
+                    if (existing != null) {
+                        messagePersistence.remove(existing);
+                    }
+                    messagePersistence.save(message);
+                }
+            }
+        }, new Write() {
+
+            @Override
+            public void run(int round) {
+                for (int i = 0; i < MESSAGES; i++) {
+                    messagePersistence.storeMessage(createMessage());
+                }
+            }
+        });
+
+        messagePersistence.shutdown();
+        userPersistence.shutdown();
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package de.spektrumprojekt.persistence.jpa.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.spektrumprojekt.configuration.properties.SimpleProperties;
+import de.spektrumprojekt.datamodel.duplicationdetection.HashWithDate;
+import de.spektrumprojekt.persistence.jpa.JPAConfiguration;
+
+/**
+ * Test for the {@link DuplicationDetectionPersistence}
+ *
+ * @author Communote GmbH - <a href="http://www.communote.de/">http://www.communote.com/</a>
+ *
+ */
+public class DuplicationDetectionPersistenceTest {
+
+    private static final String PERSISTENCE_UNIT_NAME = "de.spektrumprojekt.datamodel.test";
+
+    private DuplicationDetectionPersistence persistence;
+
+    private Set<String> getHashes(String subscriptionGlobalId) {
+        Set<String> hashes = new HashSet<String>();
+        for (HashWithDate hash : persistence.getHashsByGlobalSubscriptionId(subscriptionGlobalId)) {
+            hashes.add(hash.getHash());
+        }
+        return hashes;
+    }
+
+    @Before
+    public void setup() {
+        Map<String, String> properties = new HashMap<String, String>();
+        properties.put("persistenceUnit", PERSISTENCE_UNIT_NAME);
+        properties.put(JPAConfiguration.ECLIPSELINK_JDBC_BATCH_WRITING_SIZE, "2");
+
+        JPAConfiguration jpaConfiguration = new JPAConfiguration(new SimpleProperties(properties));
+
+        persistence = new DuplicationDetectionPersistence(jpaConfiguration);
+    }
+
+    @Test
+    public void testSaveAndDeleteHashes() {
+        String subscription1 = UUID.randomUUID().toString();
+        String subscription2 = UUID.randomUUID().toString();
+        List<HashWithDate> hashes = new ArrayList<HashWithDate>();
+        for (int i = 0; i < 5; i++) {
+            hashes.add(new HashWithDate(subscription1, new Date(), "hash" + i));
+            hashes.add(new HashWithDate(subscription2, new Date(), "hash" + i));
+        }
+        persistence.saveHashWithDates(hashes);
+        Assert.assertEquals(5, getHashes(subscription1).size());
+        Assert.assertEquals(5, getHashes(subscription2).size());
+
+        // delete more hashes than the batch size of one subscription
+        List<HashWithDate> hashesToDelete = new ArrayList<HashWithDate>();
+        for (HashWithDate hash : hashes) {
+            if (hash.getSubscriptionGlobalId().equals(subscription1)
+                    || hash.getHash().equals("hash0")) {
+                hashesToDelete.add(hash);
+            }
+        }
+        hashesToDelete.remove(hashesToDelete.size() - 1);
+        persistence.deleteHashWithDates(hashesToDelete);
+
+        Set<String> remaining = getHashes(subscription1);
+        Assert.assertEquals(1, remaining.size());
+        Assert.assertTrue(remaining.contains("hash4"));
+        remaining = getHashes(subscription2);
+        Assert.assertEquals(4, remaining.size());
+        Assert.assertFalse(remaining.contains("hash0"));
+    }
+}
@@ -23,11 +23,18 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
 import org.apache.commons.collections.CollectionUtils;
@@ -41,6 +48,7 @@ import de.spektrumprojekt.datamodel.common.MimeType;
 import de.spektrumprojekt.datamodel.common.Property;
 import de.spektrumprojekt.datamodel.message.Message;
 import de.spektrumprojekt.datamodel.message.MessageFilter;
+import de.spektrumprojekt.datamodel.message.MessageFilter.OrderDirection;
 import de.spektrumprojekt.datamodel.message.MessageGroup;
 import de.spektrumprojekt.datamodel.message.MessagePart;
 import de.spektrumprojekt.datamodel.message.MessageRank;
@@ -93,6 +101,14 @@ public class MessagePersistenceTest {
         return message;
     }
 
+    private Set<String> getGlobalIds(Collection<Message> messages) {
+        Set<String> globalIds = new HashSet<String>();
+        for (Message message : messages) {
+            globalIds.add(message.getGlobalId());
+        }
+        return globalIds;
+    }
+
     @Before
     public void setup() {
         Map<String, String> properties = new HashMap<String, String>();
@@ -192,6 +208,37 @@ public class MessagePersistenceTest {
 
     }
 
+    @Test
+    public void testGetMessagesPagedById() {
+        MessageGroup group = this.persistence.storeMessageGroup(new MessageGroup());
+        List<Long> messageIds = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            Message message = createTestMessage("Unit Test testGetMessagesPagedById " + i);
+            message.setMessageGroup(group);
+            messageIds.add(this.persistence.storeMessage(message).getId());
+        }
+
+        MessageFilter messageFilter = new MessageFilter();
+        messageFilter.setMessageGroupGlobalId(group.getGlobalId());
+        messageFilter.setMessageIdOrderDirection(OrderDirection.ASC);
+        messageFilter.setLastMessagesCount(4);
+
+        List<Long> returnedIds = new ArrayList<Long>();
+        List<Message> page;
+        do {
+            page = persistence.getMessages(messageFilter);
+            for (Message message : page) {
+                returnedIds.add(message.getId());
+            }
+            if (!page.isEmpty()) {
+                messageFilter.setMinMessageId(page.get(page.size() - 1).getId() + 1);
+            }
+        } while (page.size() == messageFilter.getLastMessagesCount());
+
+        Collections.sort(messageIds);
+        Assert.assertEquals(messageIds, returnedIds);
+    }
+
     @Test
     public void testGetOrCreateTerm() {
 
@@ -213,6 +260,24 @@ public class MessagePersistenceTest {
         Assert.assertTrue(terms.add(term3));
     }
 
+    @Test
+    public void testGetOrCreateTerms() {
+        String prefix = UUID.randomUUID().toString();
+        Term existingTerm = persistence.getOrCreateTerm(TermCategory.TERM, prefix + "1");
+
+        Map<String, Term> terms = persistence.getOrCreateTerms(TermCategory.TERM,
+                Arrays.asList(prefix + "1", prefix + "2", prefix + "3", prefix + "2"));
+
+        Assert.assertEquals(3, terms.size());
+        Assert.assertEquals(existingTerm.getId(), terms.get(prefix + "1").getId());
+        for (Term term : terms.values()) {
+            assertNotNull(term.getId());
+            Assert.assertEquals(TermCategory.TERM, term.getCategory());
+        }
+        Assert.assertEquals(terms.get(prefix + "2").getId(),
+                persistence.getOrCreateTerm(TermCategory.TERM, prefix + "2").getId());
+    }
+
     @Test
     public void testMessagePatterns() throws Exception {
 
@@ -334,6 +399,20 @@ public class MessagePersistenceTest {
 
         Assert.assertNotNull(rank2return);
         Assert.assertEquals(rank2.getRank(), rank2return.getRank(), 0.0001);
+
+        // update an existing rank and add a new one with the same call
+        String otherUserGlobalId = UUID.randomUUID().toString();
+        rank1.setRank(0.5f);
+        MessageRank rank3 = new MessageRank(message1.getGlobalId(), otherUserGlobalId);
+        rank3.setRank(1f);
+        persistence.storeMessageRanks(Arrays.asList(rank1, rank3));
+
+        rank1return = persistence.getMessageRank(user.getGlobalId(), message1.getGlobalId());
+        Assert.assertEquals(0.5f, rank1return.getRank(), 0.0001);
+        MessageRank rank3return = persistence.getMessageRank(otherUserGlobalId,
+                message1.getGlobalId());
+        Assert.assertNotNull(rank3return);
+        Assert.assertEquals(1f, rank3return.getRank(), 0.0001);
     }
 
     @Test
@@ -372,6 +451,72 @@ public class MessagePersistenceTest {
         }
     }
 
+    /**
+     * Test that storing several patterns of a message at once returns the same messages as
+     * storing every pattern on its own and getting the messages of it, including the messages
+     * published at the minimum publication date
+     */
+    @Test
+    public void testStoreMessagePatterns() {
+        String prefix = UUID.randomUUID().toString();
+        // two sets of the same patterns, one stored pattern by pattern and one at once
+        String singlePrefix = prefix + "-SINGLE-";
+        String bulkPrefix = prefix + "-BULK-";
+        Date minPublicationDate = new Date(new Date().getTime() / 1000 * 1000
+                - DateUtils.MILLIS_PER_HOUR);
+
+        Message oldMessage = persistence.storeMessage(createTestMessage("old", new Date(
+                minPublicationDate.getTime() - DateUtils.MILLIS_PER_MINUTE)));
+        Message boundaryMessage = persistence.storeMessage(createTestMessage("boundary",
+                minPublicationDate));
+        Message laterMessage = persistence.storeMessage(createTestMessage("later", new Date(
+                minPublicationDate.getTime() + DateUtils.MILLIS_PER_MINUTE)));
+        Message lastMessage = persistence.storeMessage(createTestMessage("last", new Date(
+                minPublicationDate.getTime() + 2 * DateUtils.MILLIS_PER_MINUTE)));
+
+        Map<Message, List<String>> messagePatterns = new LinkedHashMap<Message, List<String>>();
+        messagePatterns.put(oldMessage, Arrays.asList("A", "B"));
+        messagePatterns.put(boundaryMessage, Arrays.asList("A", "B", "C"));
+        messagePatterns.put(laterMessage, Arrays.asList("A", "C"));
+        messagePatterns.put(lastMessage, Arrays.asList("A", "B", "C", "D"));
+
+        Map<String, Set<String>> patternMessageGlobalIds = null;
+        for (Entry<Message, List<String>> entry : messagePatterns.entrySet()) {
+            Message message = entry.getKey();
+            Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+            List<String> bulkPatterns = new ArrayList<String>();
+            for (String pattern : entry.getValue()) {
+                persistence.storeMessagePattern(singlePrefix + pattern, message);
+                MessageFilter messageFilter = new MessageFilter();
+                messageFilter.setPattern(singlePrefix + pattern);
+                messageFilter.setMinPublicationDate(minPublicationDate);
+                Set<String> globalIds = getGlobalIds(persistence.getMessages(messageFilter));
+                if (!globalIds.isEmpty()) {
+                    expected.put(pattern, globalIds);
+                }
+                bulkPatterns.add(bulkPrefix + pattern);
+            }
+
+            patternMessageGlobalIds = new HashMap<String, Set<String>>();
+            for (Entry<String, List<Message>> patternMessages : persistence.storeMessagePatterns(
+                    message, bulkPatterns, minPublicationDate).entrySet()) {
+                Assert.assertTrue(patternMessages.getKey().startsWith(bulkPrefix));
+                patternMessageGlobalIds.put(
+                        patternMessages.getKey().substring(bulkPrefix.length()),
+                        getGlobalIds(patternMessages.getValue()));
+            }
+            Assert.assertEquals(message.getGlobalId(), expected, patternMessageGlobalIds);
+        }
+
+        Assert.assertEquals(new HashSet<String>(Arrays.asList(boundaryMessage.getGlobalId(),
+                laterMessage.getGlobalId(), lastMessage.getGlobalId())),
+                patternMessageGlobalIds.get("A"));
+        Assert.assertEquals(new HashSet<String>(Arrays.asList(boundaryMessage.getGlobalId(),
+                lastMessage.getGlobalId())), patternMessageGlobalIds.get("B"));
+        Assert.assertEquals(Collections.singleton(lastMessage.getGlobalId()),
+                patternMessageGlobalIds.get("D"));
+    }
+
     @Test
     public void testTermFrequency() {
         TermFrequency tf = persistence.getTermFrequency();
@@ -21,12 +21,16 @@ package de.spektrumprojekt.persistence.jpa.impl;
 
 import static de.spektrumprojekt.datamodel.user.UserModel.DEFAULT_USER_MODEL_TYPE;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
 
 import org.junit.Assert;
@@ -239,6 +243,60 @@ public class UserPersistenceTest {
 
     }
 
+    @Test
+    public void testGetBulkUserModelEntriesForTerms() {
+        final String userModelType = "TEST_BULK_USER_MODEL_TYPE_" + UUID.randomUUID().toString();
+        final String userGlobalId = UUID.randomUUID().toString();
+        final String otherUserGlobalId = UUID.randomUUID().toString();
+        final String unknownUserGlobalId = UUID.randomUUID().toString();
+
+        Term term1 = persistence.getOrCreateTerm(TermCategory.TERM, "term_1_"
+                + UUID.randomUUID().toString());
+        Term term2 = persistence.getOrCreateTerm(TermCategory.TERM, "term_2_"
+                + UUID.randomUUID().toString());
+        Term term3 = persistence.getOrCreateTerm(TermCategory.TERM, "term_3_"
+                + UUID.randomUUID().toString());
+
+        addTermsToUserModel(
+                persistence.getOrCreateUserModelByUser(userGlobalId, DEFAULT_USER_MODEL_TYPE),
+                0.2f, term1, term2);
+        addTermsToUserModel(persistence.getOrCreateUserModelByUser(userGlobalId, userModelType),
+                0.4f, term1);
+        addTermsToUserModel(
+                persistence.getOrCreateUserModelByUser(otherUserGlobalId,
+                        DEFAULT_USER_MODEL_TYPE), 0.6f, term2, term3);
+
+        Map<String, Map<String, Map<Term, UserModelEntry>>> entries = persistence
+                .getUserModelEntriesForTerms(
+                        Arrays.asList(userGlobalId, otherUserGlobalId, unknownUserGlobalId),
+                        Arrays.asList(DEFAULT_USER_MODEL_TYPE, userModelType),
+                        Arrays.asList(term1, term2, term3));
+
+        Assert.assertEquals(3, entries.size());
+        checkTerms(entries.get(userGlobalId).get(DEFAULT_USER_MODEL_TYPE), 2, 0.2f);
+        checkTerms(entries.get(userGlobalId).get(userModelType), 1, 0.4f);
+        Assert.assertNotNull(entries.get(userGlobalId).get(userModelType).get(term1));
+        checkTerms(entries.get(otherUserGlobalId).get(DEFAULT_USER_MODEL_TYPE), 2, 0.6f);
+        checkTerms(entries.get(otherUserGlobalId).get(userModelType), 0, 0);
+        checkTerms(entries.get(unknownUserGlobalId).get(DEFAULT_USER_MODEL_TYPE), 0, 0);
+        checkTerms(entries.get(unknownUserGlobalId).get(userModelType), 0, 0);
+
+        // more terms than fit into one batch
+        Collection<String> names = new ArrayList<String>();
+        for (int i = 0; i < JPAConfiguration.DEFAULT_BATCH_SIZE + 50; i++) {
+            names.add("term_many_" + i + "_" + UUID.randomUUID().toString());
+        }
+        Collection<Term> terms = persistence.getOrCreateTerms(TermCategory.TERM, names).values();
+        addTermsToUserModel(persistence.getOrCreateUserModelByUser(otherUserGlobalId,
+                userModelType), 0.8f, terms.toArray(new Term[terms.size()]));
+
+        entries = persistence.getUserModelEntriesForTerms(
+                Arrays.asList(userGlobalId, otherUserGlobalId), Arrays.asList(userModelType),
+                terms);
+        checkTerms(entries.get(otherUserGlobalId).get(userModelType), names.size(), 0.8f);
+        checkTerms(entries.get(userGlobalId).get(userModelType), 0, 0);
+    }
+
     @Test
     public void testGetOrCreateUser() {
 
@@ -453,6 +511,79 @@ public class UserPersistenceTest {
 
     }
 
+    /**
+     * Tests getting the user model entries page by page ordered by the user global id and storing
+     * the entries of several user models at once
+     */
+    @Test
+    public void testGetUserModelEntries() {
+        final String userModelType = "TEST_PAGED_USER_MODEL_TYPE_" + UUID.randomUUID().toString();
+        final String prefix = UUID.randomUUID().toString() + "_";
+
+        Term term1 = persistence.getOrCreateTerm(TermCategory.TERM, "term_1_"
+                + UUID.randomUUID().toString());
+        Term term2 = persistence.getOrCreateTerm(TermCategory.TERM, "term_2_"
+                + UUID.randomUUID().toString());
+        Term term3 = persistence.getOrCreateTerm(TermCategory.TERM, "term_3_"
+                + UUID.randomUUID().toString());
+        List<String> userGlobalIds = Arrays.asList(prefix + "user3", prefix + "user1", prefix
+                + "user5", prefix + "user2", prefix + "user4");
+        for (String userGlobalId : userGlobalIds) {
+            addTermsToUserModel(persistence.getOrCreateUserModelByUser(userGlobalId,
+                    userModelType), 0.2f, term1, term2);
+        }
+        addTermsToUserModel(persistence.getOrCreateUserModelByUser(prefix + "user1",
+                DEFAULT_USER_MODEL_TYPE), 0.2f, term1);
+
+        // 2 full pages and the last partial page
+        List<String> pagedUserGlobalIds = new ArrayList<String>();
+        List<Integer> pageSizes = new ArrayList<Integer>();
+        String lastUserGlobalId = null;
+        Map<UserModel, Collection<UserModelEntry>> page;
+        do {
+            page = persistence.getUserModelEntries(userModelType, lastUserGlobalId, 2);
+            pageSizes.add(page.size());
+            for (Entry<UserModel, Collection<UserModelEntry>> entries : page.entrySet()) {
+                Assert.assertEquals(userModelType, entries.getKey().getUserModelType());
+                lastUserGlobalId = entries.getKey().getUser().getGlobalId();
+                pagedUserGlobalIds.add(lastUserGlobalId);
+                Assert.assertEquals(2, entries.getValue().size());
+            }
+        } while (page.size() == 2);
+        Assert.assertEquals(Arrays.asList(prefix + "user1", prefix + "user2", prefix + "user3",
+                prefix + "user4", prefix + "user5"), pagedUserGlobalIds);
+        Assert.assertEquals(Arrays.asList(2, 2, 1), pageSizes);
+        Assert.assertTrue(persistence.getUserModelEntries(prefix + "unknown", null, 2).isEmpty());
+
+        // update the entries of a page and add a new one to each user model of it
+        page = persistence.getUserModelEntries(userModelType, null, 3);
+        Assert.assertEquals(3, page.size());
+        for (Entry<UserModel, Collection<UserModelEntry>> entries : page.entrySet()) {
+            for (UserModelEntry entry : entries.getValue()) {
+                entry.getScoredTerm().setWeight(0.6f);
+            }
+            entries.getValue().add(new UserModelEntry(entries.getKey(), new ScoredTerm(term3,
+                    0.6f)));
+        }
+        persistence.storeOrUpdateUserModelEntries(page);
+
+        Collection<Term> terms = Arrays.asList(term1, term2, term3);
+        for (String userGlobalId : userGlobalIds) {
+            UserModel userModel = persistence.getOrCreateUserModelByUser(userGlobalId,
+                    userModelType);
+            Map<Term, UserModelEntry> entries = persistence.getUserModelEntriesForTerms(
+                    userModel, terms);
+            if (userGlobalId.compareTo(prefix + "user3") <= 0) {
+                checkTerms(entries, 3, 0.6f);
+            } else {
+                checkTerms(entries, 2, 0.2f);
+            }
+        }
+        checkTerms(
+                persistence.getUserModelEntriesForTerms(persistence.getOrCreateUserModelByUser(
+                        prefix + "user1", DEFAULT_USER_MODEL_TYPE), terms), 1, 0.2f);
+    }
+
     @Test
     public void testGetUsersWithUserModel() {
         UserModel userModel1 = getNewUserModel();
@@ -645,4 +776,62 @@ public class UserPersistenceTest {
 
     }
 
+    /**
+     * Tests getting the similarities between several users with more users than fit into one
+     * batch
+     */
+    @Test
+    public void testUserSimilaritiesOfSeveralUsers() {
+        String prefix = UUID.randomUUID().toString();
+        String groupId1 = prefix + "group1";
+        String groupId2 = prefix + "group2";
+        int users = JPAConfiguration.DEFAULT_BATCH_SIZE + 50;
+
+        Collection<UserSimilarity> sims = new HashSet<UserSimilarity>();
+        Collection<String> usersFrom = new HashSet<String>();
+        Collection<String> usersTo = new HashSet<String>();
+        Set<String> expected = new HashSet<String>();
+        Set<String> expectedOfAllGroups = new HashSet<String>();
+        for (int i = 0; i < users; i++) {
+            String from = prefix + "from" + i;
+            String to = prefix + "to" + i % 3;
+            double similarity = (i % 10) / 10d;
+            sims.add(new UserSimilarity(from, to, groupId1, similarity));
+            sims.add(new UserSimilarity(from, to, groupId2, similarity));
+            // similarities to users not asked for
+            sims.add(new UserSimilarity(to, from, groupId1, 1));
+            if (i % 5 != 0) {
+                usersFrom.add(from);
+                if (i % 3 != 2 && similarity >= 0.5) {
+                    expected.add(from + "->" + to + "@" + groupId1);
+                    expectedOfAllGroups.add(from + "->" + to + "@" + groupId1);
+                    expectedOfAllGroups.add(from + "->" + to + "@" + groupId2);
+                }
+            }
+            // more users to than fit into one batch
+            usersTo.add(prefix + "unknown" + i);
+        }
+        usersTo.add(prefix + "to0");
+        usersTo.add(prefix + "to1");
+        persistence.storeUserSimilarities(sims);
+
+        Assert.assertEquals(expected,
+                toKeys(persistence.getUserSimilarities(usersFrom, usersTo, groupId1, 0.5)));
+        Assert.assertEquals(expectedOfAllGroups,
+                toKeys(persistence.getUserSimilarities(usersFrom, usersTo, null, 0.5)));
+        Assert.assertTrue(persistence.getUserSimilarities(usersFrom, usersTo,
+                prefix + "group3", 0).isEmpty());
+        Assert.assertTrue(persistence.getUserSimilarities(usersFrom,
+                Collections.<String> emptySet(), groupId1, 0).isEmpty());
+    }
+
+    private Set<String> toKeys(Collection<UserSimilarity> sims) {
+        Set<String> keys = new HashSet<String>();
+        for (UserSimilarity sim : sims) {
+            Assert.assertTrue(keys.add(sim.getUserGlobalIdFrom() + "->" + sim.getUserGlobalIdTo()
+                    + "@" + sim.getMessageGroupGlobalId()));
+        }
+        return keys;
+    }
+
 }